@@ -12,6 +12,7 @@ import org.lwjgl.util.vector.Vector3f;
 
 import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.VectorHelper;
 import com.bitwaffle.spaceout.resources.Sounds;
 
 /**
@@ -23,6 +24,9 @@ public class Audio {
 	/** Used for deleting all sound sources on shutdown (see {@link SoundSource}'s constructor, each SoundSource gets added to this when it's created */
 	protected static ArrayList<SoundSource> soundSources = new ArrayList<SoundSource>();
 	
+	/** If this is true, there's no OpenAL context and every {@link SoundSource} is silent (see HeadlessRunner) */
+	public static boolean headless = false;
+	
 	/** Factor to use for doppler effect */
 	private static final float DOPPLER_FACTOR = 0.0f;
 	
@@ -38,6 +42,10 @@ public class Audio {
 	/** Buffers for transferring data to OpenAL */
 	private static FloatBuffer listenerPos, listenerVel, listenerOrient;
 	
+	/** Scratch vector for getting the listener's velocity, so nothing gets allocated every update */
+	private static javax.vecmath.Vector3f listenerVelocity = new javax.vecmath.Vector3f();
+	private static Vector3f listenerLocation = new Vector3f(), listenerAt = new Vector3f(), listenerUp = new Vector3f();
+	
 	/** For checking for errors */
 	private static int err;
 	
@@ -92,30 +100,26 @@ public class Audio {
 			listenerOrient.put(0.0f);
 		} else{
 			// position
-			Vector3f realPos = Entities.camera.getLocationWithOffset();
+			Vector3f realPos = Entities.camera.getLocationWithOffset(listenerLocation);
 			listenerPos.put(realPos.x);
 			listenerPos.put(realPos.y);
 			listenerPos.put(realPos.z);
 			listenerPos.rewind();
 			
 			// velocity
-			javax.vecmath.Vector3f linvec = new javax.vecmath.Vector3f();
-			
 			// if we're following anything, we want its velocity
 			if(Entities.camera.buildMode || Entities.camera.freeMode)
-				Entities.camera.rigidBody.getLinearVelocity(linvec);
+				Entities.camera.rigidBody.getLinearVelocity(listenerVelocity);
 			else
-				Entities.camera.following.rigidBody.getLinearVelocity(linvec);
+				Entities.camera.following.rigidBody.getLinearVelocity(listenerVelocity);
 
-			listenerVel.put(linvec.x);
-			listenerVel.put(linvec.y);
-			listenerVel.put(linvec.z);
+			listenerVel.put(listenerVelocity.x);
+			listenerVel.put(listenerVelocity.y);
+			listenerVel.put(listenerVelocity.z);
 			
 			// orientation
-			Vector3f at = new Vector3f(0.0f, 0.0f, 1.0f);
-			Vector3f up = new Vector3f(0.0f, 1.0f, 0.0f);
-			at = QuaternionHelper.rotateVectorByQuaternion(at, Entities.camera.rotation);
-			up = QuaternionHelper.rotateVectorByQuaternion(up, Entities.camera.rotation);
+			Vector3f at = QuaternionHelper.rotateVectorByQuaternion(0.0f, 0.0f, 1.0f, Entities.camera.rotation, listenerAt);
+			Vector3f up = QuaternionHelper.rotateVectorByQuaternion(0.0f, 1.0f, 0.0f, Entities.camera.rotation, listenerUp);
 			listenerOrient.put(at.x);
 			listenerOrient.put(at.y);
 			listenerOrient.put(at.z);
@@ -242,7 +246,7 @@ public class Audio {
 		}
 		
 		// create a sound source, play it, and set it up to be removed
-		SoundSource tmp = new SoundSource(sound, false, location, new Vector3f(velocity.x, velocity.y, velocity.z));
+		SoundSource tmp = new SoundSource(sound, false, location, VectorHelper.toLWJGL(velocity, new Vector3f()));
 		tmp.playSound();
 		tmp.removeFlag = true;
 	}
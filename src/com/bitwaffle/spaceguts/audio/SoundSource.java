@@ -41,6 +41,15 @@ public class SoundSource {
 		posBuf = BufferUtils.createFloatBuffer(3);
 		velBuf = BufferUtils.createFloatBuffer(3);
 		
+		// without an OpenAL context, this source never makes any noise
+		if(Audio.headless){
+			this.pitch = sound.pitch;
+			this.currentGain = sound.gain;
+			this.defaultGain = sound.gain;
+			this.loop = loop;
+			return;
+		}
+		
 		// generate handle
 		IntBuffer buf = BufferUtils.createIntBuffer(1);
 		AL10.alGenSources(buf);
@@ -72,6 +81,8 @@ public class SoundSource {
 	 */
 	public void setPitch(float pitch){
 		this.pitch = pitch;
+		if(Audio.headless)
+			return;
 		AL10.alSourcef(handle, AL10.AL_PITCH, pitch);
 	}
 	
@@ -102,6 +113,8 @@ public class SoundSource {
 	 */
 	public void setGain(float gain){
 		this.currentGain = gain;
+		if(Audio.headless)
+			return;
 		AL10.alSourcef(handle, AL10.AL_GAIN,  Audio.currentVolume() * gain);
 	}
 	
@@ -110,6 +123,8 @@ public class SoundSource {
 	 * @param location New location
 	 */
 	public void setLocation(Vector3f location){
+		if(Audio.headless)
+			return;
 		posBuf.clear();
 		posBuf.put(location.x);
 		posBuf.put(location.y);
@@ -123,6 +138,8 @@ public class SoundSource {
 	 * @param velocity New velocity
 	 */
 	public void setVelocity(Vector3f velocity){
+		if(Audio.headless)
+			return;
 		velBuf.clear();
 		velBuf.put(velocity.x);
 		velBuf.put(velocity.y);
@@ -135,6 +152,8 @@ public class SoundSource {
 	 * Plays the sound
 	 */
 	public void playSound(){
+		if(Audio.headless)
+			return;
 		AL10.alSourcePlay(handle);
 	}
 	
@@ -142,6 +161,8 @@ public class SoundSource {
 	 * Stops sound
 	 */
 	public void stopSound(){
+		if(Audio.headless)
+			return;
 		AL10.alSourceStop(handle);
 	}
 	
@@ -149,6 +170,8 @@ public class SoundSource {
 	 * Pauses sound
 	 */
 	public void pauseSound(){
+		if(Audio.headless)
+			return;
 		AL10.alSourcePause(handle);
 	}
 	
@@ -164,6 +187,8 @@ public class SoundSource {
 	 */
 	public void setLooping(boolean loop){
 		this.loop = loop;
+		if(Audio.headless)
+			return;
 		AL10.alSourcei(handle, AL10.AL_LOOPING, loop ? AL10.AL_TRUE : AL10.AL_FALSE);
 	}
 	
@@ -171,6 +196,8 @@ public class SoundSource {
 	 * Rewinds sound
 	 */
 	public void rewindSound(){
+		if(Audio.headless)
+			return;
 		AL10.alSourceRewind(handle);
 	}
 	
@@ -180,6 +207,8 @@ public class SoundSource {
 	 * @param buffer Buffer to queue
 	 */
 	public void queueBuffer(int buffer){
+		if(Audio.headless)
+			return;
 		AL10.alSourceQueueBuffers(handle, buffer);
 	}
 	
@@ -187,6 +216,8 @@ public class SoundSource {
 	 * Un-queues buffers
 	 */
 	public void unqueueBuffers(){
+		if(Audio.headless)
+			return;
 		AL10.alSourceUnqueueBuffers(handle);
 	}
 	
@@ -194,6 +225,8 @@ public class SoundSource {
 	 * Should be called when removing source
 	 */
 	public void shutdown(){
+		if(Audio.headless)
+			return;
 		AL10.alDeleteSources(handle);
 	}
 	
@@ -201,6 +234,9 @@ public class SoundSource {
 	 * @return Whether or not a sound is being played right now
 	 */
 	public boolean isPlaying(){
+		if(Audio.headless)
+			return false;
+		
 		int stat = AL10.alGetSourcei(handle, AL10.AL_SOURCE_STATE);
 		if(stat == AL10.AL_PLAYING)
 			return true;
@@ -7,18 +7,19 @@ import org.lwjgl.util.vector.Quaternion;
 import org.lwjgl.util.vector.Vector3f;
 
 
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
 import com.bitwaffle.spaceguts.graphics.render.Render3D;
 import com.bitwaffle.spaceguts.input.KeyBindings;
 import com.bitwaffle.spaceguts.input.MouseManager;
 import com.bitwaffle.spaceguts.physics.Builder;
 import com.bitwaffle.spaceguts.physics.CollisionTypes;
-import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.RayBatch;
 import com.bitwaffle.spaceguts.util.DisplayHelper;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.VectorHelper;
 import com.bitwaffle.spaceguts.util.console.Console;
 import com.bitwaffle.spaceout.resources.Textures;
 import com.bulletphysics.collision.dispatch.CollisionObject;
-import com.bulletphysics.collision.dispatch.CollisionWorld.ClosestRayResultCallback;
 import com.bulletphysics.collision.shapes.SphereShape;
 import com.bulletphysics.linearmath.Transform;
 
@@ -62,6 +63,16 @@ public class Camera extends DynamicEntity {
 	
 	/** for switching into/out of build mode */
 	private Vector3f oldLocation = new Vector3f(0.0f, 0.0f, 0.0f);
+	
+	/** Reused every update for syncing with the rigid body */
+	private Transform updateTransform = new Transform();
+	private Quat4f updateRotation = new Quat4f();
+	private Vector3f lookAmount = new Vector3f(), freeVelocity = new Vector3f();
+	private javax.vecmath.Vector3f vecScratch = new javax.vecmath.Vector3f();
+	
+	/** Used for ray tests at the center of the camera */
+	private RayBatch centerRay = new RayBatch(1);
+	private Vector3f rayStart = new Vector3f(), rayEnd = new Vector3f();
 
 	/**
 	 * The camera has three main modes:
@@ -109,14 +120,14 @@ public class Camera extends DynamicEntity {
 		this.rigidBody.applyDamping(100.0f);
 		
 		// get the rigid body's tranform
-		Transform trans = new Transform();
+		Transform trans = updateTransform;
 		this.rigidBody.getWorldTransform(trans);
 		
 		// set location to be with rigid body
 		this.location.set(trans.origin.x, trans.origin.y, trans.origin.z);
 		
 		// set rotation to be with rigid body
-		Quat4f rot = new Quat4f();
+		Quat4f rot = updateRotation;
 		trans.getRotation(rot);
 		this.rotation.set(rot.x, rot.y, rot.z, rot.w);
 		
@@ -168,9 +179,10 @@ public class Camera extends DynamicEntity {
 			dz = timeStep * rollSpeed;
 		
 		// apply any rotation changes
-		this.rotation = QuaternionHelper.rotate(this.rotation, new Vector3f(MouseManager.dy, MouseManager.dx, dz));
+		lookAmount.set(MouseManager.tickDY, MouseManager.tickDX, dz);
+		QuaternionHelper.rotate(this.rotation, lookAmount, this.rotation);
 		// update rigid body transform
-		trans.setRotation(new Quat4f(rotation.x, rotation.y, rotation.z, rotation.w));
+		trans.setRotation(VectorHelper.toVecmath(rotation, updateRotation));
 	}
 
 	/**
@@ -285,9 +297,9 @@ public class Camera extends DynamicEntity {
 		// only zoom when the console isn't on (otherwise the mouse wheel
 		// controls console scrolling)
 		if (!Console.consoleOn) {
-			if (MouseManager.wheel != 0) {
+			if (MouseManager.tickWheel != 0) {
 				if(buildMode && !builder.leftGrabbed && !builder.rightGrabbed){
-					speed += (speed * zoomSensitivity / MouseManager.wheel);
+					speed += (speed * zoomSensitivity / MouseManager.tickWheel);
 					
 					// keep zoom in bounds
 					if (speed < minSpeed)
@@ -296,7 +308,7 @@ public class Camera extends DynamicEntity {
 						speed = maxSpeed;
 				}
 				else{
-					zoom -= (zoom * zoomSensitivity / MouseManager.wheel);
+					zoom -= (zoom * zoomSensitivity / MouseManager.tickWheel);
 					
 					// keep zoom in bounds
 					if (zoom < minZoom)
@@ -354,47 +366,50 @@ public class Camera extends DynamicEntity {
 				dy = speed * timeStep;
 		}
 		
-		Vector3f veloc = QuaternionHelper.rotateVectorByQuaternion(new Vector3f(dx, dy, dz), this.rotation);
-		this.rigidBody.setLinearVelocity(new javax.vecmath.Vector3f(veloc.x, veloc.y, veloc.z));
+		Vector3f veloc = QuaternionHelper.rotateVectorByQuaternion(dx, dy, dz, this.rotation, freeVelocity);
+		VectorHelper.setLinearVelocity(this.rigidBody, veloc, vecScratch);
 		
-		trans.setRotation(new Quat4f(rotation.x, rotation.y, rotation.z, rotation.w));
+		trans.setRotation(VectorHelper.toVecmath(rotation, updateRotation));
 	}
 
 	/**
 	 * Performs a ray test at the center of the camera into the depths of space.
-	 * @return A RayResultCallback that says whether or not something was hit
+	 * The ray sees the world as it was at the end of the last physics tick (see {@link RayBatch}).
+	 * @return A RayBatch with one ray (index 0) that says whether or not something was hit, only valid until the next call to this
 	 */
-	public ClosestRayResultCallback rayTestAtCenter(){
-		// rotate the camera's offsets by its current rotation to get the offsets on the right plane
-		Vector3f offsets = new Vector3f(xOffset, yOffset, -zoom);
-		Vector3f actualLocation = QuaternionHelper.rotateVectorByQuaternion(offsets, rotation);
-		// add location to rotated offsets to get actual camera position
-		Vector3f.add(location, actualLocation, actualLocation);
+	public RayBatch rayTestAtCenter(){
+		// rotate the camera's offsets by its current rotation to get the offsets on the right plane, then add location to get actual camera position
+		QuaternionHelper.rotateVectorByQuaternion(xOffset, yOffset, -zoom, rotation, rayStart);
+		Vector3f.add(location, rayStart, rayStart);
 		
 		// create a vector far at as out we can see, then rotate it by the camera's current rotation to get it on the right plane
-		Vector3f endOfTheGalaxy = QuaternionHelper.rotateVectorByQuaternion(new Vector3f(0.0f, 0.0f, Render3D.drawDistance), rotation);
-		Vector3f endAdd = new Vector3f();
+		QuaternionHelper.rotateVectorByQuaternion(0.0f, 0.0f, Render3D.drawDistance, rotation, rayEnd);
 		// add the vector at the end to the camera's location to get a straight line going to the end
-		Vector3f.add(actualLocation, endOfTheGalaxy, endAdd);
-		
-		javax.vecmath.Vector3f start = new javax.vecmath.Vector3f(actualLocation.x, actualLocation.y, actualLocation.z);
-		javax.vecmath.Vector3f end = new javax.vecmath.Vector3f(endAdd.x, endAdd.y, endAdd.z);
+		Vector3f.add(rayStart, rayEnd, rayEnd);
 		
 		// perform test
-		ClosestRayResultCallback callback = new ClosestRayResultCallback(start, end);
-		Physics.dynamicsWorld.rayTest(start, end, callback);
+		centerRay.clear();
+		centerRay.add(rayStart, rayEnd, CollisionTypes.EVERYTHING, this);
+		centerRay.cast();
 		
-		return callback;
+		return centerRay;
 	}
 	
 	/**
 	 * @return The camera's position with its xOffset, yOffset and zoom taken into consideration
 	 */
 	public Vector3f getLocationWithOffset(){
-		float x = location.x + xOffset;
-		float y = location.y + yOffset;
-		float z = location.z - zoom;
-		return new Vector3f(x, y, z);
+		return getLocationWithOffset(new Vector3f());
+	}
+	
+	/**
+	 * Same as getLocationWithOffset(), but puts the result in the given vector instead of a new one
+	 * @param dest Vector to put the location in
+	 * @return dest, for chaining
+	 */
+	public Vector3f getLocationWithOffset(Vector3f dest){
+		dest.set(location.x + xOffset, location.y + yOffset, location.z - zoom);
+		return dest;
 	}
 	
 	public void draw2D(){
@@ -448,6 +463,16 @@ public class Camera extends DynamicEntity {
 	public void draw() {
 		// camera dont need no drawin camera better than that
 	}
+	
+	/**
+	 * The renderer moves the view by these (see Render3D.transformToCamera())
+	 */
+	@Override
+	public void captureDrawState(DrawState state){
+		state.put(xOffset);
+		state.put(yOffset);
+		state.put(zoom);
+	}
 
 	@Override
 	public void cleanup() {
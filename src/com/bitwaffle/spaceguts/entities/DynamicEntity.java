@@ -9,9 +9,13 @@ import org.lwjgl.util.vector.Vector3f;
 import com.bitwaffle.spaceguts.graphics.model.Model;
 import com.bitwaffle.spaceguts.physics.CollisionTypes;
 import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.PhysicsLOD;
+import com.bitwaffle.spaceguts.physics.RayBatch;
+import com.bitwaffle.spaceguts.physics.SpawnBuffer;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.VectorHelper;
 import com.bitwaffle.spaceout.resources.Models;
-import com.bulletphysics.collision.dispatch.CollisionWorld.ClosestRayResultCallback;
+import com.bulletphysics.collision.dispatch.CollisionObject;
 import com.bulletphysics.collision.shapes.CollisionShape;
 import com.bulletphysics.dynamics.RigidBody;
 import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
@@ -37,6 +41,36 @@ public class DynamicEntity extends Entity {
 	 */
 	public boolean removeFlag = false;
 
+	/**
+	 * location and rotation as of the previous physics tick, used by the
+	 * renderer to interpolate between ticks (see {@link Physics#interpolationAlpha}).
+	 * These are only kept up to date while the entity ISN'T in Entities.dynamicEntities
+	 * (the {@link TransformStore} has them otherwise), so use getPreviousLocation() and getPreviousRotation()
+	 */
+	public Vector3f previousLocation;
+	public Quaternion previousRotation;
+
+	/**
+	 * physics level-of-detail state, if this is null then the entity is
+	 * always simulated at full detail (see {@link PhysicsLOD})
+	 */
+	public PhysicsLOD.State lod;
+	
+	/** mass and collision group/mask the rigid body was made with (used when it gets put back in the world, see respawn()) */
+	protected float mass;
+	protected short collisionGroup, collidesWith;
+	
+	/** pool to put this entity in when it's removed, null if it isn't pooled (see {@link EntityPool}) */
+	public EntityPool<?> pool;
+	
+	/** Scratch objects for respawn() (entities only get respawned on the physics thread, one at a time) */
+	private static Transform respawnTransform = new Transform();
+	private static Quat4f respawnRotation = new Quat4f();
+	private static javax.vecmath.Vector3f respawnVector = new javax.vecmath.Vector3f();
+	
+	/** Scratch vector for addRay(), only made if it's used */
+	private Vector3f rayEnd;
+
 	/**
 	 * Overloaded constructor
 	 */
@@ -84,19 +118,17 @@ public class DynamicEntity extends Entity {
 		// see Entity for location and rotation
 		this.location = location;
 		this.rotation = rotation;
+		this.previousLocation = new Vector3f(location);
+		this.previousRotation = new Quaternion(rotation);
 		this.model = model;
 
 		// the transform to use for putting the entity into the world
-		Transform transform = new Transform();
-		transform.setRotation(new Quat4f(rotation.x, rotation.y, rotation.z,
-				rotation.w));
-		transform.origin.set(location.x, location.y, location.z);
+		Transform transform = VectorHelper.toTransform(location, rotation, new Quat4f(), new Transform());
 		DefaultMotionState defaultState = new DefaultMotionState(transform);
 
 		// location to use for the entity (need a javax.vecmath Vector3f instead
 		// of the given org.lwjgl.util.vector Vector3f
-		javax.vecmath.Vector3f loca = new javax.vecmath.Vector3f(location.x,
-				location.y, location.z);
+		javax.vecmath.Vector3f loca = VectorHelper.toVecmath(location, new javax.vecmath.Vector3f());
 
 		// the collision shape is made when the model is made
 		CollisionShape shape = model.getCollisionShape();
@@ -117,12 +149,10 @@ public class DynamicEntity extends Entity {
 		rigidBody.setUserPointer(this);
 
 		// finally, add it to the world
-		if (collisionGroup != CollisionTypes.NOTHING
-				&& collidesWith != CollisionTypes.NOTHING)
-			Physics.dynamicsWorld.addRigidBody(rigidBody, collisionGroup,
-					collidesWith);
-		else
-			Physics.dynamicsWorld.addRigidBody(rigidBody);
+		this.mass = mass;
+		this.collisionGroup = collisionGroup;
+		this.collidesWith = collidesWith;
+		SpawnBuffer.spawn(this);
 	}
 	
 	public DynamicEntity(Vector3f location, Quaternion rotation, CollisionShape shape,
@@ -131,18 +161,16 @@ public class DynamicEntity extends Entity {
 		// see Entity for location and rotation
 		this.location = location;
 		this.rotation = rotation;
+		this.previousLocation = new Vector3f(location);
+		this.previousRotation = new Quaternion(rotation);
 
 		// the transform to use for putting the entity into the world
-		Transform transform = new Transform();
-		transform.setRotation(new Quat4f(rotation.x, rotation.y, rotation.z,
-				rotation.w));
-		transform.origin.set(location.x, location.y, location.z);
+		Transform transform = VectorHelper.toTransform(location, rotation, new Quat4f(), new Transform());
 		DefaultMotionState defaultState = new DefaultMotionState(transform);
 
 		// location to use for the entity (need a javax.vecmath Vector3f instead
 		// of the given org.lwjgl.util.vector Vector3f
-		javax.vecmath.Vector3f loca = new javax.vecmath.Vector3f(location.x,
-				location.y, location.z);
+		javax.vecmath.Vector3f loca = VectorHelper.toVecmath(location, new javax.vecmath.Vector3f());
 
 		// no initial fall inertia (it isn't vital to set this)
 		javax.vecmath.Vector3f fallInertia = new javax.vecmath.Vector3f(0.0f,
@@ -160,6 +188,18 @@ public class DynamicEntity extends Entity {
 		rigidBody.setUserPointer(this);
 
 		// finally, add it to the world
+		this.mass = mass;
+		this.collisionGroup = collisionGroup;
+		this.collidesWith = collidesWith;
+		SpawnBuffer.spawn(this);
+	}
+
+	/**
+	 * Adds this entity's rigid body to the dynamics world with its collision group and mask, right away.
+	 * Anything spawning an entity should go through {@link SpawnBuffer#spawn(DynamicEntity)} instead,
+	 * which holds on to it until the end of the tick if the world is being stepped.
+	 */
+	public void addToWorld(){
 		if (collisionGroup != CollisionTypes.NOTHING
 				&& collidesWith != CollisionTypes.NOTHING)
 			Physics.dynamicsWorld.addRigidBody(rigidBody, collisionGroup,
@@ -167,7 +207,49 @@ public class DynamicEntity extends Entity {
 		else
 			Physics.dynamicsWorld.addRigidBody(rigidBody);
 	}
-
+	
+	/**
+	 * Puts an entity that came out of an {@link EntityPool} back into the world as if it was just created.
+	 * Its rigid body gets moved, stopped, given the new shape and mass and spawned back into the dynamics
+	 * world with the {@link SpawnBuffer} (but NOT added to Entities.dynamicEntities). Anything a subclass sets up in its constructor has to be
+	 * set up again after calling this.
+	 * @param location Where to put the entity
+	 * @param rotation Which way the entity is facing
+	 * @param shape Collision shape to use
+	 * @param mass Mass to use
+	 */
+	protected void respawn(Vector3f location, Quaternion rotation, CollisionShape shape, float mass){
+		this.location.set(location);
+		this.rotation.set(rotation);
+		this.previousLocation.set(location);
+		this.previousRotation.set(rotation);
+		this.removeFlag = false;
+		this.mass = mass;
+		
+		Transform transform = VectorHelper.toTransform(location, rotation, respawnRotation, respawnTransform);
+		rigidBody.setWorldTransform(transform);
+		rigidBody.setInterpolationWorldTransform(transform);
+		rigidBody.getMotionState().setWorldTransform(transform);
+		
+		respawnVector.set(0.0f, 0.0f, 0.0f);
+		rigidBody.setLinearVelocity(respawnVector);
+		rigidBody.setAngularVelocity(respawnVector);
+		rigidBody.setInterpolationLinearVelocity(respawnVector);
+		rigidBody.setInterpolationAngularVelocity(respawnVector);
+		rigidBody.clearForces();
+		
+		rigidBody.setCollisionShape(shape);
+		shape.calculateLocalInertia(mass, respawnVector);
+		rigidBody.setMassProps(mass, respawnVector);
+		rigidBody.updateInertiaTensor();
+		
+		// back to how a brand new rigid body starts out
+		rigidBody.forceActivationState(CollisionObject.ACTIVE_TAG);
+		rigidBody.setDeactivationTime(0.0f);
+		
+		SpawnBuffer.spawn(this);
+	}
+	
 	@Override
 	/**
 	 * Simple as possible drawing call. This assumes that it's called when the entity's location and rotation have already been applied to the modelview matrix.
@@ -191,20 +273,101 @@ public class DynamicEntity extends Entity {
 				new javax.vecmath.Vector3f(0.0f, 0.0f, 0.0f));
 	}
 	
-	public ClosestRayResultCallback rayTest(Vector3f direction){
-		// rotate the direction we want to test so that it's realtive to the entity's rotation
-		Vector3f endRotated = QuaternionHelper.rotateVectorByQuaternion(direction, rotation);
-		Vector3f endAdd = new Vector3f();
-		// add the rotated direction to the current location to get the end vector
-		Vector3f.add(location, endRotated, endAdd);
+	/**
+	 * Saves the current location and rotation as the previous ones.
+	 * Called at the beginning of every physics tick, before the entity is synced with its rigid body,
+	 * for entities that aren't in Entities.dynamicEntities.
+	 */
+	public void savePreviousTransform(){
+		previousLocation.set(location);
+		previousRotation.set(rotation);
+	}
+	
+	/**
+	 * @param dest Vector to put the location as of the previous physics tick in
+	 * @return dest, for chaining
+	 */
+	public Vector3f getPreviousLocation(Vector3f dest){
+		int index = Entities.dynamicEntities.indexOf(this);
+		if(index != -1)
+			return Entities.dynamicEntities.getTransforms().getPreviousLocation(index, dest);
+		dest.set(previousLocation);
+		return dest;
+	}
+	
+	/**
+	 * @param dest Quaternion to put the rotation as of the previous physics tick in
+	 * @return dest, for chaining
+	 */
+	public Quaternion getPreviousRotation(Quaternion dest){
+		int index = Entities.dynamicEntities.indexOf(this);
+		if(index != -1)
+			return Entities.dynamicEntities.getTransforms().getPreviousRotation(index, dest);
+		dest.set(previousRotation);
+		return dest;
+	}
+	
+	/**
+	 * Gets the location between the previous and the current physics tick
+	 * @param alpha How far between the two ticks to go (0 = previous, 1 = current)
+	 * @param dest Vector to put the result in
+	 * @return dest, for chaining
+	 */
+	public Vector3f getInterpolatedLocation(float alpha, Vector3f dest){
+		getPreviousLocation(dest);
+		dest.x += (location.x - dest.x) * alpha;
+		dest.y += (location.y - dest.y) * alpha;
+		dest.z += (location.z - dest.z) * alpha;
+		return dest;
+	}
+	
+	/**
+	 * Gets the rotation between the previous and the current physics tick.
+	 * This does a normalized lerp, which is close enough to a slerp for the tiny angles between two ticks.
+	 * @param alpha How far between the two ticks to go (0 = previous, 1 = current)
+	 * @param dest Quaternion to put the result in
+	 * @return dest, for chaining
+	 */
+	public Quaternion getInterpolatedRotation(float alpha, Quaternion dest){
+		getPreviousRotation(dest);
+		
+		// go the short way around
+		float dot = dest.x * rotation.x + dest.y * rotation.y + dest.z * rotation.z + dest.w * rotation.w;
+		float cur = dot < 0.0f ? -alpha : alpha;
+		float prev = 1.0f - alpha;
 		
-		javax.vecmath.Vector3f start = new javax.vecmath.Vector3f(location.x, location.y, location.z);
-		javax.vecmath.Vector3f end = new javax.vecmath.Vector3f(endAdd.x, endAdd.y, endAdd.z);
+		dest.set(
+				dest.x * prev + rotation.x * cur,
+				dest.y * prev + rotation.y * cur,
+				dest.z * prev + rotation.z * cur,
+				dest.w * prev + rotation.w * cur);
+		
+		float length = (float) Math.sqrt(dest.x * dest.x + dest.y * dest.y + dest.z * dest.z + dest.w * dest.w);
+		if(length > 0.0f)
+			dest.scale(1.0f / length);
+		else
+			dest.set(rotation);
+		return dest;
+	}
+	
+	/**
+	 * Adds a ray going out from this entity to a batch, so that a bunch of rays can be cast at once (see {@link RayBatch}).
+	 * The ray ignores this entity.
+	 * @param direction Where the ray ends, relative to the entity's location and rotation
+	 * @param mask Collision groups the ray can hit
+	 * @param batch Batch to add the ray to
+	 * @return Index of the ray in the batch
+	 */
+	public int addRay(Vector3f direction, short mask, RayBatch batch){
+		if(rayEnd == null)
+			rayEnd = new Vector3f();
 		
-		ClosestRayResultCallback callback = new ClosestRayResultCallback(start, end);
-		Physics.dynamicsWorld.rayTest(start, end, callback);
+		// rotate the direction we want to test so that it's realtive to the entity's rotation
+		QuaternionHelper.rotateVectorByQuaternion(direction, rotation, rayEnd);
+		// add the rotated direction to the current location to get the end vector
+		Vector3f.add(location, rayEnd, rayEnd);
 		
-		return callback;
+		return batch.add(location, rayEnd, mask, this);
 	}
 
 	@Override
@@ -222,4 +385,14 @@ public class DynamicEntity extends Entity {
 	 * you need to override this method!
 	 */
 	public void update(float timeStep){};
+	
+	/**
+	 * Whether or not this entity's update() can be run at the same time as other entities' updates
+	 * (see {@link com.bitwaffle.spaceguts.physics.UpdateStage}). Anything that returns true here can only change
+	 * itself in update(), anything else has to go through UpdateStage.defer().
+	 * @return False by default
+	 */
+	public boolean canUpdateInParallel(){
+		return false;
+	}
 }
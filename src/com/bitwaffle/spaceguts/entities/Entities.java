@@ -1,7 +1,5 @@
 package com.bitwaffle.spaceguts.entities;
 
-import java.util.ArrayList;
-
 import org.lwjgl.util.vector.Vector3f;
 
 import com.bitwaffle.spaceout.entities.passive.Skybox;
@@ -22,60 +20,43 @@ public class Entities {
 	public static Skybox skybox;
 
 	/** all the current passive entities */
-	public static ArrayList<Entity> passiveEntities = new ArrayList<Entity>(10), passiveEntitiesToAdd = new ArrayList<Entity>(10), passiveEntitiesToRemove = new ArrayList<Entity>(10);
-	/** all the dynamic entities */
-	public static ArrayList<DynamicEntity> dynamicEntities = new ArrayList<DynamicEntity>(100);
+	public static EntityRegistry<Entity> passiveEntities = new EntityRegistry<Entity>(10);
+	/** all the dynamic entities (their transforms are kept in a {@link TransformStore}, see dynamicEntities.getTransforms()) */
+	public static EntityRegistry<DynamicEntity> dynamicEntities = new EntityRegistry<DynamicEntity>(100, true);
 	/** all the current lights */
-	public static ArrayList<Light> lights = new ArrayList<Light>(8), lightsToAdd = new ArrayList<Light>(8), lightsToRemove = new ArrayList<Light>(8);
+	public static EntityRegistry<Light> lights = new EntityRegistry<Light>(8);
 	
 	/**
 	 * Updates everything that doesn't get updated by the {@link DynamicEntityCallback}
 	 * @param timeStep How much time has passed since the last tick (passed in from DynamicEntityCallback)
 	 */
 	public static void updateAll(float timeStep){
-		/*
-		 * Since passiveEntities and lights all get updated by iterating through their lists,
-		 * directly adding and removing  from the list can cause a ConcurrentModificationException.
-		 * Everything in DynamicEntities is updated in the DynamicEntityCallback, and as such the list
-		 * in here is used solely for rendering. So adds and removes can be done directly on the
-		 * list.
-		 */
-		if(!passiveEntitiesToRemove.isEmpty()){
-			for(Entity ent : passiveEntitiesToRemove)
-				passiveEntities.remove(ent);
-			passiveEntitiesToRemove.clear();
-		}
-		
-		if(!passiveEntitiesToAdd.isEmpty()){
-			for(Entity ent : passiveEntitiesToAdd)
-				passiveEntities.add(ent);
-			passiveEntitiesToAdd.clear();
-		}
-		
-		if(!lightsToRemove.isEmpty()){
-			for(Light l : lightsToRemove)
-				lights.remove(l);
-			lightsToRemove.clear();
-		}
-		
-		if(!lightsToAdd.isEmpty()){
-			for(Light l : lightsToAdd)
-				lights.add(l);
-			lightsToAdd.clear();
-		}
-		
 		camera.update(timeStep);
 		skybox.update(timeStep);
 		
-		for(Entity ent : passiveEntities)
-			ent.update(timeStep);
+		for(int i = 0; i < passiveEntities.size(); i++)
+			passiveEntities.get(i).update(timeStep);
+		
+		for(int i = 0; i < lights.size(); i++)
+			lights.get(i).update(timeStep);
+	}
+	
+	/**
+	 * Does every add and remove that's been queued up since the last time this was called.
+	 * Called at the very end of every physics tick by the {@link DynamicEntityCallback},
+	 * so nothing gets added or removed while anything is being updated.
+	 */
+	public static void applyPending(){
+		dynamicEntities.applyPending();
+		passiveEntities.applyPending();
+		lights.applyPending();
 		
-		for(Light l : lights)
-			l.update(timeStep);
+		// anything pooled that was removed this tick is gone from the lists now, so it can be used again
+		EntityPool.applyAllReleased();
 	}
 	
 	/**
-	 * Adds the given DynamicEntity to the rendering world
+	 * Adds the given DynamicEntity to the rendering world (at the end of the current tick)
 	 * @param ent Entity to add
 	 */
 	public static void addDynamicEntity(DynamicEntity ent){
@@ -83,23 +64,23 @@ public class Entities {
 	}
 	
 	/**
-	 * Adds the given Entity to the rendering world
+	 * Adds the given Entity to the rendering world (at the end of the current tick)
 	 * @param ent Entity to add
 	 */
 	public static void addPassiveEntity(Entity ent){
-		passiveEntitiesToAdd.add(ent);
+		passiveEntities.add(ent);
 	}
 	
 	/**
-	 * Adds the given Light to the rendering world
+	 * Adds the given Light to the rendering world (at the end of the current tick)
 	 * @param light Light to add
 	 */
 	public static void addLight(Light light){
-		lightsToAdd.add(light);
+		lights.add(light);
 	}
 	
 	/**
-	 * Removes the given DynamicEntity from the rendering world
+	 * Removes the given DynamicEntity from the rendering world (at the end of the current tick)
 	 * @param ent Entity to remove
 	 */
 	public static void removeDynamicEntity(DynamicEntity ent){
@@ -107,19 +88,19 @@ public class Entities {
 	}
 	
 	/**
-	 * Removes the given Entity from the rendering world
+	 * Removes the given Entity from the rendering world (at the end of the current tick)
 	 * @param ent Entity to remove
 	 */
 	public static void removePassiveEntity(Entity ent){
-		passiveEntitiesToRemove.add(ent);
+		passiveEntities.remove(ent);
 	}
 	
 	/**
-	 * Removes the given Light from the rendering world
+	 * Removes the given Light from the rendering world (at the end of the current tick)
 	 * @param light Light to remove
 	 */
 	public static void removeLight(Light l){
-		lightsToRemove.add(l);
+		lights.remove(l);
 	}
 
 	/**
@@ -156,12 +137,12 @@ public class Entities {
 	 * Delete all of the entities
 	 */
 	public static void cleanup() {
-		for(Entity ent : passiveEntities){
-			ent.cleanup();
+		for(int i = 0; i < passiveEntities.size(); i++){
+			passiveEntities.get(i).cleanup();
 		}
 		
-		for(DynamicEntity ent : dynamicEntities){
-			ent.cleanup();
+		for(int i = 0; i < dynamicEntities.size(); i++){
+			dynamicEntities.get(i).cleanup();
 		}
 		player = null;
 		camera = null;
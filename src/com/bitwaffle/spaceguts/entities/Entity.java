@@ -3,6 +3,8 @@ package com.bitwaffle.spaceguts.entities;
 import org.lwjgl.util.vector.Quaternion;
 import org.lwjgl.util.vector.Vector3f;
 
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
+
 /**
  * Class that pretty much anything in-game extends.
  * 
@@ -19,6 +21,12 @@ public abstract class Entity {
 	/** type, used for lots of things */
 	public String type;
 
+	/** handle given to this entity by the {@link EntityRegistry} it's in (EntityRegistry.NO_HANDLE if it isn't in one) */
+	public int handle = EntityRegistry.NO_HANDLE;
+	
+	/** where this entity is in its {@link EntityRegistry}'s list of entities waiting to be added (-1 if it isn't waiting) */
+	public int pendingAdd = -1;
+
 	/**
 	 * Entity constructor
 	 */
@@ -34,10 +42,21 @@ public abstract class Entity {
 	public abstract void update(float timeStep);
 
 	/**
-	 * Draws this entity
+	 * Draws this entity. This gets called on the render thread while the physics thread might be updating things,
+	 * so anything that can change has to be read from Render3D.drawLocation, Render3D.drawRotation and
+	 * Render3D.drawState instead of from this entity (see captureDrawState()).
 	 */
 	public abstract void draw();
 
+	/**
+	 * Copies anything that draw() needs and that can change (besides location and rotation, which
+	 * are copied anyway) into a state that goes to the renderer. Called on the physics thread after every tick.
+	 * Anything overriding this should call super.captureDrawState() first, and draw() has to read things back in the same order.
+	 * @param state Empty state to fill in
+	 */
+	public void captureDrawState(DrawState state){
+	}
+
 	/**
 	 * Have the entity provide any necessary cleanup
 	 */
@@ -0,0 +1,213 @@
+package com.bitwaffle.spaceguts.entities;
+
+import java.util.ArrayList;
+
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.PhysicsLOD;
+import com.bitwaffle.spaceguts.physics.ShapeCache;
+import com.bitwaffle.spaceguts.physics.SpawnBuffer;
+
+/**
+ * Keeps dynamic entities (and their rigid bodies, motion states, etc.) around after they're removed
+ * so they can be used again instead of making new ones. Things like diamonds and asteroid fragments
+ * get made by the dozen every time something blows up, so this saves a lot of garbage.
+ * <p>
+ * Entities that come out of obtain() are NOT in the dynamics world; whoever obtained one has to call
+ * DynamicEntity.respawn() (which puts it in the world) and then set up everything else the entity's
+ * constructor would have, then add it to Entities like normal. When a pooled entity is removed from the world
+ * (see SpawnBuffer) it comes back here with release(), but doesn't get handed out again until the
+ * end of the tick (see Entities.applyPending()) so anything still looking at it for the rest of the tick
+ * (i.e. an AsteroidField or a Missile's target) sees that its removeFlag is set.
+ * <p>
+ * Each subclass only needs to say how to make a brand new entity, i.e.
+ * <pre>
+ * public static final EntityPool&lt;Diamond&gt; POOL = new EntityPool&lt;Diamond&gt;("Diamond", 500, 100){
+ * 	protected Diamond create(){ return new Diamond(new Vector3f(), new Quaternion(), 0.0f); }
+ * };
+ * </pre>
+ */
+public abstract class EntityPool<T extends DynamicEntity> {
+	/** Every pool that's been made */
+	private static ArrayList<EntityPool<?>> pools = new ArrayList<EntityPool<?>>();
+
+	/** Name of pool (for printing stats) */
+	public final String name;
+
+	/** Most entities to keep around, anything past this is left for the garbage collector */
+	public int capacity;
+
+	/** How many entities to make when warmUp() is called */
+	public int warmUpSize;
+
+	/** Entities ready to be handed out */
+	private ArrayList<T> free;
+
+	/** Entities that were released this tick */
+	private ArrayList<T> released = new ArrayList<T>();
+
+	/** Stats */
+	private int hits = 0, misses = 0, discarded = 0;
+
+	/**
+	 * @param name Name of pool
+	 * @param capacity Most entities to keep around
+	 * @param warmUpSize How many entities to make when the level is loaded
+	 */
+	public EntityPool(String name, int capacity, int warmUpSize){
+		this.name = name;
+		this.capacity = capacity;
+		this.warmUpSize = warmUpSize;
+		free = new ArrayList<T>(capacity);
+
+		synchronized(pools){
+			pools.add(this);
+		}
+	}
+
+	/**
+	 * Makes a brand new entity. It can be put anywhere, since it'll be respawned before it's used.
+	 * @return New entity
+	 */
+	protected abstract T create();
+
+	/**
+	 * Gets an entity out of the pool, or makes a new one if the pool is empty.
+	 * The entity is NOT in the dynamics world; call respawn() on it!
+	 * @return Entity to use
+	 */
+	public synchronized T obtain(){
+		if(!free.isEmpty()){
+			hits++;
+			return free.remove(free.size() - 1);
+		}
+
+		misses++;
+		return make();
+	}
+
+	/**
+	 * Gives an entity back to the pool. Its rigid body should have already been taken out of the world.
+	 * @param ent Entity to give back (has to be from this pool)
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void release(DynamicEntity ent){
+		released.add((T) ent);
+	}
+
+	/**
+	 * Makes warmUpSize entities ahead of time (or however many it takes to have that many in the pool)
+	 */
+	public synchronized void warmUp(){
+		int target = Math.min(warmUpSize, capacity);
+		while(free.size() < target)
+			free.add(make());
+	}
+
+	/**
+	 * Makes a new entity and takes it out of the world so it's in the same state as a released one
+	 */
+	private T make(){
+		T ent = create();
+		ent.pool = this;
+
+		// constructors spawn entities and grab their shapes from the cache (the spawn is only held on to if this is happening mid-tick)
+		if(!SpawnBuffer.cancel(ent))
+			Physics.dynamicsWorld.removeRigidBody(ent.rigidBody);
+		ShapeCache.release(ent.rigidBody.getCollisionShape());
+		return ent;
+	}
+
+	/**
+	 * Makes everything released this tick available to obtain()
+	 */
+	private synchronized void applyReleased(){
+		for(int i = 0; i < released.size(); i++){
+			T ent = released.get(i);
+			if(free.size() < capacity){
+				PhysicsLOD.resetState(ent);
+				free.add(ent);
+			} else{
+				ent.pool = null;
+				discarded++;
+			}
+		}
+		released.clear();
+	}
+
+	/**
+	 * Throws out every entity and resets the stats
+	 */
+	private synchronized void clear(){
+		for(int i = 0; i < free.size(); i++)
+			free.get(i).pool = null;
+		free.clear();
+		released.clear();
+		hits = 0;
+		misses = 0;
+		discarded = 0;
+	}
+
+	/**
+	 * @return How many times an entity was obtained from the pool instead of being made
+	 */
+	public synchronized int getHits(){
+		return hits;
+	}
+
+	/**
+	 * @return How many times an entity had to be made because the pool was empty
+	 */
+	public synchronized int getMisses(){
+		return misses;
+	}
+
+	/**
+	 * @return How many released entities were thrown out because the pool was full
+	 */
+	public synchronized int getDiscarded(){
+		return discarded;
+	}
+
+	/**
+	 * @return How many entities are sitting in the pool
+	 */
+	public synchronized int size(){
+		return free.size();
+	}
+
+	@Override
+	public synchronized String toString(){
+		return name + ": " + free.size() + "/" + capacity + " free, " + hits + " hits, " + misses + " misses, " + discarded + " discarded";
+	}
+
+	/**
+	 * Makes everything released this tick available in every pool.
+	 * Called at the end of every physics tick by Entities.applyPending().
+	 */
+	public static void applyAllReleased(){
+		synchronized(pools){
+			for(int i = 0; i < pools.size(); i++)
+				pools.get(i).applyReleased();
+		}
+	}
+
+	/**
+	 * Empties every pool (should be called when the world is destroyed, since pooled rigid bodies belong to it)
+	 */
+	public static void clearAll(){
+		synchronized(pools){
+			for(int i = 0; i < pools.size(); i++)
+				pools.get(i).clear();
+		}
+	}
+
+	/**
+	 * Prints out the stats for every pool
+	 */
+	public static void printStats(){
+		synchronized(pools){
+			for(int i = 0; i < pools.size(); i++)
+				System.out.println(pools.get(i));
+		}
+	}
+}
@@ -0,0 +1,354 @@
+package com.bitwaffle.spaceguts.entities;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Holds a list of entities that can be added to and removed from in constant time.
+ * <p>
+ * Entities are kept packed together in an array so they can be looped through with get(index).
+ * Removing an entity moves the last entity into its spot, so the order of the entities changes
+ * as things get removed (nothing relies on the order).
+ * <p>
+ * Every entity in a registry gets a handle (see {@link Entity#handle}) that stays the same for as long as the
+ * entity is in the registry, even as it gets moved around. Handles have a generation in them so that
+ * getByHandle() returns null for an entity that's been removed, even if its slot has been reused.
+ * <p>
+ * Adds and removes don't happen right away, they're queued up until applyPending() is called
+ * (see DynamicEntityCallback). This way nothing gets added or removed while the registry is being looped through.
+ * <p>
+ * A registry can also keep a {@link TransformStore} that's kept in the same order as the entities.
+ */
+public class EntityRegistry<T extends Entity> implements Iterable<T> {
+	/** Handle for entities that aren't in a registry */
+	public static final int NO_HANDLE = -1;
+
+	/** Number of bits of a handle used for the slot, the rest are used for the generation */
+	private static final int SLOT_BITS = 20;
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	private static final int MAX_GENERATION = (1 << (31 - SLOT_BITS)) - 1;
+
+	/** The entities, packed together */
+	private Entity[] entities;
+
+	/** Number of entities */
+	private int size = 0;
+
+	/** For each slot, where its entity is in the entities array (or the next free slot, if the slot's free) */
+	private int[] slotIndex;
+
+	/** For each slot, how many times the slot has been reused */
+	private int[] slotGeneration;
+
+	/** For each spot in the entities array, which slot the entity there is in */
+	private int[] indexSlot;
+
+	/** Number of slots that have ever been used */
+	private int numSlots = 0;
+
+	/** First free slot (-1 if none) */
+	private int freeSlot = -1;
+
+	/** Entities waiting to be added or removed */
+	private ArrayList<T> toAdd, toRemove;
+
+	/** Every entity's transform, in the same order as the entities (null if this registry doesn't keep them) */
+	private TransformStore transforms;
+
+	/**
+	 * @param capacity How many entities to make room for to begin with
+	 */
+	public EntityRegistry(int capacity){
+		this(capacity, false);
+	}
+
+	/**
+	 * @param capacity How many entities to make room for to begin with
+	 * @param storeTransforms Whether or not to keep a {@link TransformStore} for the entities
+	 */
+	public EntityRegistry(int capacity, boolean storeTransforms){
+		capacity = Math.max(capacity, 1);
+		if(storeTransforms)
+			transforms = new TransformStore(capacity);
+		entities = new Entity[capacity];
+		indexSlot = new int[capacity];
+		slotIndex = new int[capacity];
+		slotGeneration = new int[capacity];
+		toAdd = new ArrayList<T>(capacity);
+		toRemove = new ArrayList<T>(capacity);
+	}
+
+	/**
+	 * Queues up an entity to be added the next time applyPending() is called
+	 * @param ent Entity to add
+	 */
+	public void add(T ent){
+		// already waiting to be added
+		if(isPendingAdd(ent))
+			return;
+		ent.pendingAdd = toAdd.size();
+		toAdd.add(ent);
+	}
+
+	/**
+	 * Queues up an entity to be removed the next time applyPending() is called.
+	 * If the entity is waiting to be added, it doesn't get added.
+	 * @param ent Entity to remove
+	 */
+	public void remove(T ent){
+		// take it out of the add queue by moving the last pending add into its spot
+		if(isPendingAdd(ent)){
+			int last = toAdd.size() - 1;
+			T moved = toAdd.remove(last);
+			if(ent.pendingAdd != last){
+				toAdd.set(ent.pendingAdd, moved);
+				moved.pendingAdd = ent.pendingAdd;
+			}
+			ent.pendingAdd = -1;
+		}
+		toRemove.add(ent);
+	}
+
+	/**
+	 * @return Whether or not the entity is waiting to be added to this registry
+	 */
+	private boolean isPendingAdd(T ent){
+		return ent.pendingAdd != -1 && ent.pendingAdd < toAdd.size() && toAdd.get(ent.pendingAdd) == ent;
+	}
+
+	/**
+	 * Does every queued up remove, then every queued up add.
+	 * Removes go first so that an entity that's removed and then added again in the same tick stays in.
+	 */
+	public void applyPending(){
+		if(!toRemove.isEmpty()){
+			for(int i = 0; i < toRemove.size(); i++)
+				removeNow(toRemove.get(i));
+			toRemove.clear();
+		}
+
+		if(!toAdd.isEmpty()){
+			for(int i = 0; i < toAdd.size(); i++){
+				T ent = toAdd.get(i);
+				ent.pendingAdd = -1;
+				addNow(ent);
+			}
+			toAdd.clear();
+		}
+	}
+
+	/**
+	 * @return Whether or not there are any adds or removes waiting for applyPending()
+	 */
+	public boolean hasPending(){
+		return !toAdd.isEmpty() || !toRemove.isEmpty();
+	}
+
+	/**
+	 * Adds an entity right away
+	 */
+	private void addNow(T ent){
+		// already in here
+		if(ent.handle != NO_HANDLE && getByHandle(ent.handle) == ent)
+			return;
+
+		int slot;
+		if(freeSlot != -1){
+			slot = freeSlot;
+			freeSlot = slotIndex[slot];
+		} else{
+			slot = numSlots++;
+			if(slot > SLOT_MASK)
+				throw new IllegalStateException("Too many entities in registry! (max " + (SLOT_MASK + 1) + ")");
+			ensureSlotCapacity(numSlots);
+		}
+
+		ensureEntityCapacity(size + 1);
+
+		entities[size] = ent;
+		indexSlot[size] = slot;
+		slotIndex[slot] = size;
+		ent.handle = (slotGeneration[slot] << SLOT_BITS) | slot;
+		if(transforms != null)
+			transforms.put(size, ent);
+		size++;
+	}
+
+	/**
+	 * Removes an entity right away by moving the last entity into its spot
+	 */
+	private void removeNow(T ent){
+		// not in here (or already removed)
+		if(ent.handle == NO_HANDLE || getByHandle(ent.handle) != ent)
+			return;
+
+		int slot = ent.handle & SLOT_MASK;
+		int index = slotIndex[slot];
+		int last = size - 1;
+
+		// move the last entity into the removed one's spot
+		if(index != last){
+			entities[index] = entities[last];
+			indexSlot[index] = indexSlot[last];
+			slotIndex[indexSlot[index]] = index;
+			if(transforms != null)
+				transforms.move(last, index);
+		}
+		entities[last] = null;
+		size--;
+
+		// free up the slot, bumping the generation so old handles don't point to whatever gets put here next
+		slotGeneration[slot] = slotGeneration[slot] == MAX_GENERATION ? 0 : slotGeneration[slot] + 1;
+		slotIndex[slot] = freeSlot;
+		freeSlot = slot;
+
+		ent.handle = NO_HANDLE;
+	}
+
+	/**
+	 * Gets an entity by its handle
+	 * @param handle Handle of entity
+	 * @return Entity with the given handle, or null if it's not in the registry anymore
+	 */
+	@SuppressWarnings("unchecked")
+	public T getByHandle(int handle){
+		if(handle == NO_HANDLE)
+			return null;
+
+		int slot = handle & SLOT_MASK;
+		if(slot >= numSlots || slotGeneration[slot] != (handle >>> SLOT_BITS))
+			return null;
+
+		return (T) entities[slotIndex[slot]];
+	}
+
+	/**
+	 * @param ent Entity to find
+	 * @return Index of the entity (for use with get() and the TransformStore), or -1 if it isn't in the registry
+	 */
+	public int indexOf(T ent){
+		if(ent.handle == NO_HANDLE || getByHandle(ent.handle) != ent)
+			return -1;
+		return slotIndex[ent.handle & SLOT_MASK];
+	}
+
+	/**
+	 * @return Every entity's transform, in the same order as the entities (null if this registry doesn't keep them)
+	 */
+	public TransformStore getTransforms(){
+		return transforms;
+	}
+
+	/**
+	 * @param index Index of entity (between 0 and size() - 1)
+	 * @return Entity at index
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index){
+		return (T) entities[index];
+	}
+
+	/**
+	 * @return Number of entities in the registry (not counting anything waiting to be added)
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @return Whether or not there's nothing in the registry
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * @param ent Entity to check for
+	 * @return Whether or not the entity is in the registry
+	 */
+	public boolean contains(T ent){
+		return indexOf(ent) != -1;
+	}
+
+	/**
+	 * Gets rid of everything, including anything that's waiting to be added or removed
+	 */
+	public void clear(){
+		for(int i = 0; i < size; i++){
+			entities[i].handle = NO_HANDLE;
+			entities[i] = null;
+		}
+		size = 0;
+		numSlots = 0;
+		freeSlot = -1;
+		for(int i = 0; i < toAdd.size(); i++)
+			toAdd.get(i).pendingAdd = -1;
+		toAdd.clear();
+		toRemove.clear();
+	}
+
+	/**
+	 * Makes sure there's room for the given number of entities
+	 */
+	private void ensureEntityCapacity(int capacity){
+		if(entities.length >= capacity)
+			return;
+
+		int newLength = Math.max(capacity, entities.length * 2);
+
+		Entity[] newEntities = new Entity[newLength];
+		System.arraycopy(entities, 0, newEntities, 0, size);
+		entities = newEntities;
+
+		int[] newIndexSlot = new int[newLength];
+		System.arraycopy(indexSlot, 0, newIndexSlot, 0, size);
+		indexSlot = newIndexSlot;
+	}
+
+	/**
+	 * Makes sure there's room for the given number of slots
+	 */
+	private void ensureSlotCapacity(int capacity){
+		if(slotIndex.length >= capacity)
+			return;
+
+		int newLength = Math.max(capacity, slotIndex.length * 2);
+
+		int[] newSlotIndex = new int[newLength];
+		System.arraycopy(slotIndex, 0, newSlotIndex, 0, slotIndex.length);
+		slotIndex = newSlotIndex;
+
+		int[] newSlotGeneration = new int[newLength];
+		System.arraycopy(slotGeneration, 0, newSlotGeneration, 0, slotGeneration.length);
+		slotGeneration = newSlotGeneration;
+	}
+
+	/**
+	 * Iterates through every entity. Don't use this for anything that happens every tick,
+	 * use size() and get(index) instead (this allocates an iterator).
+	 */
+	@Override
+	public Iterator<T> iterator(){
+		return new Iterator<T>(){
+			private int index = 0;
+
+			@Override
+			public boolean hasNext(){
+				return index < size;
+			}
+
+			@Override
+			public T next(){
+				if(index >= size)
+					throw new NoSuchElementException();
+				return get(index++);
+			}
+
+			@Override
+			public void remove(){
+				throw new UnsupportedOperationException("Use EntityRegistry.remove()");
+			}
+		};
+	}
+}
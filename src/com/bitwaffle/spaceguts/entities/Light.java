@@ -2,6 +2,8 @@ package com.bitwaffle.spaceguts.entities;
 
 import org.lwjgl.util.vector.Vector3f;
 
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
+
 
 /**
  * Any object that gives off light needs to extend this. This adds a light int,
@@ -31,6 +33,15 @@ public abstract class Light extends Entity {
 		this.intensity = intensity;
 	}
 
+	/**
+	 * The renderer lights everything with this (see Render3D.setUpLights()),
+	 * so anything extending Light has to call super.captureDrawState() first
+	 */
+	@Override
+	public void captureDrawState(DrawState state){
+		state.put(intensity);
+	}
+
 	@Override
 	public void cleanup() {
 		
@@ -3,6 +3,8 @@ package com.bitwaffle.spaceguts.entities;
 import org.lwjgl.util.vector.Quaternion;
 import org.lwjgl.util.vector.Vector3f;
 
+import com.bitwaffle.spaceguts.physics.UpdateStage;
+import com.bitwaffle.spaceguts.util.VectorHelper;
 import com.bitwaffle.spaceout.entities.player.Backpack;
 import com.bulletphysics.collision.dispatch.CollisionObject;
 import com.bulletphysics.collision.shapes.CollisionShape;
@@ -30,6 +32,10 @@ public abstract class Pickup extends DynamicEntity{
 	/** Inventory to add item to when it gets picked up */
 	private Backpack destinationInventory;
 	
+	/** Scratch vectors for gravitateTowards() (these can't be static, pickups get updated in parallel) */
+	private Vector3f subtract = new Vector3f();
+	private javax.vecmath.Vector3f followingVelocity = new javax.vecmath.Vector3f(), velocityScratch = new javax.vecmath.Vector3f();
+	
 	/** Used to increase speed over time while following */
 	float timeFollowing;
 	
@@ -53,6 +59,17 @@ public abstract class Pickup extends DynamicEntity{
 		this.rigidBody.setActivationState(CollisionObject.ISLAND_SLEEPING);
 	}
 	
+	@Override
+	protected void respawn(Vector3f location, Quaternion rotation, CollisionShape shape, float mass){
+		super.respawn(location, rotation, shape, mass);
+		
+		following = null;
+		destinationInventory = null;
+		timeFollowing = 0.0f;
+		
+		this.rigidBody.setActivationState(CollisionObject.ISLAND_SLEEPING);
+	}
+	
 	
 	@Override
 	/**
@@ -62,6 +79,12 @@ public abstract class Pickup extends DynamicEntity{
 		if(following != null)
 			gravitateTowards(timeStep);
 	}
+	
+	@Override
+	public boolean canUpdateInParallel(){
+		// picking up is the only thing that touches anything else, and it gets deferred
+		return true;
+	}
 
 	/**
 	 * @param inventory Pick up the inventory item and add it to an Inventory
@@ -90,28 +113,34 @@ public abstract class Pickup extends DynamicEntity{
 	private void gravitateTowards(float timeStep){
 		// check if we're close enough to pick up
 		if(Entities.distance(this.location, following.location) <= pickupDistance){
-			this.pickup(destinationInventory);
+			// adding to the inventory (and anything else subclasses do when they're picked up) changes shared state
+			final Backpack inventory = destinationInventory;
+			UpdateStage.defer(new Runnable(){
+				@Override
+				public void run(){
+					pickup(inventory);
+				}
+			});
 		} else{
 			timeFollowing += timeStep;
 			
 			// find the difference between this's location and following's location then negate it to go towards it
-			Vector3f subtract = new Vector3f();
 			Vector3f.sub(this.location, following.location, subtract);
 			subtract.negate(subtract);
 			
-			javax.vecmath.Vector3f linvec = new javax.vecmath.Vector3f();
-			this.following.rigidBody.getLinearVelocity(linvec);
+			this.following.rigidBody.getLinearVelocity(followingVelocity);
 			
 			// add linear velocity so that the pickup doesn't trail behind
-			float dx = (subtract.x * pickupSpeed) + linvec.x;
-			float dy = (subtract.y * pickupSpeed) + linvec.y;
-			float dz = (subtract.z * pickupSpeed) + linvec.z;
+			float dx = (subtract.x * pickupSpeed) + followingVelocity.x;
+			float dy = (subtract.y * pickupSpeed) + followingVelocity.y;
+			float dz = (subtract.z * pickupSpeed) + followingVelocity.z;
 			
 			// set linear velocity to go towards following
-			this.rigidBody.setLinearVelocity(new javax.vecmath.Vector3f(dx, dy, dz));
+			velocityScratch.set(dx, dy, dz);
+			this.rigidBody.setLinearVelocity(velocityScratch);
 			
 			// give it a good twirl
-			this.rigidBody.setAngularVelocity(new javax.vecmath.Vector3f(subtract.x, subtract.y, subtract.z));
+			this.rigidBody.setAngularVelocity(VectorHelper.toVecmath(subtract, velocityScratch));
 		}
 	}
 }
@@ -0,0 +1,172 @@
+package com.bitwaffle.spaceguts.entities;
+
+import org.lwjgl.util.vector.Quaternion;
+import org.lwjgl.util.vector.Vector3f;
+
+/**
+ * Every entity in an {@link EntityRegistry}'s location and rotation, packed into two float arrays
+ * (one for the current physics tick and one for the tick before it). Entity i in the registry has its
+ * transform at [i * STRIDE, i * STRIDE + STRIDE) in both arrays, so anything that needs every entity's
+ * transform (syncing with physics, taking a snapshot for the renderer) can go straight through memory
+ * instead of jumping around to each entity's Vector3f and Quaternion.
+ * <p>
+ * The store is the only place an entity's previous transform is kept while it's in the registry
+ * (see {@link DynamicEntity#getPreviousLocation(Vector3f)}). Entity.location and Entity.rotation are
+ * still where the current transform gets written, since pretty much everything uses them.
+ * Only the physics tick writes to the store (see DynamicEntityCallback).
+ */
+public class TransformStore {
+	/** Number of floats per transform (location x,y,z then rotation x,y,z,w) */
+	public static final int STRIDE = 7;
+
+	/** Transforms as of the current and the previous tick */
+	private float[] current, previous;
+
+	/**
+	 * @param capacity How many transforms to make room for to begin with
+	 */
+	public TransformStore(int capacity){
+		current = new float[capacity * STRIDE];
+		previous = new float[capacity * STRIDE];
+	}
+
+	/**
+	 * Starts a new tick. What was the current transform for every entity becomes the previous one.
+	 * The current transform stays the same until it's set again, so an entity that doesn't get
+	 * synced this tick (i.e. it's about to be removed) just stays where it was.
+	 * @param count Number of entities in the registry
+	 */
+	public void startTick(int count){
+		System.arraycopy(current, 0, previous, 0, count * STRIDE);
+	}
+
+	/**
+	 * Sets the current transform at an index
+	 * @param index Index of entity in its registry
+	 */
+	public void setCurrent(int index, float x, float y, float z, float rx, float ry, float rz, float rw){
+		int i = index * STRIDE;
+		current[i] = x;
+		current[i + 1] = y;
+		current[i + 2] = z;
+		current[i + 3] = rx;
+		current[i + 4] = ry;
+		current[i + 5] = rz;
+		current[i + 6] = rw;
+	}
+
+	/**
+	 * Gets the current location at an index
+	 * @param index Index of entity in its registry
+	 * @param dest Vector to put the location in
+	 * @return dest, for chaining
+	 */
+	public Vector3f getLocation(int index, Vector3f dest){
+		int i = index * STRIDE;
+		dest.set(current[i], current[i + 1], current[i + 2]);
+		return dest;
+	}
+
+	/**
+	 * Gets the current rotation at an index
+	 * @param index Index of entity in its registry
+	 * @param dest Quaternion to put the rotation in
+	 * @return dest, for chaining
+	 */
+	public Quaternion getRotation(int index, Quaternion dest){
+		int i = index * STRIDE + 3;
+		dest.set(current[i], current[i + 1], current[i + 2], current[i + 3]);
+		return dest;
+	}
+
+	/**
+	 * Gets the location at an index as of the previous tick
+	 * @param index Index of entity in its registry
+	 * @param dest Vector to put the location in
+	 * @return dest, for chaining
+	 */
+	public Vector3f getPreviousLocation(int index, Vector3f dest){
+		int i = index * STRIDE;
+		dest.set(previous[i], previous[i + 1], previous[i + 2]);
+		return dest;
+	}
+
+	/**
+	 * Gets the rotation at an index as of the previous tick
+	 * @param index Index of entity in its registry
+	 * @param dest Quaternion to put the rotation in
+	 * @return dest, for chaining
+	 */
+	public Quaternion getPreviousRotation(int index, Quaternion dest){
+		int i = index * STRIDE + 3;
+		dest.set(previous[i], previous[i + 1], previous[i + 2], previous[i + 3]);
+		return dest;
+	}
+
+	/**
+	 * Copies a range of transforms out of the store
+	 * @param start Index of first entity to copy
+	 * @param count Number of entities to copy
+	 * @param destCurrent Where to put the current transforms
+	 * @param destPrevious Where to put the previous transforms
+	 * @param destIndex Index to start putting them at in the destination arrays
+	 */
+	public void copyTo(int start, int count, float[] destCurrent, float[] destPrevious, int destIndex){
+		System.arraycopy(current, start * STRIDE, destCurrent, destIndex * STRIDE, count * STRIDE);
+		System.arraycopy(previous, start * STRIDE, destPrevious, destIndex * STRIDE, count * STRIDE);
+	}
+
+	/**
+	 * Puts an entity's transform in the store. Called by the registry when an entity gets added.
+	 * The entity just showed up, so its previous transform is the same as its current one.
+	 * @param index Index of entity in its registry
+	 * @param ent Entity to get the transform from
+	 */
+	void put(int index, Entity ent){
+		ensureCapacity(index + 1);
+
+		int i = index * STRIDE;
+		writeTransform(current, i, ent.location, ent.rotation);
+		System.arraycopy(current, i, previous, i, STRIDE);
+	}
+
+	/**
+	 * Copies the transform at one index to another. Called by the registry when an entity gets removed
+	 * and the last entity is moved into its spot.
+	 */
+	void move(int from, int to){
+		System.arraycopy(current, from * STRIDE, current, to * STRIDE, STRIDE);
+		System.arraycopy(previous, from * STRIDE, previous, to * STRIDE, STRIDE);
+	}
+
+	/**
+	 * Writes a location and rotation into an array
+	 */
+	private static void writeTransform(float[] dest, int i, Vector3f location, Quaternion rotation){
+		dest[i] = location.x;
+		dest[i + 1] = location.y;
+		dest[i + 2] = location.z;
+		dest[i + 3] = rotation.x;
+		dest[i + 4] = rotation.y;
+		dest[i + 5] = rotation.z;
+		dest[i + 6] = rotation.w;
+	}
+
+	/**
+	 * Makes sure there's room for the given number of transforms
+	 */
+	private void ensureCapacity(int capacity){
+		if(current.length >= capacity * STRIDE)
+			return;
+
+		int newLength = Math.max(capacity * STRIDE, current.length * 2);
+
+		float[] newCurrent = new float[newLength];
+		System.arraycopy(current, 0, newCurrent, 0, current.length);
+		current = newCurrent;
+
+		float[] newPrevious = new float[newLength];
+		System.arraycopy(previous, 0, newPrevious, 0, previous.length);
+		previous = newPrevious;
+	}
+}
@@ -9,15 +9,18 @@ import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Quaternion;
 import org.lwjgl.util.vector.Vector3f;
 
-import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.entities.Entity;
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
 import com.bitwaffle.spaceguts.graphics.render.Render3D;
 import com.bitwaffle.spaceguts.graphics.shapes.Box2D;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.Randoms;
 import com.bitwaffle.spaceout.resources.Textures;
 
 /**
- * A class for shooting {@link Particle}s out
+ * A class for shooting {@link Particle}s out.
+ * Emitters get updated on the physics thread and drawn on the render thread, so the particles
+ * get copied into the followed entity's {@link DrawState} (see captureDrawState()) and drawn from that.
  * @author TranquilMarmot
  */
 public class Emitter{
@@ -30,8 +33,13 @@ public class Emitter{
 	/** Used to preserve modelview */
 	private static Matrix4f oldModelView = new Matrix4f();
 	
-	/** Box, for drawing particle */
-	private static Box2D box = new Box2D(1.0f, 1.0f, Textures.FIRE.texture());
+	/** Scratch objects for drawing, so nothing gets allocated per particle (only used on the render thread) */
+	private static Matrix4f reverseMatrix = new Matrix4f(), billboardMatrix = new Matrix4f();
+	private static Quaternion revQuat = new Quaternion();
+	private static Vector3f translation = new Vector3f(), scale = new Vector3f();
+	
+	/** Box, for drawing particle (created the first time it's drawn, since emitters can be created on the physics thread which has no GL context) */
+	private static Box2D box;
 	
 	/** The Entity that the particles are coming from */
 	private Entity following;
@@ -77,8 +85,7 @@ public class Emitter{
 		particles = new ArrayList<Particle>();
 		this.active = true;
 		
-		// seed with the time
-		randy = new Random(System.nanoTime());
+		randy = Randoms.create();
 	}
 
 	/**
@@ -167,7 +174,21 @@ public class Emitter{
 	}
 
 	/**
-	 * Draws all the particles associated with this Emitter
+	 * Copies every particle into a draw state (should be called from the followed entity's captureDrawState())
+	 * @param state State to add the particles to
+	 */
+	public void captureDrawState(DrawState state){
+		state.put(particles.size());
+		for(int i = 0; i < particles.size(); i++){
+			Particle p = particles.get(i);
+			state.put(p.location);
+			state.put(p.width);
+			state.put(p.height);
+		}
+	}
+
+	/**
+	 * Draws all the particles associated with this Emitter, from Render3D.drawState (see captureDrawState())
 	 */
 	public void draw() {
 		// disable lighting and enable blending
@@ -175,29 +196,39 @@ public class Emitter{
 		GL11.glEnable(GL11.GL_BLEND);
 		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
 		
-		// get the revese rotation of what we're following
-		Quaternion revQuat = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-		this.following.rotation.negate(revQuat);
+		// get the revese rotation of what we're following, and the camera's rotation for billboarding
+		// (these are the same for every particle)
+		Render3D.drawRotation.negate(revQuat);
+		QuaternionHelper.toMatrix(revQuat, reverseMatrix);
+		QuaternionHelper.toMatrix(Render3D.cameraRotation, billboardMatrix);
+		
+		if(box == null)
+			box = new Box2D(1.0f, 1.0f, Textures.FIRE.texture());
 		
 		// bind texture and array handle
 		particleTex.texture().bind();
 		GL30.glBindVertexArray(box.getVAOHandle());
 		
 		// draw all particles
-		for(Particle p : particles){
+		DrawState state = Render3D.drawState;
+		int numParticles = (int) state.next();
+		for(int i = 0; i < numParticles; i++){
 			// amount to translate
-			float transx = this.following.location.x - p.location.x;
-			float transy = this.following.location.y - p.location.y;
-			float transz = this.following.location.z - p.location.z;
+			float transx = Render3D.drawLocation.x - state.next();
+			float transy = Render3D.drawLocation.y - state.next();
+			float transz = Render3D.drawLocation.z - state.next();
+			float width = state.next(), height = state.next();
 			
 			// save the modelview before we manipulate it
 			oldModelView.load(Render3D.modelview);{
-				Matrix4f.mul(Render3D.modelview, QuaternionHelper.toMatrix(revQuat), Render3D.modelview);
+				Matrix4f.mul(Render3D.modelview, reverseMatrix, Render3D.modelview);
 				// translate and scale the modelview
-				Render3D.modelview.translate(new Vector3f(transx, transy, transz));
+				translation.set(transx, transy, transz);
+				Render3D.modelview.translate(translation);
 				// billboard the particle
-				Matrix4f.mul(Render3D.modelview, QuaternionHelper.toMatrix(Entities.camera.rotation), Render3D.modelview);
-				Render3D.modelview.scale(new Vector3f(p.width, p.height, 1.0f));
+				Matrix4f.mul(Render3D.modelview, billboardMatrix, Render3D.modelview);
+				scale.set(width, height, 1.0f);
+				Render3D.modelview.scale(scale);
 				Render3D.program.setUniform("ModelViewMatrix", Render3D.modelview);
 
 				// draw the particle
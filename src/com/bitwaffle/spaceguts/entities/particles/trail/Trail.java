@@ -8,14 +8,18 @@ import org.lwjgl.util.vector.Quaternion;
 import org.lwjgl.util.vector.Vector3f;
 
 import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
+import com.bitwaffle.spaceguts.graphics.render.Graphics;
 import com.bitwaffle.spaceguts.graphics.render.Render3D;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
 import com.bitwaffle.spaceout.resources.Textures;
 
 /**
  * A trail that follows a {@link DynamicEntity}
- * Whenever the entity owning the Trail calls its update() and draw() methods,
- * the Trail's update() and draw() methods should be called as well.
+ * Whenever the entity owning the Trail calls its update(), captureDrawState() and draw() methods,
+ * the Trail's update(), captureDrawState() and draw() methods should be called as well.
+ * The trail only gets changed on the physics thread; the renderer draws it from the
+ * entity's {@link DrawState}.
  * @author TranquilMarmot
  *
  */
@@ -32,6 +36,11 @@ public class Trail {
 	/** Used for preserving the modelview matrix */
 	private static Matrix4f oldModelView = new Matrix4f();
 	
+	/** Scratch objects for drawing (only used on the render thread) */
+	private static Matrix4f reverseMatrix = new Matrix4f();
+	private static Quaternion revQuat = new Quaternion();
+	private static Vector3f translation = new Vector3f(), drawOffset = new Vector3f(), lastMiddle = new Vector3f();
+	
 	/** Entity that the trail is coming from */
 	private DynamicEntity following;
 	
@@ -50,6 +59,9 @@ public class Trail {
 	/** Counter to know when to update */
 	private float timeSinceUpdate = 0.0f;
 	
+	/** Scratch vector for adding links (only used on the physics thread) */
+	private Vector3f linkStart = new Vector3f();
+	
 	/**
 	 * Create a trail
 	 * @param following Entity the trail is coming from
@@ -70,7 +82,9 @@ public class Trail {
 		while(chain.size() < length)
 			addLink();
 		
-		renderer = new TrailRenderer(this, linkTex);
+		// the renderer needs a GL context
+		if(!Graphics.headless)
+			renderer = new TrailRenderer(this, linkTex);
 	}
 	
 	/**
@@ -94,9 +108,6 @@ public class Trail {
 				chain.removeLast();
 				addLink();
 			}
-			
-			// let the renderer know that it needs to update the vertex buffers
-			renderer.updateVBO();
 		}
 	}
 	
@@ -105,16 +116,15 @@ public class Trail {
 	 */
 	private void addLink(){
 		// rotate the offset by the current rotation
-		Vector3f offsetRot = QuaternionHelper.rotateVectorByQuaternion(offset, following.rotation);
-		Vector3f start = new Vector3f();
+		Vector3f start = QuaternionHelper.rotateVectorByQuaternion(offset, following.rotation, linkStart);
 		// add location to offset
-		Vector3f.add(following.location, offsetRot, start);
+		Vector3f.add(following.location, start, start);
 		
-		// top point for link
-		Vector3f top = QuaternionHelper.rotateVectorByQuaternion(new Vector3f(width / 2, 0.0f, 0.0f), this.following.rotation);
+		// top point for link (the link keeps these, so they have to be new)
+		Vector3f top = QuaternionHelper.rotateVectorByQuaternion(width / 2, 0.0f, 0.0f, this.following.rotation, new Vector3f());
 		
 		// bottom point for link
-		Vector3f bottom = QuaternionHelper.rotateVectorByQuaternion(new Vector3f(-width / 2, 0.0f, 0.0f), this.following.rotation);
+		Vector3f bottom = QuaternionHelper.rotateVectorByQuaternion(-width / 2, 0.0f, 0.0f, this.following.rotation, new Vector3f());
 		
 		// add to the starting vector
 		Vector3f.add(start, top, top);
@@ -125,10 +135,39 @@ public class Trail {
 	}
 	
 	/**
-	 * Draws the trail
+	 * Copies every link into a draw state (should be called from the followed entity's captureDrawState()).
+	 * The number of links goes first, then the middle of the last link, then the top and bottom of every link.
+	 * @param state State to add the links to
+	 */
+	public void captureDrawState(DrawState state){
+		state.put(chain.size());
+		if(chain.isEmpty())
+			return;
+		
+		TrailLink last = chain.getLast();
+		state.put((last.top.x + last.bottom.x) / 2);
+		state.put((last.top.y + last.bottom.y) / 2);
+		state.put((last.top.z + last.bottom.z) / 2);
+		
+		for(TrailLink link : chain){
+			state.put(link.top);
+			state.put(link.bottom);
+		}
+	}
+	
+	/**
+	 * Draws the trail, from Render3D.drawState (see captureDrawState())
 	 */
 	public void draw(){
-		if(chain.size() > 0){
+		DrawState state = Render3D.drawState;
+		int numLinks = (int) state.next();
+		if(numLinks > 0){
+			// the middle of the last link, so it renders in the middle
+			state.next(lastMiddle);
+			
+			// the trail's changed every tick, so the vertex buffers get updated every time it's drawn
+			renderer.updateVBO(state, numLinks);
+			
 			// disable lighting and enable blending
 			Render3D.program.setUniform("Light.LightEnabled", false);
 			GL11.glEnable(GL11.GL_BLEND);
@@ -145,31 +184,22 @@ public class Trail {
 				 *  throw everything off.
 				 */
 				// to undo rotation
-				Quaternion revQuat = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-				Quaternion.negate(this.following.rotation, revQuat);
-				Matrix4f.mul(Render3D.modelview, QuaternionHelper.toMatrix(revQuat), Render3D.modelview);
+				Quaternion.negate(Render3D.drawRotation, revQuat);
+				Matrix4f.mul(Render3D.modelview, QuaternionHelper.toMatrix(revQuat, reverseMatrix), Render3D.modelview);
 				
 				// to undo translation
-				Vector3f undo = new Vector3f();
-				this.following.location.negate(undo);
-				Render3D.modelview.translate(undo);
-				
-				// we want to translate to the last link
-				TrailLink last = chain.getLast();
-				
-				// get the middle of the top and bottom of the last link, so it renders in the middle
-				float midX = (last.top.x + last.bottom.x) / 2;
-				float midY = (last.top.y + last.bottom.y) / 2;
-				float midZ = (last.top.z + last.bottom.z) / 2;
+				Render3D.drawLocation.negate(translation);
+				Render3D.modelview.translate(translation);
 				
 				// offset by given amount, rotated (so that it's from the center of the entity)
-				Vector3f offsetRot = QuaternionHelper.rotateVectorByQuaternion(this.offset, this.following.rotation);
+				Vector3f offsetRot = QuaternionHelper.rotateVectorByQuaternion(this.offset, Render3D.drawRotation, drawOffset);
 				
 				// to translate to the last link
-				float transX = following.location.x - midX + offsetRot.x;
-				float transY = following.location.y - midY + offsetRot.y;
-				float transZ = following.location.z - midZ + offsetRot.z;
-				Render3D.modelview.translate(new Vector3f(transX, transY, transZ));
+				float transX = Render3D.drawLocation.x - lastMiddle.x + offsetRot.x;
+				float transY = Render3D.drawLocation.y - lastMiddle.y + offsetRot.y;
+				float transZ = Render3D.drawLocation.z - lastMiddle.z + offsetRot.z;
+				translation.set(transX, transY, transZ);
+				Render3D.modelview.translate(translation);
 				
 				Render3D.program.setUniform("ModelViewMatrix", Render3D.modelview);
 				
@@ -9,6 +9,7 @@ import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
 import com.bitwaffle.spaceout.resources.Textures;
 
 /**
@@ -41,20 +42,21 @@ public class TrailRenderer {
 	
 	/**
 	 * Updates the vertex arrays to contain the most recent trail data
+	 * @param state State to read the top and bottom of every link from (see Trail.captureDrawState())
+	 * @param numLinks Number of links to read
 	 */
-	public void updateVBO(){
+	public void updateVBO(DrawState state, int numLinks){
 		// clear buffers
 		vertBuf.clear();
 		normBuf.clear();
 		texBuf.clear();
 		
 		// iterate through every link
-		for(int i = 0; i < trail.chain.size(); i++){
-			TrailLink link = trail.chain.get(i);
-			
-			vertBuf.put(link.top.x);
-			vertBuf.put(link.top.y);
-			vertBuf.put(link.top.z);
+		for(int i = 0; i < numLinks; i++){
+			// top
+			vertBuf.put(state.next());
+			vertBuf.put(state.next());
+			vertBuf.put(state.next());
 			
 			// see the initVBO() method for an explanation of this
 			texBuf.put((float)i * texture.texture().getWidth());
@@ -63,9 +65,10 @@ public class TrailRenderer {
 			normBuf.put((float)i * texture.texture().getWidth());
 			normBuf.put(texture.texture().getHeight());
 			
-			vertBuf.put(link.bottom.x);
-			vertBuf.put(link.bottom.y);
-			vertBuf.put(link.bottom.z);
+			// bottom
+			vertBuf.put(state.next());
+			vertBuf.put(state.next());
+			vertBuf.put(state.next());
 			
 			texBuf.put((float)i * texture.texture().getWidth());
 			texBuf.put(0.0f);
@@ -74,11 +74,20 @@ public class LoadMenu extends GUIObject {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				if(picker.itemHasBeenSelected()){
-					// initialize physics
-					Physics.initPhysics();
+					String level = picker.getSelectedItem().getPath();
 					
-					// load entities from XML
-					EntitiesParser.loadEntitiesFromXmlFile(picker.getSelectedItem().getPath());
+					// the physics thread can't be ticking while the world gets made
+					Physics.worldLock.lock();
+					try{
+						// initialize physics (with whichever broadphase the level wants)
+						EntitiesParser.loadBroadphase(level);
+						Physics.initPhysics();
+						
+						// load entities from XML
+						EntitiesParser.loadEntitiesFromXmlFile(level);
+					} finally{
+						Physics.worldLock.unlock();
+					}
 					
 					// create the pause menu
 					GUI.addGUIObject(new PauseMenu());
@@ -46,8 +46,14 @@ public class PauseMenu extends GUIObject {
 			menuPainter.update();
 
 			if (backToMainMenu) {
-				Entities.cleanup();
-				Physics.cleanup();
+				// the physics thread can't be ticking while the world gets destroyed
+				Physics.worldLock.lock();
+				try{
+					Entities.cleanup();
+					Physics.cleanup();
+				} finally{
+					Physics.worldLock.unlock();
+				}
 				GUI.removeGUIObject(this);
 				GUI.addGUIObject(new MainMenu());
 				backToMainMenu = false;
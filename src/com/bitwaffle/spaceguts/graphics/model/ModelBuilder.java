@@ -14,6 +14,7 @@ import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 
 
+import com.bitwaffle.spaceguts.graphics.render.Graphics;
 import com.bitwaffle.spaceout.resources.Textures;
 import com.bulletphysics.collision.shapes.CollisionShape;
 import com.bulletphysics.collision.shapes.ConvexHullShape;
@@ -255,7 +256,9 @@ public class ModelBuilder {
 		if(makingModelPart){
 			endModelPart();
 		}
-		return new Model(buildCollisionShape(), fillVertexArray(), modelParts, texture);
+		// without a GL context, only the collision shape is built
+		int vaoHandle = Graphics.headless ? 0 : fillVertexArray();
+		return new Model(buildCollisionShape(), vaoHandle, modelParts, texture);
 	}
 	
 	/**
@@ -0,0 +1,125 @@
+package com.bitwaffle.spaceguts.graphics.render;
+
+import org.lwjgl.util.vector.Quaternion;
+import org.lwjgl.util.vector.Vector3f;
+
+/**
+ * Anything an entity needs to draw itself besides its location and rotation (i.e. how big an asteroid is,
+ * or where the particles coming off of a missile are), copied out at the end of a physics tick.
+ * <p>
+ * Entities fill one of these in with {@link com.bitwaffle.spaceguts.entities.Entity#captureDrawState(DrawState)}
+ * on the physics thread, and it gets handed to the renderer along with the rest of the
+ * {@link com.bitwaffle.spaceguts.physics.TransformSnapshot}. While an entity is being drawn, its state is
+ * in Render3D.drawState and draw() reads everything back out of it in the same order it was put in.
+ * That way, draw() never has to look at anything the physics thread might be in the middle of changing.
+ * <p>
+ * Nothing gets allocated unless an entity puts in more than it ever has before.
+ */
+public class DrawState {
+	/** Everything that's been put in */
+	private float[] values = new float[8];
+
+	/** How many values have been put in, and where the next value will be read from */
+	private int size, position;
+
+	/**
+	 * Empties this out (before it gets filled in again)
+	 */
+	public void clear(){
+		size = 0;
+		position = 0;
+	}
+
+	/**
+	 * Goes back to the beginning, so everything can be read out again (before every draw)
+	 */
+	public void rewind(){
+		position = 0;
+	}
+
+	/**
+	 * @return Number of values that have been put in
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @return Whether or not there's anything left to read
+	 */
+	public boolean hasNext(){
+		return position < size;
+	}
+
+	/**
+	 * @param value Value to put at the end
+	 */
+	public void put(float value){
+		if(size == values.length){
+			float[] newValues = new float[values.length * 2];
+			System.arraycopy(values, 0, newValues, 0, size);
+			values = newValues;
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * @param vec Vector to put at the end (x, y, z)
+	 */
+	public void put(Vector3f vec){
+		put(vec.x);
+		put(vec.y);
+		put(vec.z);
+	}
+
+	/**
+	 * @param quat Quaternion to put at the end (x, y, z, w)
+	 */
+	public void put(Quaternion quat){
+		put(quat.x);
+		put(quat.y);
+		put(quat.z);
+		put(quat.w);
+	}
+
+	/**
+	 * @param bool Boolean to put at the end (as 1 or 0)
+	 */
+	public void put(boolean bool){
+		put(bool ? 1.0f : 0.0f);
+	}
+
+	/**
+	 * @return The next value
+	 */
+	public float next(){
+		return values[position++];
+	}
+
+	/**
+	 * @return The next value, as a boolean
+	 */
+	public boolean nextBoolean(){
+		return next() != 0.0f;
+	}
+
+	/**
+	 * @param dest Vector to put the next three values in
+	 * @return dest, for chaining
+	 */
+	public Vector3f next(Vector3f dest){
+		dest.set(values[position], values[position + 1], values[position + 2]);
+		position += 3;
+		return dest;
+	}
+
+	/**
+	 * @param dest Quaternion to put the next four values in
+	 * @return dest, for chaining
+	 */
+	public Quaternion next(Quaternion dest){
+		dest.set(values[position], values[position + 1], values[position + 2], values[position + 3]);
+		position += 4;
+		return dest;
+	}
+}
@@ -14,6 +14,12 @@ import com.bitwaffle.spaceguts.entities.Entities;
  * @author TranquilMarmot
  */
 public class Graphics {
+	/**
+	 * If this is true, there's no OpenGL context (see HeadlessRunner).
+	 * Anything that would create GL objects (VBOs, textures etc.) should skip doing so.
+	 */
+	public static boolean headless = false;
+	
 	/**
 	 * Renders the entire scene
 	 */
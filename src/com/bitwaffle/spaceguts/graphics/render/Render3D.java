@@ -1,7 +1,5 @@
 package com.bitwaffle.spaceguts.graphics.render;
 
-import java.util.Iterator;
-
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Quaternion;
@@ -9,14 +7,14 @@ import org.lwjgl.util.vector.Vector3f;
 import org.lwjgl.util.vector.Vector4f;
 
 import com.bitwaffle.spaceguts.entities.DynamicEntity;
-import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.entities.Entity;
-import com.bitwaffle.spaceguts.entities.Light;
 import com.bitwaffle.spaceguts.graphics.glsl.GLSLProgram;
 import com.bitwaffle.spaceguts.graphics.glsl.GLSLShader;
 import com.bitwaffle.spaceguts.graphics.glsl.ShaderTypes;
 import com.bitwaffle.spaceguts.graphics.model.Material;
+import com.bitwaffle.spaceguts.graphics.model.Model;
 import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.TransformSnapshot;
 import com.bitwaffle.spaceguts.util.DisplayHelper;
 import com.bitwaffle.spaceguts.util.MatrixHelper;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
@@ -35,6 +33,39 @@ public class Render3D {
 	
 	private static Matrix4f oldModelview = new Matrix4f();
 	
+	/**
+	 * Where everything is this frame. Everything is drawn from this instead of from Entities,
+	 * since the physics thread might be changing things while we're drawing (see Physics.snapshots)
+	 */
+	private static TransformSnapshot snapshot;
+	
+	/** How far between the snapshot's previous and current tick this frame is (see Physics.getRenderAlpha()) */
+	private static float alpha;
+	
+	/** Where the camera is this frame, interpolated between physics ticks */
+	private static Vector3f cameraLocation = new Vector3f();
+	
+	/** The camera's rotation this frame (don't change this, it's for anything that has to be billboarded) */
+	public static final Quaternion cameraRotation = new Quaternion();
+	
+	/**
+	 * Where the entity being drawn is and how it's rotated this frame (interpolated between physics ticks for dynamic entities),
+	 * and everything else it needs to be drawn. Entities read these in draw() instead of their own location and rotation,
+	 * since the physics thread might be changing them. Don't change these.
+	 */
+	public static final Vector3f drawLocation = new Vector3f();
+	public static final Quaternion drawRotation = new Quaternion();
+	public static DrawState drawState;
+	
+	/** Scratch objects for lights and the camera */
+	private static Vector3f lightIntensity = new Vector3f();
+	
+	/** Scratch objects for transforming the modelview, so nothing gets allocated per entity */
+	private static Matrix4f rotationMatrix = new Matrix4f();
+	private static Vector3f translation = new Vector3f(), lightRotated = new Vector3f();
+	private static Quaternion reverse = new Quaternion();
+	private static Vector4f lightPosition = new Vector4f();
+	
 	/** Draw distance and field-of-view to use for rendering */
 	public static float drawDistance = 3000000.0f, fov =  45.0f;
 	
@@ -58,11 +89,19 @@ public class Render3D {
 	 * Renders the 3D scene
 	 */
 	public static void render3DScene(){
+		snapshot = Physics.snapshots.acquire();
+		
+		// nothing to draw until the first tick's been done
+		if(snapshot.cameraIndex < 0)
+			return;
+		
+		alpha = Physics.getRenderAlpha(snapshot);
+		
 		setUp3DRender();
 		
 		transformToCamera();
 		
-		if(Entities.skybox != null)
+		if(snapshot.skybox.size() > 0)
 			drawSkybox();
 		
 		setUpLights();
@@ -71,6 +110,8 @@ public class Render3D {
 		
 		drawDynamicEntities();
 		
+		drawProjectiles();
+		
 		drawPassiveEntities();
 		
 		drawPlayer();
@@ -96,7 +137,7 @@ public class Render3D {
 				/ (float) DisplayHelper.windowHeight;
 		
 		if(aspect != oldAspect){
-			projection = MatrixHelper.perspective(fov, aspect, 1.0f, drawDistance);
+			MatrixHelper.perspective(fov, aspect, 1.0f, drawDistance, projection);
 			program.setUniform("ProjectionMatrix", projection);
 			oldAspect = aspect;
 		}
@@ -105,6 +146,9 @@ public class Render3D {
 		GL11.glEnable(GL11.GL_DEPTH_TEST);
 		
 		modelview.setIdentity();
+		
+		snapshot.getLocation(snapshot.cameraIndex, alpha, cameraLocation);
+		snapshot.getRotation(snapshot.cameraIndex, alpha, cameraRotation);
 	}
 	
 	/**
@@ -128,17 +172,26 @@ public class Render3D {
 		program.setUniform("Material.Shininess", DEFAULT_SHINY);
 	}
 	
+	/**
+	 * @return How far between the previous and current physics tick this frame is (0 = previous, 1 = current)
+	 */
+	public static float getAlpha(){
+		return alpha;
+	}
+	
 	/**
 	 * Transforms the ModelView matrix to represent the camera's location and rotation
 	 */
 	private static void transformToCamera(){
-		// translate to the camera's location
-		modelview.translate(new Vector3f(Entities.camera.xOffset, Entities.camera.yOffset, -Entities.camera.zoom));
+		// translate to the camera's location (see Camera.captureDrawState())
+		DrawState cameraState = snapshot.getDrawState(snapshot.cameraIndex);
+		float xOffset = cameraState.next(), yOffset = cameraState.next(), zoom = cameraState.next();
+		translation.set(xOffset, yOffset, -zoom);
+		modelview.translate(translation);
 		
 		// reverse the camera's quaternion (we want to look OUT from the camera)
-		Quaternion reverse = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-		Quaternion.negate(Entities.camera.rotation, reverse);
-		Matrix4f.mul(modelview, QuaternionHelper.toMatrix(reverse), modelview);
+		Quaternion.negate(cameraRotation, reverse);
+		Matrix4f.mul(modelview, QuaternionHelper.toMatrix(reverse, rotationMatrix), modelview);
 	}
 	
 	/**
@@ -146,21 +199,25 @@ public class Render3D {
 	 */
 	private static void setUpLights(){
 		// FIXME only one light supported right now!
-		if(Entities.lights.size() > 1)
+		if(snapshot.lights.size() > 1)
 			System.out.println("More than one light! Multiple lighting not yet implemented.");
-		Light l = Entities.lights.iterator().next();
-		float transX = Entities.camera.location.x - l.location.x;
-		float transY = Entities.camera.location.y - l.location.y;
-		float transZ = Entities.camera.location.z - l.location.z;
+		if(snapshot.lights.size() == 0)
+			return;
+		snapshot.lights.getLocation(0, drawLocation);
+		// see Light.captureDrawState()
+		snapshot.lights.getDrawState(0).next(lightIntensity);
+		float transX = cameraLocation.x - drawLocation.x;
+		float transY = cameraLocation.y - drawLocation.y;
+		float transZ = cameraLocation.z - drawLocation.z;
 		
 		// crazy quaternion and vector math to get the light into world coordinates
-		Quaternion reverse = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-		Quaternion.negate(Entities.camera.rotation, reverse);
-		Vector3f rotated = QuaternionHelper.rotateVectorByQuaternion(new Vector3f(transX, transY, transZ), reverse);
+		Quaternion.negate(cameraRotation, reverse);
+		Vector3f rotated = QuaternionHelper.rotateVectorByQuaternion(transX, transY, transZ, reverse, lightRotated);
 		
 		// set uniforms
-		program.setUniform("Light.LightPosition", new Vector4f(rotated.x, rotated.y, rotated.z, 0.0f));
-		program.setUniform("Light.LightIntensity", l.intensity);
+		lightPosition.set(rotated.x, rotated.y, rotated.z, 0.0f);
+		program.setUniform("Light.LightPosition", lightPosition);
+		program.setUniform("Light.LightIntensity", lightIntensity);
 		program.setUniform("Light.LightEnabled", true);
 	}
 	
@@ -170,17 +227,22 @@ public class Render3D {
 	private static void drawSkybox(){
 		program.setUniform("Light.LightEnabled", false);
 			
-		float transX = Entities.camera.location.x - Entities.skybox.location.x;
-		float transY = Entities.camera.location.y - Entities.skybox.location.y;
-		float transZ = Entities.camera.location.z - Entities.skybox.location.z;
+		snapshot.skybox.getLocation(0, drawLocation);
+		snapshot.skybox.getRotation(0, drawRotation);
+		drawState = snapshot.skybox.getDrawState(0);
+		
+		float transX = cameraLocation.x - drawLocation.x;
+		float transY = cameraLocation.y - drawLocation.y;
+		float transZ = cameraLocation.z - drawLocation.z;
 		
 		oldModelview.load(modelview);{
-			modelview.translate(new Vector3f(transX, transY, transZ));
+			translation.set(transX, transY, transZ);
+			modelview.translate(translation);
 			
-			Matrix4f.mul(modelview, QuaternionHelper.toMatrix(Entities.skybox.rotation), modelview);
+			Matrix4f.mul(modelview, QuaternionHelper.toMatrix(drawRotation, rotationMatrix), modelview);
 			
 			program.setUniform("ModelViewMatrix", modelview);
-			Entities.skybox.draw();
+			snapshot.skybox.get(0).draw();
 		}modelview.load(oldModelview);
 		program.setUniform("Light.LightEnabled", true);
 	}
@@ -190,16 +252,19 @@ public class Render3D {
 	 */
 	private static void drawLights(){
 		program.setUniform("Light.LightEnabled", false);
-		Iterator<Light> lightIterator = Entities.lights.iterator();
-		while(lightIterator.hasNext()){
-			Light light = lightIterator.next();
+		for(int i = 0; i < snapshot.lights.size(); i++){
+			Entity light = snapshot.lights.get(i);
+			snapshot.lights.getLocation(i, drawLocation);
+			snapshot.lights.getRotation(i, drawRotation);
+			drawState = snapshot.lights.getDrawState(i);
 			
-			float transX = Entities.camera.location.x - light.location.x;
-			float transY = Entities.camera.location.y - light.location.y;
-			float transZ = Entities.camera.location.z - light.location.z;
+			float transX = cameraLocation.x - drawLocation.x;
+			float transY = cameraLocation.y - drawLocation.y;
+			float transZ = cameraLocation.z - drawLocation.z;
 			
 			oldModelview.load(modelview);{
-				modelview.translate(new Vector3f(transX, transY, transZ));
+				translation.set(transX, transY, transZ);
+				modelview.translate(translation);
 				
 				program.setUniform("ModelViewMatrix", modelview);
 				light.draw();
@@ -212,21 +277,24 @@ public class Render3D {
 	 * Draws any passive entities
 	 */
 	private static void drawPassiveEntities(){
-		Iterator<Entity> entityIterator = Entities.passiveEntities.iterator();
-		while(entityIterator.hasNext()){
+		for(int i = 0; i < snapshot.passiveEntities.size(); i++){
 			// FIXME might be a better spot to put this
 			useDefaultMaterial();
 			
-			Entity ent = entityIterator.next();
+			Entity ent = snapshot.passiveEntities.get(i);
+			snapshot.passiveEntities.getLocation(i, drawLocation);
+			snapshot.passiveEntities.getRotation(i, drawRotation);
+			drawState = snapshot.passiveEntities.getDrawState(i);
 			
-			float transX = Entities.camera.location.x - ent.location.x;
-			float transY = Entities.camera.location.y - ent.location.y;
-			float transZ = Entities.camera.location.z - ent.location.z;
+			float transX = cameraLocation.x - drawLocation.x;
+			float transY = cameraLocation.y - drawLocation.y;
+			float transZ = cameraLocation.z - drawLocation.z;
 			
 			oldModelview.load(modelview);{
-				modelview.translate(new Vector3f(transX, transY, transZ));
+				translation.set(transX, transY, transZ);
+				modelview.translate(translation);
 				
-				Matrix4f.mul(modelview, QuaternionHelper.toMatrix(ent.rotation), modelview);
+				Matrix4f.mul(modelview, QuaternionHelper.toMatrix(drawRotation, rotationMatrix), modelview);
 				
 				program.setUniform("ModelViewMatrix", modelview);
 				ent.draw();
@@ -238,22 +306,33 @@ public class Render3D {
 	 * Draws any dynamic entities
 	 */
 	private static void drawDynamicEntities(){
-		Iterator<DynamicEntity> entityIterator = Entities.dynamicEntities.iterator();
-		while(entityIterator.hasNext()){
-			DynamicEntity ent = entityIterator.next();
+		for(int i = 0; i < snapshot.numDynamicEntities(); i++){
+			DynamicEntity ent = snapshot.getEntity(i);
 			
-			float transX = Entities.camera.location.x - ent.location.x;
-			float transY = Entities.camera.location.y - ent.location.y;
-			float transZ = Entities.camera.location.z - ent.location.z;
+			snapshot.getLocation(i, alpha, drawLocation);
+			snapshot.getRotation(i, alpha, drawRotation);
+			drawState = snapshot.getDrawState(i);
+			
+			float transX = cameraLocation.x - drawLocation.x;
+			float transY = cameraLocation.y - drawLocation.y;
+			float transZ = cameraLocation.z - drawLocation.z;
 			
 			oldModelview.load(modelview);{
-				modelview.translate(new Vector3f(transX, transY, transZ));
+				translation.set(transX, transY, transZ);
+				modelview.translate(translation);
 				
 				if(Physics.drawDebug){
-					ent.drawPhysicsDebug();
+					// debug drawing looks right at the rigid bodies, so the world can't be getting stepped while it happens
+					Physics.worldLock.lock();
+					try{
+						if(!ent.removeFlag)
+							ent.drawPhysicsDebug();
+					} finally{
+						Physics.worldLock.unlock();
+					}
 				}
 				
-				Matrix4f.mul(modelview, QuaternionHelper.toMatrix(ent.rotation), modelview);
+				Matrix4f.mul(modelview, QuaternionHelper.toMatrix(drawRotation, rotationMatrix), modelview);
 				
 				program.setUniform("ModelViewMatrix", modelview);
 				ent.draw();
@@ -261,21 +340,57 @@ public class Render3D {
 		}
 	}
 	
+	/**
+	 * Draws any shots from {@link com.bitwaffle.spaceguts.physics.Projectiles}
+	 */
+	private static void drawProjectiles(){
+		for(int i = 0; i < snapshot.numProjectiles(); i++){
+			Model model = snapshot.getProjectileModel(i);
+			
+			snapshot.getProjectileLocation(i, alpha, drawLocation);
+			snapshot.getProjectileRotation(i, drawRotation);
+			
+			float transX = cameraLocation.x - drawLocation.x;
+			float transY = cameraLocation.y - drawLocation.y;
+			float transZ = cameraLocation.z - drawLocation.z;
+			
+			oldModelview.load(modelview);{
+				translation.set(transX, transY, transZ);
+				modelview.translate(translation);
+				
+				Matrix4f.mul(modelview, QuaternionHelper.toMatrix(drawRotation, rotationMatrix), modelview);
+				
+				program.setUniform("ModelViewMatrix", modelview);
+				model.getTexture().texture().bind();
+				model.render();
+			}modelview.load(oldModelview);
+		}
+	}
+	
 	/**
 	 * Draws the player
 	 */
 	private static void drawPlayer(){
-		float transX = Entities.camera.location.x - Entities.player.location.x;
-		float transY = Entities.camera.location.y - Entities.player.location.y;
-		float transZ = Entities.camera.location.z - Entities.player.location.z;
+		if(snapshot.playerIndex < 0)
+			return;
+		
+		DynamicEntity player = snapshot.getEntity(snapshot.playerIndex);
+		snapshot.getLocation(snapshot.playerIndex, alpha, drawLocation);
+		snapshot.getRotation(snapshot.playerIndex, alpha, drawRotation);
+		drawState = snapshot.getDrawState(snapshot.playerIndex);
+		
+		float transX = cameraLocation.x - drawLocation.x;
+		float transY = cameraLocation.y - drawLocation.y;
+		float transZ = cameraLocation.z - drawLocation.z;
 		
 		oldModelview.load(modelview);{
-			modelview.translate(new Vector3f(transX, transY, transZ));
+			translation.set(transX, transY, transZ);
+			modelview.translate(translation);
 			
-			Matrix4f.mul(modelview, QuaternionHelper.toMatrix(Entities.player.rotation), modelview);
+			Matrix4f.mul(modelview, QuaternionHelper.toMatrix(drawRotation, rotationMatrix), modelview);
 			
 			program.setUniform("ModelViewMatrix", modelview);
-			Entities.player.draw();
+			player.draw();
 		}modelview.load(oldModelview);
 	}
 	
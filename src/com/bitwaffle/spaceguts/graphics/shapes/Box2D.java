@@ -13,11 +13,14 @@ import org.lwjgl.opengl.GL30;
 import org.lwjgl.util.vector.Vector3f;
 import org.newdawn.slick.opengl.Texture;
 
+import com.bitwaffle.spaceguts.graphics.render.Graphics;
+
 public class Box2D {
 	private int vaoHandle;
 	
 	public Box2D(float width, float height, Texture texture){
-		initVBO(width, height, texture);
+		if(!Graphics.headless)
+			initVBO(width, height, texture);
 	}
 	
 	private void initVBO(float width, float height, Texture texture){
@@ -13,10 +13,13 @@ import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 import org.lwjgl.util.vector.Vector3f;
 
+import com.bitwaffle.spaceguts.graphics.render.Graphics;
+
 public class Circle2D {
 	private int numIndices, vaoHandle;
 	public Circle2D(float step, float size){
-		initVBO(step, size);
+		if(!Graphics.headless)
+			initVBO(step, size);
 	}
 	
 	private void initVBO(float step, float size){
@@ -12,9 +12,15 @@ import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 
+import com.bitwaffle.spaceguts.graphics.render.Graphics;
+
 public class VBOQuadric{
 	private int vaoHandle, numIndices;
 	public VBOQuadric(float radius, int slices, int stacks){
+		// nothing to build without a GL context
+		if(Graphics.headless)
+			return;
+		
 		ArrayList<javax.vecmath.Vector3f> vertices = new ArrayList<javax.vecmath.Vector3f>();
 		ArrayList<javax.vecmath.Vector3f> normals = new ArrayList<javax.vecmath.Vector3f>();
 		ArrayList<Point2f> texCoords = new ArrayList<Point2f>();
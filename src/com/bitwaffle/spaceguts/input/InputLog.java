@@ -0,0 +1,443 @@
+package com.bitwaffle.spaceguts.input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.util.Randoms;
+import com.bitwaffle.spaceguts.util.console.Console;
+
+/**
+ * Records the input that every physics tick sees, so that a play session can be replayed exactly
+ * (in the game, or in {@link com.bitwaffle.spaceout.HeadlessRunner}) and timed the same way between builds.
+ * <p>
+ * Recording or replaying gets set up with record() or replay() and starts when the next level gets loaded.
+ * The log starts with a header (level file, the master seed given to {@link Randoms} and the length of a tick),
+ * then has one entry per tick. Each entry is a byte of flags saying what changed since the tick before,
+ * followed by only the things that changed, so a tick where nothing happened is one byte.
+ * Every CHECKSUM_INTERVAL ticks a checksum of where every dynamic entity is gets written too,
+ * and replaying checks it to make sure the simulation hasn't gone off and done something different.
+ * <p>
+ * Input is grabbed right before each tick gets stepped, so keys getting pressed and released in between ticks
+ * (and keys being checked with pressedOnce() by things outside of the tick) get captured exactly how the tick saw them.
+ * Mouse movement is saved up between ticks and handed to each tick by MouseManager.startTick(), so what gets
+ * recorded is exactly what the tick used.
+ * While replaying, KeyboardManager and MouseManager ignore whatever's really being pressed.
+ */
+public class InputLog {
+	/** Extension given to input logs */
+	public static final String EXTENSION = ".replay";
+
+	/** Every log starts with this, followed by the version */
+	private static final int MAGIC = 0x53504C47;
+	private static final short VERSION = 1;
+
+	/** How many ticks in between checksums */
+	private static final int CHECKSUM_INTERVAL = 60;
+
+	/** Flags at the start of each tick, saying what comes after them */
+	private static final int KEYS = 1, BUTTONS = 2, MOVE = 4, WHEEL = 8, POSITION = 16, CHECKSUM = 32, END = 128;
+
+	/** Bits in the buttons byte */
+	private static final int BUTTON0 = 1, BUTTON1 = 2, BUTTON2 = 4, CONSOLE = 8;
+
+	/** Bits in a key's state */
+	private static final byte PRESSED = 1, STILL_DOWN = 2;
+
+	/** File to record to when the next level gets loaded (null if not recording) */
+	private static String recordFile;
+
+	/** Log being written to or read from */
+	private static DataOutputStream out;
+	private static DataInputStream in;
+
+	/** What's going on right now */
+	private static volatile boolean recording = false, replaying = false;
+
+	/** Header of the log being replayed */
+	private static String replayLevel;
+	private static long replaySeed;
+	private static float replayTimeStep;
+
+	/** Number of ticks recorded or replayed */
+	private static int tick;
+
+	/** State of every key, mouse button and mouse value as of the last tick */
+	private static Keys[] keys = Keys.values();
+	private static byte[] keyStates = new byte[keys.length];
+	private static int[] changedKeys = new int[keys.length];
+	private static int buttons, x, y;
+	private static float dx, dy, wheel;
+
+	/** Tick the replay stopped matching the recording on, -1 if it hasn't */
+	private static int divergedAt;
+
+	/** For timing ticks and frames while replaying */
+	private static long tickStart, tickNanos, worstTick;
+	private static long lastFrame, frameNanos, worstFrame;
+	private static int frames;
+
+	/**
+	 * Records everything from when the next level gets loaded until it gets cleaned up
+	 * @param file File to write the log to
+	 */
+	public static void record(String file){
+		recordFile = file;
+	}
+
+	/**
+	 * Gets ready to replay a log. The replay starts when the level it was recorded on gets loaded.
+	 * @param file Log to replay
+	 * @return Whether or not the log could be read
+	 */
+	public static boolean replay(String file){
+		closeReplay();
+		try{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if(in.readInt() != MAGIC || in.readShort() != VERSION){
+				System.out.println(file + " isn't an input log (or is from a different version)");
+				closeReplay();
+				return false;
+			}
+			replayLevel = in.readUTF();
+			replaySeed = in.readLong();
+			replayTimeStep = in.readFloat();
+			return true;
+		} catch(IOException e){
+			System.out.println("Error reading input log " + file + ": " + e.getMessage());
+			closeReplay();
+			return false;
+		}
+	}
+
+	/**
+	 * @return Level that the log being replayed was recorded on, or null if nothing's being replayed
+	 */
+	public static String getReplayLevel(){
+		return in == null ? null : replayLevel;
+	}
+
+	/**
+	 * Called when a level is about to be loaded, starts recording or replaying if either is set up
+	 * @param level Level file being loaded
+	 */
+	public static void levelLoading(String level){
+		// whatever was going on with the last level is over
+		stop();
+
+		if(in != null){
+			if(!new File(level).getName().equals(new File(replayLevel).getName())){
+				System.out.println("Not replaying, input log was recorded on " + replayLevel + " but " + level + " is being loaded");
+				closeReplay();
+				return;
+			}
+
+			Randoms.setSeed(replaySeed);
+			Physics.fixedTimeStep = replayTimeStep;
+			Physics.useFixedTimeStep = true;
+			reset();
+			replaying = true;
+		} else if(recordFile != null){
+			try{
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(recordFile)));
+				long seed = System.nanoTime();
+				Randoms.setSeed(seed);
+				// ticks have to be a fixed length for the recording to mean anything
+				Physics.useFixedTimeStep = true;
+
+				out.writeInt(MAGIC);
+				out.writeShort(VERSION);
+				out.writeUTF(level);
+				out.writeLong(seed);
+				out.writeFloat(Physics.fixedTimeStep);
+
+				reset();
+				recording = true;
+				System.out.println("Recording input to " + recordFile);
+			} catch(IOException e){
+				System.out.println("Error creating input log " + recordFile + ": " + e.getMessage());
+				out = null;
+			}
+			recordFile = null;
+		}
+	}
+
+	/**
+	 * Goes back to every key being up and the mouse not doing anything
+	 */
+	private static void reset(){
+		tick = 0;
+		for(int i = 0; i < keys.length; i++)
+			keyStates[i] = STILL_DOWN;
+		buttons = 0;
+		x = 0;
+		y = 0;
+		dx = 0.0f;
+		dy = 0.0f;
+		wheel = 0.0f;
+
+		divergedAt = -1;
+		tickNanos = 0L;
+		worstTick = 0L;
+		lastFrame = 0L;
+		frameNanos = 0L;
+		worstFrame = 0L;
+		frames = 0;
+	}
+
+	/**
+	 * Records or replays the input for the tick that's about to be stepped.
+	 * Should be called right before every step (see Physics.simulate()).
+	 */
+	public static void tick(){
+		MouseManager.startTick();
+		try{
+			if(recording)
+				recordTick();
+			else if(replaying){
+				replayTick();
+				tickStart = System.nanoTime();
+			}
+		} catch(IOException e){
+			System.out.println("Error with input log on tick " + tick + ": " + e.getMessage());
+			stop();
+		}
+	}
+
+	/**
+	 * Called when a tick is done being stepped, for timing replays
+	 */
+	public static void endTick(){
+		if(replaying){
+			long elapsed = System.nanoTime() - tickStart;
+			tickNanos += elapsed;
+			if(elapsed > worstTick)
+				worstTick = elapsed;
+		}
+	}
+
+	/**
+	 * Called after every frame gets drawn, for timing replays
+	 */
+	public static void frameRendered(){
+		if(!replaying)
+			return;
+
+		long now = System.nanoTime();
+		if(lastFrame != 0L){
+			long elapsed = now - lastFrame;
+			frameNanos += elapsed;
+			frames++;
+			if(elapsed > worstFrame)
+				worstFrame = elapsed;
+		}
+		lastFrame = now;
+	}
+
+	/**
+	 * Writes out whatever's changed since the last tick
+	 */
+	private static void recordTick() throws IOException{
+		int flags = 0;
+
+		int numChanged = 0;
+		for(int i = 0; i < keys.length; i++){
+			byte state = (byte) ((keys[i].isPressed() ? PRESSED : 0) | (keys[i].isStillDown() ? STILL_DOWN : 0));
+			if(state != keyStates[i]){
+				keyStates[i] = state;
+				changedKeys[numChanged++] = i;
+			}
+		}
+		if(numChanged > 0)
+			flags |= KEYS;
+
+		int newButtons = (MouseManager.button0 ? BUTTON0 : 0) | (MouseManager.button1 ? BUTTON1 : 0)
+				| (MouseManager.button2 ? BUTTON2 : 0) | (Console.consoleOn ? CONSOLE : 0);
+		if(newButtons != buttons || tick == 0)
+			flags |= BUTTONS;
+		if(MouseManager.tickDX != dx || MouseManager.tickDY != dy || tick == 0)
+			flags |= MOVE;
+		if(MouseManager.tickWheel != wheel || tick == 0)
+			flags |= WHEEL;
+		if(MouseManager.x != x || MouseManager.y != y || tick == 0)
+			flags |= POSITION;
+		if(tick % CHECKSUM_INTERVAL == 0)
+			flags |= CHECKSUM;
+
+		out.writeByte(flags);
+		if((flags & KEYS) != 0){
+			out.writeByte(numChanged);
+			for(int i = 0; i < numChanged; i++){
+				out.writeByte(changedKeys[i]);
+				out.writeByte(keyStates[changedKeys[i]]);
+			}
+		}
+		if((flags & BUTTONS) != 0){
+			buttons = newButtons;
+			out.writeByte(buttons);
+		}
+		if((flags & MOVE) != 0){
+			dx = MouseManager.tickDX;
+			dy = MouseManager.tickDY;
+			out.writeFloat(dx);
+			out.writeFloat(dy);
+		}
+		if((flags & WHEEL) != 0){
+			wheel = MouseManager.tickWheel;
+			out.writeFloat(wheel);
+		}
+		if((flags & POSITION) != 0){
+			x = MouseManager.x;
+			y = MouseManager.y;
+			out.writeInt(x);
+			out.writeInt(y);
+		}
+		if((flags & CHECKSUM) != 0)
+			out.writeLong(checksum());
+
+		tick++;
+	}
+
+	/**
+	 * Reads in what changed for the next tick and puts every key and the mouse in the state they were in when it was recorded
+	 */
+	private static void replayTick() throws IOException{
+		int flags;
+		try{
+			flags = in.readUnsignedByte();
+		} catch(EOFException e){
+			// log got cut off (game probably crashed while recording), which is as good as an end
+			flags = END;
+		}
+		if((flags & END) != 0){
+			stop();
+			return;
+		}
+
+		if((flags & KEYS) != 0){
+			int numChanged = in.readUnsignedByte();
+			for(int i = 0; i < numChanged; i++){
+				int key = in.readUnsignedByte();
+				keyStates[key] = in.readByte();
+			}
+		}
+		if((flags & BUTTONS) != 0)
+			buttons = in.readUnsignedByte();
+		if((flags & MOVE) != 0){
+			dx = in.readFloat();
+			dy = in.readFloat();
+		}
+		if((flags & WHEEL) != 0)
+			wheel = in.readFloat();
+		if((flags & POSITION) != 0){
+			x = in.readInt();
+			y = in.readInt();
+		}
+
+		// every key gets set every tick, in case something checked pressedOnce() since the last one
+		for(int i = 0; i < keys.length; i++)
+			keys[i].setState((keyStates[i] & PRESSED) != 0, (keyStates[i] & STILL_DOWN) != 0);
+		MouseManager.button0 = (buttons & BUTTON0) != 0;
+		MouseManager.button1 = (buttons & BUTTON1) != 0;
+		MouseManager.button2 = (buttons & BUTTON2) != 0;
+		Console.consoleOn = (buttons & CONSOLE) != 0;
+		MouseManager.tickDX = dx;
+		MouseManager.tickDY = dy;
+		MouseManager.tickWheel = wheel;
+		MouseManager.x = x;
+		MouseManager.y = y;
+
+		if((flags & CHECKSUM) != 0){
+			long expected = in.readLong();
+			if(divergedAt < 0 && expected != checksum()){
+				divergedAt = tick;
+				System.out.println("Replay of " + replayLevel + " stopped matching the recording on tick " + tick);
+			}
+		}
+
+		tick++;
+	}
+
+	/**
+	 * @return Hash of where every dynamic entity is and which way it's facing
+	 */
+	private static long checksum(){
+		long hash = Entities.dynamicEntities.size();
+		for(int i = 0; i < Entities.dynamicEntities.size(); i++){
+			DynamicEntity ent = Entities.dynamicEntities.get(i);
+			hash = hash * 31L + Float.floatToIntBits(ent.location.x);
+			hash = hash * 31L + Float.floatToIntBits(ent.location.y);
+			hash = hash * 31L + Float.floatToIntBits(ent.location.z);
+			hash = hash * 31L + Float.floatToIntBits(ent.rotation.x);
+			hash = hash * 31L + Float.floatToIntBits(ent.rotation.y);
+			hash = hash * 31L + Float.floatToIntBits(ent.rotation.z);
+			hash = hash * 31L + Float.floatToIntBits(ent.rotation.w);
+		}
+		return hash;
+	}
+
+	/**
+	 * Stops recording or replaying. Recordings get finished off and saved, replays print out how they went.
+	 */
+	public static void stop(){
+		if(recording){
+			recording = false;
+			try{
+				out.writeByte(END);
+				out.close();
+				System.out.println("Recorded " + tick + " ticks of input");
+			} catch(IOException e){
+				System.out.println("Error saving input log: " + e.getMessage());
+			}
+			out = null;
+		}
+
+		if(replaying){
+			replaying = false;
+			System.out.println("Replayed " + tick + " ticks of " + replayLevel
+					+ (divergedAt < 0 ? ", matched the recording" : ", stopped matching the recording on tick " + divergedAt));
+			if(tick > 0)
+				System.out.println("Average tick: " + (tickNanos / tick) + "ns, worst tick: " + worstTick + "ns");
+			if(frames > 0)
+				System.out.println("Average frame: " + (frameNanos / frames) + "ns, worst frame: " + worstFrame + "ns");
+			closeReplay();
+		}
+	}
+
+	/**
+	 * Closes the log being replayed, if there is one
+	 */
+	private static void closeReplay(){
+		if(in != null){
+			try{
+				in.close();
+			} catch(IOException e){
+				System.out.println("Error closing input log: " + e.getMessage());
+			}
+			in = null;
+		}
+	}
+
+	/**
+	 * @return Whether or not input is being recorded
+	 */
+	public static boolean isRecording(){
+		return recording;
+	}
+
+	/**
+	 * @return Whether or not input is being replayed (if it is, the real keyboard and mouse should be ignored)
+	 */
+	public static boolean isReplaying(){
+		return replaying;
+	}
+}
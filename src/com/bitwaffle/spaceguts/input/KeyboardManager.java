@@ -33,6 +33,12 @@ public class KeyboardManager {
 	 * Loops through all the current Keyboard events and toggles booleans in 
 	 */
 	public void update() {
+		// replays set every key themselves, see InputLog
+		if(InputLog.isReplaying()){
+			while(Keyboard.next());
+			return;
+		}
+		
 		// loop through all keyboard events
 		while (Keyboard.next()) {		
 			int eventKey = Keyboard.getEventKey();
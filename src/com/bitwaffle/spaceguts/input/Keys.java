@@ -80,4 +80,21 @@ public enum Keys implements Button{
 			return true;
 		}
 	}
+
+	/**
+	 * @return Whether or not the key is still down from the previous update (see {@link InputLog})
+	 */
+	boolean isStillDown(){
+		return stillDown;
+	}
+
+	/**
+	 * Puts the key in an exact state, used when replaying input (see {@link InputLog})
+	 * @param isPressed Whether or not the key is being pressed
+	 * @param stillDown Whether or not the key is still down from the previous update
+	 */
+	void setState(boolean isPressed, boolean stillDown){
+		this.isPressed = isPressed;
+		this.stillDown = stillDown;
+	}
 }
@@ -15,12 +15,23 @@ public class MouseManager {
 	/** whether or not button a is being pressed */
 	public static boolean button0, button1, button2;
 
-	/** how much the mouse has moved on the X axis */
+	/** how much the mouse has moved on the X axis (this frame, for the GUI) */
 	public static float dx;
-	/** how much the mouse has move on the Y axis */
+	/** how much the mouse has move on the Y axis (this frame, for the GUI) */
 	public static float dy;
-	/** how much the mouse wheel has moved */
+	/** how much the mouse wheel has moved (this frame, for the GUI) */
 	public static float wheel;
+	
+	/**
+	 * How much the mouse and the mouse wheel have moved since the last physics tick. Anything that happens
+	 * during a tick should use these instead of dx, dy and wheel, since the physics thread can step any number
+	 * of ticks in one frame (see startTick())
+	 */
+	public static float tickDX, tickDY, tickWheel;
+	
+	/** Movement that's happened since the last tick started, added to every frame */
+	private static float pendingDX, pendingDY, pendingWheel;
+	
 	/** the mouse's current location */
 	public static int x, y;
 
@@ -36,6 +47,16 @@ public class MouseManager {
 	public static float horizontalSensitivity = 10.0f;
 
 	public void update() {
+		// replays set everything themselves, see InputLog
+		if (InputLog.isReplaying()) {
+			while (Mouse.next());
+			// throw away any movement so it doesn't all come in at once when the replay's done
+			Mouse.getDX();
+			Mouse.getDY();
+			Mouse.getDWheel();
+			return;
+		}
+
 		while (Mouse.next()) {
 			String eventButton = Mouse.getButtonName(Mouse.getEventButton());
 			if (eventButton != null) {
@@ -77,10 +98,39 @@ public class MouseManager {
 
 		// grab wheel change amount
 		wheel = (float) Mouse.getDWheel();
+		
+		// save it all up for the next tick
+		synchronized(MouseManager.class){
+			pendingDX += dx;
+			pendingDY += dy;
+			pendingWheel += wheel;
+		}
 
 		x = Mouse.getX();
 		// we want the top-left corner to be 0,0
 		y = DisplayHelper.windowHeight - Mouse.getY();
 	}
+	
+	/**
+	 * Hands everything the mouse has done since the last tick to the tick that's about to be stepped (see tickDX, tickDY and tickWheel).
+	 * Called right before every tick (see InputLog.tick())
+	 */
+	public static synchronized void startTick(){
+		tickDX = pendingDX;
+		tickDY = pendingDY;
+		tickWheel = pendingWheel;
+		pendingDX = 0.0f;
+		pendingDY = 0.0f;
+		pendingWheel = 0.0f;
+	}
+	
+	/**
+	 * Called at the end of every tick, so that movement only ever gets used by one tick
+	 */
+	public static void endTick(){
+		tickDX = 0.0f;
+		tickDY = 0.0f;
+		tickWheel = 0.0f;
+	}
 
 }
@@ -0,0 +1,318 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.bulletphysics.collision.broadphase.Dbvt;
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.broadphase.DbvtProxy;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+
+/**
+ * A read-only copy of the broadphase as of the end of a physics tick, for doing queries from other threads
+ * (see {@link RayBatch}) while the physics thread goes on changing the world.
+ * <p>
+ * The DbvtBroadphase's trees get flattened into arrays (each node's bounding box and its two children),
+ * and every leaf gets a copy of its collision object's world transform. Collision shapes aren't copied;
+ * they're never changed once they're made (see {@link ShapeCache}), so they're safe to share.
+ * If the world isn't using a DbvtBroadphase, there's no tree and queries just check every leaf.
+ * <p>
+ * Snapshots are published by the physics thread at the end of a tick, but only if something has called acquire()
+ * (or request()) since the last one was published, so nothing gets copied when nobody's doing any queries.
+ * This means the first query after nobody's asked for a while sees the world as of the last time somebody did,
+ * and the ones after that are up to date again. If nobody asks for MAX_IDLE_TICKS ticks in a row,
+ * the old snapshot gets thrown out so that nothing's cast against a world that's way out of date.
+ * <p>
+ * Any number of threads can acquire the latest snapshot at the same time; it won't be written to again
+ * until every one of them has released it.
+ */
+public class BroadphaseSnapshot {
+	/** Whether or not to take snapshots at all (they're still only taken when somebody asks for one) */
+	public static boolean enabled = true;
+
+	/** How many ticks in a row nobody can ask for a snapshot before the latest one gets thrown out */
+	private static final int MAX_IDLE_TICKS = 8;
+
+	/** Whether or not anybody has asked for a snapshot since the last one was published */
+	private static volatile boolean requested = false;
+
+	/** How many ticks it's been since anybody asked for a snapshot */
+	private static int idleTicks = 0;
+
+	/** Every snapshot that's been made */
+	private static ArrayList<BroadphaseSnapshot> snapshots = new ArrayList<BroadphaseSnapshot>();
+
+	/** Latest published snapshot (null if there isn't one) */
+	private static AtomicReference<BroadphaseSnapshot> latest = new AtomicReference<BroadphaseSnapshot>();
+
+	/** Number of threads reading this snapshot */
+	private AtomicInteger readers = new AtomicInteger();
+
+	/** Bounding boxes of tree nodes, 6 floats per node (min x,y,z then max x,y,z) */
+	float[] nodeBounds = new float[128 * 6];
+
+	/** Children of each node, 2 per node. Leaves have -(leaf index + 1) as their first child. */
+	int[] nodeChildren = new int[128 * 2];
+	int numNodes;
+
+	/** Root of each tree, -1 if a tree is empty */
+	int[] roots = new int[2];
+
+	/** Collision objects, their collision groups and their bounding boxes (6 floats per leaf) */
+	CollisionObject[] objects = new CollisionObject[64];
+	short[] groups = new short[64];
+	float[] leafBounds = new float[64 * 6];
+
+	/** Each collision object's world transform */
+	Transform[] transforms = new Transform[64];
+	int numLeaves;
+
+	/** Used for walking the trees when capturing */
+	private Dbvt.Node[] stack = new Dbvt.Node[64];
+	private int[] stackParents = new int[64];
+
+	/** Used when there's no tree */
+	private Transform transScratch = new Transform();
+	private javax.vecmath.Vector3f aabbMin = new javax.vecmath.Vector3f(), aabbMax = new javax.vecmath.Vector3f();
+
+	/**
+	 * Takes a snapshot of the broadphase and makes it the latest one, if anybody's asked for one since last time.
+	 * Should only be called by whoever is stepping the physics world, in between ticks.
+	 */
+	public static void publish(){
+		if(!enabled || Physics.dynamicsWorld == null)
+			return;
+
+		if(!requested){
+			if(++idleTicks >= MAX_IDLE_TICKS)
+				latest.set(null);
+			return;
+		}
+		requested = false;
+		idleTicks = 0;
+
+		BroadphaseSnapshot current = latest.get();
+		BroadphaseSnapshot next = null;
+		for(int i = 0; i < snapshots.size() && next == null; i++){
+			BroadphaseSnapshot snap = snapshots.get(i);
+			if(snap != current && snap.readers.get() == 0)
+				next = snap;
+		}
+		// every snapshot is being read, so make another one
+		if(next == null){
+			next = new BroadphaseSnapshot();
+			snapshots.add(next);
+		}
+
+		next.capture();
+		latest.set(next);
+	}
+
+	/**
+	 * Asks for a snapshot to be taken at the end of the next tick
+	 */
+	public static void request(){
+		requested = true;
+	}
+
+	/**
+	 * Gets the latest snapshot, and asks for another one to be taken at the end of the next tick.
+	 * Has to be paired with a call to release() when done with it.
+	 * @return Latest snapshot, or null if there isn't one
+	 */
+	public static BroadphaseSnapshot acquire(){
+		requested = true;
+		while(true){
+			BroadphaseSnapshot snap = latest.get();
+			if(snap == null)
+				return null;
+
+			snap.readers.incrementAndGet();
+			// make sure a newer snapshot wasn't published (and this one started getting written to) in between
+			if(latest.get() == snap)
+				return snap;
+			snap.readers.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @param snap Snapshot to let go of
+	 */
+	public static void release(BroadphaseSnapshot snap){
+		if(snap != null)
+			snap.readers.decrementAndGet();
+	}
+
+	/**
+	 * Forgets every snapshot (should be called when the world is destroyed)
+	 */
+	public static void clear(){
+		latest.set(null);
+		snapshots.clear();
+		requested = false;
+		idleTicks = 0;
+	}
+
+	/**
+	 * Copies everything out of the broadphase.
+	 * Nothing gets allocated unless there are more collision objects than ever before.
+	 */
+	private void capture(){
+		int oldNumLeaves = numLeaves;
+		numNodes = 0;
+		numLeaves = 0;
+		roots[0] = -1;
+		roots[1] = -1;
+
+		if(Physics.broadphase instanceof DbvtBroadphase){
+			DbvtBroadphase dbvt = (DbvtBroadphase) Physics.broadphase;
+			for(int i = 0; i < dbvt.sets.length && i < roots.length; i++)
+				roots[i] = flatten(dbvt.sets[i].root);
+		} else{
+			ObjectArrayList<CollisionObject> collisionObjects = Physics.dynamicsWorld.getCollisionObjectArray();
+			for(int i = 0; i < collisionObjects.size(); i++){
+				CollisionObject obj = collisionObjects.getQuick(i);
+				if(obj.getBroadphaseHandle() == null)
+					continue;
+				obj.getWorldTransform(transScratch);
+				obj.getCollisionShape().getAabb(transScratch, aabbMin, aabbMax);
+				addLeaf(obj, obj.getBroadphaseHandle().collisionFilterGroup, aabbMin, aabbMax);
+			}
+		}
+
+		// don't hang on to anything that's gone
+		for(int i = numLeaves; i < oldNumLeaves; i++)
+			objects[i] = null;
+	}
+
+	/**
+	 * Copies a tree into the node arrays
+	 * @param root Root of tree
+	 * @return Index of root, or -1 if the tree is empty
+	 */
+	private int flatten(Dbvt.Node root){
+		if(root == null)
+			return -1;
+
+		int rootIndex = numNodes;
+		int top = 0;
+		stack[top] = root;
+		stackParents[top] = -1;
+		top++;
+		while(top > 0){
+			top--;
+			Dbvt.Node node = stack[top];
+			int parent = stackParents[top];
+			stack[top] = null;
+
+			int index = addNode(node.volume.Mins(), node.volume.Maxs());
+			// parent's first child is filled in first, then its second
+			if(parent >= 0){
+				if(nodeChildren[parent * 2] == Integer.MIN_VALUE)
+					nodeChildren[parent * 2] = index;
+				else
+					nodeChildren[parent * 2 + 1] = index;
+			}
+
+			if(node.isleaf()){
+				DbvtProxy proxy = (DbvtProxy) node.data;
+				int leaf = addLeaf((CollisionObject) proxy.clientObject, proxy.collisionFilterGroup, proxy.aabb.Mins(), proxy.aabb.Maxs());
+				nodeChildren[index * 2] = -(leaf + 1);
+			} else{
+				if(top + 2 > stack.length){
+					Dbvt.Node[] newStack = new Dbvt.Node[stack.length * 2];
+					System.arraycopy(stack, 0, newStack, 0, top);
+					stack = newStack;
+					int[] newParents = new int[stackParents.length * 2];
+					System.arraycopy(stackParents, 0, newParents, 0, top);
+					stackParents = newParents;
+				}
+				// pushed second child first so that the first child gets popped (and filled in) first
+				stack[top] = node.childs[1];
+				stackParents[top] = index;
+				top++;
+				stack[top] = node.childs[0];
+				stackParents[top] = index;
+				top++;
+			}
+		}
+
+		return rootIndex;
+	}
+
+	/**
+	 * Adds a node with no children yet
+	 * @return Index of the node
+	 */
+	private int addNode(javax.vecmath.Vector3f min, javax.vecmath.Vector3f max){
+		if((numNodes + 1) * 6 > nodeBounds.length){
+			float[] newBounds = new float[nodeBounds.length * 2];
+			System.arraycopy(nodeBounds, 0, newBounds, 0, numNodes * 6);
+			nodeBounds = newBounds;
+			int[] newChildren = new int[nodeChildren.length * 2];
+			System.arraycopy(nodeChildren, 0, newChildren, 0, numNodes * 2);
+			nodeChildren = newChildren;
+		}
+
+		int index = numNodes++;
+		setBounds(nodeBounds, index, min, max);
+		nodeChildren[index * 2] = Integer.MIN_VALUE;
+		nodeChildren[index * 2 + 1] = Integer.MIN_VALUE;
+		return index;
+	}
+
+	/**
+	 * Adds a leaf, copying its collision object's world transform
+	 * @return Index of the leaf
+	 */
+	private int addLeaf(CollisionObject obj, short group, javax.vecmath.Vector3f min, javax.vecmath.Vector3f max){
+		if(numLeaves == objects.length){
+			int newLength = objects.length * 2;
+
+			CollisionObject[] newObjects = new CollisionObject[newLength];
+			System.arraycopy(objects, 0, newObjects, 0, numLeaves);
+			objects = newObjects;
+
+			short[] newGroups = new short[newLength];
+			System.arraycopy(groups, 0, newGroups, 0, numLeaves);
+			groups = newGroups;
+
+			float[] newBounds = new float[newLength * 6];
+			System.arraycopy(leafBounds, 0, newBounds, 0, numLeaves * 6);
+			leafBounds = newBounds;
+
+			Transform[] newTransforms = new Transform[newLength];
+			System.arraycopy(transforms, 0, newTransforms, 0, numLeaves);
+			transforms = newTransforms;
+		}
+
+		int index = numLeaves++;
+		objects[index] = obj;
+		groups[index] = group;
+		setBounds(leafBounds, index, min, max);
+		if(transforms[index] == null)
+			transforms[index] = new Transform();
+		obj.getWorldTransform(transforms[index]);
+		return index;
+	}
+
+	private static void setBounds(float[] bounds, int index, javax.vecmath.Vector3f min, javax.vecmath.Vector3f max){
+		int i = index * 6;
+		bounds[i] = min.x;
+		bounds[i + 1] = min.y;
+		bounds[i + 2] = min.z;
+		bounds[i + 3] = max.x;
+		bounds[i + 4] = max.y;
+		bounds[i + 5] = max.z;
+	}
+
+	/**
+	 * @return Number of collision objects in this snapshot
+	 */
+	public int size(){
+		return numLeaves;
+	}
+}
@@ -0,0 +1,107 @@
+package com.bitwaffle.spaceguts.physics;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.broadphase.AxisSweep3_32;
+import com.bulletphysics.collision.broadphase.BroadphaseInterface;
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+
+/**
+ * Decides which broadphase the physics world uses.
+ * <ul>
+ * <li>DBVT - a tree of bounding boxes that's updated as things move. Works anywhere, for anything. This is the default.</li>
+ * <li>SWEEP - sweep and prune (AxisSweep3). Keeps everything sorted along each axis, which is cheap when things don't move
+ * much relative to each other. Has to be told how big the world is (anything outside of worldMin/worldMax gets squashed
+ * onto the edges) and can only hold maxHandles things at once.</li>
+ * <li>GRID - a uniform grid (see {@link GridBroadphase}). Good for lots of things that are about the same size and no bigger than cellSize.</li>
+ * </ul>
+ * Everything only DBVT has (tree queries in SpatialQuery and BroadphaseSnapshot, and rebuilding in BulkInsert) falls back
+ * to checking everything one at a time with the others.
+ * <p>
+ * Can be set per level with a &lt;Broadphase&gt; element, which gets read before the world is made (see EntitiesParser.loadBroadphase()), i.e.
+ * <pre>
+ * &lt;Broadphase&gt;
+ *         &lt;type&gt;sweep&lt;/type&gt;
+ *         &lt;worldMin&gt;-80000.0f,-80000.0f,-80000.0f&lt;/worldMin&gt;
+ *         &lt;worldMax&gt;80000.0f,80000.0f,80000.0f&lt;/worldMax&gt;
+ *         &lt;maxHandles&gt;32768&lt;/maxHandles&gt;
+ *         &lt;cellSize&gt;100.0f&lt;/cellSize&gt;
+ * &lt;/Broadphase&gt;
+ * </pre>
+ * Anything left out gets its default value (everything but the override goes back to the defaults when the world is destroyed).
+ */
+public class Broadphases {
+	/**
+	 * Every kind of broadphase there is
+	 */
+	public enum Type{
+		DBVT,
+		SWEEP,
+		GRID
+	}
+
+	/** Default settings for each level, used when a level doesn't set its own */
+	private static final Type DEFAULT_TYPE = Type.DBVT;
+	private static final float DEFAULT_WORLD_SIZE = 100000.0f, DEFAULT_CELL_SIZE = 100.0f;
+	private static final int DEFAULT_MAX_HANDLES = 32768;
+
+	/** Which broadphase to use */
+	public static Type type = DEFAULT_TYPE;
+
+	/** If this isn't null, it gets used no matter what type is set to (for benchmarking every broadphase on the same level) */
+	public static Type override = null;
+
+	/** How far the world goes, for SWEEP */
+	public static Vector3f worldMin = new Vector3f(-DEFAULT_WORLD_SIZE, -DEFAULT_WORLD_SIZE, -DEFAULT_WORLD_SIZE),
+			worldMax = new Vector3f(DEFAULT_WORLD_SIZE, DEFAULT_WORLD_SIZE, DEFAULT_WORLD_SIZE);
+
+	/** Most things that can be in the world at once, for SWEEP */
+	public static int maxHandles = DEFAULT_MAX_HANDLES;
+
+	/** How big each cell is, for GRID */
+	public static float cellSize = DEFAULT_CELL_SIZE;
+
+	/**
+	 * @return Which broadphase will get made
+	 */
+	public static Type current(){
+		return override != null ? override : type;
+	}
+
+	/**
+	 * @return A new broadphase, based on the current settings
+	 */
+	public static BroadphaseInterface create(){
+		switch(current()){
+		case SWEEP:
+			return new AxisSweep3_32(worldMin, worldMax, maxHandles);
+		case GRID:
+			return new GridBroadphase(cellSize);
+		default:
+			return new DbvtBroadphase();
+		}
+	}
+
+	/**
+	 * Puts every setting but the override back to its default (should be called when the world is destroyed)
+	 */
+	public static void reset(){
+		type = DEFAULT_TYPE;
+		worldMin.set(-DEFAULT_WORLD_SIZE, -DEFAULT_WORLD_SIZE, -DEFAULT_WORLD_SIZE);
+		worldMax.set(DEFAULT_WORLD_SIZE, DEFAULT_WORLD_SIZE, DEFAULT_WORLD_SIZE);
+		maxHandles = DEFAULT_MAX_HANDLES;
+		cellSize = DEFAULT_CELL_SIZE;
+	}
+
+	/**
+	 * @param name Name of a broadphase type (case doesn't matter)
+	 * @return The type, or null if there isn't one with that name
+	 */
+	public static Type parse(String name){
+		for(Type t : Type.values()){
+			if(t.name().equalsIgnoreCase(name.trim()))
+				return t;
+		}
+		return null;
+	}
+}
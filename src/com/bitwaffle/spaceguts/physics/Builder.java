@@ -20,12 +20,12 @@ import com.bitwaffle.spaceguts.input.KeyBindings;
 import com.bitwaffle.spaceguts.input.Keys;
 import com.bitwaffle.spaceguts.input.MouseManager;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.Randoms;
 import com.bitwaffle.spaceout.entities.dynamic.Diamond;
 import com.bitwaffle.spaceout.entities.dynamic.Asteroid;
 import com.bitwaffle.spaceout.entities.dynamic.Planet;
 import com.bitwaffle.spaceout.resources.Models;
 import com.bitwaffle.spaceout.resources.Textures;
-import com.bulletphysics.collision.dispatch.CollisionWorld.ClosestRayResultCallback;
 import com.bulletphysics.linearmath.Transform;
 
 /**
@@ -169,15 +169,11 @@ public class Builder {
 	 */
 	private void whatsTheCameraLookingAt() {
 		if (!leftGrabbed && !rightGrabbed) {
-			// check if anything has been grabbed
-			ClosestRayResultCallback cameraRay = camera.rayTestAtCenter();
+			// check if anything has been grabbed (the ray ignores the camera)
+			RayBatch cameraRay = camera.rayTestAtCenter();
 
-			if (cameraRay.hasHit()) {
-				lookingAt = (DynamicEntity) cameraRay.collisionObject
-						.getUserPointer();
-				
-				if(lookingAt == camera)
-					lookingAt = null;
+			if (cameraRay.getHitEntity(0) != null) {
+				lookingAt = cameraRay.getHitEntity(0);
 
 				// grab the entity if the mouse button is down
 				if (!leftGrabbed && MouseManager.button0) {
@@ -220,9 +216,9 @@ public class Builder {
 				leftGrabbed = false;
 			} else {
 				// how far to move what we're looking at
-				float dx = MouseManager.dx * 10;
-				float dy = -MouseManager.dy * 10;
-				float dz = MouseManager.wheel / 10;
+				float dx = MouseManager.tickDX * 10;
+				float dy = -MouseManager.tickDY * 10;
+				float dz = MouseManager.tickWheel / 10;
 
 				// rotate the distance by the camera's rotation
 				Vector3f impulse = QuaternionHelper.rotateVectorByQuaternion(
@@ -259,8 +255,8 @@ public class Builder {
 		if (rightGrabbed) {
 			if (!MouseManager.button1) {
 				rightGrabbed = false;
-			} else if (MouseManager.dx != 0 || MouseManager.dy != 0
-					|| MouseManager.wheel != 0) {
+			} else if (MouseManager.tickDX != 0 || MouseManager.tickDY != 0
+					|| MouseManager.tickWheel != 0) {
 				Transform trans = new Transform();
 				lookingAt.rigidBody.getWorldTransform(trans);
 
@@ -268,8 +264,8 @@ public class Builder {
 				trans.getRotation(rot);
 
 				// how much rotation to apply
-				Vector3f amount = new Vector3f(-MouseManager.dy * 10,
-						MouseManager.dx * 10, MouseManager.wheel / 10);
+				Vector3f amount = new Vector3f(-MouseManager.tickDY * 10,
+						MouseManager.tickDX * 10, MouseManager.tickWheel / 10);
 
 				// rotate amount by the camera's rotation
 				Vector3f impulse = QuaternionHelper.rotateVectorByQuaternion(
@@ -324,7 +320,7 @@ public class Builder {
      * Adds a random sphere to the world, right in front of the camera
      */
     private void addRandomPlanet() {
-            Random randy = new Random();
+            Random randy = Randoms.create();
             float sphereSize = randy.nextInt(200) / 10.0f;
 
             Textures sphereTexture;
@@ -381,7 +377,7 @@ public class Builder {
 	 * Adds a random sphere to the world, right in front of the camera
 	 */
 	private void addRandomAsteroid() {
-		Random randy = new Random();
+		Random randy = Randoms.create();
 		float asteroidSize = randy.nextInt(500) / 10.0f;
 
 		float asteroidX = randy.nextFloat() * 1000.0f;
@@ -408,7 +404,7 @@ public class Builder {
 	 * Adds a random diamond to the world, right in front of the camera
 	 */
 	private void addRandomDiamond() {
-		Random randy = new Random();
+		Random randy = Randoms.create();
 
 		float diamondX = randy.nextFloat() * 10.0f;
 		float diamondY = randy.nextFloat() * 10.0f;
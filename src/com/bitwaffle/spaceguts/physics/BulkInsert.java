@@ -0,0 +1,242 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.vecmath.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bulletphysics.collision.broadphase.Dbvt;
+import com.bulletphysics.collision.broadphase.DbvtAabbMm;
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.util.ObjectArrayList;
+
+/**
+ * Puts a whole bunch of rigid bodies into the world at once.
+ * <p>
+ * Adding a rigid body to a DbvtBroadphase inserts a leaf into its tree, which means walking down the tree
+ * to find the closest leaf and then fixing up every bounding box on the way back up. Doing that for thousands
+ * of bodies in a row (loading a level with a big asteroid field, or an asteroid breaking into a pile of diamonds)
+ * gets slower and slower as the tree grows, and leaves a lopsided tree behind that the broadphase then has to
+ * look through every tick until it gets around to optimizing it.
+ * <p>
+ * Instead, each body in a big enough batch gets its leaf inserted into an empty tree (which is free), then
+ * every leaf (old and new) is built into one balanced tree top-down, all at once.
+ * Small batches, or batches that are small compared to the tree that's already there, just get inserted
+ * one at a time since rebuilding the whole tree would cost more than the inserts.
+ * The bodies end up in the world's collision object array in the same order as if they'd been added one at a time.
+ */
+public class BulkInsert {
+	/** Batches smaller than this get inserted one at a time */
+	public static int minBatch = 64;
+
+	/** Batches also have to be at least this much of what's already in the tree (i.e. 0.25 is a quarter) to rebuild it */
+	public static float rebuildFraction = 0.25f;
+
+	/** Leaves being built into the tree */
+	private static ObjectArrayList<Dbvt.Node> leaves = new ObjectArrayList<Dbvt.Node>();
+
+	/** Every leaf going into the tree, where the middle of each one is (x,y,z), and the order they're in while building */
+	private static Dbvt.Node[] nodes = new Dbvt.Node[256];
+	private static float[] centers = new float[256 * 3];
+	private static int[] order = new int[256];
+
+	/** Number of times the tree's been rebuilt */
+	private static int rebuilds = 0;
+
+	/**
+	 * Adds every entity's rigid body to the dynamics world (see DynamicEntity.addToWorld()).
+	 * None of the entities can be in the world already.
+	 * @param ents Entities to add, in the order they should be added
+	 */
+	public static void addAll(List<? extends DynamicEntity> ents){
+		if(ents.isEmpty())
+			return;
+
+		Dbvt tree = dynamicTree();
+		if(tree == null || !shouldRebuild(ents.size(), tree.leaves)){
+			for(int i = 0; i < ents.size(); i++)
+				ents.get(i).addToWorld();
+			return;
+		}
+
+		// with the old tree taken out, each new leaf just becomes the root so nothing gets walked (nothing else can touch the tree until it's rebuilt)
+		Dbvt.Node root = tree.root;
+		for(int i = 0; i < ents.size(); i++){
+			tree.root = null;
+			ents.get(i).addToWorld();
+			leaves.add(tree.root);
+		}
+		if(root != null)
+			Dbvt.extractLeaves(root, leaves);
+
+		int count = leaves.size();
+		if(nodes.length < count){
+			int size = Math.max(count, nodes.length * 2);
+			nodes = new Dbvt.Node[size];
+			centers = new float[size * 3];
+			order = new int[size];
+		}
+		for(int i = 0; i < count; i++){
+			Dbvt.Node leaf = leaves.getQuick(i);
+			Vector3f min = leaf.volume.Mins(), max = leaf.volume.Maxs();
+			nodes[i] = leaf;
+			centers[i * 3] = (min.x + max.x) * 0.5f;
+			centers[i * 3 + 1] = (min.y + max.y) * 0.5f;
+			centers[i * 3 + 2] = (min.z + max.z) * 0.5f;
+			order[i] = i;
+		}
+		leaves.clear();
+
+		// the old tree's inner nodes just get thrown away
+		tree.root = build(0, count);
+		tree.root.parent = null;
+		Arrays.fill(nodes, 0, count, null);
+		rebuilds++;
+	}
+
+	/**
+	 * @param batch Number of bodies being added
+	 * @param existing Number of leaves already in the tree
+	 * @return Whether or not building the tree from scratch is worth it
+	 */
+	private static boolean shouldRebuild(int batch, int existing){
+		return batch >= minBatch && batch >= existing * rebuildFraction;
+	}
+
+	/**
+	 * @return Tree that new rigid bodies go into, or null if the world isn't using a DbvtBroadphase
+	 */
+	private static Dbvt dynamicTree(){
+		if(!(Physics.broadphase instanceof DbvtBroadphase))
+			return null;
+		return ((DbvtBroadphase) Physics.broadphase).sets[DbvtBroadphase.DYNAMIC_SET];
+	}
+
+	/**
+	 * Builds a tree top-down out of some of the leaves in the order array. Each node's leaves get split in half
+	 * along whichever axis their middles are the most spread out on, so the tree ends up as shallow as it can be.
+	 * (Dbvt has its own optimizeTopDown(), but it builds groups of up to 128 leaves bottom-up by checking every pair,
+	 * which takes longer than just inserting them one at a time.)
+	 * @param from First leaf to use
+	 * @param to One past the last leaf to use
+	 * @return Root of the new tree
+	 */
+	private static Dbvt.Node build(int from, int to){
+		if(to - from == 1)
+			return nodes[order[from]];
+
+		// find out which way the leaves are the most spread out
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+		for(int i = from; i < to; i++){
+			int c = order[i] * 3;
+			minX = Math.min(minX, centers[c]);
+			maxX = Math.max(maxX, centers[c]);
+			minY = Math.min(minY, centers[c + 1]);
+			maxY = Math.max(maxY, centers[c + 1]);
+			minZ = Math.min(minZ, centers[c + 2]);
+			maxZ = Math.max(maxZ, centers[c + 2]);
+		}
+		float spreadX = maxX - minX, spreadY = maxY - minY, spreadZ = maxZ - minZ;
+		int axis;
+		if(spreadX >= spreadY && spreadX >= spreadZ)
+			axis = 0;
+		else if(spreadY >= spreadZ)
+			axis = 1;
+		else
+			axis = 2;
+
+		// everything before the middle ends up on one side, everything after on the other
+		int middle = (from + to) >>> 1;
+		select(from, to - 1, middle, axis);
+
+		Dbvt.Node left = build(from, middle);
+		Dbvt.Node right = build(middle, to);
+
+		Dbvt.Node parent = new Dbvt.Node();
+		parent.childs[0] = left;
+		parent.childs[1] = right;
+		left.parent = parent;
+		right.parent = parent;
+		DbvtAabbMm.Merge(left.volume, right.volume, parent.volume);
+		return parent;
+	}
+
+	/**
+	 * Moves things around in the order array so that the leaf at k is the one that would be there if it was sorted
+	 * along an axis, with everything before it less than or equal and everything after it greater than or equal
+	 * (this is quite a bit faster than sorting the whole thing)
+	 * @param left First index to look at
+	 * @param right Last index to look at
+	 * @param k Index to find
+	 * @param axis 0 for x, 1 for y, 2 for z
+	 */
+	private static void select(int left, int right, int k, int axis){
+		while(right > left){
+			// middle of three for the pivot, so sorted input doesn't make this slow
+			int mid = (left + right) >>> 1;
+			if(key(mid, axis) < key(left, axis))
+				swap(mid, left);
+			if(key(right, axis) < key(left, axis))
+				swap(right, left);
+			if(key(right, axis) < key(mid, axis))
+				swap(right, mid);
+			float pivot = key(mid, axis);
+
+			int i = left, j = right;
+			while(i <= j){
+				while(key(i, axis) < pivot)
+					i++;
+				while(key(j, axis) > pivot)
+					j--;
+				if(i <= j){
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+
+			if(k <= j)
+				right = j;
+			else if(k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	/**
+	 * @return Where the middle of the leaf at index i in the order array is on an axis
+	 */
+	private static float key(int i, int axis){
+		return centers[order[i] * 3 + axis];
+	}
+
+	/**
+	 * Swaps two leaves in the order array
+	 */
+	private static void swap(int i, int j){
+		int temp = order[i];
+		order[i] = order[j];
+		order[j] = temp;
+	}
+
+	/**
+	 * @return Number of times the tree's been rebuilt by addAll()
+	 */
+	public static int getRebuilds(){
+		return rebuilds;
+	}
+
+	/**
+	 * Starts the count of rebuilds over (should be called when the world is destroyed)
+	 */
+	public static void reset(){
+		leaves.clear();
+		nodes = new Dbvt.Node[256];
+		centers = new float[256 * 3];
+		order = new int[256];
+		rebuilds = 0;
+	}
+}
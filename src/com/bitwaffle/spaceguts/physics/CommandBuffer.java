@@ -0,0 +1,98 @@
+package com.bitwaffle.spaceguts.physics;
+
+/**
+ * A list of commands deferred by one worker thread during the {@link UpdateStage}.
+ * Every command is tagged with the index of the entity that deferred it so that commands from
+ * every worker can be put back in order.
+ */
+class CommandBuffer {
+	/** The commands */
+	private Runnable[] commands = new Runnable[16];
+
+	/** Index of the entity that deferred each command */
+	private int[] keys = new int[16];
+
+	/** Number of commands */
+	private int size = 0;
+
+	/** Index of the entity currently being updated by the worker that owns this buffer */
+	int currentKey = 0;
+
+	/**
+	 * Adds a command, tagged with currentKey
+	 * @param command Command to add
+	 */
+	void add(Runnable command){
+		add(command, currentKey);
+	}
+
+	/**
+	 * Adds a command with the given key
+	 */
+	private void add(Runnable command, int key){
+		if(size == commands.length){
+			Runnable[] newCommands = new Runnable[size * 2];
+			int[] newKeys = new int[size * 2];
+			System.arraycopy(commands, 0, newCommands, 0, size);
+			System.arraycopy(keys, 0, newKeys, 0, size);
+			commands = newCommands;
+			keys = newKeys;
+		}
+
+		commands[size] = command;
+		keys[size] = key;
+		size++;
+	}
+
+	/**
+	 * Adds every command from another buffer to this one
+	 * @param other Buffer to add commands from
+	 */
+	void addAll(CommandBuffer other){
+		for(int i = 0; i < other.size; i++)
+			add(other.commands[i], other.keys[i]);
+	}
+
+	/**
+	 * Sorts commands by key. This is an insertion sort, so commands with the same key stay in the order they were added.
+	 * There's usually only a handful of commands, so this is plenty fast.
+	 */
+	void sort(){
+		for(int i = 1; i < size; i++){
+			Runnable command = commands[i];
+			int key = keys[i];
+			int j = i - 1;
+			while(j >= 0 && keys[j] > key){
+				commands[j + 1] = commands[j];
+				keys[j + 1] = keys[j];
+				j--;
+			}
+			commands[j + 1] = command;
+			keys[j + 1] = key;
+		}
+	}
+
+	/**
+	 * @return Number of commands in the buffer
+	 */
+	int size(){
+		return size;
+	}
+
+	/**
+	 * @param index Index of command
+	 * @return Command at index
+	 */
+	Runnable get(int index){
+		return commands[index];
+	}
+
+	/**
+	 * Gets rid of every command
+	 */
+	void clear(){
+		for(int i = 0; i < size; i++)
+			commands[i] = null;
+		size = 0;
+	}
+}
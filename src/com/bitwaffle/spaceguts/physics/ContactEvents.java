@@ -0,0 +1,133 @@
+package com.bitwaffle.spaceguts.physics;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
+import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+
+/**
+ * Turns Bullet's contact manifolds into begin-contact events.
+ * Handlers are kept in a table indexed by the collision groups (from {@link CollisionTypes})
+ * of the two bodies, so pairs that nobody cares about are skipped without even
+ * looking at their contact points.
+ * 
+ * Each pair of bodies gets at most one event per tick, and only on the first tick that they touch.
+ */
+public class ContactEvents {
+	/** Number of possible collision groups (one for each bit in a short) */
+	private static final int NUM_GROUPS = 16;
+	
+	/** Handlers for each pair of groups, indexed by the bit number of each group */
+	private static ContactHandler[][] handlers = new ContactHandler[NUM_GROUPS][NUM_GROUPS];
+	
+	/** Pairs that are touching this tick and pairs that were touching last tick */
+	private static ContactPairSet touching = new ContactPairSet(256), touchingLastTick = new ContactPairSet(256);
+	
+	/**
+	 * Registers a handler for when something from one group starts touching something from another.
+	 * Only one handler can be registered for each pair of groups; registering another one replaces it.
+	 * @param groupA First group (see {@link CollisionTypes})
+	 * @param groupB Second group
+	 * @param handler Handler to call; its first argument will always be from groupA
+	 */
+	public static void register(short groupA, short groupB, ContactHandler handler){
+		handlers[groupIndex(groupA)][groupIndex(groupB)] = handler;
+	}
+	
+	/**
+	 * Gets rid of every handler
+	 */
+	public static void clearHandlers(){
+		for(int i = 0; i < NUM_GROUPS; i++){
+			for(int j = 0; j < NUM_GROUPS; j++)
+				handlers[i][j] = null;
+		}
+	}
+	
+	/**
+	 * Forgets about which pairs are touching (should be called when the world is destroyed)
+	 */
+	public static void reset(){
+		touching.clear();
+		touchingLastTick.clear();
+	}
+	
+	/**
+	 * Goes through every contact manifold and fires off any new contacts.
+	 * Should be called once per physics tick.
+	 * @param dispatcher Dispatcher to get manifolds from
+	 */
+	public static void process(CollisionDispatcher dispatcher){
+		// this tick's pairs become last tick's pairs
+		ContactPairSet tmp = touchingLastTick;
+		touchingLastTick = touching;
+		touching = tmp;
+		touching.clear();
+		
+		int numManifolds = dispatcher.getNumManifolds();
+		for(int i = 0; i < numManifolds; i++){
+			PersistentManifold manifold = dispatcher.getManifoldByIndexInternal(i);
+			CollisionObject objA = (CollisionObject) manifold.getBody0();
+			CollisionObject objB = (CollisionObject) manifold.getBody1();
+			
+			BroadphaseProxy proxyA = objA.getBroadphaseHandle();
+			BroadphaseProxy proxyB = objB.getBroadphaseHandle();
+			// one of the objects got removed from the world
+			if(proxyA == null || proxyB == null)
+				continue;
+			
+			int groupA = groupIndex(proxyA.collisionFilterGroup);
+			int groupB = groupIndex(proxyB.collisionFilterGroup);
+			if(groupA >= NUM_GROUPS || groupB >= NUM_GROUPS)
+				continue;
+			
+			// find a handler, and whether the objects need to be swapped to match the order it was registered in
+			boolean swap = false;
+			ContactHandler handler = handlers[groupA][groupB];
+			if(handler == null){
+				handler = handlers[groupB][groupA];
+				swap = true;
+			}
+			if(handler == null || !isPenetrating(manifold))
+				continue;
+			
+			// only one event per pair per tick, and only if they weren't touching last tick
+			long key = ContactPairSet.pairKey(proxyA.uniqueId, proxyB.uniqueId);
+			if(!touching.add(key) || touchingLastTick.contains(key))
+				continue;
+			
+			DynamicEntity entA = (DynamicEntity) objA.getUserPointer();
+			DynamicEntity entB = (DynamicEntity) objB.getUserPointer();
+			
+			// things that are about to be removed don't get to hit anything else
+			if(entA.removeFlag || entB.removeFlag)
+				continue;
+			
+			if(swap)
+				handler.beginContact(entB, entA);
+			else
+				handler.beginContact(entA, entB);
+		}
+	}
+	
+	/**
+	 * @param manifold Manifold to check
+	 * @return Whether or not any of the points in the manifold are actually touching
+	 */
+	private static boolean isPenetrating(PersistentManifold manifold){
+		for(int j = 0; j < manifold.getNumContacts(); j++){
+			if(manifold.getContactPoint(j).getDistance() < 0.0f)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @param group Collision group (see {@link CollisionTypes})
+	 * @return Which bit the group is (if more than one bit is set, the lowest one is used), or 32 if it's empty
+	 */
+	private static int groupIndex(short group){
+		return Integer.numberOfTrailingZeros(group & 0xFFFF);
+	}
+}
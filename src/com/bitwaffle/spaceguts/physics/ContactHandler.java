@@ -0,0 +1,17 @@
+package com.bitwaffle.spaceguts.physics;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+
+/**
+ * Something that wants to know when two entities start touching.
+ * Handlers are registered with {@link ContactEvents} for a pair of groups from {@link CollisionTypes}.
+ */
+public interface ContactHandler {
+	/**
+	 * Called once when two entities start touching.
+	 * Not called again for the same two entities until they've been apart for at least one tick.
+	 * @param a Entity from the first group the handler was registered with
+	 * @param b Entity from the second group the handler was registered with
+	 */
+	public void beginContact(DynamicEntity a, DynamicEntity b);
+}
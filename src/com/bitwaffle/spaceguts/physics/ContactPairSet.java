@@ -0,0 +1,99 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.Arrays;
+
+/**
+ * A set of pairs of broadphase proxies, stored as longs in an open-addressed table
+ * so that adding and checking pairs never allocates anything (unless the table has to grow).
+ */
+class ContactPairSet {
+	/** Marks an empty slot (keys are made from non-negative ids, so they're never negative) */
+	private static final long EMPTY = -1L;
+	
+	/** The table */
+	private long[] keys;
+	
+	/** How many keys are in the table */
+	private int size;
+	
+	/**
+	 * @param capacity Initial capacity (rounded up to a power of two)
+	 */
+	ContactPairSet(int capacity){
+		int cap = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+		keys = new long[cap];
+		Arrays.fill(keys, EMPTY);
+	}
+	
+	/**
+	 * Makes a key for a pair of ids. The order of the ids doesn't matter.
+	 */
+	static long pairKey(int idA, int idB){
+		int lo = Math.min(idA, idB), hi = Math.max(idA, idB);
+		return ((long) lo << 32) | (hi & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * @param key Key to add
+	 * @return True if the key wasn't in the set already
+	 */
+	boolean add(long key){
+		if((size + 1) * 2 > keys.length)
+			grow();
+		
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while(keys[i] != EMPTY){
+			if(keys[i] == key)
+				return false;
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		size++;
+		return true;
+	}
+	
+	/**
+	 * @param key Key to look for
+	 * @return Whether or not the key is in the set
+	 */
+	boolean contains(long key){
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while(keys[i] != EMPTY){
+			if(keys[i] == key)
+				return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+	
+	/**
+	 * Empties the set
+	 */
+	void clear(){
+		if(size > 0){
+			Arrays.fill(keys, EMPTY);
+			size = 0;
+		}
+	}
+	
+	/**
+	 * Doubles the size of the table
+	 */
+	private void grow(){
+		long[] old = keys;
+		keys = new long[old.length * 2];
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+		for(long key : old){
+			if(key != EMPTY)
+				add(key);
+		}
+	}
+	
+	private static int hash(long key){
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
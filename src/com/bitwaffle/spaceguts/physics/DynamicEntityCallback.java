@@ -1,7 +1,6 @@
 package com.bitwaffle.spaceguts.physics;
 
-import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.ArrayList;
 
 import javax.vecmath.Quat4f;
 
@@ -10,16 +9,19 @@ import org.lwjgl.util.vector.Vector3f;
 import com.bitwaffle.spaceguts.audio.SoundSource;
 import com.bitwaffle.spaceguts.entities.DynamicEntity;
 import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.entities.TransformStore;
+import com.bitwaffle.spaceguts.input.MouseManager;
+import com.bitwaffle.spaceguts.physics.PhysicsProfiler.Phase;
+import com.bitwaffle.spaceguts.util.VectorHelper;
 import com.bitwaffle.spaceout.entities.dynamic.Missile;
 import com.bitwaffle.spaceout.interfaces.Health;
 import com.bitwaffle.spaceout.interfaces.Projectile;
 import com.bitwaffle.spaceout.resources.Sounds;
 import com.bulletphysics.collision.dispatch.CollisionObject;
-import com.bulletphysics.collision.narrowphase.ManifoldPoint;
-import com.bulletphysics.collision.narrowphase.PersistentManifold;
 import com.bulletphysics.dynamics.DynamicsWorld;
 import com.bulletphysics.dynamics.InternalTickCallback;
 import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
 
 /**
  * This handles updating EVERYTHING in the game. At the end of every physics tick,
@@ -29,32 +31,69 @@ import com.bulletphysics.linearmath.Transform;
  * @author TranquilMarmot
  */
 public class DynamicEntityCallback extends InternalTickCallback {
+	/** Entities to update this tick, split up by whether or not they can be updated in parallel (see UpdateStage) */
+	private final ArrayList<DynamicEntity> parallelUpdates = new ArrayList<DynamicEntity>(), serialUpdates = new ArrayList<DynamicEntity>();
+	
 	@Override
 	public void internalTick(DynamicsWorld world, float timeStep) {
-		Iterator<CollisionObject> it = world.getCollisionObjectArray()
-				.iterator();
-		while (it.hasNext()) {
-			CollisionObject c = null;
-			try {
-				c = it.next();
-			} catch (NoSuchElementException e) {
-				//FIXME what causes this?
-				it = world.getCollisionObjectArray().iterator();
-			}
-
-			if (c != null) {
-				processEntity(c, timeStep);
-			}
-		}
+		/*
+		 * Nothing goes in to or comes out of the world during the tick; anything spawned
+		 * gets held on to by the SpawnBuffer, and anything with its removeFlag set gets skipped
+		 * and handed to the SpawnBuffer to despawn. Both get taken care of all at once at the end of the tick.
+		 */
+		SpawnBuffer.begin();
+		
+		// this tick's transforms become last tick's, every entity gets its new one in syncEntity()
+		long start = PhysicsProfiler.start();
+		Entities.dynamicEntities.getTransforms().startTick(Entities.dynamicEntities.size());
+		
+		ObjectArrayList<CollisionObject> objects = world.getCollisionObjectArray();
+		int numObjects = objects.size();
+		for(int i = 0; i < numObjects; i++)
+			processEntity(objects.getQuick(i), timeStep);
+		start = PhysicsProfiler.lap(Phase.SYNC, start);
+		
+		// everything that only touches itself gets updated in parallel...
+		UpdateStage.update(parallelUpdates, timeStep);
+		parallelUpdates.clear();
+		start = PhysicsProfiler.lap(Phase.PARALLEL_UPDATES, start);
+		
+		// ...then everything else gets updated one at a time
+		for(int i = 0; i < serialUpdates.size(); i++)
+			serialUpdates.get(i).update(timeStep);
+		serialUpdates.clear();
+		start = PhysicsProfiler.lap(Phase.SERIAL_UPDATES, start);
 		
-		checkForCollisions();
+		// move any shots that don't have rigid bodies
+		Projectiles.update(world, timeStep);
+		start = PhysicsProfiler.lap(Phase.PROJECTILES, start);
+		
+		ContactEvents.process(Physics.dispatcher);
+		start = PhysicsProfiler.lap(Phase.CONTACTS, start);
+		
+		// move drifting entities and re-check everyone's level of detail
+		PhysicsLOD.update(timeStep);
+		start = PhysicsProfiler.lap(Phase.LOD, start);
 		
 		// this is a very important call! Updates the camera, skybox, and any non-dynamic entities
 		Entities.updateAll(timeStep);
+		start = PhysicsProfiler.lap(Phase.UPDATE_ALL, start);
+		
+		// everything's done being updated, so anything that was spawned or removed this tick can go in/come out now
+		SpawnBuffer.apply(world);
+		Entities.applyPending();
+		PhysicsProfiler.end(Phase.SPAWNS, start);
+		
+		// this tick's used up all the mouse movement it was given
+		MouseManager.endTick();
 	}
 
+	/** Scratch objects for syncing entities with their rigid bodies, so nothing gets allocated every tick */
+	private final Transform syncTransform = new Transform();
+	private final Quat4f syncRotation = new Quat4f();
+
 	/**
-	 * Updates an entity's location and then performs any necessary logic
+	 * Updates an entity's location and then queues it up to be updated (unless its removeFlag is set, then it's handed to the SpawnBuffer to remove)
 	 * 
 	 * @param c
 	 *            Collision object for the entity being updated
@@ -65,59 +104,79 @@ public class DynamicEntityCallback extends InternalTickCallback {
 		DynamicEntity ent = (DynamicEntity) c.getUserPointer();
 
 		if (ent.removeFlag) {
-			Physics.dynamicsWorld.removeCollisionObject(c);
-			Entities.dynamicEntities.remove(ent);
-		} else {
-			// get the rigid body's world transform
-			Transform trans = new Transform();
-			ent.rigidBody.getMotionState().getWorldTransform(trans);
-
-			// set this entity's location
-			javax.vecmath.Vector3f origin = trans.origin;
-			ent.location.set(origin.x, origin.y, origin.z);
-
-			// set this entity's rotation
-			Quat4f rot = new Quat4f();
-			trans.getRotation(rot);
-			ent.rotation.set(rot.x, rot.y, rot.z, rot.w);
-
-			ent.update(timeStep);
+			SpawnBuffer.despawn(ent);
+			return;
 		}
+		
+		syncEntity(ent);
+		
+		if(ent.canUpdateInParallel())
+			parallelUpdates.add(ent);
+		else
+			serialUpdates.add(ent);
 	}
 	
-	private static void checkForCollisions(){
-		for(int i = 0; i < Physics.dispatcher.getNumManifolds(); i++){
-			PersistentManifold contactManifold = Physics.dispatcher.getManifoldByIndexInternal(i);
-			CollisionObject objA = (CollisionObject) contactManifold.getBody0();
-			CollisionObject objB = (CollisionObject) contactManifold.getBody1();
-			
-			for(int j = 0; j < contactManifold.getNumContacts(); j++){
-				ManifoldPoint point = contactManifold.getContactPoint(j);
-				if(point.getDistance() < 0.0f){
-					//Vector3f ptA = new Vector3f(), ptB = new Vector3f(), normalOnB;
-					//point.getPositionWorldOnA(ptA);
-					//point.getPositionWorldOnB(ptB);
-					//normalOnB = point.normalWorldOnB;
-					
-					DynamicEntity entA = (DynamicEntity) objA.getUserPointer();
-					DynamicEntity entB = (DynamicEntity) objB.getUserPointer();
-					
-					if(entA instanceof Projectile && entB instanceof Health)
-						bulletHealthCollision((Projectile) entA, (Health) entB);
-					else if(entB instanceof Projectile && entA instanceof Health)
-						bulletHealthCollision((Projectile) entB, (Health) entA);
-					
-					/*
-					System.out.println("Contact point " + j + ":\nA: " + entA.type + " " + ptA.x + " " + ptA.y + " " + ptA.z);
-					System.out.println("B: " + entB.type + " " + ptB.x + " " + ptB.y + " " + ptB.z);
-					System.out.println("Normal on B: " + normalOnB.x + " " + normalOnB.y + " " + normalOnB.z);
-					*/
-				}
+	/**
+	 * Copies an entity's rigid body transform into its location and rotation, and into
+	 * the {@link TransformStore} if the entity is in Entities.dynamicEntities (the store already
+	 * has its last tick's transform, see TransformStore.startTick()). Anything else gets its
+	 * last tick's transform saved on the entity instead.
+	 * This reuses the same scratch objects every time, so it doesn't allocate anything.
+	 * @param ent Entity to sync
+	 */
+	public void syncEntity(DynamicEntity ent){
+		int index = Entities.dynamicEntities.indexOf(ent);
+		
+		// keep the last tick's transform around so the renderer can interpolate
+		if(index == -1)
+			ent.savePreviousTransform();
+		
+		// get the rigid body's world transform (the motion state isn't synced until the end of the step)
+		ent.rigidBody.getWorldTransform(syncTransform);
+
+		// set this entity's location and rotation
+		VectorHelper.fromTransform(syncTransform, syncRotation, ent.location, ent.rotation);
+		
+		if(index != -1)
+			Entities.dynamicEntities.getTransforms().setCurrent(index, ent.location.x, ent.location.y, ent.location.z,
+					ent.rotation.x, ent.rotation.y, ent.rotation.z, ent.rotation.w);
+	}
+	
+	/**
+	 * Registers the handlers for things hurting each other when they collide.
+	 * Anything in the PROJECTILE group has to be a {@link Projectile}, and asteroids
+	 * (in the PLANET group) act as projectiles too.
+	 */
+	public static void registerContactHandlers(){
+		// bullets and missiles hitting asteroids and planets
+		ContactEvents.register(CollisionTypes.PROJECTILE, CollisionTypes.PLANET, new ContactHandler(){
+			@Override
+			public void beginContact(DynamicEntity projectile, DynamicEntity target) {
+				if(target instanceof Health)
+					projectileHit((Projectile) projectile, (Health) target);
 			}
-		}
+		});
+		
+		// asteroids hitting each other, planets and the player
+		ContactHandler rockHit = new ContactHandler(){
+			@Override
+			public void beginContact(DynamicEntity a, DynamicEntity b) {
+				if(a instanceof Projectile && b instanceof Health)
+					projectileHit((Projectile) a, (Health) b);
+				else if(b instanceof Projectile && a instanceof Health)
+					projectileHit((Projectile) b, (Health) a);
+			}
+		};
+		ContactEvents.register(CollisionTypes.PLANET, CollisionTypes.PLANET, rockHit);
+		ContactEvents.register(CollisionTypes.PLANET, CollisionTypes.SHIP, rockHit);
 	}
 	
-	private static void bulletHealthCollision(Projectile bullet, Health health){
+	/**
+	 * Hurts something that got hit by a projectile (unless it's whoever fired the projectile)
+	 * @param bullet Projectile that hit something
+	 * @param health What got hit
+	 */
+	static void projectileHit(Projectile bullet, Health health){
 		if(bullet.getOwner() != health)
 			health.hurt(bullet.getDamage());
 		
@@ -0,0 +1,235 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.broadphase.BroadphaseInterface;
+import com.bulletphysics.collision.broadphase.BroadphaseNativeType;
+import com.bulletphysics.collision.broadphase.BroadphasePair;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
+import com.bulletphysics.collision.broadphase.Dispatcher;
+import com.bulletphysics.collision.broadphase.HashedOverlappingPairCache;
+import com.bulletphysics.collision.broadphase.OverlappingPairCache;
+import com.bulletphysics.util.ObjectArrayList;
+
+/**
+ * A broadphase that splits space up into a uniform grid of cubes and only checks things that share a cube.
+ * Cubes are hashed, so the grid goes on forever and empty space doesn't cost anything.
+ * <p>
+ * Every tick, each proxy gets put into every cell its bounding box touches (as one long, the cell's hash
+ * in the top half and the proxy's index in the bottom half) and all of them get sorted, so everything in the
+ * same cell ends up next to each other. A pair that shares more than one cell only gets checked in the cell
+ * that the corner of their overlap is in, so it isn't found twice.
+ * Anything big enough to touch more than MAX_CELLS cells (i.e. planets) is checked against everything instead.
+ * <p>
+ * This works best when most things are about the same size and no bigger than a cell, like a field of asteroids.
+ * Nothing is kept between ticks except the pairs, so there's no tree to get lopsided, but every proxy gets
+ * re-hashed every tick whether it moved or not.
+ */
+public class GridBroadphase extends BroadphaseInterface {
+	/** Proxies that would be in more cells than this get checked against everything instead */
+	public static final int MAX_CELLS = 64;
+
+	/**
+	 * A proxy with its bounding box
+	 */
+	static class GridProxy extends BroadphaseProxy {
+		final Vector3f min = new Vector3f(), max = new Vector3f();
+
+		/** Where this is in the list of proxies */
+		int index;
+
+		/** Whether or not this was too big for the grid last tick */
+		boolean large;
+
+		GridProxy(Object userPtr, short collisionFilterGroup, short collisionFilterMask, Object multiSapProxy){
+			super(userPtr, collisionFilterGroup, collisionFilterMask, multiSapProxy);
+		}
+	}
+
+	/** Size of each cell, and one over that */
+	private final float cellSize, inverseCellSize;
+
+	/** Every pair of proxies whose bounding boxes overlap */
+	private final OverlappingPairCache pairCache = new HashedOverlappingPairCache();
+
+	/** Every proxy, and the ones that are too big for the grid */
+	private final ArrayList<GridProxy> proxies = new ArrayList<GridProxy>(), large = new ArrayList<GridProxy>();
+
+	/** Cell hash and proxy index for every cell each proxy is in */
+	private long[] entries = new long[1024];
+	private int numEntries = 0;
+
+	/** ID to give the next proxy (the pair cache needs every proxy to have a different one) */
+	private int nextId = 1;
+
+	/**
+	 * @param cellSize How big each cell is on every axis
+	 */
+	public GridBroadphase(float cellSize){
+		this.cellSize = cellSize;
+		this.inverseCellSize = 1.0f / cellSize;
+	}
+
+	@Override
+	public BroadphaseProxy createProxy(Vector3f aabbMin, Vector3f aabbMax, BroadphaseNativeType shapeType, Object userPtr, short collisionFilterGroup, short collisionFilterMask, Dispatcher dispatcher, Object multiSapProxy){
+		GridProxy proxy = new GridProxy(userPtr, collisionFilterGroup, collisionFilterMask, multiSapProxy);
+		proxy.uniqueId = nextId++;
+		proxy.min.set(aabbMin);
+		proxy.max.set(aabbMax);
+		proxy.index = proxies.size();
+		proxies.add(proxy);
+		return proxy;
+	}
+
+	@Override
+	public void destroyProxy(BroadphaseProxy proxy, Dispatcher dispatcher){
+		GridProxy gridProxy = (GridProxy) proxy;
+		pairCache.removeOverlappingPairsContainingProxy(proxy, dispatcher);
+
+		// move the last proxy into this one's spot
+		GridProxy last = proxies.remove(proxies.size() - 1);
+		if(last != gridProxy){
+			last.index = gridProxy.index;
+			proxies.set(last.index, last);
+		}
+	}
+
+	@Override
+	public void setAabb(BroadphaseProxy proxy, Vector3f aabbMin, Vector3f aabbMax, Dispatcher dispatcher){
+		GridProxy gridProxy = (GridProxy) proxy;
+		gridProxy.min.set(aabbMin);
+		gridProxy.max.set(aabbMax);
+	}
+
+	@Override
+	public void calculateOverlappingPairs(Dispatcher dispatcher){
+		// get rid of pairs that aren't overlapping anymore (removing moves the last pair into the removed one's spot, so this goes backwards)
+		ObjectArrayList<BroadphasePair> pairs = pairCache.getOverlappingPairArray();
+		for(int i = pairs.size() - 1; i >= 0; i--){
+			BroadphasePair pair = pairs.getQuick(i);
+			if(!overlaps((GridProxy) pair.pProxy0, (GridProxy) pair.pProxy1))
+				pairCache.removeOverlappingPair(pair.pProxy0, pair.pProxy1, dispatcher);
+		}
+
+		fillCells();
+
+		// everything in the same cell gets checked against everything else in it
+		int runStart = 0;
+		while(runStart < numEntries){
+			int cell = (int) (entries[runStart] >>> 32);
+			int runEnd = runStart + 1;
+			while(runEnd < numEntries && (int) (entries[runEnd] >>> 32) == cell)
+				runEnd++;
+
+			for(int i = runStart; i < runEnd; i++){
+				GridProxy a = proxies.get((int) entries[i]);
+				for(int j = i + 1; j < runEnd; j++){
+					GridProxy b = proxies.get((int) entries[j]);
+					// two different cells can have the same hash, so a proxy can show up in the same run twice
+					if(a != b && overlaps(a, b) && ownerCell(a, b) == cell)
+						pairCache.addOverlappingPair(a, b);
+				}
+			}
+			runStart = runEnd;
+		}
+
+		// big things get checked against everything
+		for(int i = 0; i < large.size(); i++){
+			GridProxy a = large.get(i);
+			for(int j = 0; j < proxies.size(); j++){
+				GridProxy b = proxies.get(j);
+				// pairs of big things only get checked once
+				if(b == a || (b.large && b.index < a.index))
+					continue;
+				if(overlaps(a, b))
+					pairCache.addOverlappingPair(a, b);
+			}
+		}
+	}
+
+	/**
+	 * Puts every proxy into every cell it touches, then sorts them all by cell
+	 */
+	private void fillCells(){
+		numEntries = 0;
+		large.clear();
+
+		for(int i = 0; i < proxies.size(); i++){
+			GridProxy proxy = proxies.get(i);
+			int minX = cell(proxy.min.x), minY = cell(proxy.min.y), minZ = cell(proxy.min.z);
+			int maxX = cell(proxy.max.x), maxY = cell(proxy.max.y), maxZ = cell(proxy.max.z);
+
+			long numCells = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+			proxy.large = numCells > MAX_CELLS;
+			if(proxy.large){
+				large.add(proxy);
+				continue;
+			}
+
+			if(numEntries + numCells > entries.length)
+				entries = Arrays.copyOf(entries, Math.max(entries.length * 2, numEntries + (int) numCells));
+
+			for(int x = minX; x <= maxX; x++)
+				for(int y = minY; y <= maxY; y++)
+					for(int z = minZ; z <= maxZ; z++)
+						entries[numEntries++] = ((long) hash(x, y, z) << 32) | i;
+		}
+
+		Arrays.sort(entries, 0, numEntries);
+	}
+
+	/**
+	 * @return Which cell a coordinate is in on one axis
+	 */
+	private int cell(float coordinate){
+		return (int) Math.floor(coordinate * inverseCellSize);
+	}
+
+	/**
+	 * @return Hash of a cell
+	 */
+	private static int hash(int x, int y, int z){
+		return (x * 73856093) ^ (y * 19349663) ^ (z * 83492791);
+	}
+
+	/**
+	 * @return Hash of the cell that the minimum corner of two proxies' overlap is in (the only cell the pair gets reported from)
+	 */
+	private int ownerCell(GridProxy a, GridProxy b){
+		return hash(cell(Math.max(a.min.x, b.min.x)), cell(Math.max(a.min.y, b.min.y)), cell(Math.max(a.min.z, b.min.z)));
+	}
+
+	/**
+	 * @return Whether or not two proxies' bounding boxes overlap
+	 */
+	private static boolean overlaps(GridProxy a, GridProxy b){
+		return a.min.x <= b.max.x && a.max.x >= b.min.x
+			&& a.min.y <= b.max.y && a.max.y >= b.min.y
+			&& a.min.z <= b.max.z && a.max.z >= b.min.z;
+	}
+
+	@Override
+	public OverlappingPairCache getOverlappingPairCache(){
+		return pairCache;
+	}
+
+	@Override
+	public void getBroadphaseAabb(Vector3f aabbMin, Vector3f aabbMax){
+		aabbMin.set(Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
+		aabbMax.set(-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE);
+		for(int i = 0; i < proxies.size(); i++){
+			GridProxy proxy = proxies.get(i);
+			aabbMin.set(Math.min(aabbMin.x, proxy.min.x), Math.min(aabbMin.y, proxy.min.y), Math.min(aabbMin.z, proxy.min.z));
+			aabbMax.set(Math.max(aabbMax.x, proxy.max.x), Math.max(aabbMax.y, proxy.max.y), Math.max(aabbMax.z, proxy.max.z));
+		}
+	}
+
+	@Override
+	public void printStats(){
+		System.out.println("GridBroadphase: " + proxies.size() + " proxies (" + large.size() + " too big for the grid), "
+				+ numEntries + " cell entries, cell size " + cellSize + ", " + pairCache.getNumOverlappingPairs() + " pairs");
+	}
+}
@@ -1,14 +1,19 @@
 //http://www.aorensoftware.com/blog/2011/06/01/when-bullets-move-too-fast/
 package com.bitwaffle.spaceguts.physics;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 import javax.vecmath.Vector3f;
 
 import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.entities.EntityPool;
+import com.bitwaffle.spaceguts.input.InputLog;
 import com.bitwaffle.spaceguts.input.KeyBindings;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
 import com.bulletphysics.collision.broadphase.BroadphaseInterface;
-import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
 import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.CollisionObject;
 import com.bulletphysics.collision.dispatch.CollisionWorld;
 import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
 import com.bulletphysics.collision.shapes.ConvexShape;
@@ -16,6 +21,7 @@ import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
 import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
 import com.bulletphysics.linearmath.Clock;
 import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
 
 
 /**
@@ -25,8 +31,32 @@ import com.bulletphysics.linearmath.Transform;
  * 
  */
 public class Physics {
-	/** maximum number of substeps to do on each tick */
-	private final static int SUBSTEPS = 10;
+	/** whether or not to step the simulation at a fixed rate (see update()) */
+	public static boolean useFixedTimeStep = true;
+	
+	/** length of one fixed simulation step, in seconds */
+	public static float fixedTimeStep = 1.0f / 60.0f;
+	
+	/** time that's been measured but not simulated yet, in seconds */
+	private static float accumulator = 0.0f;
+	
+	/**
+	 * How far between the previous and current physics tick the renderer is (0 = previous, 1 = current).
+	 * Always 1 when not using a fixed time step.
+	 */
+	public static float interpolationAlpha = 1.0f;
+	
+	/** whether or not to step the physics world on its own thread (see startThread()) */
+	public static boolean threaded = true;
+	
+	/** the thread stepping the physics world, null if it's being stepped by update() */
+	private static PhysicsThread thread;
+	
+	/** held while the physics world is being stepped, anything that changes the world from another thread needs to hold this */
+	public static final ReentrantLock worldLock = new ReentrantLock();
+	
+	/** snapshots of every entity's transform, published after each tick for the renderer */
+	public static SnapshotBuffer snapshots = new SnapshotBuffer();
 
 	/** the discrete dynamics world */
 	public static DiscreteDynamicsWorld dynamicsWorld;
@@ -53,8 +83,8 @@ public class Physics {
 	 * Initializes the physics engine
 	 */
 	public static void initPhysics() {
-		// broadphase interface
-		broadphase = new DbvtBroadphase();
+		// broadphase interface (see Broadphases)
+		broadphase = Broadphases.create();
 
 		// collision configuration and dispatcher
 		DefaultCollisionConfiguration collisionConfiguration = new DefaultCollisionConfiguration();
@@ -63,8 +93,8 @@ public class Physics {
 		// wat
 		solver = new SequentialImpulseConstraintSolver();
 
-		// the world everything is in
-		dynamicsWorld = new DiscreteDynamicsWorld(dispatcher, broadphase,
+		// the world everything is in (see PhysicsProfiler)
+		dynamicsWorld = new ProfiledDynamicsWorld(dispatcher, broadphase,
 				solver, collisionConfiguration);
 
 		// no gravity, we're in space!
@@ -74,14 +104,87 @@ public class Physics {
 		dynamicsWorld.setDebugDrawer(new PhysicsDebugDrawer());
 		
 		Physics.dynamicsWorld.setInternalTickCallback(new DynamicEntityCallback(), null);
+		
+		// see ContactEvents
+		DynamicEntityCallback.registerContactHandlers();
+	}
+
+	/**
+	 * Switches the world over to a different broadphase, moving everything that's already in the world into it
+	 * (in the same order). Only call this when the world isn't being stepped.
+	 * Levels don't need this, their broadphase is picked before the world is made (see Broadphases).
+	 * @param newBroadphase Broadphase to use
+	 */
+	public static void setBroadphase(BroadphaseInterface newBroadphase){
+		Transform transform = new Transform();
+		Vector3f aabbMin = new Vector3f(), aabbMax = new Vector3f();
+
+		ObjectArrayList<CollisionObject> objects = dynamicsWorld.getCollisionObjectArray();
+		for(int i = 0; i < objects.size(); i++){
+			CollisionObject obj = objects.getQuick(i);
+			BroadphaseProxy old = obj.getBroadphaseHandle();
+
+			obj.getCollisionShape().getAabb(obj.getWorldTransform(transform), aabbMin, aabbMax);
+			obj.setBroadphaseHandle(newBroadphase.createProxy(aabbMin, aabbMax, obj.getCollisionShape().getShapeType(), obj,
+					old.collisionFilterGroup, old.collisionFilterMask, dispatcher, null));
+
+			broadphase.getOverlappingPairCache().cleanProxyFromPairs(old, dispatcher);
+			broadphase.destroyProxy(old, dispatcher);
+		}
+
+		dynamicsWorld.setBroadphase(newBroadphase);
+		broadphase = newBroadphase;
+	}
+
+	/**
+	 * Starts stepping the physics world on its own thread.
+	 * After this is called, update() no longer steps the world.
+	 */
+	public static void startThread(){
+		if(thread == null){
+			thread = new PhysicsThread();
+			thread.start();
+		}
+	}
+	
+	/**
+	 * Stops the physics thread, if it's running
+	 */
+	public static void stopThread(){
+		if(thread != null){
+			thread.shutdown();
+			thread = null;
+		}
+	}
+	
+	/**
+	 * Gets how far between the last two ticks to render.
+	 * When the physics thread is running this is based on how long it's been since the snapshot was taken,
+	 * otherwise it's interpolationAlpha.
+	 * @param snapshot Snapshot being rendered
+	 * @return Alpha to use for interpolation, between 0 and 1
+	 */
+	public static float getRenderAlpha(TransformSnapshot snapshot){
+		if(thread == null)
+			return interpolationAlpha;
+		
+		float alpha = (System.nanoTime() - snapshot.time) / (fixedTimeStep * 1000000000.0f);
+		return alpha > 1.0f ? 1.0f : alpha;
 	}
 
 	/**
 	 * Updates the dynamics world
 	 */
 	public static void update() {
-		dynamicsWorld.stepSimulation(getDeltaTimeMicroseconds() / 1000000.0f,
-				SUBSTEPS);
+		// the physics thread does its own stepping
+		if(thread == null){
+			worldLock.lock();
+			try{
+				simulate(getDeltaTimeMicroseconds() / 1000000.0f);
+			} finally{
+				worldLock.unlock();
+			}
+		}
 
 		// handle the physics debug key
 		if (KeyBindings.SYS_DEBUG_PHYSICS.isPressed() && !debugDown) {
@@ -92,13 +195,92 @@ public class Physics {
 			debugDown = false;
 		}
 	}
+	
+	/**
+	 * Advances the dynamics world by the given amount of time.
+	 * This doesn't look at the clock, so it can be used to drive the simulation
+	 * without a window (see HeadlessRunner)
+	 * @param delta Amount of time to simulate, in seconds
+	 */
+	public static void simulate(float delta){
+		long start = PhysicsProfiler.start();
+		// game time slows down when the physics can't keep up (see StepBudget)
+		float gameDelta = StepBudget.scale(delta);
+		long frameStart = System.nanoTime();
+		
+		if(useFixedTimeStep){
+			accumulator += gameDelta;
+			
+			// step as many ticks as fit in the budget, anything left over is carried over to the next frame
+			int maxSteps = StepBudget.stepsAllowed();
+			int steps = 0;
+			while(accumulator >= fixedTimeStep && steps < maxSteps){
+				// record or replay the input this tick sees
+				InputLog.tick();
+				// exactly one step of fixedTimeStep
+				dynamicsWorld.stepSimulation(fixedTimeStep, 1, fixedTimeStep);
+				InputLog.endTick();
+				accumulator -= fixedTimeStep;
+				steps++;
+				
+				if(StepBudget.overBudget(frameStart))
+					break;
+			}
+			
+			accumulator = StepBudget.endFrame(accumulator, fixedTimeStep, steps, System.nanoTime() - frameStart, delta);
+			
+			if(steps > 0)
+				publish();
+			
+			interpolationAlpha = Math.min(1.0f, accumulator / fixedTimeStep);
+			
+			// only updates that actually stepped count as samples
+			if(steps == 0)
+				return;
+		} else{
+			// Bullet says how many ticks were due, but drops any past the most it's allowed to step (see StepBudget)
+			int maxSteps = StepBudget.stepsAllowed();
+			// input only goes to the first tick this frame (see MouseManager.startTick())
+			InputLog.tick();
+			int steps = dynamicsWorld.stepSimulation(gameDelta, maxSteps, fixedTimeStep);
+			StepBudget.endVariableFrame(steps, maxSteps, fixedTimeStep, System.nanoTime() - frameStart, delta);
+			publish();
+			interpolationAlpha = 1.0f;
+		}
+		PhysicsProfiler.end(PhysicsProfiler.Phase.TOTAL, start);
+		PhysicsProfiler.sample();
+	}
+	
+	/**
+	 * Publishes snapshots of the world for the renderer and anything doing queries off of the physics thread
+	 */
+	private static void publish(){
+		long start = PhysicsProfiler.start();
+		snapshots.publish();
+		BroadphaseSnapshot.publish();
+		PhysicsProfiler.end(PhysicsProfiler.Phase.PUBLISH, start);
+	}
 
 	/**
 	 * Cleans up all the physics stuff
 	 */
 	public static void cleanup() {
+		InputLog.stop();
 		dynamicsWorld.destroy();
 		dynamicsWorld = null;
+		accumulator = 0.0f;
+		interpolationAlpha = 1.0f;
+		ContactEvents.reset();
+		ShapeCache.clear();
+		Projectiles.clear();
+		EntityPool.clearAll();
+		PhysicsLOD.reset();
+		StepBudget.reset();
+		SpawnBuffer.clear();
+		BulkInsert.reset();
+		Broadphases.reset();
+		snapshots.clear();
+		BroadphaseSnapshot.clear();
 		broadphase = null;
 		dispatcher = null;
 		solver = null;
@@ -0,0 +1,303 @@
+package com.bitwaffle.spaceguts.physics;
+
+import javax.vecmath.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.entities.EntityRegistry;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
+import com.bulletphysics.collision.dispatch.CollisionFlags;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.linearmath.Transform;
+
+/**
+ * Physics level-of-detail. Entities that have a {@link PhysicsLOD.State} (see DynamicEntity.lod)
+ * get cheaper to simulate the further they are from the player (or the camera, if there's no player):
+ * <ul>
+ * <li>FULL - simulated normally</li>
+ * <li>REDUCED - past reducedRadius, doesn't collide with anything in its own group (i.e. asteroids go through each other)</li>
+ * <li>DRIFT - past driftRadius, becomes a kinematic body that just keeps going at the speed it was going and only collides with projectiles</li>
+ * <li>SLEEP - past sleepRadius, put to sleep and doesn't move at all (until something hits it) and only collides with projectiles</li>
+ * </ul>
+ * Everything is put back the way it was when it comes back in range.
+ * <p>
+ * SpatialQuery and RayBatch only look at collision groups, so they still find entities at any level.
+ * Setting the velocity of a drifting entity's rigid body doesn't do anything, so anything that pushes entities
+ * around should use getLinearVelocity() and setLinearVelocity() here instead.
+ */
+public class PhysicsLOD {
+	/** The different levels of detail, from most to least expensive */
+	public enum Level{
+		FULL, REDUCED, DRIFT, SLEEP
+	}
+
+	/**
+	 * Keeps track of what an entity's rigid body was like before it got its detail reduced
+	 */
+	public static class State{
+		/** Current level */
+		public Level level = Level.FULL;
+
+		/** Collision group, mask and activation state when at full detail */
+		private short group, mask;
+		private int activationState;
+
+		/** Velocity when the entity started drifting */
+		private Vector3f linearVelocity = new Vector3f(), angularVelocity = new Vector3f();
+
+		/** Radius of the entity's bounding sphere (distances are measured to the entity's surface) */
+		private float radius = -1.0f;
+	}
+
+	/** Whether or not to do any of this */
+	public static boolean enabled = true;
+
+	/** Default distances for each level, used when a level doesn't set its own */
+	private static final float DEFAULT_REDUCED_RADIUS = 5000.0f, DEFAULT_DRIFT_RADIUS = 15000.0f, DEFAULT_SLEEP_RADIUS = 50000.0f;
+
+	/** Distances (from the player to the surface of an entity) at which each level kicks in */
+	public static float reducedRadius = DEFAULT_REDUCED_RADIUS, driftRadius = DEFAULT_DRIFT_RADIUS, sleepRadius = DEFAULT_SLEEP_RADIUS;
+
+	/** How often, in seconds, to re-check every entity's distance */
+	public static float evaluateInterval = 0.25f;
+
+	/** What drifting and sleeping entities still collide with, so that they can still get shot (see Projectiles) */
+	private static final short FAR_MASK = CollisionTypes.PROJECTILE;
+
+	/** An entity coming back in has to be this much closer than the radius it went out at (so it doesn't flip back and forth at the edge) */
+	private static final float RESTORE_FACTOR = 0.9f;
+
+	/** Time since the last evaluation */
+	private static float timeSinceEvaluate = 0.0f;
+
+	/** Number of entities at each level as of the last evaluation */
+	private static int[] levelCounts = new int[Level.values().length];
+
+	/** Used for moving drifting entities */
+	private static Transform driftTransform = new Transform();
+
+	/** Used for getting bounding spheres */
+	private static Vector3f tmpCenter = new Vector3f();
+
+	/**
+	 * Moves any drifting entities and, every evaluateInterval seconds, figures out what level each entity should be at.
+	 * Called at the end of every physics tick by the {@link DynamicEntityCallback}.
+	 * @param timeStep Length of the tick
+	 */
+	public static void update(float timeStep){
+		EntityRegistry<DynamicEntity> entities = Entities.dynamicEntities;
+
+		timeSinceEvaluate += timeStep;
+		boolean evaluate = timeSinceEvaluate >= evaluateInterval;
+		if(evaluate){
+			timeSinceEvaluate = 0.0f;
+			for(int i = 0; i < levelCounts.length; i++)
+				levelCounts[i] = 0;
+		}
+
+		DynamicEntity focus = Entities.player != null ? Entities.player : Entities.camera;
+
+		for(int i = 0; i < entities.size(); i++){
+			DynamicEntity ent = entities.get(i);
+			State state = ent.lod;
+			if(state == null || ent.removeFlag)
+				continue;
+
+			if(evaluate && focus != null){
+				Level target = enabled ? levelFor(ent, state, focus) : Level.FULL;
+				if(target != state.level)
+					setLevel(ent, state, target);
+				levelCounts[state.level.ordinal()]++;
+			}
+
+			if(state.level == Level.DRIFT)
+				drift(ent, state, timeStep);
+		}
+	}
+
+	/**
+	 * Figures out what level an entity should be at
+	 */
+	private static Level levelFor(DynamicEntity ent, State state, DynamicEntity focus){
+		if(state.radius < 0.0f){
+			float[] radius = new float[1];
+			ent.rigidBody.getCollisionShape().getBoundingSphere(tmpCenter, radius);
+			state.radius = radius[0];
+		}
+
+		float dx = ent.location.x - focus.location.x;
+		float dy = ent.location.y - focus.location.y;
+		float dz = ent.location.z - focus.location.z;
+		float dist = (float) Math.sqrt(dx * dx + dy * dy + dz * dz) - state.radius;
+
+		Level target;
+		if(dist > sleepRadius)
+			target = Level.SLEEP;
+		else if(dist > driftRadius)
+			target = Level.DRIFT;
+		else if(dist > reducedRadius)
+			target = Level.REDUCED;
+		else
+			target = Level.FULL;
+
+		// coming back in has to clear the radius by a bit
+		if(target.ordinal() < state.level.ordinal()){
+			dist /= RESTORE_FACTOR;
+			if(dist > sleepRadius)
+				target = Level.SLEEP;
+			else if(dist > driftRadius)
+				target = Level.DRIFT;
+			else if(dist > reducedRadius)
+				target = Level.REDUCED;
+			else
+				target = Level.FULL;
+
+			// never go further out than where we were
+			if(target.ordinal() > state.level.ordinal())
+				target = state.level;
+		}
+
+		return target;
+	}
+
+	/**
+	 * Changes an entity's level.
+	 * The rigid body gets taken out of the world and put back in with its new collision mask
+	 * so that the broadphase finds any pairs it should (or shouldn't) have now.
+	 */
+	private static void setLevel(DynamicEntity ent, State state, Level level){
+		RigidBody body = ent.rigidBody;
+
+		// save everything about the body the first time it gets reduced
+		if(state.level == Level.FULL){
+			BroadphaseProxy proxy = body.getBroadphaseHandle();
+			if(proxy == null)
+				return;
+			state.group = proxy.collisionFilterGroup;
+			state.mask = proxy.collisionFilterMask;
+			state.activationState = body.getActivationState();
+		}
+
+		// undo whatever the old level did
+		if(state.level == Level.DRIFT){
+			body.setCollisionFlags(body.getCollisionFlags() & ~CollisionFlags.KINEMATIC_OBJECT);
+			body.setLinearVelocity(state.linearVelocity);
+			body.setAngularVelocity(state.angularVelocity);
+		}
+
+		// and do whatever the new one does
+		short mask;
+		switch(level){
+		case REDUCED:
+			mask = (short)(state.mask & ~state.group);
+			body.forceActivationState(state.activationState);
+			break;
+		case DRIFT:
+			mask = (short)(state.mask & FAR_MASK);
+			body.getLinearVelocity(state.linearVelocity);
+			body.getAngularVelocity(state.angularVelocity);
+			body.setCollisionFlags(body.getCollisionFlags() | CollisionFlags.KINEMATIC_OBJECT);
+			// kinematic bodies get their transform from their motion state
+			body.getWorldTransform(driftTransform);
+			body.getMotionState().setWorldTransform(driftTransform);
+			body.forceActivationState(CollisionObject.DISABLE_DEACTIVATION);
+			break;
+		case SLEEP:
+			mask = (short)(state.mask & FAR_MASK);
+			body.forceActivationState(CollisionObject.ISLAND_SLEEPING);
+			break;
+		default:
+			mask = state.mask;
+			body.forceActivationState(state.activationState);
+			body.activate();
+			break;
+		}
+
+		Physics.dynamicsWorld.removeRigidBody(body);
+		Physics.dynamicsWorld.addRigidBody(body, state.group, mask);
+
+		state.level = level;
+	}
+
+	/**
+	 * Puts an entity's rigid body back to full detail without touching the dynamics world.
+	 * Used for entities that have been taken out of the world (i.e. put in an EntityPool) so they
+	 * come back the same as a brand new entity would.
+	 * @param ent Entity to reset
+	 */
+	public static void resetState(DynamicEntity ent){
+		State state = ent.lod;
+		if(state == null)
+			return;
+
+		RigidBody body = ent.rigidBody;
+		if(state.level == Level.DRIFT)
+			body.setCollisionFlags(body.getCollisionFlags() & ~CollisionFlags.KINEMATIC_OBJECT);
+		if(state.level != Level.FULL)
+			body.forceActivationState(state.activationState);
+
+		state.level = Level.FULL;
+		// the entity might come back as a different size
+		state.radius = -1.0f;
+	}
+
+	/**
+	 * Moves a drifting entity along at the speed it was going when it started drifting
+	 */
+	private static void drift(DynamicEntity ent, State state, float timeStep){
+		// the world transform is used instead of the motion state in case something else moved the entity (i.e. AsteroidField looping asteroids around)
+		ent.rigidBody.getWorldTransform(driftTransform);
+		driftTransform.origin.scaleAdd(timeStep, state.linearVelocity, driftTransform.origin);
+		ent.rigidBody.getMotionState().setWorldTransform(driftTransform);
+	}
+
+	/**
+	 * Gets an entity's linear velocity, even if it's drifting
+	 * @param ent Entity to get velocity of
+	 * @param dest Vector to put velocity in
+	 * @return dest, for chaining
+	 */
+	public static Vector3f getLinearVelocity(DynamicEntity ent, Vector3f dest){
+		State state = ent.lod;
+		if(state != null && state.level == Level.DRIFT)
+			dest.set(state.linearVelocity);
+		else
+			ent.rigidBody.getLinearVelocity(dest);
+		return dest;
+	}
+
+	/**
+	 * Sets an entity's linear velocity. A drifting entity starts drifting at the new velocity
+	 * and a sleeping one gets it when it wakes up.
+	 * @param ent Entity to set velocity of
+	 * @param velocity New velocity
+	 */
+	public static void setLinearVelocity(DynamicEntity ent, Vector3f velocity){
+		State state = ent.lod;
+		if(state != null && state.level == Level.DRIFT)
+			state.linearVelocity.set(velocity);
+		else
+			ent.rigidBody.setLinearVelocity(velocity);
+	}
+
+	/**
+	 * @param level Level to get the count for
+	 * @return How many entities were at the given level as of the last evaluation
+	 */
+	public static int count(Level level){
+		return levelCounts[level.ordinal()];
+	}
+
+	/**
+	 * Resets everything, including the radii (should be called when the world is destroyed)
+	 */
+	public static void reset(){
+		reducedRadius = DEFAULT_REDUCED_RADIUS;
+		driftRadius = DEFAULT_DRIFT_RADIUS;
+		sleepRadius = DEFAULT_SLEEP_RADIUS;
+		timeSinceEvaluate = 0.0f;
+		for(int i = 0; i < levelCounts.length; i++)
+			levelCounts[i] = 0;
+	}
+}
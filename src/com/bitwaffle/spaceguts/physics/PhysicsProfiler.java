@@ -0,0 +1,197 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.Arrays;
+
+/**
+ * Times each phase of updating the physics world, to find out where a slow frame went.
+ * <p>
+ * Timing a phase looks like
+ * <pre>
+ * long start = PhysicsProfiler.start();
+ * ...
+ * PhysicsProfiler.end(PhysicsProfiler.Phase.SOLVER, start);
+ * </pre>
+ * When the profiler's off, start() returns 0 and end() does nothing, so leaving the timers in costs next to nothing.
+ * <p>
+ * Time spent in each phase gets added up over a whole call to Physics.simulate() (which can be more than one tick),
+ * then saved as one sample. The last SAMPLES samples of each phase are kept around to get percentiles from.
+ * Samples are written by whoever steps the world and read by whoever's drawing them, without any locking;
+ * at worst a percentile is off by a sample.
+ */
+public class PhysicsProfiler {
+	/**
+	 * Everything that gets timed
+	 */
+	public enum Phase{
+		TOTAL("total"),
+		BROADPHASE("broadphase"),
+		NARROWPHASE("narrowphase"),
+		ISLANDS("islands"),
+		SOLVER("solver"),
+		INTEGRATE("integrate"),
+		SYNC("sync"),
+		PARALLEL_UPDATES("parallel upd"),
+		SERIAL_UPDATES("serial upd"),
+		PROJECTILES("projectiles"),
+		CONTACTS("contacts"),
+		LOD("lod"),
+		UPDATE_ALL("updateAll"),
+		SPAWNS("spawn/remove"),
+		PUBLISH("snapshots");
+
+		/** What gets printed for this phase */
+		public final String label;
+
+		private Phase(String label){
+			this.label = label;
+		}
+	}
+
+	/** How many samples to keep for each phase */
+	public static final int SAMPLES = 512;
+
+	/** How often getReport() makes a new report, in nanoseconds */
+	private static final long REPORT_INTERVAL = 250000000L;
+
+	/** Whether or not anything is being timed */
+	public static volatile boolean enabled = false;
+
+	private static final Phase[] phases = Phase.values();
+
+	/** Time spent in each phase since the last sample was saved */
+	private static long[] current = new long[phases.length];
+
+	/** Rolling window of samples for each phase */
+	private static long[][] samples = new long[phases.length][SAMPLES];
+
+	/** Where the next sample goes, and how many samples have been saved in total */
+	private static int next = 0;
+	private static long count = 0L;
+
+	/** Used for sorting samples when getting percentiles */
+	private static long[] sorted = new long[SAMPLES];
+
+	/** Last report made by getReport() and when it was made */
+	private static String report = "";
+	private static long reportTime = 0L;
+
+	/**
+	 * @return Time to pass to end(), or 0 if the profiler is off
+	 */
+	public static long start(){
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Adds the time since start() to a phase
+	 * @param phase Phase being timed
+	 * @param start What start() returned
+	 */
+	public static void end(Phase phase, long start){
+		if(start != 0L)
+			current[phase.ordinal()] += System.nanoTime() - start;
+	}
+
+	/**
+	 * Adds the time since start() to a phase and starts timing the next one, for timing phases that come one right after the other
+	 * @param phase Phase being timed
+	 * @param start What start() (or the last lap()) returned
+	 * @return Time to pass to the next end() or lap(), or 0 if the profiler is off
+	 */
+	public static long lap(Phase phase, long start){
+		if(start == 0L)
+			return 0L;
+
+		long now = System.nanoTime();
+		current[phase.ordinal()] += now - start;
+		return now;
+	}
+
+	/**
+	 * Saves the time spent in every phase as a sample and starts over
+	 */
+	public static void sample(){
+		if(!enabled)
+			return;
+
+		for(int i = 0; i < phases.length; i++){
+			samples[i][next] = current[i];
+			current[i] = 0L;
+		}
+		next = (next + 1) % SAMPLES;
+		count++;
+	}
+
+	/**
+	 * Throws out every sample
+	 */
+	public static synchronized void reset(){
+		for(int i = 0; i < phases.length; i++){
+			current[i] = 0L;
+			Arrays.fill(samples[i], 0L);
+		}
+		next = 0;
+		count = 0L;
+		reportTime = 0L;
+	}
+
+	/**
+	 * @return Number of samples being used for percentiles
+	 */
+	public static int numSamples(){
+		return (int) Math.min(count, SAMPLES);
+	}
+
+	/**
+	 * Gets percentiles for a phase
+	 * @param phase Phase to get percentiles for
+	 * @param percentiles Percentiles to get, between 0 and 100
+	 * @param dest Where to put the percentiles, in nanoseconds (has to be at least as long as percentiles)
+	 */
+	public static synchronized void percentiles(Phase phase, float[] percentiles, long[] dest){
+		int n = numSamples();
+		if(n == 0){
+			Arrays.fill(dest, 0L);
+			return;
+		}
+
+		System.arraycopy(samples[phase.ordinal()], 0, sorted, 0, n);
+		Arrays.sort(sorted, 0, n);
+		for(int i = 0; i < percentiles.length; i++){
+			// nearest rank
+			int rank = (int) Math.ceil(percentiles[i] / 100.0f * n) - 1;
+			dest[i] = sorted[Math.max(0, Math.min(n - 1, rank))];
+		}
+	}
+
+	/**
+	 * Makes a table of p50/p95/p99 for every phase, in microseconds
+	 * @return Table, one phase per line
+	 */
+	public static String buildReport(){
+		float[] percentiles = { 50.0f, 95.0f, 99.0f };
+		long[] values = new long[percentiles.length];
+
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("%-12s %7s %7s %7s%n", "phase (us)", "p50", "p95", "p99"));
+		for(Phase phase : phases){
+			percentiles(phase, percentiles, values);
+			builder.append(String.format("%-12s %7.1f %7.1f %7.1f%n", phase.label, values[0] / 1000.0f, values[1] / 1000.0f, values[2] / 1000.0f));
+		}
+		builder.append("(" + numSamples() + " samples)");
+		return builder.toString();
+	}
+
+	/**
+	 * Same as buildReport(), but only makes a new one every once in a while so it can be drawn every frame
+	 * @return Table, one phase per line
+	 */
+	public static String getReport(){
+		long now = System.nanoTime();
+		if(now - reportTime > REPORT_INTERVAL){
+			report = buildReport();
+			reportTime = now;
+		}
+		return report;
+	}
+}
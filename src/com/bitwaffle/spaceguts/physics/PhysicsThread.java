@@ -0,0 +1,65 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.bitwaffle.spaceout.Runner;
+
+/**
+ * Steps the physics world at a fixed rate on its own thread so that a heavy physics tick and
+ * a heavy frame overlap instead of adding together.
+ * <p>
+ * Each tick is done while holding {@link Physics#worldLock}, so anything on another thread that
+ * changes the world (loading a level, console commands, the GUI) has to grab the lock first.
+ * The renderer doesn't need the lock, it draws from the {@link TransformSnapshot}s published after every tick.
+ */
+public class PhysicsThread extends Thread {
+	/** Whether or not the thread should keep going */
+	private volatile boolean running = true;
+
+	public PhysicsThread(){
+		this.setName("Physics");
+		// don't keep the game open if the main thread dies
+		this.setDaemon(true);
+	}
+
+	@Override
+	public void run(){
+		long lastTime = System.nanoTime();
+
+		while(running){
+			long now = System.nanoTime();
+			float delta = (now - lastTime) / 1000000000.0f;
+			lastTime = now;
+
+			Physics.worldLock.lock();
+			try{
+				if(!Runner.paused && Physics.dynamicsWorld != null)
+					Physics.simulate(delta);
+			} catch(Exception e){
+				System.out.println("Error in physics thread!");
+				e.printStackTrace();
+			} finally{
+				Physics.worldLock.unlock();
+			}
+
+			// sleep until it's time for the next tick
+			long nextTick = now + (long)(Physics.fixedTimeStep * 1000000000.0f);
+			long sleep = nextTick - System.nanoTime();
+			if(sleep > 0L)
+				LockSupport.parkNanos(sleep);
+		}
+	}
+
+	/**
+	 * Stops the thread and waits for it to finish its current tick
+	 */
+	public void shutdown(){
+		running = false;
+		LockSupport.unpark(this);
+		try{
+			this.join();
+		} catch(InterruptedException e){
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.bitwaffle.spaceguts.physics;
+
+import com.bitwaffle.spaceguts.physics.PhysicsProfiler.Phase;
+import com.bulletphysics.collision.broadphase.BroadphaseInterface;
+import com.bulletphysics.collision.broadphase.Dispatcher;
+import com.bulletphysics.collision.dispatch.CollisionConfiguration;
+import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
+import com.bulletphysics.dynamics.constraintsolver.ConstraintSolver;
+import com.bulletphysics.dynamics.constraintsolver.ContactSolverInfo;
+
+/**
+ * A DiscreteDynamicsWorld that times each phase of a step with {@link PhysicsProfiler}.
+ * Behaves exactly the same as a DiscreteDynamicsWorld when the profiler is off.
+ */
+public class ProfiledDynamicsWorld extends DiscreteDynamicsWorld {
+	/**
+	 * Same as DiscreteDynamicsWorld's constructor
+	 */
+	public ProfiledDynamicsWorld(Dispatcher dispatcher, BroadphaseInterface pairCache, ConstraintSolver constraintSolver, CollisionConfiguration collisionConfiguration){
+		super(dispatcher, pairCache, constraintSolver, collisionConfiguration);
+	}
+
+	@Override
+	protected void predictUnconstraintMotion(float timeStep){
+		long start = PhysicsProfiler.start();
+		super.predictUnconstraintMotion(timeStep);
+		PhysicsProfiler.end(Phase.INTEGRATE, start);
+	}
+
+	@Override
+	public void performDiscreteCollisionDetection(){
+		if(!PhysicsProfiler.enabled){
+			super.performDiscreteCollisionDetection();
+			return;
+		}
+
+		// same as CollisionWorld's, split up so that the broadphase and narrowphase get timed separately
+		long start = PhysicsProfiler.start();
+		updateAabbs();
+		broadphasePairCache.calculateOverlappingPairs(dispatcher1);
+		PhysicsProfiler.end(Phase.BROADPHASE, start);
+
+		start = PhysicsProfiler.start();
+		Dispatcher dispatcher = getDispatcher();
+		if(dispatcher != null)
+			dispatcher.dispatchAllCollisionPairs(broadphasePairCache.getOverlappingPairCache(), dispatchInfo, dispatcher1);
+		PhysicsProfiler.end(Phase.NARROWPHASE, start);
+	}
+
+	@Override
+	protected void calculateSimulationIslands(){
+		long start = PhysicsProfiler.start();
+		super.calculateSimulationIslands();
+		PhysicsProfiler.end(Phase.ISLANDS, start);
+	}
+
+	@Override
+	protected void solveConstraints(ContactSolverInfo solverInfo){
+		long start = PhysicsProfiler.start();
+		super.solveConstraints(solverInfo);
+		PhysicsProfiler.end(Phase.SOLVER, start);
+	}
+
+	@Override
+	protected void integrateTransforms(float timeStep){
+		long start = PhysicsProfiler.start();
+		super.integrateTransforms(timeStep);
+		PhysicsProfiler.end(Phase.INTEGRATE, start);
+	}
+}
@@ -0,0 +1,239 @@
+package com.bitwaffle.spaceguts.physics;
+
+import org.lwjgl.util.vector.Quaternion;
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.entities.Entity;
+import com.bitwaffle.spaceguts.graphics.model.Model;
+import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceout.interfaces.Health;
+import com.bitwaffle.spaceout.interfaces.Projectile;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.CollisionWorld;
+import com.bulletphysics.collision.dispatch.CollisionWorld.ClosestRayResultCallback;
+
+/**
+ * Fast projectiles that don't have rigid bodies. Something going 2500 units a second as a rigid body
+ * has to go into the broadphase, gets solved with everything else and needs CCD so it doesn't go
+ * straight through things (see the link at the top of {@link Physics}).
+ * <p>
+ * Instead, each shot here is just a location, a direction and a speed. Every tick, every shot casts a ray
+ * from where it is to where it'll be at the end of the tick (all of them through the same callback, one after
+ * the other) and if the ray hits something the shot hurts it through the same path as a bullet's contact
+ * event would (see DynamicEntityCallback). Shots are pooled, so firing doesn't allocate anything once
+ * the pool's big enough.
+ * <p>
+ * Everything here happens on the physics thread; the renderer gets shots through the {@link TransformSnapshot}.
+ */
+public class Projectiles {
+	/** Collision groups that shots can hit (same as LaserBullet) */
+	public static short collidesWith = (short)(CollisionTypes.WALL | CollisionTypes.PLANET);
+
+	/** Shots that are flying around, packed at the front of the array */
+	private static Shot[] active = new Shot[64];
+	private static int numActive = 0;
+
+	/** Shots that aren't being used */
+	private static Shot[] free = new Shot[64];
+	private static int numFree = 0;
+
+	/** Used for every ray test */
+	private static ShotRayCallback callback = new ShotRayCallback();
+
+	/** Used for figuring out which way a shot is going */
+	private static Vector3f forward = new Vector3f();
+
+	/**
+	 * A single shot
+	 */
+	public static class Shot implements Projectile{
+		/** Where the shot is now and where it was at the end of last tick */
+		public final Vector3f location = new Vector3f(), previousLocation = new Vector3f();
+
+		/** Which way the shot is facing (never changes after it's fired) */
+		public final Quaternion rotation = new Quaternion();
+
+		/** Which way the shot is going (normalized) */
+		private final Vector3f direction = new Vector3f();
+
+		/** How fast the shot is going */
+		private float speed;
+
+		/** How long the shot has left before it disappears */
+		private float life;
+
+		private int damage;
+		private Entity owner;
+
+		/** Model to draw the shot with */
+		public Model model;
+
+		@Override
+		public int getDamage(){
+			return damage;
+		}
+
+		@Override
+		public Entity getOwner(){
+			return owner;
+		}
+	}
+
+	/**
+	 * Fires a shot. Should only be called from the physics thread (i.e. from an entity's update()).
+	 * @param owner Whoever fired the shot (it won't hurt them)
+	 * @param location Where to fire the shot from
+	 * @param rotation Which way to fire the shot (it goes along this rotation's z axis)
+	 * @param speed How fast the shot goes
+	 * @param life How long the shot lasts, in seconds
+	 * @param damage How much damage the shot does
+	 * @param model Model to draw the shot with
+	 */
+	public static void fire(Entity owner, Vector3f location, Quaternion rotation, float speed, float life, int damage, Model model){
+		Shot shot = numFree > 0 ? free[--numFree] : new Shot();
+
+		shot.location.set(location);
+		shot.previousLocation.set(location);
+		shot.rotation.set(rotation);
+		forward.set(0.0f, 0.0f, 1.0f);
+		QuaternionHelper.rotateVectorByQuaternion(forward, rotation, shot.direction);
+		shot.speed = speed;
+		shot.life = life;
+		shot.damage = damage;
+		shot.owner = owner;
+		shot.model = model;
+
+		if(numActive == active.length){
+			Shot[] newActive = new Shot[active.length * 2];
+			System.arraycopy(active, 0, newActive, 0, numActive);
+			active = newActive;
+		}
+		active[numActive++] = shot;
+	}
+
+	/**
+	 * Moves every shot forward, hurting anything they hit on the way.
+	 * Called once per physics tick by the {@link DynamicEntityCallback}.
+	 * @param world World to cast rays in
+	 * @param timeStep Length of the tick
+	 */
+	public static void update(CollisionWorld world, float timeStep){
+		int i = 0;
+		while(i < numActive){
+			Shot shot = active[i];
+			shot.previousLocation.set(shot.location);
+
+			// don't go any further than the shot has left to live
+			float step = Math.min(timeStep, shot.life);
+			float distance = shot.speed * step;
+			shot.life -= step;
+
+			callback.reset(shot,
+					shot.location.x + shot.direction.x * distance,
+					shot.location.y + shot.direction.y * distance,
+					shot.location.z + shot.direction.z * distance);
+			world.rayTest(callback.rayFromWorld, callback.rayToWorld, callback);
+
+			boolean done = shot.life <= 0.0f;
+			if(callback.hasHit()){
+				shot.location.set(callback.hitPointWorld.x, callback.hitPointWorld.y, callback.hitPointWorld.z);
+
+				Object target = callback.collisionObject.getUserPointer();
+				if(target instanceof Health)
+					DynamicEntityCallback.projectileHit(shot, (Health) target);
+				done = true;
+			} else{
+				shot.location.set(callback.rayToWorld.x, callback.rayToWorld.y, callback.rayToWorld.z);
+			}
+
+			if(done){
+				// last shot takes this one's spot
+				active[i] = active[--numActive];
+				active[numActive] = null;
+				recycle(shot);
+			} else{
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Puts a shot back in the pool
+	 */
+	private static void recycle(Shot shot){
+		shot.owner = null;
+		shot.model = null;
+
+		if(numFree == free.length){
+			Shot[] newFree = new Shot[free.length * 2];
+			System.arraycopy(free, 0, newFree, 0, numFree);
+			free = newFree;
+		}
+		free[numFree++] = shot;
+	}
+
+	/**
+	 * @return How many shots are flying around
+	 */
+	public static int size(){
+		return numActive;
+	}
+
+	/**
+	 * @param index Index of shot
+	 * @return Shot at the given index (only valid on the physics thread until the next update)
+	 */
+	public static Shot get(int index){
+		return active[index];
+	}
+
+	/**
+	 * Gets rid of every shot (should be called when the world is destroyed)
+	 */
+	public static void clear(){
+		while(numActive > 0){
+			Shot shot = active[--numActive];
+			active[numActive] = null;
+			recycle(shot);
+		}
+	}
+
+	/**
+	 * Ray callback that ignores whoever fired the shot and anything that's about to be removed
+	 */
+	private static class ShotRayCallback extends ClosestRayResultCallback{
+		/** Shot that's being tested */
+		private Shot shot;
+
+		public ShotRayCallback(){
+			super(new javax.vecmath.Vector3f(), new javax.vecmath.Vector3f());
+			collisionFilterGroup = CollisionTypes.PROJECTILE;
+		}
+
+		/**
+		 * Gets ready for another ray test
+		 * @param shot Shot to test (the ray starts at its location)
+		 */
+		public void reset(Shot shot, float toX, float toY, float toZ){
+			this.shot = shot;
+			rayFromWorld.set(shot.location.x, shot.location.y, shot.location.z);
+			rayToWorld.set(toX, toY, toZ);
+			closestHitFraction = 1.0f;
+			collisionObject = null;
+			collisionFilterMask = collidesWith;
+		}
+
+		@Override
+		public boolean needsCollision(BroadphaseProxy proxy){
+			if(!super.needsCollision(proxy))
+				return false;
+
+			Object obj = ((CollisionObject) proxy.clientObject).getUserPointer();
+			if(obj == shot.owner)
+				return false;
+			return !(obj instanceof DynamicEntity) || !((DynamicEntity) obj).removeFlag;
+		}
+	}
+}
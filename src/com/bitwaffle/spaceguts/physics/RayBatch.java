@@ -0,0 +1,441 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.concurrent.RecursiveAction;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.CollisionWorld;
+import com.bulletphysics.collision.dispatch.CollisionWorld.ClosestRayResultCallback;
+import com.bulletphysics.linearmath.Transform;
+
+/**
+ * A bunch of rays that all get cast at once. Add rays with add(), call cast(), then look at the results.
+ * <p>
+ * Rays are cast against the latest {@link BroadphaseSnapshot} (so they see the world as of the end of the last tick,
+ * or as of the last time anything was cast if nothing has been for a while)
+ * and big batches get split up across the same worker threads that {@link UpdateStage} uses. Since nothing
+ * in the physics world is touched, a batch can be cast from any thread, even while the physics thread is stepping.
+ * <p>
+ * Each ray walks the snapshot's tree, skipping any branch its bounding box doesn't go through (or that's
+ * further away than the closest hit so far), and only does an exact test against the collision objects left over.
+ * A batch can be cleared and reused, and nothing gets allocated once it's grown big enough.
+ * A single batch shouldn't be used by more than one thread at a time.
+ */
+public class RayBatch {
+	/** With less than this many rays, it isn't worth splitting the work up */
+	public static int minParallelRays = 64;
+
+	/** Number of rays each task casts without splitting any further */
+	private static final int BATCH_SIZE = 16;
+
+	/** Everything needed to cast rays, one for each thread */
+	private static ThreadLocal<RayCaster> casters = new ThreadLocal<RayCaster>(){
+		@Override
+		protected RayCaster initialValue(){
+			return new RayCaster();
+		}
+	};
+
+	/** Start and end of each ray, 6 floats per ray (from x,y,z then to x,y,z) */
+	private float[] rays;
+
+	/** Collision groups each ray can hit */
+	private short[] masks;
+
+	/** Entity each ray ignores (usually whoever's casting it) */
+	private DynamicEntity[] excludes;
+
+	/** Results for each ray */
+	private CollisionObject[] hitObjects;
+	private float[] hitFractions;
+	/** 3 floats per ray */
+	private float[] hitPoints, hitNormals;
+
+	/** Number of rays in this batch */
+	private int size = 0;
+
+	/** Snapshot being cast against (only valid during cast()) */
+	private BroadphaseSnapshot snapshot;
+
+	/**
+	 * Create a new, empty, batch of rays
+	 */
+	public RayBatch(){
+		this(16);
+	}
+
+	/**
+	 * @param capacity Number of rays to make room for (more can be added, this just avoids growing)
+	 */
+	public RayBatch(int capacity){
+		capacity = Math.max(capacity, 1);
+		rays = new float[capacity * 6];
+		masks = new short[capacity];
+		excludes = new DynamicEntity[capacity];
+		hitObjects = new CollisionObject[capacity];
+		hitFractions = new float[capacity];
+		hitPoints = new float[capacity * 3];
+		hitNormals = new float[capacity * 3];
+	}
+
+	/**
+	 * Adds a ray to the batch
+	 * @param from Where the ray starts
+	 * @param to Where the ray ends
+	 * @param mask Collision groups the ray can hit
+	 * @param exclude Entity for the ray to ignore (usually whoever's casting it), can be null
+	 * @return Index of the ray, for getting its results after cast() is called
+	 */
+	public int add(Vector3f from, Vector3f to, short mask, DynamicEntity exclude){
+		return add(from.x, from.y, from.z, to.x, to.y, to.z, mask, exclude);
+	}
+
+	/**
+	 * Adds a ray to the batch
+	 * @param mask Collision groups the ray can hit
+	 * @param exclude Entity for the ray to ignore (usually whoever's casting it), can be null
+	 * @return Index of the ray, for getting its results after cast() is called
+	 */
+	public int add(float fromX, float fromY, float fromZ, float toX, float toY, float toZ, short mask, DynamicEntity exclude){
+		if(size == masks.length)
+			grow();
+
+		int index = size++;
+		int r = index * 6;
+		rays[r] = fromX;
+		rays[r + 1] = fromY;
+		rays[r + 2] = fromZ;
+		rays[r + 3] = toX;
+		rays[r + 4] = toY;
+		rays[r + 5] = toZ;
+		masks[index] = mask;
+		excludes[index] = exclude;
+		hitObjects[index] = null;
+		hitFractions[index] = 1.0f;
+		return index;
+	}
+
+	/**
+	 * Doubles the size of every array
+	 */
+	private void grow(){
+		int newLength = masks.length * 2;
+
+		float[] newRays = new float[newLength * 6];
+		System.arraycopy(rays, 0, newRays, 0, size * 6);
+		rays = newRays;
+
+		short[] newMasks = new short[newLength];
+		System.arraycopy(masks, 0, newMasks, 0, size);
+		masks = newMasks;
+
+		DynamicEntity[] newExcludes = new DynamicEntity[newLength];
+		System.arraycopy(excludes, 0, newExcludes, 0, size);
+		excludes = newExcludes;
+
+		CollisionObject[] newHitObjects = new CollisionObject[newLength];
+		System.arraycopy(hitObjects, 0, newHitObjects, 0, size);
+		hitObjects = newHitObjects;
+
+		float[] newFractions = new float[newLength];
+		System.arraycopy(hitFractions, 0, newFractions, 0, size);
+		hitFractions = newFractions;
+
+		float[] newPoints = new float[newLength * 3];
+		System.arraycopy(hitPoints, 0, newPoints, 0, size * 3);
+		hitPoints = newPoints;
+
+		float[] newNormals = new float[newLength * 3];
+		System.arraycopy(hitNormals, 0, newNormals, 0, size * 3);
+		hitNormals = newNormals;
+	}
+
+	/**
+	 * Gets rid of every ray and its results
+	 */
+	public void clear(){
+		for(int i = 0; i < size; i++){
+			excludes[i] = null;
+			hitObjects[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return Number of rays in the batch
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Casts every ray in the batch. If there's no snapshot to cast against yet (the world hasn't been stepped since
+	 * anything asked for one), nothing gets hit.
+	 */
+	public void cast(){
+		for(int i = 0; i < size; i++){
+			hitObjects[i] = null;
+			hitFractions[i] = 1.0f;
+		}
+
+		snapshot = BroadphaseSnapshot.acquire();
+		if(snapshot == null)
+			return;
+
+		try{
+			if(!UpdateStage.enabled || size < minParallelRays)
+				castRange(0, size);
+			else
+				UpdateStage.getPool().invoke(new RayTask(this, 0, size));
+		} finally{
+			BroadphaseSnapshot.release(snapshot);
+			snapshot = null;
+		}
+	}
+
+	/**
+	 * Casts a range of rays on the current thread
+	 */
+	private void castRange(int start, int end){
+		RayCaster caster = casters.get();
+		for(int i = start; i < end; i++)
+			caster.cast(this, i);
+	}
+
+	/**
+	 * @param index Index of ray
+	 * @return Whether or not the ray hit anything
+	 */
+	public boolean hasHit(int index){
+		return hitObjects[index] != null;
+	}
+
+	/**
+	 * @param index Index of ray
+	 * @return What the ray hit first, or null if it didn't hit anything
+	 */
+	public CollisionObject getHitObject(int index){
+		return hitObjects[index];
+	}
+
+	/**
+	 * @param index Index of ray
+	 * @return Entity the ray hit first, or null if it didn't hit anything (or what it hit isn't an entity)
+	 */
+	public DynamicEntity getHitEntity(int index){
+		CollisionObject obj = hitObjects[index];
+		if(obj == null)
+			return null;
+		Object pointer = obj.getUserPointer();
+		return pointer instanceof DynamicEntity ? (DynamicEntity) pointer : null;
+	}
+
+	/**
+	 * @param index Index of ray
+	 * @return How far along the ray the hit was (0 = start, 1 = end, also 1 if nothing was hit)
+	 */
+	public float getHitFraction(int index){
+		return hitFractions[index];
+	}
+
+	/**
+	 * @param index Index of ray
+	 * @param dest Vector to put where the ray hit in
+	 * @return dest, for chaining (not changed if nothing was hit)
+	 */
+	public Vector3f getHitPoint(int index, Vector3f dest){
+		if(hitObjects[index] != null)
+			dest.set(hitPoints[index * 3], hitPoints[index * 3 + 1], hitPoints[index * 3 + 2]);
+		return dest;
+	}
+
+	/**
+	 * @param index Index of ray
+	 * @param dest Vector to put the normal of the surface the ray hit in
+	 * @return dest, for chaining (not changed if nothing was hit)
+	 */
+	public Vector3f getHitNormal(int index, Vector3f dest){
+		if(hitObjects[index] != null)
+			dest.set(hitNormals[index * 3], hitNormals[index * 3 + 1], hitNormals[index * 3 + 2]);
+		return dest;
+	}
+
+	/**
+	 * Casts a range of rays, splitting it in half if it's too big
+	 */
+	private static class RayTask extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+
+		private RayBatch batch;
+
+		/** Range of rays to cast */
+		private int start, end;
+
+		public RayTask(RayBatch batch, int start, int end){
+			this.batch = batch;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute(){
+			if(end - start <= BATCH_SIZE){
+				batch.castRange(start, end);
+			} else{
+				int middle = (start + end) >>> 1;
+				invokeAll(new RayTask(batch, start, middle), new RayTask(batch, middle, end));
+			}
+		}
+	}
+
+	/**
+	 * Casts single rays against a snapshot. Every thread gets its own.
+	 */
+	private static class RayCaster{
+		/** Nodes left to look at */
+		private int[] stack = new int[64];
+
+		/** Used for exact tests against collision objects */
+		private ClosestRayResultCallback callback = new ClosestRayResultCallback(new javax.vecmath.Vector3f(), new javax.vecmath.Vector3f());
+		private Transform rayFrom = new Transform(), rayTo = new Transform();
+
+		/** Ray being cast */
+		private float fromX, fromY, fromZ, invX, invY, invZ;
+
+		/**
+		 * Casts a ray, putting the results in the batch
+		 * @param batch Batch the ray is in
+		 * @param index Index of ray
+		 */
+		public void cast(RayBatch batch, int index){
+			BroadphaseSnapshot snap = batch.snapshot;
+			int r = index * 6;
+			fromX = batch.rays[r];
+			fromY = batch.rays[r + 1];
+			fromZ = batch.rays[r + 2];
+			float dx = batch.rays[r + 3] - fromX;
+			float dy = batch.rays[r + 4] - fromY;
+			float dz = batch.rays[r + 5] - fromZ;
+			invX = dx != 0.0f ? 1.0f / dx : Float.POSITIVE_INFINITY;
+			invY = dy != 0.0f ? 1.0f / dy : Float.POSITIVE_INFINITY;
+			invZ = dz != 0.0f ? 1.0f / dz : Float.POSITIVE_INFINITY;
+
+			callback.rayFromWorld.set(fromX, fromY, fromZ);
+			callback.rayToWorld.set(batch.rays[r + 3], batch.rays[r + 4], batch.rays[r + 5]);
+			callback.closestHitFraction = 1.0f;
+			callback.collisionObject = null;
+			rayFrom.setIdentity();
+			rayFrom.origin.set(callback.rayFromWorld);
+			rayTo.setIdentity();
+			rayTo.origin.set(callback.rayToWorld);
+
+			short mask = batch.masks[index];
+			DynamicEntity exclude = batch.excludes[index];
+
+			if(snap.roots[0] < 0 && snap.roots[1] < 0){
+				// no tree, check every leaf
+				for(int leaf = 0; leaf < snap.numLeaves; leaf++)
+					testLeaf(snap, leaf, mask, exclude);
+			} else{
+				for(int t = 0; t < snap.roots.length; t++){
+					if(snap.roots[t] >= 0)
+						walk(snap, snap.roots[t], mask, exclude);
+				}
+			}
+
+			CollisionObject hit = callback.collisionObject;
+			batch.hitObjects[index] = hit;
+			if(hit != null){
+				batch.hitFractions[index] = callback.closestHitFraction;
+				batch.hitPoints[index * 3] = callback.hitPointWorld.x;
+				batch.hitPoints[index * 3 + 1] = callback.hitPointWorld.y;
+				batch.hitPoints[index * 3 + 2] = callback.hitPointWorld.z;
+				batch.hitNormals[index * 3] = callback.hitNormalWorld.x;
+				batch.hitNormals[index * 3 + 1] = callback.hitNormalWorld.y;
+				batch.hitNormals[index * 3 + 2] = callback.hitNormalWorld.z;
+			}
+		}
+
+		/**
+		 * Walks down a tree, skipping any branch the ray doesn't go through before its closest hit so far
+		 */
+		private void walk(BroadphaseSnapshot snap, int root, short mask, DynamicEntity exclude){
+			int top = 0;
+			stack[top++] = root;
+			while(top > 0){
+				int node = stack[--top];
+				if(!hitsBox(snap.nodeBounds, node))
+					continue;
+
+				int first = snap.nodeChildren[node * 2];
+				if(first < 0){
+					testLeaf(snap, -first - 1, mask, exclude);
+				} else{
+					if(top + 2 > stack.length){
+						int[] newStack = new int[stack.length * 2];
+						System.arraycopy(stack, 0, newStack, 0, top);
+						stack = newStack;
+					}
+					stack[top++] = first;
+					stack[top++] = snap.nodeChildren[node * 2 + 1];
+				}
+			}
+		}
+
+		/**
+		 * Does an exact test against a single collision object
+		 */
+		private void testLeaf(BroadphaseSnapshot snap, int leaf, short mask, DynamicEntity exclude){
+			if((snap.groups[leaf] & mask) == 0 || !hitsBox(snap.leafBounds, leaf))
+				return;
+
+			CollisionObject obj = snap.objects[leaf];
+			Object pointer = obj.getUserPointer();
+			if(pointer == exclude || (pointer instanceof DynamicEntity && ((DynamicEntity) pointer).removeFlag))
+				return;
+
+			// only changes the callback if this hit is closer than the closest one so far
+			CollisionWorld.rayTestSingle(rayFrom, rayTo, obj, obj.getCollisionShape(), snap.transforms[leaf], callback);
+		}
+
+		/**
+		 * @return Whether or not the ray goes through a bounding box before its closest hit so far
+		 */
+		private boolean hitsBox(float[] bounds, int index){
+			int b = index * 6;
+			float tmin = 0.0f, tmax = callback.closestHitFraction;
+
+			// ray's parallel to an axis, so it has to start inside the box on that axis
+			if(invX == Float.POSITIVE_INFINITY){
+				if(fromX < bounds[b] || fromX > bounds[b + 3])
+					return false;
+			} else{
+				float t1 = (bounds[b] - fromX) * invX, t2 = (bounds[b + 3] - fromX) * invX;
+				tmin = Math.max(tmin, Math.min(t1, t2));
+				tmax = Math.min(tmax, Math.max(t1, t2));
+			}
+
+			if(invY == Float.POSITIVE_INFINITY){
+				if(fromY < bounds[b + 1] || fromY > bounds[b + 4])
+					return false;
+			} else{
+				float t1 = (bounds[b + 1] - fromY) * invY, t2 = (bounds[b + 4] - fromY) * invY;
+				tmin = Math.max(tmin, Math.min(t1, t2));
+				tmax = Math.min(tmax, Math.max(t1, t2));
+			}
+
+			if(invZ == Float.POSITIVE_INFINITY){
+				if(fromZ < bounds[b + 2] || fromZ > bounds[b + 5])
+					return false;
+			} else{
+				float t1 = (bounds[b + 2] - fromZ) * invZ, t2 = (bounds[b + 5] - fromZ) * invZ;
+				tmin = Math.max(tmin, Math.min(t1, t2));
+				tmax = Math.min(tmax, Math.max(t1, t2));
+			}
+
+			return tmin <= tmax;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.shapes.BoxShape;
+import com.bulletphysics.collision.shapes.CollisionShape;
+import com.bulletphysics.collision.shapes.ConeShape;
+import com.bulletphysics.collision.shapes.SphereShape;
+
+/**
+ * Shares collision shapes between rigid bodies. Bullet's primitive shapes don't hold on to any
+ * per-body state, so every asteroid of (about) the same size can use the same SphereShape instead of
+ * each one making its own.
+ * <p>
+ * Sizes get rounded into buckets that are spaced out logarithmically (BUCKETS_PER_DOUBLING buckets
+ * every time the size doubles), so a sphere's radius is never off by more than about 2% and a field full
+ * of asteroid fragments only ends up with a few dozen shapes.
+ * <p>
+ * acquire* methods count references and should be paired with a call to release() when the rigid body
+ * using the shape is taken out of the world (SpawnBuffer does this for dynamic entities).
+ * get* methods are for shapes that are only used for queries (convex sweeps and such) and stay cached
+ * for as long as the physics world is around.
+ */
+public class ShapeCache {
+	/** How many different sizes there are every time the size doubles */
+	public static int BUCKETS_PER_DOUBLING = 16;
+
+	/** Types of shapes, used in keys */
+	private static final long SPHERE = 1L, BOX = 2L, CONE = 3L;
+
+	/** Shapes, by key */
+	private static HashMap<Long, Entry> entries = new HashMap<Long, Entry>();
+
+	/** Shapes, by shape (so release() doesn't have to figure out the key again) */
+	private static IdentityHashMap<CollisionShape, Entry> byShape = new IdentityHashMap<CollisionShape, Entry>();
+
+	/** Hits and misses, for seeing how well shapes are being shared */
+	private static int hits = 0, misses = 0;
+
+	/**
+	 * @param radius Radius of sphere
+	 * @return A shared sphere with (about) the given radius. Call release() when done with it.
+	 */
+	public static synchronized SphereShape acquireSphere(float radius){
+		return (SphereShape) acquire(sphereKey(radius), true);
+	}
+
+	/**
+	 * @param radius Radius of sphere
+	 * @return A shared sphere with (about) the given radius, for queries
+	 */
+	public static synchronized SphereShape getSphere(float radius){
+		return (SphereShape) acquire(sphereKey(radius), false);
+	}
+
+	/**
+	 * @param halfX Half of the box's width
+	 * @param halfY Half of the box's height
+	 * @param halfZ Half of the box's depth
+	 * @return A shared box with (about) the given half extents. Call release() when done with it.
+	 */
+	public static synchronized BoxShape acquireBox(float halfX, float halfY, float halfZ){
+		return (BoxShape) acquire(boxKey(halfX, halfY, halfZ), true);
+	}
+
+	/**
+	 * @param halfX Half of the box's width
+	 * @param halfY Half of the box's height
+	 * @param halfZ Half of the box's depth
+	 * @return A shared box with (about) the given half extents, for queries
+	 */
+	public static synchronized BoxShape getBox(float halfX, float halfY, float halfZ){
+		return (BoxShape) acquire(boxKey(halfX, halfY, halfZ), false);
+	}
+
+	/**
+	 * @param radius Radius of the cone's base
+	 * @param height Height of the cone
+	 * @return A shared cone with (about) the given size. Call release() when done with it.
+	 */
+	public static synchronized ConeShape acquireCone(float radius, float height){
+		return (ConeShape) acquire(key(CONE, bucket(radius), bucket(height), 0), true);
+	}
+
+	/**
+	 * Lets go of a shape. Once nothing's using it, it gets dropped from the cache.
+	 * Shapes that didn't come from the cache are ignored, so this can be called with any rigid body's shape.
+	 * @param shape Shape to release
+	 */
+	public static synchronized void release(CollisionShape shape){
+		Entry entry = byShape.get(shape);
+		if(entry == null || entry.pinned)
+			return;
+
+		entry.references--;
+		if(entry.references <= 0){
+			entries.remove(entry.key);
+			byShape.remove(shape);
+		}
+	}
+
+	/**
+	 * Forgets every shape. Called when the physics world is cleaned up.
+	 */
+	public static synchronized void clear(){
+		entries.clear();
+		byShape.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * @return How many different shapes are currently cached
+	 */
+	public static synchronized int size(){
+		return entries.size();
+	}
+
+	/**
+	 * @return How many times a shape was asked for and was already in the cache
+	 */
+	public static synchronized int getHits(){
+		return hits;
+	}
+
+	/**
+	 * @return How many times a shape was asked for and had to be made
+	 */
+	public static synchronized int getMisses(){
+		return misses;
+	}
+
+	/**
+	 * Gets a shape out of the cache, making it if it's not there
+	 * @param key Key for shape
+	 * @param counted Whether to add a reference (false means the shape stays cached for good)
+	 */
+	private static CollisionShape acquire(long key, boolean counted){
+		Entry entry = entries.get(key);
+		if(entry == null){
+			entry = new Entry(key, makeShape(key));
+			entries.put(key, entry);
+			byShape.put(entry.shape, entry);
+			misses++;
+		} else{
+			hits++;
+		}
+
+		if(counted)
+			entry.references++;
+		else
+			entry.pinned = true;
+
+		return entry.shape;
+	}
+
+	/**
+	 * Makes a shape from its key
+	 */
+	private static CollisionShape makeShape(long key){
+		long type = key >>> 48;
+		float a = size((short) (key >>> 32));
+		float b = size((short) (key >>> 16));
+		float c = size((short) key);
+
+		if(type == SPHERE)
+			return new SphereShape(a);
+		else if(type == BOX)
+			return new BoxShape(new Vector3f(a, b, c));
+		else
+			return new ConeShape(a, b);
+	}
+
+	private static long sphereKey(float radius){
+		return key(SPHERE, bucket(radius), 0, 0);
+	}
+
+	private static long boxKey(float halfX, float halfY, float halfZ){
+		return key(BOX, bucket(halfX), bucket(halfY), bucket(halfZ));
+	}
+
+	/**
+	 * Packs a shape type and up to three size buckets into a key
+	 */
+	private static long key(long type, int a, int b, int c){
+		return (type << 48) | ((a & 0xFFFFL) << 32) | ((b & 0xFFFFL) << 16) | (c & 0xFFFFL);
+	}
+
+	/**
+	 * @param size Size to round
+	 * @return Which bucket the size goes in
+	 * @throws IllegalArgumentException If the size isn't positive (there's no bucket for it)
+	 */
+	private static int bucket(float size){
+		if(!(size > 0.0f))
+			throw new IllegalArgumentException("Shape sizes have to be positive! (got " + size + ")");
+		return Math.round((float) (Math.log(size) / Math.log(2.0)) * BUCKETS_PER_DOUBLING);
+	}
+
+	/**
+	 * @param bucket Bucket to get size of
+	 * @return Size that everything in the bucket gets
+	 */
+	private static float size(int bucket){
+		return (float) Math.pow(2.0, (double) bucket / BUCKETS_PER_DOUBLING);
+	}
+
+	/**
+	 * A cached shape
+	 */
+	private static class Entry{
+		long key;
+		CollisionShape shape;
+
+		/** How many rigid bodies are using this shape */
+		int references = 0;
+
+		/** Whether this shape is being used for queries, in which case it never gets dropped */
+		boolean pinned = false;
+
+		public Entry(long key, CollisionShape shape){
+			this.key = key;
+			this.shape = shape;
+		}
+	}
+}
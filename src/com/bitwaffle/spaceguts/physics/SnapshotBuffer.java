@@ -0,0 +1,59 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands {@link TransformSnapshot}s from the physics thread to the renderer without either one ever waiting on the other.
+ * <p>
+ * Double buffering with a third, "ready" slot in the middle: the physics thread fills in its back buffer
+ * and swaps it with the ready one, and the renderer swaps its front buffer with the ready one whenever
+ * there's something new in it. Nobody ever writes to a snapshot that's being read, and the renderer
+ * always gets the latest finished tick.
+ * <p>
+ * Only one thread should be publishing (whoever is stepping the physics world) and only one thread should be acquiring (the renderer).
+ */
+public class SnapshotBuffer {
+	/** Snapshot being filled in by the physics thread */
+	private TransformSnapshot back = new TransformSnapshot();
+
+	/** Latest finished snapshot */
+	private AtomicReference<TransformSnapshot> ready = new AtomicReference<TransformSnapshot>(new TransformSnapshot());
+
+	/** Snapshot being read by the renderer */
+	private TransformSnapshot front = new TransformSnapshot();
+
+	/**
+	 * Fills in the back buffer from the current state of the world and makes it available to the renderer
+	 */
+	public void publish(){
+		back.capture();
+		swapBack();
+	}
+
+	/**
+	 * Publishes an empty snapshot (for when the world is destroyed)
+	 */
+	public void clear(){
+		back.clear();
+		swapBack();
+	}
+
+	/**
+	 * Swaps the back buffer with the ready one
+	 */
+	private void swapBack(){
+		back.fresh = true;
+		back = ready.getAndSet(back);
+	}
+
+	/**
+	 * @return The latest snapshot, which won't be touched by anybody else until the next call to this
+	 */
+	public TransformSnapshot acquire(){
+		if(ready.get().fresh){
+			front = ready.getAndSet(front);
+			front.fresh = false;
+		}
+		return front;
+	}
+}
@@ -0,0 +1,344 @@
+package com.bitwaffle.spaceguts.physics;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bulletphysics.collision.broadphase.Dbvt;
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.broadphase.DbvtProxy;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+
+/**
+ * Finds entities near a point (or in front of one) without doing a convex sweep.
+ * Queries walk the broadphase's bounding volume tree (see {@link DbvtBroadphase}), so only the
+ * branches that could possibly be in range get looked at. If the world isn't using a DbvtBroadphase,
+ * every collision object gets checked instead.
+ * <p>
+ * Each query puts what it finds in a {@link Results} that's passed in. Results can be reused over and
+ * over, and hold everything a query needs while it's running, so nothing gets allocated once a Results has
+ * grown big enough and queries with different Results can be done at the same time (as long as nothing's
+ * changing the world, i.e. during UpdateStage).
+ * <p>
+ * Only entities whose collision group is in the given mask (see {@link CollisionTypes}) are found.
+ * The camera and anything with its removeFlag set are never found.
+ */
+public class SpatialQuery {
+	/** Types of queries (see Results.type) */
+	private static final int SPHERE = 0, CONE = 1;
+
+	/**
+	 * What a query found
+	 */
+	public static class Results{
+		/** Entities found, and a value for each (distance for sphere and nearest queries, angle for cone queries) */
+		private DynamicEntity[] entities = new DynamicEntity[32];
+		private float[] values = new float[32];
+		private int size = 0;
+
+		/** Most results to keep, and whether to keep them sorted by value */
+		private int limit;
+		private boolean sorted;
+
+		/** The query being done */
+		private int type;
+		private float cx, cy, cz, radius, dx, dy, dz, angle;
+		private short mask;
+		private DynamicEntity exclude;
+
+		/** Used for walking the tree */
+		private Dbvt.Node[] stack = new Dbvt.Node[64];
+
+		/** Used when there's no tree to walk */
+		private Transform transform = new Transform();
+		private javax.vecmath.Vector3f aabbMin = new javax.vecmath.Vector3f(), aabbMax = new javax.vecmath.Vector3f();
+
+		/**
+		 * @return Number of entities found
+		 */
+		public int size(){
+			return size;
+		}
+
+		/**
+		 * @param index Index of result
+		 * @return Entity that was found
+		 */
+		public DynamicEntity get(int index){
+			return entities[index];
+		}
+
+		/**
+		 * @param index Index of result
+		 * @return Distance from the query's center (sphere and nearest queries) or angle in degrees from the query's direction (cone queries)
+		 */
+		public float getValue(int index){
+			return values[index];
+		}
+
+		/**
+		 * Gets rid of every result
+		 */
+		public void clear(){
+			for(int i = 0; i < size; i++)
+				entities[i] = null;
+			size = 0;
+			exclude = null;
+		}
+
+		/**
+		 * Adds a result, keeping things sorted and under the limit if need be
+		 */
+		private void add(DynamicEntity ent, float value){
+			if(!sorted){
+				if(size < limit){
+					ensureCapacity(size + 1);
+					entities[size] = ent;
+					values[size] = value;
+					size++;
+				}
+				return;
+			}
+
+			// full and this is further than everything in here
+			if(size == limit && value >= values[size - 1])
+				return;
+
+			int i = size < limit ? size++ : size - 1;
+			ensureCapacity(size);
+			while(i > 0 && values[i - 1] > value){
+				entities[i] = entities[i - 1];
+				values[i] = values[i - 1];
+				i--;
+			}
+			entities[i] = ent;
+			values[i] = value;
+		}
+
+		private void ensureCapacity(int capacity){
+			if(entities.length >= capacity)
+				return;
+
+			int newLength = Math.max(capacity, entities.length * 2);
+
+			DynamicEntity[] newEntities = new DynamicEntity[newLength];
+			System.arraycopy(entities, 0, newEntities, 0, size);
+			entities = newEntities;
+
+			float[] newValues = new float[newLength];
+			System.arraycopy(values, 0, newValues, 0, size);
+			values = newValues;
+		}
+
+		/**
+		 * Gets ready for a new query
+		 */
+		private void begin(int type, Vector3f center, float radius, short mask, DynamicEntity exclude, int limit, boolean sorted){
+			clear();
+			this.type = type;
+			this.cx = center.x;
+			this.cy = center.y;
+			this.cz = center.z;
+			this.radius = radius;
+			this.mask = mask;
+			this.exclude = exclude;
+			this.limit = limit;
+			this.sorted = sorted;
+		}
+	}
+
+	/**
+	 * Finds everything touching a sphere
+	 * @param center Center of sphere
+	 * @param radius Radius of sphere
+	 * @param mask Collision groups to look for
+	 * @param exclude Entity to leave out (usually whoever's doing the query), can be null
+	 * @param results Where to put what's found (values are distances from the center)
+	 * @return results, for chaining
+	 */
+	public static Results sphere(Vector3f center, float radius, short mask, DynamicEntity exclude, Results results){
+		results.begin(SPHERE, center, radius, mask, exclude, Integer.MAX_VALUE, false);
+		run(results);
+		return results;
+	}
+
+	/**
+	 * Finds the k entities closest to a point
+	 * @param center Point to look around
+	 * @param maxDistance How far to look
+	 * @param k Most entities to find
+	 * @param mask Collision groups to look for
+	 * @param exclude Entity to leave out (usually whoever's doing the query), can be null
+	 * @param results Where to put what's found (closest first, values are distances from the center)
+	 * @return results, for chaining
+	 */
+	public static Results nearest(Vector3f center, float maxDistance, int k, short mask, DynamicEntity exclude, Results results){
+		results.begin(SPHERE, center, maxDistance, mask, exclude, k, true);
+		if(k > 0)
+			run(results);
+		return results;
+	}
+
+	/**
+	 * Finds everything in a cone (i.e. everything that's in front of a ship)
+	 * @param apex Tip of the cone
+	 * @param direction Which way the cone is pointing (should be normalized)
+	 * @param halfAngle Angle between the cone's direction and its side, in degrees
+	 * @param range How far the cone goes
+	 * @param mask Collision groups to look for
+	 * @param exclude Entity to leave out (usually whoever's doing the query), can be null
+	 * @param results Where to put what's found (closest to the direction first, values are angles in degrees)
+	 * @return results, for chaining
+	 */
+	public static Results cone(Vector3f apex, Vector3f direction, float halfAngle, float range, short mask, DynamicEntity exclude, Results results){
+		results.begin(CONE, apex, range, mask, exclude, Integer.MAX_VALUE, true);
+		results.dx = direction.x;
+		results.dy = direction.y;
+		results.dz = direction.z;
+		results.angle = (float) Math.toRadians(halfAngle);
+		run(results);
+		return results;
+	}
+
+	/**
+	 * Does a query, using the broadphase's tree if there is one
+	 */
+	private static void run(Results r){
+		if(Physics.broadphase instanceof DbvtBroadphase){
+			DbvtBroadphase dbvt = (DbvtBroadphase) Physics.broadphase;
+			for(int i = 0; i < dbvt.sets.length; i++)
+				walk(dbvt.sets[i].root, r);
+		} else{
+			ObjectArrayList<CollisionObject> objects = Physics.dynamicsWorld.getCollisionObjectArray();
+			for(int i = 0; i < objects.size(); i++){
+				CollisionObject obj = objects.getQuick(i);
+				if(obj.getBroadphaseHandle() == null)
+					continue;
+				obj.getWorldTransform(r.transform);
+				obj.getCollisionShape().getAabb(r.transform, r.aabbMin, r.aabbMax);
+				test(obj, obj.getBroadphaseHandle().collisionFilterGroup, r.aabbMin, r.aabbMax, r);
+			}
+		}
+	}
+
+	/**
+	 * Walks down a tree, skipping any branch whose bounding box is out of range
+	 */
+	private static void walk(Dbvt.Node root, Results r){
+		if(root == null)
+			return;
+
+		int top = 0;
+		r.stack[top++] = root;
+		while(top > 0){
+			Dbvt.Node node = r.stack[--top];
+			r.stack[top] = null;
+
+			javax.vecmath.Vector3f min = node.volume.Mins(), max = node.volume.Maxs();
+			if(distanceSquared(r.cx, r.cy, r.cz, min, max) > r.radius * r.radius)
+				continue;
+
+			if(node.isleaf()){
+				DbvtProxy proxy = (DbvtProxy) node.data;
+				test((CollisionObject) proxy.clientObject, proxy.collisionFilterGroup, proxy.aabb.Mins(), proxy.aabb.Maxs(), r);
+			} else{
+				if(top + 2 > r.stack.length){
+					Dbvt.Node[] newStack = new Dbvt.Node[r.stack.length * 2];
+					System.arraycopy(r.stack, 0, newStack, 0, top);
+					r.stack = newStack;
+				}
+				r.stack[top++] = node.childs[0];
+				r.stack[top++] = node.childs[1];
+			}
+		}
+	}
+
+	/**
+	 * Checks a single collision object against a query
+	 * @param obj Object to check
+	 * @param group Object's collision group
+	 * @param min Minimum of object's bounding box
+	 * @param max Maximum of object's bounding box
+	 */
+	private static void test(CollisionObject obj, short group, javax.vecmath.Vector3f min, javax.vecmath.Vector3f max, Results r){
+		if((group & r.mask) == 0)
+			return;
+
+		Object pointer = obj.getUserPointer();
+		if(!(pointer instanceof DynamicEntity))
+			return;
+		DynamicEntity ent = (DynamicEntity) pointer;
+		if(ent == r.exclude || ent == Entities.camera || ent.removeFlag)
+			return;
+
+		if(distanceSquared(r.cx, r.cy, r.cz, min, max) > r.radius * r.radius)
+			return;
+
+		// vector from the query's center to the entity's center
+		float vx = ent.location.x - r.cx;
+		float vy = ent.location.y - r.cy;
+		float vz = ent.location.z - r.cz;
+		float dist = (float) Math.sqrt(vx * vx + vy * vy + vz * vz);
+
+		if(r.type == SPHERE){
+			r.add(ent, dist);
+			return;
+		}
+
+		// cone; treat the entity as a sphere that fits its bounding box
+		float offAxis = offAxis(vx, vy, vz, dist, r.dx, r.dy, r.dz, boundingRadius(min, max));
+		if(offAxis <= r.angle)
+			r.add(ent, (float) Math.toDegrees(offAxis));
+	}
+
+	/**
+	 * Figures out how far something is from being straight ahead, the same way cone queries do
+	 * @param apex Where the looking is being done from
+	 * @param direction Which way is straight ahead (should be normalized)
+	 * @param location Center of the thing being looked at
+	 * @param radius Radius of the thing being looked at (see boundingRadius())
+	 * @return Angle between the direction and the closest edge of the thing, in degrees (0 if the direction goes through it)
+	 */
+	public static float offAxisAngle(Vector3f apex, Vector3f direction, Vector3f location, float radius){
+		float vx = location.x - apex.x;
+		float vy = location.y - apex.y;
+		float vz = location.z - apex.z;
+		float dist = (float) Math.sqrt(vx * vx + vy * vy + vz * vz);
+		return (float) Math.toDegrees(offAxis(vx, vy, vz, dist, direction.x, direction.y, direction.z, radius));
+	}
+
+	/**
+	 * @param min Minimum of bounding box
+	 * @param max Maximum of bounding box
+	 * @return Radius of a sphere that (about) fits the bounding box
+	 */
+	public static float boundingRadius(javax.vecmath.Vector3f min, javax.vecmath.Vector3f max){
+		return Math.max(max.x - min.x, Math.max(max.y - min.y, max.z - min.z)) * 0.5f;
+	}
+
+	/**
+	 * @return Angle in radians between a direction and the closest edge of a sphere at the end of (vx, vy, vz)
+	 */
+	private static float offAxis(float vx, float vy, float vz, float dist, float dx, float dy, float dz, float radius){
+		// the tip is inside the sphere
+		if(dist <= radius)
+			return 0.0f;
+
+		float cos = (vx * dx + vy * dy + vz * dz) / dist;
+		float toCenter = (float) Math.acos(Math.max(-1.0f, Math.min(1.0f, cos)));
+		float slack = (float) Math.asin(radius / dist);
+		return Math.max(0.0f, toCenter - slack);
+	}
+
+	/**
+	 * @return Squared distance from a point to the closest point in a box (0 if the point's inside the box)
+	 */
+	private static float distanceSquared(float x, float y, float z, javax.vecmath.Vector3f min, javax.vecmath.Vector3f max){
+		float dx = Math.max(Math.max(min.x - x, 0.0f), x - max.x);
+		float dy = Math.max(Math.max(min.y - y, 0.0f), y - max.y);
+		float dz = Math.max(Math.max(min.z - z, 0.0f), z - max.z);
+		return dx * dx + dy * dy + dz * dz;
+	}
+}
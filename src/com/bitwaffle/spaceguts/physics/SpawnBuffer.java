@@ -0,0 +1,149 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.ArrayList;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bulletphysics.collision.dispatch.CollisionWorld;
+
+/**
+ * Holds on to rigid bodies that get spawned during a physics tick and puts them all in the world at once after the tick,
+ * along with taking out everything that got despawned.
+ * <p>
+ * Lots of things spawn entities in the middle of a tick (asteroids breaking apart and dropping diamonds when they get hit,
+ * missiles, the builder) and putting a rigid body in the world means inserting it into the broadphase. Doing that while
+ * contacts are being looked through, or while other entities are being updated, makes it hard to tell what a tick is going
+ * to see and what it costs. Instead, anything spawned during a tick isn't in the world until the tick is done
+ * (so queries and contacts don't see it until the next tick), and spawns always go in in the order they happened.
+ * <p>
+ * Despawning is still done by setting an entity's removeFlag (which is safe from any thread). The first tick that sees an entity
+ * flagged (see DynamicEntityCallback) skips it and hands it to despawn(), and it gets taken out of the world at the end
+ * of that tick, in the order they are in the world, before any spawns go in.
+ * <p>
+ * Everything that goes in at the end of a tick goes in together with {@link BulkInsert}. Loading a level
+ * does the same thing (see EntitiesParser), calling begin() before making anything and apply() once it's done,
+ * so a level full of asteroids gets its broadphase built all at once.
+ * Any other time rigid bodies go right in to the world.
+ */
+public class SpawnBuffer {
+	/** Whether or not a tick is going on (spawns only get held on to during a tick) */
+	private static boolean buffering = false;
+
+	/** Entities waiting to be put in the world, in the order they were spawned */
+	private static ArrayList<DynamicEntity> spawns = new ArrayList<DynamicEntity>();
+
+	/** Entities being taken out of the world, and entities being put in */
+	private static ArrayList<DynamicEntity> despawns = new ArrayList<DynamicEntity>(), adds = new ArrayList<DynamicEntity>();
+
+	/** How much was done at the end of the last tick */
+	private static int spawnedLastTick = 0, despawnedLastTick = 0;
+
+	/**
+	 * Called at the start of every tick (and before loading a level), after this everything spawned gets held on to until apply() is called
+	 */
+	public static synchronized void begin(){
+		buffering = true;
+	}
+
+	/**
+	 * Takes an entity out of the world at the end of the tick. Called during a tick for every entity in the world
+	 * that has its removeFlag set, in the order they are in the world.
+	 * @param ent Entity to despawn (has to be in the world)
+	 */
+	public static synchronized void despawn(DynamicEntity ent){
+		despawns.add(ent);
+	}
+
+	/**
+	 * Puts an entity's rigid body in the world, or holds on to it until the end of the tick if one's going on
+	 * @param ent Entity to spawn (has to NOT be in the world already)
+	 */
+	public static synchronized void spawn(DynamicEntity ent){
+		if(buffering)
+			spawns.add(ent);
+		else
+			ent.addToWorld();
+	}
+
+	/**
+	 * Stops a spawn that's being held on to from happening
+	 * @param ent Entity that was spawned
+	 * @return True if the spawn got cancelled, false if the entity wasn't being held on to (so it's probably already in the world)
+	 */
+	public static synchronized boolean cancel(DynamicEntity ent){
+		for(int i = spawns.size() - 1; i >= 0; i--){
+			if(spawns.get(i) == ent){
+				spawns.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Takes everything passed to despawn() out of the world, then puts everything that was spawned this tick in.
+	 * Called at the end of every tick, before Entities.applyPending() (and after loading a level).
+	 * @param world World to add to and remove from
+	 */
+	public static synchronized void apply(CollisionWorld world){
+		buffering = false;
+
+		// everything that was flagged
+		for(int i = 0; i < despawns.size(); i++){
+			DynamicEntity ent = despawns.get(i);
+			world.removeCollisionObject(ent.rigidBody);
+			release(ent);
+		}
+		despawnedLastTick = despawns.size();
+		despawns.clear();
+
+		// everything that was spawned (and wasn't despawned before it even got in)
+		for(int i = 0; i < spawns.size(); i++){
+			DynamicEntity ent = spawns.get(i);
+			if(ent.removeFlag)
+				release(ent);
+			else
+				adds.add(ent);
+		}
+		BulkInsert.addAll(adds);
+		spawnedLastTick = adds.size();
+		adds.clear();
+		spawns.clear();
+	}
+
+	/**
+	 * Lets go of everything an entity that's not in the world anymore was using
+	 */
+	private static void release(DynamicEntity ent){
+		ShapeCache.release(ent.rigidBody.getCollisionShape());
+		Entities.removeDynamicEntity(ent);
+		if(ent.pool != null)
+			ent.pool.release(ent);
+	}
+
+	/**
+	 * Forgets about everything being held on to (should be called when the world is destroyed)
+	 */
+	public static synchronized void clear(){
+		buffering = false;
+		spawns.clear();
+		despawns.clear();
+		adds.clear();
+		spawnedLastTick = 0;
+		despawnedLastTick = 0;
+	}
+
+	/**
+	 * @return Number of entities put in the world at the end of the last tick
+	 */
+	public static int getSpawnedLastTick(){
+		return spawnedLastTick;
+	}
+
+	/**
+	 * @return Number of entities taken out of the world at the end of the last tick
+	 */
+	public static int getDespawnedLastTick(){
+		return despawnedLastTick;
+	}
+}
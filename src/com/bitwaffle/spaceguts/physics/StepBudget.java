@@ -0,0 +1,235 @@
+package com.bitwaffle.spaceguts.physics;
+
+/**
+ * Decides how many ticks the physics world gets stepped each frame.
+ * <p>
+ * Every tick runs every entity's update, so trying to catch up after a long frame by running a bunch of ticks
+ * makes the next frame even longer. Instead, each frame only gets budgetMillis of stepping (and never more than maxSteps ticks).
+ * Whatever doesn't get simulated is carried over as debt. As the debt grows, game time gets slowed down
+ * (down to minTimeScale) so that there's less to simulate, and it speeds back up once the debt's paid off.
+ * Debt past maxDebt is dropped, so a huge hitch can't leave the game trying to catch up forever.
+ * <p>
+ * Everything here can be set per level with a &lt;StepBudget&gt; element (see EntitiesParser), i.e.
+ * <pre>
+ * &lt;StepBudget&gt;
+ *         &lt;budget&gt;8.0f&lt;/budget&gt;
+ *         &lt;maxSteps&gt;3&lt;/maxSteps&gt;
+ *         &lt;maxDebt&gt;0.5f&lt;/maxDebt&gt;
+ *         &lt;minTimeScale&gt;0.5f&lt;/minTimeScale&gt;
+ *         &lt;timeScaleResponse&gt;2.0f&lt;/timeScaleResponse&gt;
+ * &lt;/StepBudget&gt;
+ * </pre>
+ * Anything left out gets its default value (everything goes back to the defaults when the world is destroyed).
+ * A maxDebt of 0 (or less) means nothing's ever owed, so time never slows down.
+ * Nothing changes when every frame is cheap; debt only builds up when a frame can't fit its ticks into the budget.
+ */
+public class StepBudget {
+	/** Default values for each level, used when a level doesn't set its own */
+	private static final float DEFAULT_BUDGET_MILLIS = 12.0f, DEFAULT_MAX_DEBT = 0.25f, DEFAULT_MIN_TIME_SCALE = 0.25f, DEFAULT_TIME_SCALE_RESPONSE = 4.0f;
+	private static final int DEFAULT_MAX_STEPS = 5;
+
+	/** Most time to spend stepping the world in one frame, in milliseconds */
+	public static float budgetMillis = DEFAULT_BUDGET_MILLIS;
+
+	/** Most ticks to step in one frame, no matter how much of the budget is left */
+	public static int maxSteps = DEFAULT_MAX_STEPS;
+
+	/** Most simulation time that can be owed before it gets dropped, in seconds */
+	public static float maxDebt = DEFAULT_MAX_DEBT;
+
+	/** Slowest that game time will go when there's a lot of debt (1 is normal speed) */
+	public static float minTimeScale = DEFAULT_MIN_TIME_SCALE;
+
+	/** How quickly the time scale follows the debt, per second (higher is snappier, lower is smoother) */
+	public static float timeScaleResponse = DEFAULT_TIME_SCALE_RESPONSE;
+
+	/** How fast game time is going right now */
+	private static float timeScale = 1.0f;
+
+	/** Simulation time owed as of the end of the last frame (not counting the tick in progress), in seconds */
+	private static float debt = 0.0f;
+
+	/** Simulation time that's been dropped since the level started, in seconds */
+	private static float droppedTime = 0.0f;
+
+	/** Ticks stepped last frame */
+	private static int stepsLastFrame = 0;
+
+	/** Rolling average of how long one tick takes, in nanoseconds (0 until a tick's been timed) */
+	private static float averageStepNanos = 0.0f;
+
+	/** Number of frames that ran out of budget or steps before catching up */
+	private static int framesOverBudget = 0;
+
+	/**
+	 * @param delta Real time that's passed, in seconds
+	 * @return Game time that's passed, in seconds
+	 */
+	public static float scale(float delta){
+		return delta * timeScale;
+	}
+
+	/**
+	 * @return Most ticks that can be stepped this frame, based on how long ticks have been taking
+	 */
+	public static int stepsAllowed(){
+		if(averageStepNanos <= 0.0f)
+			return maxSteps;
+
+		int steps = (int) (budgetMillis * 1000000.0f / averageStepNanos);
+		return Math.max(1, Math.min(maxSteps, steps));
+	}
+
+	/**
+	 * @param frameStart System.nanoTime() from when stepping started this frame
+	 * @return Whether or not this frame's budget has been used up
+	 */
+	public static boolean overBudget(long frameStart){
+		return System.nanoTime() - frameStart >= (long) (budgetMillis * 1000000.0f);
+	}
+
+	/**
+	 * Updates the debt and the time scale after a frame's stepping is done
+	 * @param accumulator Game time that hasn't been simulated yet, in seconds
+	 * @param fixedTimeStep Length of one tick, in seconds
+	 * @param steps Number of ticks stepped this frame
+	 * @param nanos How long stepping took, in nanoseconds
+	 * @param delta Real time that passed this frame, in seconds
+	 * @return What the accumulator should be now (less than before if some debt got dropped)
+	 */
+	public static float endFrame(float accumulator, float fixedTimeStep, int steps, long nanos, float delta){
+		timeSteps(steps, nanos);
+
+		// anything less than a tick is just waiting for the next frame, it's not owed
+		debt = Math.max(0.0f, accumulator - fixedTimeStep);
+		if(debt > 0.0f)
+			framesOverBudget++;
+		float allowedDebt = Math.max(0.0f, maxDebt);
+		if(debt > allowedDebt){
+			droppedTime += debt - allowedDebt;
+			accumulator -= debt - allowedDebt;
+			debt = allowedDebt;
+		}
+
+		updateTimeScale(allowedDebt, delta);
+
+		return accumulator;
+	}
+
+	/**
+	 * Same as endFrame(), but for when Bullet does the fixed stepping itself (Physics.useFixedTimeStep is false).
+	 * Bullet throws away any ticks past the most it was allowed to step instead of carrying them over,
+	 * so they can't be paid back. They still count as this frame's debt though, so time slows down
+	 * the same way it does in fixed step mode when the physics can't keep up.
+	 * @param stepsDue Number of ticks Bullet wanted to step this frame (what stepSimulation() returned)
+	 * @param stepsAllowed Most ticks Bullet was allowed to step this frame
+	 * @param fixedTimeStep Length of one tick, in seconds
+	 * @param nanos How long stepping took, in nanoseconds
+	 * @param delta Real time that passed this frame, in seconds
+	 */
+	public static void endVariableFrame(int stepsDue, int stepsAllowed, float fixedTimeStep, long nanos, float delta){
+		int steps = Math.min(stepsDue, stepsAllowed);
+		timeSteps(steps, nanos);
+
+		float dropped = (stepsDue - steps) * fixedTimeStep;
+		if(dropped > 0.0f)
+			framesOverBudget++;
+		droppedTime += dropped;
+
+		float allowedDebt = Math.max(0.0f, maxDebt);
+		debt = Math.min(dropped, allowedDebt);
+
+		updateTimeScale(allowedDebt, delta);
+	}
+
+	/**
+	 * Keeps track of how long ticks are taking
+	 * @param steps Number of ticks stepped this frame
+	 * @param nanos How long stepping took, in nanoseconds
+	 */
+	private static void timeSteps(int steps, long nanos){
+		stepsLastFrame = steps;
+		if(steps > 0){
+			float stepNanos = (float) nanos / steps;
+			averageStepNanos = averageStepNanos <= 0.0f ? stepNanos : averageStepNanos * 0.9f + stepNanos * 0.1f;
+		}
+	}
+
+	/**
+	 * Slows down more the more that's owed, easing towards it so it doesn't jerk around
+	 * @param allowedDebt Most debt there can be, in seconds
+	 * @param delta Real time that passed this frame, in seconds
+	 */
+	private static void updateTimeScale(float allowedDebt, float delta){
+		float owed = allowedDebt > 0.0f ? Math.min(1.0f, debt / allowedDebt) : 0.0f;
+		float targetScale = 1.0f - (1.0f - minTimeScale) * owed;
+		timeScale += (targetScale - timeScale) * Math.min(1.0f, timeScaleResponse * delta);
+	}
+
+	/**
+	 * Goes back to normal speed with no debt and puts every setting back to its default (should be called when the world is destroyed)
+	 */
+	public static void reset(){
+		budgetMillis = DEFAULT_BUDGET_MILLIS;
+		maxSteps = DEFAULT_MAX_STEPS;
+		maxDebt = DEFAULT_MAX_DEBT;
+		minTimeScale = DEFAULT_MIN_TIME_SCALE;
+		timeScaleResponse = DEFAULT_TIME_SCALE_RESPONSE;
+		timeScale = 1.0f;
+		debt = 0.0f;
+		droppedTime = 0.0f;
+		stepsLastFrame = 0;
+		averageStepNanos = 0.0f;
+		framesOverBudget = 0;
+	}
+
+	/**
+	 * @return How fast game time is going (1 is normal speed)
+	 */
+	public static float getTimeScale(){
+		return timeScale;
+	}
+
+	/**
+	 * @return Simulation time owed, in seconds
+	 */
+	public static float getDebt(){
+		return debt;
+	}
+
+	/**
+	 * @return Simulation time that's been dropped since the level started, in seconds
+	 */
+	public static float getDroppedTime(){
+		return droppedTime;
+	}
+
+	/**
+	 * @return Number of ticks stepped last frame
+	 */
+	public static int getStepsLastFrame(){
+		return stepsLastFrame;
+	}
+
+	/**
+	 * @return Average time one tick takes, in milliseconds
+	 */
+	public static float getAverageStepMillis(){
+		return averageStepNanos / 1000000.0f;
+	}
+
+	/**
+	 * @return Number of frames that couldn't catch up since the level started
+	 */
+	public static int getFramesOverBudget(){
+		return framesOverBudget;
+	}
+
+	/**
+	 * @return Everything above, on one line
+	 */
+	public static String describe(){
+		return String.format("time scale %.2f, debt %.1fms, %d steps, tick %.2fms, %d frames behind, %.2fs dropped",
+				timeScale, debt * 1000.0f, stepsLastFrame, getAverageStepMillis(), framesOverBudget, droppedTime);
+	}
+}
@@ -0,0 +1,451 @@
+package com.bitwaffle.spaceguts.physics;
+
+import org.lwjgl.util.vector.Quaternion;
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.entities.Entity;
+import com.bitwaffle.spaceguts.entities.EntityRegistry;
+import com.bitwaffle.spaceguts.entities.TransformStore;
+import com.bitwaffle.spaceguts.graphics.model.Model;
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
+
+/**
+ * A copy of where everything was at the end of a physics tick (and the tick before it),
+ * along with which entities, passive entities and lights existed at the time and anything
+ * else they need to be drawn (see {@link DrawState}).
+ * The renderer draws from one of these instead of from the {@link Entities} lists or the entities themselves,
+ * so that the physics thread can go on changing things while a frame is being drawn.
+ * Snapshots are handed from the physics thread to the renderer by a {@link SnapshotBuffer}.
+ */
+public class TransformSnapshot {
+	/** Number of floats per transform (location x,y,z then rotation x,y,z,w) */
+	private static final int STRIDE = TransformStore.STRIDE;
+
+	/** Number of floats per projectile (previous location x,y,z, current location x,y,z, then rotation x,y,z,w) */
+	private static final int PROJECTILE_STRIDE = 10;
+
+	/** Every dynamic entity, followed by the camera and player (if they exist) */
+	private DynamicEntity[] entities = new DynamicEntity[128];
+
+	/** Transforms as of the previous and current tick, STRIDE floats per entity */
+	private float[] previous = new float[128 * STRIDE], current = new float[128 * STRIDE];
+
+	/** Everything else each entity needs to be drawn */
+	private DrawState[] drawStates = growDrawStates(new DrawState[0], 128);
+
+	/** Number of entries in entities (including the camera and player) */
+	private int numEntities;
+
+	/** Index of the camera and player in entities, -1 if they don't exist */
+	public int cameraIndex = -1, playerIndex = -1;
+
+	/** Passive entities, lights and the skybox at the time of the snapshot (these aren't interpolated) */
+	public final Group passiveEntities = new Group(), lights = new Group(), skybox = new Group();
+
+	/** Shots from {@link Projectiles}, with their previous and current locations and their rotations */
+	private Model[] projectileModels = new Model[64];
+	private float[] projectileTransforms = new float[64 * PROJECTILE_STRIDE];
+	private int numProjectiles;
+
+	/** System.nanoTime() when this snapshot was taken */
+	public long time;
+
+	/** Whether or not this snapshot hasn't been picked up by the renderer yet (see SnapshotBuffer) */
+	boolean fresh = false;
+
+	/**
+	 * Copies everything out of {@link Entities}.
+	 * Nothing gets allocated unless there are more entities than ever before.
+	 */
+	public void capture(){
+		int oldNumEntities = numEntities, oldNumProjectiles = numProjectiles;
+
+		numEntities = 0;
+		cameraIndex = -1;
+		playerIndex = -1;
+
+		EntityRegistry<DynamicEntity> dynamicEntities = Entities.dynamicEntities;
+		int numDynamic = dynamicEntities.size();
+		ensureEntityCapacity(numDynamic + 2);
+
+		// dynamic entities' transforms are already packed together, so they can be copied straight over
+		dynamicEntities.getTransforms().copyTo(0, numDynamic, current, previous, 0);
+		for(int i = 0; i < numDynamic; i++){
+			DynamicEntity ent = dynamicEntities.get(i);
+			entities[i] = ent;
+			drawStates[i].clear();
+			ent.captureDrawState(drawStates[i]);
+		}
+		numEntities = numDynamic;
+
+		if(Entities.camera != null){
+			cameraIndex = numEntities;
+			add(Entities.camera);
+		}
+
+		if(Entities.player != null){
+			playerIndex = numEntities;
+			add(Entities.player);
+		}
+
+		passiveEntities.begin();
+		for(int i = 0; i < Entities.passiveEntities.size(); i++)
+			passiveEntities.add(Entities.passiveEntities.get(i));
+		passiveEntities.end();
+
+		lights.begin();
+		for(int i = 0; i < Entities.lights.size(); i++)
+			lights.add(Entities.lights.get(i));
+		lights.end();
+
+		skybox.begin();
+		if(Entities.skybox != null)
+			skybox.add(Entities.skybox);
+		skybox.end();
+
+		captureProjectiles();
+
+		// don't hang on to anything that's gone
+		for(int i = numEntities; i < oldNumEntities; i++)
+			entities[i] = null;
+		for(int i = numProjectiles; i < oldNumProjectiles; i++)
+			projectileModels[i] = null;
+
+		time = System.nanoTime();
+	}
+
+	/**
+	 * Empties out the snapshot
+	 */
+	public void clear(){
+		for(int i = 0; i < numEntities; i++)
+			entities[i] = null;
+		for(int i = 0; i < numProjectiles; i++)
+			projectileModels[i] = null;
+		passiveEntities.begin();
+		passiveEntities.end();
+		lights.begin();
+		lights.end();
+		skybox.begin();
+		skybox.end();
+
+		numEntities = 0;
+		numProjectiles = 0;
+		cameraIndex = -1;
+		playerIndex = -1;
+		time = System.nanoTime();
+	}
+
+	/**
+	 * Adds an entity that isn't in Entities.dynamicEntities (the camera or player) to the end of the snapshot
+	 */
+	private void add(DynamicEntity ent){
+		int i = numEntities * STRIDE;
+
+		previous[i] = ent.previousLocation.x;
+		previous[i + 1] = ent.previousLocation.y;
+		previous[i + 2] = ent.previousLocation.z;
+		previous[i + 3] = ent.previousRotation.x;
+		previous[i + 4] = ent.previousRotation.y;
+		previous[i + 5] = ent.previousRotation.z;
+		previous[i + 6] = ent.previousRotation.w;
+
+		current[i] = ent.location.x;
+		current[i + 1] = ent.location.y;
+		current[i + 2] = ent.location.z;
+		current[i + 3] = ent.rotation.x;
+		current[i + 4] = ent.rotation.y;
+		current[i + 5] = ent.rotation.z;
+		current[i + 6] = ent.rotation.w;
+
+		drawStates[numEntities].clear();
+		ent.captureDrawState(drawStates[numEntities]);
+
+		entities[numEntities++] = ent;
+	}
+
+	/**
+	 * Copies every shot out of {@link Projectiles}
+	 */
+	private void captureProjectiles(){
+		numProjectiles = Projectiles.size();
+		if(projectileModels.length < numProjectiles){
+			projectileModels = new Model[numProjectiles * 2];
+			projectileTransforms = new float[numProjectiles * 2 * PROJECTILE_STRIDE];
+		}
+
+		for(int p = 0; p < numProjectiles; p++){
+			Projectiles.Shot shot = Projectiles.get(p);
+			int i = p * PROJECTILE_STRIDE;
+
+			projectileTransforms[i] = shot.previousLocation.x;
+			projectileTransforms[i + 1] = shot.previousLocation.y;
+			projectileTransforms[i + 2] = shot.previousLocation.z;
+			projectileTransforms[i + 3] = shot.location.x;
+			projectileTransforms[i + 4] = shot.location.y;
+			projectileTransforms[i + 5] = shot.location.z;
+			projectileTransforms[i + 6] = shot.rotation.x;
+			projectileTransforms[i + 7] = shot.rotation.y;
+			projectileTransforms[i + 8] = shot.rotation.z;
+			projectileTransforms[i + 9] = shot.rotation.w;
+
+			projectileModels[p] = shot.model;
+		}
+	}
+
+	/**
+	 * Makes sure there's room for the given number of entities
+	 */
+	private void ensureEntityCapacity(int capacity){
+		if(entities.length >= capacity)
+			return;
+
+		int newLength = Math.max(capacity, entities.length * 2);
+
+		DynamicEntity[] newEntities = new DynamicEntity[newLength];
+		System.arraycopy(entities, 0, newEntities, 0, numEntities);
+		entities = newEntities;
+
+		previous = new float[newLength * STRIDE];
+		current = new float[newLength * STRIDE];
+
+		drawStates = growDrawStates(drawStates, newLength);
+	}
+
+	/**
+	 * @param states Draw states to grow
+	 * @param length Length to grow to
+	 * @return Array with every old draw state, and new ones after them
+	 */
+	private static DrawState[] growDrawStates(DrawState[] states, int length){
+		DrawState[] newStates = new DrawState[length];
+		System.arraycopy(states, 0, newStates, 0, states.length);
+		for(int i = states.length; i < length; i++)
+			newStates[i] = new DrawState();
+		return newStates;
+	}
+
+	/**
+	 * @return Number of dynamic entities in this snapshot (not counting the camera or player)
+	 */
+	public int numDynamicEntities(){
+		int num = numEntities;
+		if(cameraIndex >= 0)
+			num--;
+		if(playerIndex >= 0)
+			num--;
+		return num;
+	}
+
+	/**
+	 * @param index Index of entity
+	 * @return Entity at the given index
+	 */
+	public DynamicEntity getEntity(int index){
+		return entities[index];
+	}
+
+	/**
+	 * @param index Index of entity
+	 * @return Everything else the entity at the given index needs to be drawn (rewound to the beginning)
+	 */
+	public DrawState getDrawState(int index){
+		drawStates[index].rewind();
+		return drawStates[index];
+	}
+
+	/**
+	 * Gets an entity's location between the previous and current tick
+	 * @param index Index of entity
+	 * @param alpha How far between the two ticks to go (0 = previous, 1 = current)
+	 * @param dest Vector to put the result in
+	 * @return dest, for chaining
+	 */
+	public Vector3f getLocation(int index, float alpha, Vector3f dest){
+		int i = index * STRIDE;
+		dest.x = previous[i] + (current[i] - previous[i]) * alpha;
+		dest.y = previous[i + 1] + (current[i + 1] - previous[i + 1]) * alpha;
+		dest.z = previous[i + 2] + (current[i + 2] - previous[i + 2]) * alpha;
+		return dest;
+	}
+
+	/**
+	 * Gets an entity's rotation between the previous and current tick.
+	 * Same as {@link DynamicEntity#getInterpolatedRotation(float, Quaternion)}.
+	 * @param index Index of entity
+	 * @param alpha How far between the two ticks to go (0 = previous, 1 = current)
+	 * @param dest Quaternion to put the result in
+	 * @return dest, for chaining
+	 */
+	public Quaternion getRotation(int index, float alpha, Quaternion dest){
+		int i = index * STRIDE + 3;
+
+		// go the short way around
+		float dot = previous[i] * current[i] + previous[i + 1] * current[i + 1] + previous[i + 2] * current[i + 2] + previous[i + 3] * current[i + 3];
+		float cur = dot < 0.0f ? -alpha : alpha;
+		float prev = 1.0f - alpha;
+
+		dest.set(
+				previous[i] * prev + current[i] * cur,
+				previous[i + 1] * prev + current[i + 1] * cur,
+				previous[i + 2] * prev + current[i + 2] * cur,
+				previous[i + 3] * prev + current[i + 3] * cur);
+
+		float length = (float) Math.sqrt(dest.x * dest.x + dest.y * dest.y + dest.z * dest.z + dest.w * dest.w);
+		if(length > 0.0f)
+			dest.scale(1.0f / length);
+		else
+			dest.set(current[i], current[i + 1], current[i + 2], current[i + 3]);
+		return dest;
+	}
+
+	/**
+	 * @return Number of shots from {@link Projectiles} in this snapshot
+	 */
+	public int numProjectiles(){
+		return numProjectiles;
+	}
+
+	/**
+	 * @param index Index of shot
+	 * @return Model to draw the shot with
+	 */
+	public Model getProjectileModel(int index){
+		return projectileModels[index];
+	}
+
+	/**
+	 * Gets a shot's location between the previous and current tick
+	 * @param index Index of shot
+	 * @param alpha How far between the two ticks to go (0 = previous, 1 = current)
+	 * @param dest Vector to put the result in
+	 * @return dest, for chaining
+	 */
+	public Vector3f getProjectileLocation(int index, float alpha, Vector3f dest){
+		int i = index * PROJECTILE_STRIDE;
+		dest.x = projectileTransforms[i] + (projectileTransforms[i + 3] - projectileTransforms[i]) * alpha;
+		dest.y = projectileTransforms[i + 1] + (projectileTransforms[i + 4] - projectileTransforms[i + 1]) * alpha;
+		dest.z = projectileTransforms[i + 2] + (projectileTransforms[i + 5] - projectileTransforms[i + 2]) * alpha;
+		return dest;
+	}
+
+	/**
+	 * @param index Index of shot
+	 * @param dest Quaternion to put the shot's rotation in
+	 * @return dest, for chaining
+	 */
+	public Quaternion getProjectileRotation(int index, Quaternion dest){
+		int i = index * PROJECTILE_STRIDE + 6;
+		dest.set(projectileTransforms[i], projectileTransforms[i + 1], projectileTransforms[i + 2], projectileTransforms[i + 3]);
+		return dest;
+	}
+
+	/**
+	 * Entities that don't get interpolated (passive entities, lights and the skybox),
+	 * along with their location and rotation and anything else they need to be drawn
+	 */
+	public static class Group{
+		private Entity[] entities = new Entity[8];
+		private float[] transforms = new float[8 * STRIDE];
+		private DrawState[] drawStates = growDrawStates(new DrawState[0], 8);
+		private int size, oldSize;
+
+		/**
+		 * Starts filling this in
+		 */
+		private void begin(){
+			oldSize = size;
+			size = 0;
+		}
+
+		/**
+		 * Copies an entity into this group
+		 */
+		private void add(Entity ent){
+			if(size == entities.length){
+				int newLength = entities.length * 2;
+
+				Entity[] newEntities = new Entity[newLength];
+				System.arraycopy(entities, 0, newEntities, 0, size);
+				entities = newEntities;
+
+				float[] newTransforms = new float[newLength * STRIDE];
+				System.arraycopy(transforms, 0, newTransforms, 0, size * STRIDE);
+				transforms = newTransforms;
+
+				drawStates = growDrawStates(drawStates, newLength);
+			}
+
+			int i = size * STRIDE;
+			transforms[i] = ent.location.x;
+			transforms[i + 1] = ent.location.y;
+			transforms[i + 2] = ent.location.z;
+			transforms[i + 3] = ent.rotation.x;
+			transforms[i + 4] = ent.rotation.y;
+			transforms[i + 5] = ent.rotation.z;
+			transforms[i + 6] = ent.rotation.w;
+
+			drawStates[size].clear();
+			ent.captureDrawState(drawStates[size]);
+
+			entities[size++] = ent;
+		}
+
+		/**
+		 * Done filling this in
+		 */
+		private void end(){
+			// don't hang on to anything that's gone
+			for(int i = size; i < oldSize; i++)
+				entities[i] = null;
+		}
+
+		/**
+		 * @return Number of entities in this group
+		 */
+		public int size(){
+			return size;
+		}
+
+		/**
+		 * @param index Index of entity
+		 * @return Entity at the given index
+		 */
+		public Entity get(int index){
+			return entities[index];
+		}
+
+		/**
+		 * @param index Index of entity
+		 * @param dest Vector to put the entity's location in
+		 * @return dest, for chaining
+		 */
+		public Vector3f getLocation(int index, Vector3f dest){
+			int i = index * STRIDE;
+			dest.set(transforms[i], transforms[i + 1], transforms[i + 2]);
+			return dest;
+		}
+
+		/**
+		 * @param index Index of entity
+		 * @param dest Quaternion to put the entity's rotation in
+		 * @return dest, for chaining
+		 */
+		public Quaternion getRotation(int index, Quaternion dest){
+			int i = index * STRIDE + 3;
+			dest.set(transforms[i], transforms[i + 1], transforms[i + 2], transforms[i + 3]);
+			return dest;
+		}
+
+		/**
+		 * @param index Index of entity
+		 * @return Everything else the entity needs to be drawn (rewound to the beginning)
+		 */
+		public DrawState getDrawState(int index){
+			drawStates[index].rewind();
+			return drawStates[index];
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package com.bitwaffle.spaceguts.physics;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+
+/**
+ * Runs DynamicEntity.update() for every entity that says it can be updated in parallel
+ * (see {@link DynamicEntity#canUpdateInParallel()}) across a fork-join pool.
+ * <p>
+ * Entities updated here can only change themselves. Anything that changes shared state
+ * (adding to an inventory, playing a sound, spawning something) has to go through {@link #defer(Runnable)}.
+ * Deferred commands go into a buffer for each worker thread, and all the buffers are run at the end of the stage
+ * in the same order they would have been run in if everything was updated one at a time.
+ */
+public class UpdateStage {
+	/** Whether or not to update in parallel at all */
+	public static boolean enabled = true;
+
+	/** With less than this many entities, it isn't worth splitting the work up */
+	public static int minParallelEntities = 128;
+
+	/** Number of entities each task updates without splitting any further */
+	private static final int BATCH_SIZE = 32;
+
+	/** Threads that do the updating */
+	private static ForkJoinPool pool;
+
+	/** Every command buffer that's been made (one per worker thread) */
+	private static ArrayList<CommandBuffer> buffers = new ArrayList<CommandBuffer>();
+
+	/** Each worker thread's command buffer */
+	private static ThreadLocal<CommandBuffer> workerBuffer = new ThreadLocal<CommandBuffer>(){
+		@Override
+		protected CommandBuffer initialValue(){
+			CommandBuffer buffer = new CommandBuffer();
+			synchronized(buffers){
+				buffers.add(buffer);
+			}
+			return buffer;
+		}
+	};
+
+	/** Used for putting commands from every buffer in order */
+	private static CommandBuffer merged = new CommandBuffer();
+
+	/**
+	 * Tasks that get reused every tick, so that splitting up the work doesn't allocate anything.
+	 * They're kept like a binary heap, the task at i splits into the tasks at 2i + 1 and 2i + 2.
+	 */
+	private static UpdateTask[] tasks = new UpdateTask[0];
+
+	/** Entities being updated and how long the tick is (only valid during update()) */
+	private static ArrayList<DynamicEntity> updating;
+	private static float updateTimeStep;
+
+	/**
+	 * Updates every entity in the given list
+	 * @param entities Entities to update (every one has to be able to be updated in parallel)
+	 * @param timeStep Length of the tick
+	 */
+	public static void update(ArrayList<DynamicEntity> entities, float timeStep){
+		if(!enabled || entities.size() < minParallelEntities){
+			for(int i = 0; i < entities.size(); i++)
+				entities.get(i).update(timeStep);
+			return;
+		}
+
+		updating = entities;
+		updateTimeStep = timeStep;
+		ensureTasks(entities.size());
+		try{
+			getPool().invoke(tasks[0].reset(0, entities.size()));
+		} finally{
+			updating = null;
+			runDeferredCommands();
+		}
+	}
+
+	/**
+	 * @return Worker threads, started if they aren't already (also used by {@link RayBatch})
+	 */
+	static synchronized ForkJoinPool getPool(){
+		if(pool == null)
+			pool = new ForkJoinPool();
+		return pool;
+	}
+
+	/**
+	 * Makes sure there's a task for every piece the given number of entities can get split up into.
+	 * This has to be done before the workers start, since they can't safely make new tasks themselves.
+	 * @param numEntities Number of entities that are about to be updated
+	 */
+	private static void ensureTasks(int numEntities){
+		// every split makes the tree one level deeper
+		int levels = 1;
+		for(int batch = numEntities; batch > BATCH_SIZE; batch = (batch + 1) >>> 1)
+			levels++;
+
+		int numTasks = (1 << levels) - 1;
+		if(tasks.length >= numTasks)
+			return;
+
+		UpdateTask[] newTasks = new UpdateTask[numTasks];
+		System.arraycopy(tasks, 0, newTasks, 0, tasks.length);
+		for(int i = tasks.length; i < numTasks; i++)
+			newTasks[i] = new UpdateTask(i);
+		tasks = newTasks;
+	}
+
+	/**
+	 * Runs a command that changes shared state. If called from an update being run in parallel, the
+	 * command is run at the end of the update stage. Otherwise, it's run right away.
+	 * @param command Command to run
+	 */
+	public static void defer(Runnable command){
+		Thread current = Thread.currentThread();
+		if(pool != null && current instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) current).getPool() == pool)
+			workerBuffer.get().add(command);
+		else
+			command.run();
+	}
+
+	/**
+	 * Runs every deferred command from every worker in order, then clears out all the buffers
+	 */
+	private static void runDeferredCommands(){
+		merged.clear();
+		synchronized(buffers){
+			for(int i = 0; i < buffers.size(); i++){
+				CommandBuffer buffer = buffers.get(i);
+				merged.addAll(buffer);
+				buffer.clear();
+			}
+		}
+
+		if(merged.size() == 0)
+			return;
+
+		merged.sort();
+		for(int i = 0; i < merged.size(); i++)
+			merged.get(i).run();
+		merged.clear();
+	}
+
+	/**
+	 * Stops the worker threads (they'll be started again if they're needed)
+	 */
+	public static synchronized void shutdown(){
+		if(pool != null){
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Updates a range of entities, splitting it in half if it's too big
+	 */
+	private static class UpdateTask extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+
+		/** Where this task is in the tasks array */
+		private int node;
+
+		/** Range of entities to update */
+		private int start, end;
+
+		public UpdateTask(int node){
+			this.node = node;
+		}
+
+		/**
+		 * Gets this task ready to be run again
+		 * @return This task
+		 */
+		public UpdateTask reset(int start, int end){
+			this.start = start;
+			this.end = end;
+			reinitialize();
+			return this;
+		}
+
+		@Override
+		protected void compute(){
+			if(end - start <= BATCH_SIZE){
+				CommandBuffer buffer = workerBuffer.get();
+				for(int i = start; i < end; i++){
+					// anything deferred by this entity gets run in this entity's spot
+					buffer.currentKey = i;
+					updating.get(i).update(updateTimeStep);
+				}
+			} else{
+				int middle = (start + end) >>> 1;
+				invokeAll(tasks[node * 2 + 1].reset(start, middle), tasks[node * 2 + 2].reset(middle, end));
+			}
+		}
+	}
+}
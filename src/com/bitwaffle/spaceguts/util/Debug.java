@@ -16,6 +16,8 @@ import org.newdawn.slick.font.effects.ColorEffect;
 import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.graphics.gui.GUI;
 import com.bitwaffle.spaceguts.input.KeyBindings;
+import com.bitwaffle.spaceguts.physics.PhysicsProfiler;
+import com.bitwaffle.spaceguts.physics.StepBudget;
 import com.bitwaffle.spaceguts.util.console.Console;
 import com.bitwaffle.spaceout.Runner;
 import com.bitwaffle.spaceout.resources.Paths;
@@ -41,6 +43,9 @@ public class Debug {
 
 	/** whether or not debug info is being displayed */
 	public static boolean displayDebug = true;
+	
+	/** whether or not physics timings are drawn with the debug info (see PhysicsProfiler) */
+	public static boolean displayProfiler = false;
 
 	/** font for printing stuff to the screen */
 	public static UnicodeFont font = null;
@@ -247,6 +252,10 @@ public class Debug {
 		
 		drawControls();
 		
+		// physics timings go under the info box
+		if(displayProfiler && PhysicsProfiler.enabled)
+			font.drawString(3, 160, PhysicsProfiler.getReport() + "\n" + StepBudget.describe(), Color.yellow);
+		
 		if(Entities.player != null){
 			String lockon = "Locked on to: ";
 			if(Entities.player.lockon != null){
@@ -5,7 +5,20 @@ import org.lwjgl.util.vector.Vector3f;
 
 public class MatrixHelper {
 	public static Matrix4f perspective(float fovy, float aspect, float zNear, float zFar){
-		Matrix4f result = new Matrix4f();
+		return perspective(fovy, aspect, zNear, zFar, new Matrix4f());
+	}
+	
+	/**
+	 * Creates a perspective projection matrix (like gluPerspective) without allocating anything
+	 * @param fovy Field of view, in degrees
+	 * @param aspect Aspect ratio (width / height)
+	 * @param zNear Distance to near clipping plane
+	 * @param zFar Distance to far clipping plane
+	 * @param dest Matrix to put the projection in
+	 * @return dest, for chaining
+	 */
+	public static Matrix4f perspective(float fovy, float aspect, float zNear, float zFar, Matrix4f dest){
+		Matrix4f result = dest;
 		result.setIdentity();
 		
 		float sine, cotangent, deltaZ;
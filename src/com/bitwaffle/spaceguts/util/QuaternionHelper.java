@@ -129,16 +129,58 @@ public class QuaternionHelper {
 	 */
 	public static Vector3f rotateVectorByQuaternion(Vector3f vector,
 			Quaternion quat) {
-		Quaternion vecQuat = new Quaternion(vector.x, vector.y, vector.z, 0.0f);
-
-		Quaternion quatNegate = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-		quat.negate(quatNegate);
-
-		Quaternion resQuat = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-		Quaternion.mul(vecQuat, quatNegate, resQuat);
-		Quaternion.mul(quat, resQuat, resQuat);
-
-		return new Vector3f(resQuat.x, resQuat.y, resQuat.z);
+		return rotateVectorByQuaternion(vector.x, vector.y, vector.z, quat.x, quat.y, quat.z, quat.w, new Vector3f());
+	}
+	
+	/**
+	 * Rotates a vector by a quaternion without allocating anything
+	 * 
+	 * @param vector
+	 *            The vector to rotate
+	 * @param quat
+	 *            The quaternion to rotate the vector by
+	 * @param dest
+	 *            Where to put the rotated vector (can be the same as vector)
+	 * @return dest, for chaining
+	 */
+	public static Vector3f rotateVectorByQuaternion(Vector3f vector,
+			Quaternion quat, Vector3f dest) {
+		return rotateVectorByQuaternion(vector.x, vector.y, vector.z, quat.x, quat.y, quat.z, quat.w, dest);
+	}
+	
+	/**
+	 * Rotates the vector (x, y, z) by a quaternion without allocating anything
+	 * 
+	 * @param quat
+	 *            The quaternion to rotate the vector by
+	 * @param dest
+	 *            Where to put the rotated vector
+	 * @return dest, for chaining
+	 */
+	public static Vector3f rotateVectorByQuaternion(float x, float y, float z,
+			Quaternion quat, Vector3f dest) {
+		return rotateVectorByQuaternion(x, y, z, quat.x, quat.y, quat.z, quat.w, dest);
+	}
+	
+	/**
+	 * Does the actual rotating for all the rotateVectorByQuaternion methods.
+	 * This is quat * vector * conjugate(quat) multiplied out by hand, in the same order
+	 * Quaternion.mul() does it, so the results are exactly the same as they've always been.
+	 */
+	private static Vector3f rotateVectorByQuaternion(float vx, float vy, float vz,
+			float qx, float qy, float qz, float qw, Vector3f dest) {
+		// vector * conjugate(quat)
+		float rx = vx * qw + 0.0f * -qx + vy * -qz - vz * -qy;
+		float ry = vy * qw + 0.0f * -qy + vz * -qx - vx * -qz;
+		float rz = vz * qw + 0.0f * -qz + vx * -qy - vy * -qx;
+		float rw = 0.0f * qw - vx * -qx - vy * -qy - vz * -qz;
+
+		// quat * (vector * conjugate(quat))
+		dest.set(
+				qx * rw + qw * rx + qy * rz - qz * ry,
+				qy * rw + qw * ry + qz * rx - qx * rz,
+				qz * rw + qw * rz + qx * ry - qy * rx);
+		return dest;
 	}
 	
 	/**
@@ -152,16 +194,7 @@ public class QuaternionHelper {
 	 */
 	public static Vector3f rotateVectorByQuaternion(javax.vecmath.Vector3f vector,
 			Quaternion quat) {
-		Quaternion vecQuat = new Quaternion(vector.x, vector.y, vector.z, 0.0f);
-
-		Quaternion quatNegate = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-		quat.negate(quatNegate);
-
-		Quaternion resQuat = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-		Quaternion.mul(vecQuat, quatNegate, resQuat);
-		Quaternion.mul(quat, resQuat, resQuat);
-
-		return new Vector3f(resQuat.x, resQuat.y, resQuat.z);
+		return rotateVectorByQuaternion(vector.x, vector.y, vector.z, quat.x, quat.y, quat.z, quat.w, new Vector3f());
 	}
 	
 	/**
@@ -175,16 +208,7 @@ public class QuaternionHelper {
 	 */
 	public static Vector3f rotateVectorByQuaternion(javax.vecmath.Vector3f vector,
 			Quat4f quat) {
-		Quaternion vecQuat = new Quaternion(vector.x, vector.y, vector.z, 0.0f);
-
-		Quat4f quatNegate = new Quat4f(0.0f, 0.0f, 0.0f, 1.0f);
-		quat.negate(quatNegate);
-
-		Quaternion resQuat = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-		Quaternion.mul(vecQuat, new Quaternion(quatNegate.x, quatNegate.y, quatNegate.z, quatNegate.w), resQuat);
-		Quaternion.mul(new Quaternion(quat.x, quat.y, quat.z, quat.w), resQuat, resQuat);
-
-		return new Vector3f(resQuat.x, resQuat.y, resQuat.z);
+		return rotateVectorByQuaternion(vector.x, vector.y, vector.z, quat.x, quat.y, quat.z, quat.w, new Vector3f());
 	}
 
 	/**
@@ -220,13 +244,34 @@ public class QuaternionHelper {
 	 * @return Rotated quaternion
 	 */
 	public static Quaternion rotate(Quaternion quat, Vector3f amount){
-		Quaternion ret = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-		
-		ret = rotateX(quat, amount.x);
-		ret = rotateY(ret, amount.y);
-		ret = rotateZ(ret, amount.z);
-		
-		return ret;
+		return rotate(quat, amount, new Quaternion());
+	}
+	
+	/**
+	 * Rotate a quaternion by a vector without allocating anything
+	 * @param quat Quaternion to rotate
+	 * @param amount Amount to rotate quaternion by
+	 * @param dest Where to put the rotated quaternion (can be the same as quat)
+	 * @return dest, for chaining
+	 */
+	public static Quaternion rotate(Quaternion quat, Vector3f amount, Quaternion dest){
+		rotateX(quat, amount.x, dest);
+		rotateY(dest, amount.y, dest);
+		rotateZ(dest, amount.z, dest);
+		return dest;
+	}
+	
+	/**
+	 * Multiplies a quaternion by a rotation around one axis and puts the result in dest.
+	 * Same as Quaternion.mul(quat, new Quaternion(rx, ry, rz, rw), dest) but without the new Quaternion.
+	 */
+	private static Quaternion mulAxisRotation(Quaternion quat, float rx, float ry, float rz, float rw, Quaternion dest){
+		dest.set(
+				quat.x * rw + quat.w * rx + quat.y * rz - quat.z * ry,
+				quat.y * rw + quat.w * ry + quat.z * rx - quat.x * rz,
+				quat.z * rw + quat.w * rz + quat.x * ry - quat.y * rx,
+				quat.w * rw - quat.x * rx - quat.y * ry - quat.z * rz);
+		return dest;
 	}
 
 	/**
@@ -237,13 +282,23 @@ public class QuaternionHelper {
 	 * @return Rotated quaternion
 	 */
 	public static Quaternion rotateX(Quaternion quat, float amount) {
-		Quaternion ret = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
+		return rotateX(quat, amount, new Quaternion());
+	}
+	
+	/**
+	 * Rotate a quaternion along it's x axis a certain amount without allocating anything
+	 * 
+	 * @param amount
+	 *            Amount to rotate the quaternion
+	 * @param dest
+	 *            Where to put the rotated quaternion (can be the same as quat)
+	 * @return dest, for chaining
+	 */
+	public static Quaternion rotateX(Quaternion quat, float amount, Quaternion dest) {
 		double radHalfAngle = Math.toRadians((double) amount) / 2.0;
 		float sinVal = (float) Math.sin(radHalfAngle);
 		float cosVal = (float) Math.cos(radHalfAngle);
-		Quaternion rot = new Quaternion(sinVal, 0.0f, 0.0f, cosVal);
-		Quaternion.mul(quat, rot, ret);
-		return ret;
+		return mulAxisRotation(quat, sinVal, 0.0f, 0.0f, cosVal, dest);
 	}
 
 	/**
@@ -254,13 +309,23 @@ public class QuaternionHelper {
 	 * @return Rotated quaternion
 	 */
 	public static Quaternion rotateY(Quaternion quat, float amount) {
-		Quaternion ret = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
+		return rotateY(quat, amount, new Quaternion());
+	}
+	
+	/**
+	 * Rotate a quaternion along it's y axis a certain amount without allocating anything
+	 * 
+	 * @param amount
+	 *            Amount to rotate the quaternion
+	 * @param dest
+	 *            Where to put the rotated quaternion (can be the same as quat)
+	 * @return dest, for chaining
+	 */
+	public static Quaternion rotateY(Quaternion quat, float amount, Quaternion dest) {
 		double radHalfAngle = Math.toRadians((double) amount) / 2.0;
 		float sinVal = (float) Math.sin(radHalfAngle);
 		float cosVal = (float) Math.cos(radHalfAngle);
-		Quaternion rot = new Quaternion(0.0f, sinVal, 0.0f, cosVal);
-		Quaternion.mul(quat, rot, ret);
-		return ret;
+		return mulAxisRotation(quat, 0.0f, sinVal, 0.0f, cosVal, dest);
 	}
 
 	/**
@@ -271,13 +336,23 @@ public class QuaternionHelper {
 	 * @return Rotated quaternion
 	 */
 	public static Quaternion rotateZ(Quaternion quat, float amount) {
-		Quaternion ret = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
+		return rotateZ(quat, amount, new Quaternion());
+	}
+	
+	/**
+	 * Rotate a quaternion along it's z axis a certain amount without allocating anything
+	 * 
+	 * @param amount
+	 *            Amount to rotate the quaternion
+	 * @param dest
+	 *            Where to put the rotated quaternion (can be the same as quat)
+	 * @return dest, for chaining
+	 */
+	public static Quaternion rotateZ(Quaternion quat, float amount, Quaternion dest) {
 		double radHalfAngle = Math.toRadians((double) amount) / 2.0;
 		float sinVal = (float) Math.sin(radHalfAngle);
 		float cosVal = (float) Math.cos(radHalfAngle);
-		Quaternion rot = new Quaternion(0.0f, 0.0f, sinVal, cosVal);
-		Quaternion.mul(quat, rot, ret);
-		return ret;
+		return mulAxisRotation(quat, 0.0f, 0.0f, sinVal, cosVal, dest);
 	}
 
 	/**
@@ -343,6 +418,16 @@ public class QuaternionHelper {
 	 * @return Rotation matrix representing given quaternion
 	 */
 	public static Matrix4f toMatrix(Quaternion quat){
+		return toMatrix(quat, new Matrix4f());
+	}
+	
+	/**
+	 * Converts a quaternion to a rotation matrix without allocating anything
+	 * @param quat Quaternion to convert
+	 * @param dest Matrix to put the rotation in
+	 * @return dest, for chaining
+	 */
+	public static Matrix4f toMatrix(Quaternion quat, Matrix4f dest){
 		float x2 = quat.x * quat.x;
 		float y2 = quat.y * quat.y;
 		float z2 = quat.z * quat.z;
@@ -353,7 +438,7 @@ public class QuaternionHelper {
 		float wy = quat.w * quat.y;
 		float wz = quat.w * quat.z;
 		
-		Matrix4f ret = new Matrix4f();
+		Matrix4f ret = dest;
 
 
 		ret.m00 = (1.0f - 2.0f * (y2 + z2));
@@ -0,0 +1,41 @@
+package com.bitwaffle.spaceguts.util;
+
+import java.util.Random;
+
+/**
+ * Hands out every random number generator the simulation uses, all of them seeded from one master seed.
+ * As long as generators get asked for in the same order (which they are, since they only get made
+ * on the physics thread or while loading a level), the same master seed means the same random numbers.
+ * {@link com.bitwaffle.spaceguts.input.InputLog} saves the master seed with every recording so that a replay
+ * gets the exact same asteroids, loot and missile spins.
+ */
+public class Randoms {
+	/** Seed that everything is currently coming from */
+	private static long seed = System.nanoTime();
+
+	/** Where every generator's seed comes from */
+	private static Random master = new Random(seed);
+
+	/**
+	 * Starts handing out generators from a new master seed
+	 * @param newSeed Seed to use
+	 */
+	public static synchronized void setSeed(long newSeed){
+		seed = newSeed;
+		master.setSeed(newSeed);
+	}
+
+	/**
+	 * @return Master seed that generators are coming from
+	 */
+	public static long getSeed(){
+		return seed;
+	}
+
+	/**
+	 * @return A new random number generator, seeded with the next seed from the master seed
+	 */
+	public static synchronized Random create(){
+		return new Random(master.nextLong());
+	}
+}
@@ -0,0 +1,123 @@
+package com.bitwaffle.spaceguts.util;
+
+import javax.vecmath.Quat4f;
+
+import org.lwjgl.util.vector.Quaternion;
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.linearmath.Transform;
+
+/**
+ * Converts between javax.vecmath's vectors and quaternions (used by Bullet)
+ * and org.lwjgl.util.vector's vectors and quaternions (used by everything else).
+ * <p>
+ * Every method here puts its result into an object that's passed in instead of creating a new one,
+ * so they're safe to use every frame. None of them use any static scratch objects either,
+ * so they can be called from any thread (see UpdateStage).
+ */
+public class VectorHelper {
+	/**
+	 * Copies an LWJGL vector into a vecmath vector
+	 * @param src Vector to copy
+	 * @param dest Vector to copy into
+	 * @return dest, for chaining
+	 */
+	public static javax.vecmath.Vector3f toVecmath(Vector3f src, javax.vecmath.Vector3f dest){
+		dest.set(src.x, src.y, src.z);
+		return dest;
+	}
+
+	/**
+	 * Copies a vecmath vector into an LWJGL vector
+	 * @param src Vector to copy
+	 * @param dest Vector to copy into
+	 * @return dest, for chaining
+	 */
+	public static Vector3f toLWJGL(javax.vecmath.Vector3f src, Vector3f dest){
+		dest.set(src.x, src.y, src.z);
+		return dest;
+	}
+
+	/**
+	 * Copies an LWJGL quaternion into a vecmath quaternion
+	 * @param src Quaternion to copy
+	 * @param dest Quaternion to copy into
+	 * @return dest, for chaining
+	 */
+	public static Quat4f toVecmath(Quaternion src, Quat4f dest){
+		dest.set(src.x, src.y, src.z, src.w);
+		return dest;
+	}
+
+	/**
+	 * Copies a vecmath quaternion into an LWJGL quaternion
+	 * @param src Quaternion to copy
+	 * @param dest Quaternion to copy into
+	 * @return dest, for chaining
+	 */
+	public static Quaternion toLWJGL(Quat4f src, Quaternion dest){
+		dest.set(src.x, src.y, src.z, src.w);
+		return dest;
+	}
+
+	/**
+	 * Sets a transform to the given location and rotation
+	 * @param location Location to use
+	 * @param rotation Rotation to use
+	 * @param scratch Quaternion used for the conversion (its value gets overwritten)
+	 * @param dest Transform to set
+	 * @return dest, for chaining
+	 */
+	public static Transform toTransform(Vector3f location, Quaternion rotation, Quat4f scratch, Transform dest){
+		dest.setIdentity();
+		dest.origin.set(location.x, location.y, location.z);
+		dest.setRotation(toVecmath(rotation, scratch));
+		return dest;
+	}
+
+	/**
+	 * Gets the location and rotation out of a transform
+	 * @param src Transform to get location and rotation from
+	 * @param scratch Quaternion used for the conversion (its value gets overwritten)
+	 * @param locationDest Where to put the location
+	 * @param rotationDest Where to put the rotation
+	 */
+	public static void fromTransform(Transform src, Quat4f scratch, Vector3f locationDest, Quaternion rotationDest){
+		toLWJGL(src.origin, locationDest);
+		src.getRotation(scratch);
+		toLWJGL(scratch, rotationDest);
+	}
+
+	/**
+	 * Gets a rigid body's linear velocity as an LWJGL vector
+	 * @param body Body to get velocity of
+	 * @param scratch Vector used for the conversion (its value gets overwritten)
+	 * @param dest Where to put the velocity
+	 * @return dest, for chaining
+	 */
+	public static Vector3f getLinearVelocity(RigidBody body, javax.vecmath.Vector3f scratch, Vector3f dest){
+		body.getLinearVelocity(scratch);
+		return toLWJGL(scratch, dest);
+	}
+
+	/**
+	 * Sets a rigid body's linear velocity from an LWJGL vector
+	 * @param body Body to set velocity of
+	 * @param velocity Velocity to set
+	 * @param scratch Vector used for the conversion (its value gets overwritten)
+	 */
+	public static void setLinearVelocity(RigidBody body, Vector3f velocity, javax.vecmath.Vector3f scratch){
+		body.setLinearVelocity(toVecmath(velocity, scratch));
+	}
+
+	/**
+	 * Applies an impulse given as an LWJGL vector to the center of a rigid body
+	 * @param body Body to push
+	 * @param impulse Impulse to apply
+	 * @param scratch Vector used for the conversion (its value gets overwritten)
+	 */
+	public static void applyCentralImpulse(RigidBody body, Vector3f impulse, javax.vecmath.Vector3f scratch){
+		body.applyCentralImpulse(toVecmath(impulse, scratch));
+	}
+}
@@ -9,7 +9,9 @@ import org.lwjgl.opengl.GL11;
 import org.newdawn.slick.Color;
 import org.newdawn.slick.UnicodeFont;
 
+import com.bitwaffle.spaceguts.graphics.render.Graphics;
 import com.bitwaffle.spaceguts.input.MouseManager;
+import com.bitwaffle.spaceguts.physics.Physics;
 import com.bitwaffle.spaceguts.util.Debug;
 import com.bitwaffle.spaceguts.util.DisplayHelper;
 import com.bitwaffle.spaceout.resources.Textures;
@@ -159,6 +161,10 @@ public class Console {
 		chIndex = 0;
 		updateCommandHistory();
 		
+		// with no window, there's nowhere to draw the console so System.out is left alone
+		if(Graphics.headless)
+			return;
+		
 		// set System.out to go to the console
 		ConsoleOutputStream out = new ConsoleOutputStream(this);
 		PrintStream stream = new PrintStream(out);
@@ -376,6 +382,8 @@ public class Console {
 			if(commandString.charAt(0) == '?')
 				commandString = "help";
 
+			// commands can change the world, so the physics thread can't be ticking while they happen
+			Physics.worldLock.lock();
 			try{
 				ConsoleCommands.valueOf(commandString).issue(toker);
 			} catch (NumberFormatException e) {
@@ -385,6 +393,8 @@ public class Console {
 			} catch (NoSuchElementException e) {
 				System.out.println("Not enough vairbales for command '"
 						+ commandString + "'!");
+			} finally{
+				Physics.worldLock.unlock();
 			}
 		}
 	}
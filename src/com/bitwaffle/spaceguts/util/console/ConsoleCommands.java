@@ -12,6 +12,9 @@ import com.bitwaffle.spaceguts.entities.DynamicEntity;
 import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.entities.Entity;
 import com.bitwaffle.spaceguts.entities.Light;
+import com.bitwaffle.spaceguts.physics.PhysicsProfiler;
+import com.bitwaffle.spaceguts.physics.StepBudget;
+import com.bitwaffle.spaceguts.util.Debug;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
 import com.bitwaffle.spaceout.Runner;
 import com.bulletphysics.linearmath.DefaultMotionState;
@@ -58,7 +61,10 @@ public enum ConsoleCommands {
 	mute(new MuteCommand()),
 	
 	volume(new VolumeCommand()),
-	vol(volume);
+	vol(volume),
+	
+	profile(new ProfileCommand()),
+	prof(profile);
 
 	
 	protected Command function;
@@ -527,3 +533,52 @@ class VolumeCommand implements Command{
 	}
 	
 }
+
+/**
+ * Turns the physics profiler on and off and prints out its timings
+ */
+class ProfileCommand implements Command{
+	@Override
+	public void issue(StringTokenizer toker) {
+		if(!toker.hasMoreTokens()){
+			if(!PhysicsProfiler.enabled)
+				System.out.println("Profiler is off! (use /profile on)");
+			else
+				System.out.println(PhysicsProfiler.buildReport());
+			System.out.println(StepBudget.describe());
+			return;
+		}
+		
+		String profileCommand = toker.nextToken().toLowerCase();
+		
+		if(profileCommand.equals("on")){
+			PhysicsProfiler.reset();
+			PhysicsProfiler.enabled = true;
+			Debug.displayProfiler = true;
+			System.out.println("Profiler on");
+		} else if(profileCommand.equals("off")){
+			PhysicsProfiler.enabled = false;
+			Debug.displayProfiler = false;
+			System.out.println("Profiler off");
+		} else if(profileCommand.equals("overlay")){
+			Debug.displayProfiler = !Debug.displayProfiler;
+			System.out.println("Profiler overlay " + (Debug.displayProfiler ? "on" : "off"));
+		} else if(profileCommand.equals("reset")){
+			PhysicsProfiler.reset();
+			System.out.println("Profiler samples cleared");
+		} else{
+			System.out.println("Unknown profile command! (" + profileCommand + ")");
+		}
+	}
+
+	@Override
+	public void help() {
+		System.out.println("Usage: /profile COMMAND");
+		System.out.println("Leave command blank to print out p50/p95/p99 for every phase of a physics update, and how far behind the physics is");
+		System.out.println("Possible commands:");
+		System.out.println("on - start timing physics updates and show the timings with the debug info");
+		System.out.println("off - stop timing physics updates");
+		System.out.println("overlay - show or hide the timings in the debug info");
+		System.out.println("reset - throw out every timing so far");
+	}
+}
@@ -15,6 +15,15 @@ import org.w3c.dom.NodeList;
 import com.bitwaffle.spaceguts.entities.Camera;
 import com.bitwaffle.spaceguts.entities.DynamicEntity;
 import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.input.InputLog;
+import com.bitwaffle.spaceguts.physics.Broadphases;
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.PhysicsLOD;
+import com.bitwaffle.spaceguts.physics.SpawnBuffer;
+import com.bitwaffle.spaceguts.physics.StepBudget;
+import com.bitwaffle.spaceguts.util.VectorHelper;
+import com.bitwaffle.spaceout.entities.dynamic.Asteroid;
+import com.bitwaffle.spaceout.entities.dynamic.Diamond;
 import com.bitwaffle.spaceout.entities.dynamic.Planet;
 import com.bitwaffle.spaceout.entities.passive.AsteroidField;
 import com.bitwaffle.spaceout.entities.passive.Skybox;
@@ -42,28 +51,14 @@ public class EntitiesParser {
 	 *            The file to load
 	 */
 	public static void loadEntitiesFromXmlFile(String file) {
-		// list of all the nodes
-		NodeList nodes = null;
-
-		// create a new DocumentBuilderFactory to read the XML file
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+		// start recording or replaying input (this has to happen before anything random gets made)
+		InputLog.levelLoading(file);
+		
+		// everything that gets made goes into the world all at once at the end
+		SpawnBuffer.begin();
 
-		// The document builder
-		DocumentBuilder db;
-		// The actual document
-		Document doc;
-		try {
-			// create a new document builder from the factory
-			db = dbf.newDocumentBuilder();
-			// tell the document builder to parse the file
-			doc = db.parse(file);
-			// create an element from the document
-			Element docEle = doc.getDocumentElement();
-			// grab all the other nodes
-			nodes = docEle.getChildNodes();
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		// list of all the nodes
+		NodeList nodes = readNodes(file);
 
 		/*
 		 * Grab the rest of the entities in the file
@@ -91,11 +86,64 @@ public class EntitiesParser {
 				Entities.camera.following = Entities.player;
 				Entities.camera.freeMode = false;
 			}
+			
+			// make a bunch of the things that get made in the middle of a fight now, instead of during the fight
+			Asteroid.POOL.warmUp();
+			Diamond.POOL.warmUp();
 		} else {
 			System.out.println("Error in XMLParser! Either there was nothing in the given file ("
 							+ file
 							+ ") or the parser simply just didn't want to work");
 		}
+		
+		SpawnBuffer.apply(Physics.dynamicsWorld);
+	}
+	
+	/**
+	 * Picks the broadphase a level asks for with its &lt;Broadphase&gt; element, if it has one (see {@link Broadphases}).
+	 * This has to be called before Physics.initPhysics(), so that the world gets made with the right broadphase.
+	 * 
+	 * @param file
+	 *            The level file
+	 */
+	public static void loadBroadphase(String file) {
+		NodeList nodes = readNodes(file);
+		if (nodes == null)
+			return;
+		
+		for (int i = 0; i < nodes.getLength(); i++) {
+			if (nodes.item(i).getNodeType() == Node.ELEMENT_NODE
+					&& nodes.item(i).getNodeName().toLowerCase().equals("broadphase"))
+				setBroadphase((Element) nodes.item(i));
+		}
+	}
+	
+	/**
+	 * Reads in an XML file
+	 * @param file The file to read
+	 * @return Every node under the file's root element, or null if it couldn't be read
+	 */
+	private static NodeList readNodes(String file) {
+		// create a new DocumentBuilderFactory to read the XML file
+		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+
+		// The document builder
+		DocumentBuilder db;
+		// The actual document
+		Document doc;
+		try {
+			// create a new document builder from the factory
+			db = dbf.newDocumentBuilder();
+			// tell the document builder to parse the file
+			doc = db.parse(file);
+			// create an element from the document
+			Element docEle = doc.getDocumentElement();
+			// grab all the other nodes
+			return docEle.getChildNodes();
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
 	}
 
 	/**
@@ -120,7 +168,54 @@ public class EntitiesParser {
 			makeSaucer(ele);
 		} else if (type.equals("asteroids")){
 			makeAsteroidField(ele);
+		} else if (type.equals("physicslod")){
+			setPhysicsLOD(ele);
+		} else if (type.equals("stepbudget")){
+			setStepBudget(ele);
+		}
+	}
+	
+	/**
+	 * Sets the distances at which entities start getting simulated with less detail (see {@link PhysicsLOD}).
+	 * Anything that's left out keeps its default value.
+	 */
+	private static void setPhysicsLOD(Element ele){
+		PhysicsLOD.reducedRadius = getFloat(ele, "reducedRadius", PhysicsLOD.reducedRadius);
+		PhysicsLOD.driftRadius = getFloat(ele, "driftRadius", PhysicsLOD.driftRadius);
+		PhysicsLOD.sleepRadius = getFloat(ele, "sleepRadius", PhysicsLOD.sleepRadius);
+	}
+	
+	/**
+	 * Sets how much time the physics gets each frame and what happens when it can't keep up (see {@link StepBudget}).
+	 * Anything that's left out keeps its default value.
+	 */
+	private static void setStepBudget(Element ele){
+		StepBudget.budgetMillis = getFloat(ele, "budget", StepBudget.budgetMillis);
+		StepBudget.maxSteps = (int) getFloat(ele, "maxSteps", StepBudget.maxSteps);
+		StepBudget.maxDebt = getFloat(ele, "maxDebt", StepBudget.maxDebt);
+		StepBudget.minTimeScale = getFloat(ele, "minTimeScale", StepBudget.minTimeScale);
+		StepBudget.timeScaleResponse = getFloat(ele, "timeScaleResponse", StepBudget.timeScaleResponse);
+	}
+	
+	/**
+	 * Picks which broadphase the physics world uses (see {@link Broadphases}).
+	 * Anything that's left out keeps its default value.
+	 */
+	private static void setBroadphase(Element ele){
+		String type = getString(ele, "type");
+		if(type != null){
+			Broadphases.Type t = Broadphases.parse(type);
+			if(t != null)
+				Broadphases.type = t;
+			else
+				System.out.println("Unknown broadphase type " + type + " in XMLParser! Using " + Broadphases.type);
 		}
+		if(getString(ele, "worldMin") != null)
+			VectorHelper.toVecmath(getVector3f(ele, "worldMin"), Broadphases.worldMin);
+		if(getString(ele, "worldMax") != null)
+			VectorHelper.toVecmath(getVector3f(ele, "worldMax"), Broadphases.worldMax);
+		Broadphases.maxHandles = (int) getFloat(ele, "maxHandles", Broadphases.maxHandles);
+		Broadphases.cellSize = getFloat(ele, "cellSize", Broadphases.cellSize);
 	}
 	
 	private static void makeAsteroidField(Element ele){
@@ -365,4 +460,20 @@ public class EntitiesParser {
 	private static float getFloat(Element ele, String tagName) {
 		return Float.parseFloat(getString(ele, tagName));
 	}
+
+	/**
+	 * Gets a float from an element, or a default value if the element doesn't have the tag
+	 * 
+	 * @param ele
+	 *            The element to get the float from
+	 * @param tagName
+	 *            The tag to get the float from
+	 * @param defaultValue
+	 *            What to return if the tag isn't there
+	 * @return The float from the element
+	 */
+	private static float getFloat(Element ele, String tagName, float defaultValue) {
+		String value = getString(ele, tagName);
+		return value == null ? defaultValue : Float.parseFloat(value);
+	}
 }
@@ -0,0 +1,173 @@
+package com.bitwaffle.spaceout;
+
+import com.bitwaffle.spaceguts.audio.Audio;
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.entities.Entity;
+import com.bitwaffle.spaceguts.entities.EntityPool;
+import com.bitwaffle.spaceguts.graphics.render.Graphics;
+import com.bitwaffle.spaceguts.input.InputLog;
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.ShapeCache;
+import com.bitwaffle.spaceguts.util.Randoms;
+import com.bitwaffle.spaceguts.util.xml.EntitiesParser;
+import com.bitwaffle.spaceout.entities.passive.AsteroidField;
+
+/**
+ * Runs the simulation without a window, OpenGL or OpenAL.
+ * Loads a level, then steps the physics world (and by extension every entity)
+ * as fast as it can for a set number of ticks and prints out how long it took.
+ *
+ * Usage: HeadlessRunner [level file] [ticks] [extra asteroids]
+ * i.e. <code>HeadlessRunner res/XML/Hard.xml 3600 2000</code>
+ *
+ * Can also be given an input log instead of a level (see InputLog), in which case the level
+ * the log was recorded on gets loaded and the whole log is replayed.
+ * i.e. <code>HeadlessRunner session.replay</code>
+ *
+ * Everything random is seeded the same way every run (or with the seed from the input log),
+ * so running the same thing twice simulates the exact same thing.
+ *
+ * No natives are needed for this, so it can be run on machines without a GPU.
+ */
+public class HeadlessRunner {
+	/** level to load if one isn't given */
+	private static final String DEFAULT_LEVEL = "res/XML/Hard.xml";
+
+	/** how many ticks to run if it isn't given */
+	private static final int DEFAULT_TICKS = 3600;
+
+	/** seed given to Randoms when not replaying */
+	private static final long SEED = 1337420L;
+
+	/** the level being simulated */
+	private String level;
+
+	/** how many physics ticks to run (less than 0 means until the input log being replayed is done) */
+	private int ticks;
+
+	/** how many asteroids to add to the level's asteroid fields on top of what the level already has */
+	private int extraAsteroids;
+
+	/**
+	 * @param args Level file, number of ticks and number of extra asteroids (all optional)
+	 */
+	public static void main(String[] args) {
+		String level = args.length > 0 ? args[0] : DEFAULT_LEVEL;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TICKS;
+		int extraAsteroids = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+		// replay an input log
+		if(level.endsWith(InputLog.EXTENSION)){
+			if(!InputLog.replay(level))
+				return;
+			level = InputLog.getReplayLevel();
+			ticks = -1;
+			extraAsteroids = 0;
+		}
+
+		HeadlessRunner run = new HeadlessRunner(level, ticks, extraAsteroids);
+		run.run();
+	}
+
+	/**
+	 * Create a new headless runner
+	 * @param level Level file to load
+	 * @param ticks How many physics ticks to run
+	 * @param extraAsteroids How many asteroids to add on top of what the level has
+	 */
+	public HeadlessRunner(String level, int ticks, int extraAsteroids){
+		this.level = level;
+		this.ticks = ticks;
+		this.extraAsteroids = extraAsteroids;
+	}
+
+	/**
+	 * Loads the level and runs the simulation
+	 */
+	public void run(){
+		init();
+
+		long start = System.nanoTime();
+		if(ticks < 0){
+			ticks = 0;
+			while(InputLog.isReplaying()){
+				tick();
+				ticks++;
+			}
+		} else{
+			for(int i = 0; i < ticks; i++)
+				tick();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println("Simulated " + ticks + " ticks of " + level + " in " + (elapsed / 1000000) + "ms");
+		if(ticks > 0)
+			System.out.println("Average tick: " + (elapsed / ticks) + "ns");
+		System.out.println("Dynamic entities: " + Entities.dynamicEntities.size());
+		System.out.println("Collision shapes: " + ShapeCache.size() + " (" + ShapeCache.getHits() + " cache hits, " + ShapeCache.getMisses() + " misses)");
+		EntityPool.printStats();
+
+		shutdown();
+	}
+
+	/**
+	 * Initializes the physics world and loads the level
+	 */
+	public void init(){
+		Graphics.headless = true;
+		Audio.headless = true;
+
+		EntitiesParser.loadBroadphase(level);
+		Physics.initPhysics();
+		// replays set their own seed when the level gets loaded
+		Randoms.setSeed(SEED);
+		EntitiesParser.loadEntitiesFromXmlFile(level);
+
+		// one tick so that the passive entities from the level get added
+		tick();
+
+		if(extraAsteroids > 0)
+			addExtraAsteroids();
+	}
+
+	/**
+	 * Advances the simulation by exactly one physics tick
+	 */
+	public void tick(){
+		Physics.simulate(Physics.fixedTimeStep);
+	}
+
+	/**
+	 * Spreads the extra asteroids evenly across all of the level's asteroid fields
+	 */
+	private void addExtraAsteroids(){
+		int numFields = 0;
+		for(Entity ent : Entities.passiveEntities){
+			if(ent instanceof AsteroidField)
+				numFields++;
+		}
+
+		if(numFields == 0){
+			System.out.println("No asteroid fields in " + level + ", not adding any extra asteroids");
+			return;
+		}
+
+		int added = 0;
+		while(added < extraAsteroids){
+			for(Entity ent : Entities.passiveEntities){
+				if(ent instanceof AsteroidField && added < extraAsteroids){
+					((AsteroidField) ent).releaseAsteroid();
+					added++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets rid of everything
+	 */
+	public void shutdown(){
+		Entities.cleanup();
+		Physics.cleanup();
+	}
+}
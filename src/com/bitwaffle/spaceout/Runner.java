@@ -10,6 +10,7 @@ import com.bitwaffle.spaceguts.audio.Audio;
 import com.bitwaffle.spaceguts.graphics.gui.GUI;
 import com.bitwaffle.spaceguts.graphics.gui.menu.MainMenu;
 import com.bitwaffle.spaceguts.graphics.render.Graphics;
+import com.bitwaffle.spaceguts.input.InputLog;
 import com.bitwaffle.spaceguts.input.KeyBindings;
 import com.bitwaffle.spaceguts.input.KeyboardManager;
 import com.bitwaffle.spaceguts.input.MouseManager;
@@ -38,6 +39,10 @@ import com.bitwaffle.spaceout.resources.Textures;
  * In "Program arguments:" put "${workspace_loc:spaceout/lib/natives/*YOUROS*}"
  * Then you should be able to run as usual.
  * 
+ * To record a play session, add "-Dspaceout.record=session.replay" to the VM arguments.
+ * Everything from when a level gets loaded until it gets quit is saved.
+ * To replay it, add "-Dspaceout.replay=session.replay" and load the same level (see InputLog).
+ * 
  * @author TranquilMarmot
  */
 public class Runner {
@@ -63,6 +68,12 @@ public class Runner {
 		else
 			System.setProperty("org.lwjgl.librarypath", args[0]);
 		
+		// record or replay input when a level gets loaded
+		if(System.getProperty("spaceout.record") != null)
+			InputLog.record(System.getProperty("spaceout.record"));
+		if(System.getProperty("spaceout.replay") != null)
+			InputLog.replay(System.getProperty("spaceout.replay"));
+		
 		// Instantiate a runner, otherwise everything would have to be static
 		Runner run = new Runner();
 		run.run();
@@ -78,13 +89,14 @@ public class Runner {
 			// keep going until the done flag is up or a window close is
 			// requested
 			while (!done) {
-				// update everything
+				// update everything (anything in here that changes the world grabs Physics.worldLock itself)
 				update();
-				// render the scene
+				// render the scene (this doesn't need the lock, it draws from Physics.snapshots)
 				Graphics.render();
 				// update the display (this swaps the buffers)
 				Display.update();
 				Display.sync(DisplayHelper.targetFPS);
+				InputLog.frameRendered();
 			}
 			shutdown();
 		} catch (Exception e) {
@@ -155,6 +167,10 @@ public class Runner {
 		ResourceLoader.addJob(Sounds.SELECT);
 		ResourceLoader.processJobs();
 		
+		// step physics on its own thread
+		if(Physics.threaded)
+			Physics.startThread();
+		
 		System.out.println("-------------------------------");
 	}
 
@@ -217,6 +233,9 @@ public class Runner {
 	 */
 	private void shutdown() {
 		System.out.println(goodbye());
+		Physics.stopThread();
+		// save any recording that's still going
+		InputLog.stop();
 		Audio.shutdown();
 		Mouse.setGrabbed(false);
 		Display.destroy();
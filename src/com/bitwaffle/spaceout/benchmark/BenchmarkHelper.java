@@ -0,0 +1,91 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import com.bitwaffle.spaceguts.audio.Audio;
+import com.bitwaffle.spaceguts.graphics.render.Graphics;
+
+/**
+ * Odds and ends shared by all the benchmarks.
+ * Every benchmark runs headless (see {@link com.bitwaffle.spaceout.HeadlessRunner}) so
+ * they can be run on machines without a GPU or sound card.
+ */
+public class BenchmarkHelper {
+	/** Used for measuring how much every thread has allocated */
+	private static com.sun.management.ThreadMXBean threadBean;
+
+	static{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean){
+			threadBean = (com.sun.management.ThreadMXBean) bean;
+			threadBean.setThreadAllocatedMemoryEnabled(true);
+		} else{
+			System.out.println("Thread allocation counting isn't supported on this JVM, allocations will show up as 0");
+		}
+	}
+
+	/**
+	 * Turns off graphics and audio
+	 */
+	public static void goHeadless(){
+		Graphics.headless = true;
+		Audio.headless = true;
+	}
+
+	/** How much each thread has allocated while counting allocations, so that it can be left out */
+	private static ThreadLocal<long[]> countingBytes = new ThreadLocal<long[]>(){
+		@Override
+		protected long[] initialValue(){
+			return new long[1];
+		}
+	};
+
+	/**
+	 * Counts every live thread (not just the current one) so that work handed off to
+	 * other threads (i.e. parallel updates on the ForkJoin pool's workers) gets counted too.
+	 * Anything allocated by a thread that dies in between two calls to this won't be counted.
+	 * Whatever this allocates itself is left out.
+	 * @return Total number of bytes every live thread has allocated so far
+	 */
+	public static long allocatedBytes(){
+		if(threadBean == null)
+			return 0L;
+
+		long[] counting = countingBytes.get();
+		long self = Thread.currentThread().getId();
+		long selfBefore = threadBean.getThreadAllocatedBytes(self);
+
+		long[] ids = threadBean.getAllThreadIds();
+		long[] bytes = threadBean.getThreadAllocatedBytes(ids);
+		long total = 0L;
+		for(int i = 0; i < ids.length; i++){
+			// threads that died after getting their IDs come back as -1
+			if(ids[i] != self && bytes[i] > 0L)
+				total += bytes[i];
+		}
+
+		counting[0] += threadBean.getThreadAllocatedBytes(self) - selfBefore;
+		return total + selfBefore - counting[0];
+	}
+
+	/**
+	 * For when other threads are busy allocating things that shouldn't be counted
+	 * @return Total number of bytes the current thread has allocated so far
+	 */
+	public static long threadAllocatedBytes(){
+		if(threadBean == null)
+			return 0L;
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Gets an int argument
+	 * @param args Arguments from main
+	 * @param index Index of argument
+	 * @param defaultValue Value to use if the argument isn't there
+	 * @return Argument at index, or the default value
+	 */
+	public static int intArg(String[] args, int index, int defaultValue){
+		return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+	}
+}
@@ -0,0 +1,137 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.util.Random;
+
+import org.lwjgl.util.vector.Quaternion;
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.Camera;
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceout.entities.dynamic.LaserBullet;
+import com.bitwaffle.spaceout.entities.dynamic.Planet;
+import com.bitwaffle.spaceout.entities.passive.AsteroidField;
+import com.bitwaffle.spaceout.entities.passive.Skybox;
+import com.bitwaffle.spaceout.resources.Models;
+import com.bitwaffle.spaceout.resources.Textures;
+
+/**
+ * A made-up scene for benchmarking: one asteroid field, some laser bullets
+ * flying through it and some planets off to the side.
+ * The field's range grows with the number of asteroids so the density stays the same.
+ */
+public class BenchmarkScene {
+	/** How much space each asteroid gets (roughly) */
+	private static final float ASTEROID_SPACING = 100.0f;
+
+	/** Min/max asteroid size */
+	private static final float ASTEROID_MIN_SIZE = 5.0f, ASTEROID_MAX_SIZE = 15.0f;
+
+	/** How fast asteroids are going when they're created */
+	private static final Vector3f ASTEROID_SPEED = new Vector3f(25.0f, 25.0f, 25.0f);
+
+	/** Same as what the player shoots */
+	private static final float BULLET_SPEED = 2500.0f, BULLET_MASS = 0.25f;
+	private static final int BULLET_DAMAGE = 10;
+
+	/** Size of each planet and how far apart they are */
+	private static final float PLANET_SIZE = 1000.0f, PLANET_SPACING = 10000.0f;
+
+	/** Used for placing bullets and planets (seeded so every run is the same) */
+	private Random randy;
+
+	/** Number of things in the scene */
+	public int asteroids, bullets, planets;
+
+	/** The asteroid field */
+	public AsteroidField field;
+
+	/**
+	 * Describe a scene. Nothing is created until build() is called.
+	 * @param asteroids Number of asteroids
+	 * @param bullets Number of laser bullets in flight
+	 * @param planets Number of planets
+	 */
+	public BenchmarkScene(int asteroids, int bullets, int planets){
+		this.asteroids = asteroids;
+		this.bullets = bullets;
+		this.planets = planets;
+	}
+
+	/**
+	 * Initializes the physics world and creates everything in the scene
+	 */
+	public void build(){
+		randy = new Random(1337420L);
+
+		Physics.initPhysics();
+
+		Entities.camera = new Camera();
+		Entities.skybox = new Skybox(Entities.camera);
+
+		float range = fieldRange();
+		// release interval is huge so that the field never makes any more asteroids on its own
+		field = new AsteroidField(new Vector3f(0.0f, 0.0f, 0.0f), new Vector3f(range, range, range), ASTEROID_SPEED,
+				asteroids, asteroids, Float.MAX_VALUE, ASTEROID_MIN_SIZE, ASTEROID_MAX_SIZE);
+		Entities.addPassiveEntity(field);
+
+		for(int i = 0; i < bullets; i++)
+			addBullet(range);
+
+		for(int i = 0; i < planets; i++)
+			addPlanet(i, range);
+	}
+
+	/**
+	 * @return How far the asteroid field goes on each axis
+	 */
+	public float fieldRange(){
+		return ASTEROID_SPACING * (float) Math.cbrt(Math.max(asteroids, 1)) / 2.0f;
+	}
+
+	/**
+	 * Adds a bullet somewhere in the field going in a random direction.
+	 * Bullets never die, so there's always the same number in flight.
+	 * @param range How far the field goes on each axis
+	 */
+	private void addBullet(float range){
+		Vector3f location = new Vector3f(
+				(randy.nextFloat() * 2.0f - 1.0f) * range,
+				(randy.nextFloat() * 2.0f - 1.0f) * range,
+				(randy.nextFloat() * 2.0f - 1.0f) * range);
+		Quaternion rotation = QuaternionHelper.rotate(new Quaternion(0.0f, 0.0f, 0.0f, 1.0f),
+				new Vector3f(randy.nextFloat() * 360.0f, randy.nextFloat() * 360.0f, randy.nextFloat() * 360.0f));
+
+		LaserBullet bullet = new LaserBullet(Entities.camera, location, rotation, Models.LASERBULLET,
+				BULLET_MASS, 0.0f, BULLET_DAMAGE, BULLET_SPEED);
+		bullet.life = Float.MAX_VALUE;
+		Entities.addDynamicEntity(bullet);
+	}
+
+	/**
+	 * Adds a planet in a line going away from the field
+	 * @param index Which planet this is
+	 * @param range How far the field goes on each axis
+	 */
+	private void addPlanet(int index, float range){
+		Vector3f location = new Vector3f(range * 2.0f + PLANET_SIZE + PLANET_SPACING * index, 0.0f, 0.0f);
+		Planet p = new Planet(location, new Quaternion(0.0f, 0.0f, 0.0f, 1.0f), PLANET_SIZE, 100.0f, 0.5f, Textures.CHECKERS);
+		Entities.addDynamicEntity(p);
+	}
+
+	/**
+	 * Gets rid of everything in the scene
+	 */
+	public void destroy(){
+		Entities.cleanup();
+		Entities.skybox = null;
+		Physics.cleanup();
+		field = null;
+	}
+
+	@Override
+	public String toString(){
+		return asteroids + " asteroids, " + bullets + " bullets, " + planets + " planets";
+	}
+}
@@ -0,0 +1,103 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.util.Arrays;
+
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.input.InputLog;
+import com.bitwaffle.spaceguts.physics.Broadphases;
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.PhysicsProfiler;
+import com.bitwaffle.spaceguts.physics.PhysicsProfiler.Phase;
+import com.bitwaffle.spaceout.HeadlessRunner;
+
+/**
+ * Runs the same level (or the same input log, see InputLog) once with each kind of broadphase (see {@link Broadphases})
+ * to find out which one is fastest for it. Whatever broadphase the level asks for gets overridden.
+ * <p>
+ * Everything is seeded the same way for every run, but different broadphases find pairs in a different order,
+ * which changes the order contacts get solved in. So replays will (harmlessly) stop matching the recording
+ * at some point, and the scenes drift apart a little over a long run.
+ * Broadphase times come from the {@link PhysicsProfiler} and only cover the last PhysicsProfiler.SAMPLES ticks.
+ *
+ * Usage: BroadphaseBenchmark [level file or input log] [ticks] [extra asteroids]
+ * i.e. <code>BroadphaseBenchmark res/XML/Hard.xml 600 2000</code> or <code>BroadphaseBenchmark session.replay</code>
+ */
+public class BroadphaseBenchmark {
+	private static final String DEFAULT_LEVEL = "res/XML/Hard.xml";
+	private static final int DEFAULT_TICKS = 600, DEFAULT_EXTRA_ASTEROIDS = 0;
+
+	public static void main(String[] args){
+		BenchmarkHelper.goHeadless();
+
+		String file = args.length > 0 ? args[0] : DEFAULT_LEVEL;
+		int ticks = BenchmarkHelper.intArg(args, 1, DEFAULT_TICKS);
+		int extraAsteroids = BenchmarkHelper.intArg(args, 2, DEFAULT_EXTRA_ASTEROIDS);
+		boolean replay = file.endsWith(InputLog.EXTENSION);
+
+		System.out.println((replay ? "replaying " + file : file + ", " + ticks + " ticks, " + extraAsteroids + " extra asteroids"));
+		System.out.println("broadphase | ns/tick (mean) | ns/tick (p50) | ns/tick (p95) | ns/tick (max) | broadphase us (p50) | broadphase us (p95) | pairs | dynamic entities");
+
+		boolean profiling = PhysicsProfiler.enabled;
+		for(Broadphases.Type type : Broadphases.Type.values()){
+			Broadphases.override = type;
+
+			String level = file;
+			if(replay){
+				if(!InputLog.replay(file))
+					return;
+				level = InputLog.getReplayLevel();
+				ticks = -1;
+				extraAsteroids = 0;
+			}
+
+			HeadlessRunner run = new HeadlessRunner(level, ticks, extraAsteroids);
+			run.init();
+
+			PhysicsProfiler.enabled = true;
+			PhysicsProfiler.reset();
+
+			long[] times = new long[Math.max(ticks, 1024)];
+			int numTicks = 0;
+			while(replay ? InputLog.isReplaying() : numTicks < ticks){
+				long start = System.nanoTime();
+				run.tick();
+				long nanos = System.nanoTime() - start;
+
+				if(numTicks == times.length)
+					times = Arrays.copyOf(times, times.length * 2);
+				times[numTicks++] = nanos;
+			}
+
+			long[] broadphase = new long[2];
+			PhysicsProfiler.percentiles(Phase.BROADPHASE, new float[]{ 50.0f, 95.0f }, broadphase);
+			int pairs = Physics.broadphase.getOverlappingPairCache().getNumOverlappingPairs();
+			int entities = Entities.dynamicEntities.size();
+			PhysicsProfiler.enabled = profiling;
+
+			run.shutdown();
+
+			long total = 0L;
+			for(int i = 0; i < numTicks; i++)
+				total += times[i];
+			Arrays.sort(times, 0, numTicks);
+
+			System.out.println(type + " | " + (total / Math.max(numTicks, 1)) + " | " + percentile(times, numTicks, 50.0f)
+					+ " | " + percentile(times, numTicks, 95.0f) + " | " + (numTicks > 0 ? times[numTicks - 1] : 0)
+					+ " | " + (broadphase[0] / 1000) + " | " + (broadphase[1] / 1000) + " | " + pairs + " | " + entities);
+		}
+		Broadphases.override = null;
+	}
+
+	/**
+	 * @param sorted Sorted times
+	 * @param count How many times there are
+	 * @param percentile Percentile to get, between 0 and 100
+	 * @return Time at that percentile (nearest rank)
+	 */
+	private static long percentile(long[] sorted, int count, float percentile){
+		if(count == 0)
+			return 0L;
+		int rank = (int) Math.ceil(percentile / 100.0f * count) - 1;
+		return sorted[Math.max(0, Math.min(count - 1, rank))];
+	}
+}
@@ -0,0 +1,169 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.lwjgl.util.vector.Quaternion;
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.Camera;
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.physics.BulkInsert;
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.SpawnBuffer;
+import com.bitwaffle.spaceout.entities.dynamic.Asteroid;
+import com.bitwaffle.spaceout.entities.passive.Skybox;
+import com.bulletphysics.collision.broadphase.Dbvt;
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+
+/**
+ * Compares putting rigid bodies into the world one at a time (the way every body used to go in)
+ * with putting them in all at once with {@link BulkInsert}.
+ * First a whole field of asteroids gets loaded at once (like loading a level), then a storm of
+ * small asteroids gets spawned into the middle of it in one tick (like a bunch of asteroids breaking apart).
+ * Every body gets made before the clock starts, so only putting them into the world gets timed,
+ * along with the first tick afterwards (which is where a lopsided tree costs something).
+ * Both ways should find the same number of overlapping pairs.
+ *
+ * Usage: BulkInsertBenchmark [asteroids] [storm] [rounds]
+ */
+public class BulkInsertBenchmark {
+	private static final int DEFAULT_ASTEROIDS = 10000, DEFAULT_STORM = 2000, DEFAULT_ROUNDS = 5;
+
+	/** How much space each asteroid gets (roughly) */
+	private static final float ASTEROID_SPACING = 100.0f;
+
+	/** Min/max asteroid size, and the size of storm asteroids */
+	private static final float ASTEROID_MIN_SIZE = 5.0f, ASTEROID_MAX_SIZE = 15.0f, STORM_SIZE = 2.0f;
+
+	/** How much of the field the storm is spread out over */
+	private static final float STORM_RANGE = 0.1f;
+
+	public static void main(String[] args){
+		BenchmarkHelper.goHeadless();
+
+		int asteroids = BenchmarkHelper.intArg(args, 0, DEFAULT_ASTEROIDS);
+		int storm = BenchmarkHelper.intArg(args, 1, DEFAULT_STORM);
+		int rounds = BenchmarkHelper.intArg(args, 2, DEFAULT_ROUNDS);
+
+		System.out.println(asteroids + " asteroids loaded, then a storm of " + storm + ", best of " + rounds + " rounds");
+		System.out.println("method | load ns/body | tree depth | first tick ns | storm ns/body | storm tick ns | pairs");
+
+		int oldMin = BulkInsert.minBatch;
+		for(int mode = 0; mode < 2; mode++){
+			BulkInsert.minBatch = mode == 0 ? Integer.MAX_VALUE : oldMin;
+
+			long bestLoad = Long.MAX_VALUE, bestTick = Long.MAX_VALUE, bestStorm = Long.MAX_VALUE, bestStormTick = Long.MAX_VALUE;
+			int depth = 0, pairs = 0;
+			// first round is just to warm up
+			for(int r = 0; r <= rounds; r++){
+				long[] times = new long[4];
+				int[] results = run(asteroids, storm, times);
+				if(r > 0){
+					bestLoad = Math.min(bestLoad, times[0]);
+					bestTick = Math.min(bestTick, times[1]);
+					bestStorm = Math.min(bestStorm, times[2]);
+					bestStormTick = Math.min(bestStormTick, times[3]);
+				}
+				depth = results[0];
+				pairs = results[1];
+			}
+
+			String name = mode == 0 ? "one at a time" : "bulk";
+			System.out.println(name + " | " + (bestLoad / Math.max(asteroids, 1)) + " | " + depth + " | " + bestTick
+					+ " | " + (bestStorm / Math.max(storm, 1)) + " | " + bestStormTick + " | " + pairs);
+		}
+		BulkInsert.minBatch = oldMin;
+	}
+
+	/**
+	 * Makes a world, loads a field into it, spawns a storm and gets rid of it all
+	 * @param asteroids Number of asteroids in the field
+	 * @param storm Number of asteroids in the storm
+	 * @param times Where to put how long loading, the first tick, the storm and the tick after it took, in nanoseconds
+	 * @return Depth of the tree right after loading, and the number of overlapping pairs after the first tick
+	 */
+	private static int[] run(int asteroids, int storm, long[] times){
+		Random randy = new Random(1337420L);
+		float range = ASTEROID_SPACING * (float) Math.cbrt(Math.max(asteroids, 1)) / 2.0f;
+
+		Physics.initPhysics();
+		Entities.camera = new Camera();
+		Entities.skybox = new Skybox(Entities.camera);
+
+		// everything gets held on to until apply(), the same as when a level's loading
+		SpawnBuffer.begin();
+		for(int i = 0; i < asteroids; i++)
+			addAsteroid(randy, range, ASTEROID_MIN_SIZE + randy.nextFloat() * (ASTEROID_MAX_SIZE - ASTEROID_MIN_SIZE));
+		long start = System.nanoTime();
+		SpawnBuffer.apply(Physics.dynamicsWorld);
+		times[0] = System.nanoTime() - start;
+
+		int depth = depth(((DbvtBroadphase) Physics.broadphase).sets[DbvtBroadphase.DYNAMIC_SET].root);
+
+		start = System.nanoTime();
+		Physics.simulate(Physics.fixedTimeStep);
+		times[1] = System.nanoTime() - start;
+		int pairs = Physics.broadphase.getOverlappingPairCache().getNumOverlappingPairs();
+
+		// everything spawned in one tick goes in at the end of it
+		SpawnBuffer.begin();
+		for(int i = 0; i < storm; i++)
+			addAsteroid(randy, range * STORM_RANGE, STORM_SIZE);
+		start = System.nanoTime();
+		SpawnBuffer.apply(Physics.dynamicsWorld);
+		times[2] = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		Physics.simulate(Physics.fixedTimeStep);
+		times[3] = System.nanoTime() - start;
+
+		Entities.cleanup();
+		Entities.skybox = null;
+		Physics.cleanup();
+
+		return new int[]{ depth, pairs };
+	}
+
+	/**
+	 * Adds an asteroid somewhere random
+	 * @param range How far from the middle it can be on each axis
+	 * @param size How big it is
+	 */
+	private static void addAsteroid(Random randy, float range, float size){
+		Vector3f location = new Vector3f(
+				(randy.nextFloat() * 2.0f - 1.0f) * range,
+				(randy.nextFloat() * 2.0f - 1.0f) * range,
+				(randy.nextFloat() * 2.0f - 1.0f) * range);
+		Asteroid a = new Asteroid(location, new Quaternion(0.0f, 0.0f, 0.0f, 1.0f), size, null);
+		Entities.addDynamicEntity(a);
+	}
+
+	/**
+	 * @param root Root of a tree (can be null)
+	 * @return How many levels deep the tree goes
+	 */
+	private static int depth(Dbvt.Node root){
+		if(root == null)
+			return 0;
+
+		// walked with a stack, since a lopsided tree is too deep to recurse through
+		ArrayList<Dbvt.Node> nodes = new ArrayList<Dbvt.Node>();
+		ArrayList<Integer> depths = new ArrayList<Integer>();
+		nodes.add(root);
+		depths.add(1);
+		int deepest = 0;
+		while(!nodes.isEmpty()){
+			Dbvt.Node node = nodes.remove(nodes.size() - 1);
+			int d = depths.remove(depths.size() - 1);
+			deepest = Math.max(deepest, d);
+			if(node.isinternal()){
+				nodes.add(node.childs[0]);
+				depths.add(d + 1);
+				nodes.add(node.childs[1]);
+				depths.add(d + 1);
+			}
+		}
+		return deepest;
+	}
+}
@@ -0,0 +1,142 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.util.Random;
+
+import org.lwjgl.util.vector.Quaternion;
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.Camera;
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.physics.CollisionTypes;
+import com.bitwaffle.spaceguts.physics.DynamicEntityCallback;
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceout.entities.dynamic.Asteroid;
+import com.bitwaffle.spaceout.entities.dynamic.Diamond;
+import com.bitwaffle.spaceout.entities.passive.Skybox;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.shapes.SphereShape;
+
+/**
+ * Measures how much a whole physics tick allocates once it's warmed up, and checks that
+ * DynamicEntityCallback.internalTick (syncing every entity with its rigid body, updating it,
+ * and everything else that happens for every entity on every tick) doesn't allocate anything.
+ * <p>
+ * This gets done twice. The first time the entities don't collide with anything and don't do anything in update(), so
+ * only the parts of a tick that every entity goes through get measured. The second time it's real asteroids and
+ * diamonds (half and half), spread out far enough that they don't hit each other, so their own update()s get measured too.
+ * <p>
+ * A whole tick (Physics.simulate) won't get down to zero, since JBullet's DbvtBroadphase allocates
+ * a bit every time it looks for overlapping pairs, so that only gets reported.
+ *
+ * Asteroids and diamonds get updated in parallel (see UpdateStage), and waiting for the fork-join pool to finish
+ * makes the JDK allocate one small object every tick, so the second time around internalTick only has to stay
+ * under MAX_PARALLEL_BYTES_PER_TICK. Anything that allocates for every entity is way over that.
+ *
+ * The JIT gets rid of some short-lived objects on its own once it's warmed up, so run this with
+ * -XX:-DoEscapeAnalysis to make sure nothing's being allocated in the first place.
+ *
+ * Usage: EntitySyncBenchmark [entities] [ticks]
+ * Exits with status 1 if internalTick allocated more than it should have, so it can be used as a check.
+ */
+public class EntitySyncBenchmark {
+	private static final int DEFAULT_ENTITIES = 5000, DEFAULT_TICKS = 200, WARMUP_TICKS = 200;
+
+	/** How much internalTick can allocate when entities are being updated in parallel (see above) */
+	private static final double MAX_PARALLEL_BYTES_PER_TICK = 64.0;
+
+	/** How far the entities get spread out on each axis */
+	private static final float RANGE = 10000.0f;
+
+	/** How big the asteroids are and how fast the diamonds stop (same as when an asteroid drops loot) */
+	private static final float ASTEROID_SIZE = 10.0f, DIAMOND_STOP_SPEED = 0.1f;
+
+	public static void main(String[] args){
+		BenchmarkHelper.goHeadless();
+
+		int numEntities = BenchmarkHelper.intArg(args, 0, DEFAULT_ENTITIES);
+		int ticks = BenchmarkHelper.intArg(args, 1, DEFAULT_TICKS);
+
+		System.out.println(numEntities + " entities, " + ticks + " ticks");
+		System.out.println("what | ns/tick | bytes/tick");
+
+		long plainAllocated = measure(numEntities, ticks, false);
+		long mixAllocated = measure(numEntities, ticks, true);
+
+		if(plainAllocated > 0 || (double) mixAllocated / ticks > MAX_PARALLEL_BYTES_PER_TICK){
+			System.out.println("FAIL: internalTick allocated memory");
+			System.exit(1);
+		}
+		System.out.println("OK: no per-entity allocations in internalTick");
+	}
+
+	/**
+	 * Makes a world full of entities and measures ticking it
+	 * @param numEntities How many entities to put in the world
+	 * @param ticks How many ticks to measure
+	 * @param realEntities Whether to use asteroids and diamonds or entities that don't do anything
+	 * @return How much DynamicEntityCallback.internalTick allocated
+	 */
+	private static long measure(int numEntities, int ticks, boolean realEntities){
+		String name = realEntities ? "asteroids and diamonds" : "empty entities";
+
+		Physics.initPhysics();
+		Entities.camera = new Camera();
+		Entities.skybox = new Skybox(Entities.camera);
+
+		Random randy = new Random(1337420L);
+		SphereShape shape = new SphereShape(1.0f);
+		for(int i = 0; i < numEntities; i++){
+			Vector3f location = new Vector3f(randy.nextFloat() * RANGE, randy.nextFloat() * RANGE, randy.nextFloat() * RANGE);
+			Quaternion rotation = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
+			DynamicEntity ent;
+			if(!realEntities){
+				ent = new DynamicEntity(location, rotation, shape, 1.0f, 0.5f,
+						CollisionTypes.NOTHING, CollisionTypes.NOTHING);
+				ent.rigidBody.setAngularVelocity(new javax.vecmath.Vector3f(randy.nextFloat(), randy.nextFloat(), randy.nextFloat()));
+			} else if(i % 2 == 0){
+				ent = Asteroid.obtain(location, rotation, ASTEROID_SIZE, null);
+				// fast enough to get capped every tick
+				ent.rigidBody.setAngularVelocity(new javax.vecmath.Vector3f(10.0f, 10.0f, 10.0f));
+			} else{
+				ent = Diamond.obtain(location, rotation, DIAMOND_STOP_SPEED);
+				ent.rigidBody.setLinearVelocity(new javax.vecmath.Vector3f(randy.nextFloat(), randy.nextFloat(), randy.nextFloat()));
+			}
+			// keep moving forever
+			ent.rigidBody.setActivationState(CollisionObject.DISABLE_DEACTIVATION);
+			Entities.addDynamicEntity(ent);
+		}
+		Entities.applyPending();
+
+		for(int i = 0; i < WARMUP_TICKS; i++)
+			Physics.simulate(Physics.fixedTimeStep);
+
+		// everything, including Bullet's step
+		long allocStart = BenchmarkHelper.allocatedBytes();
+		long start = System.nanoTime();
+		for(int i = 0; i < ticks; i++)
+			Physics.simulate(Physics.fixedTimeStep);
+		long elapsed = System.nanoTime() - start;
+		long allocated = BenchmarkHelper.allocatedBytes() - allocStart;
+		System.out.println("Physics.simulate (" + name + ") | " + (elapsed / ticks) + " | " + ((double) allocated / ticks));
+
+		// just what gets done for every entity at the end of every tick
+		DynamicEntityCallback callback = new DynamicEntityCallback();
+		for(int i = 0; i < WARMUP_TICKS; i++)
+			callback.internalTick(Physics.dynamicsWorld, Physics.fixedTimeStep);
+
+		allocStart = BenchmarkHelper.allocatedBytes();
+		start = System.nanoTime();
+		for(int i = 0; i < ticks; i++)
+			callback.internalTick(Physics.dynamicsWorld, Physics.fixedTimeStep);
+		elapsed = System.nanoTime() - start;
+		long callbackAllocated = BenchmarkHelper.allocatedBytes() - allocStart;
+		System.out.println("DynamicEntityCallback.internalTick (" + name + ") | " + (elapsed / ticks) + " | " + ((double) callbackAllocated / ticks));
+
+		Entities.cleanup();
+		Entities.skybox = null;
+		Physics.cleanup();
+
+		return callbackAllocated;
+	}
+}
@@ -0,0 +1,186 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.bitwaffle.threaded.guts.threads.EventThread;
+import com.bitwaffle.threaded.guts.threads.events.ALEvent;
+import com.bitwaffle.threaded.guts.threads.events.ControlEvent;
+import com.bitwaffle.threaded.guts.threads.events.Event;
+import com.bitwaffle.threaded.guts.threads.events.GLEvent;
+import com.bitwaffle.threaded.guts.threads.events.PhysicsEvent;
+
+/**
+ * Measures how many events per second can be pushed through an {@link EventThread}'s queue
+ * by several producer threads at once, for each kind of event.
+ * Each kind is run by itself first, then all four are run at the same time (like they would be in the game).
+ *
+ * The consumers here just count events instead of doing any real work (no GL or AL context is needed).
+ *
+ * Usage: EventQueueBenchmark [producers per queue] [events per producer] [queue capacity]
+ */
+public class EventQueueBenchmark {
+	/** Defaults */
+	private static final int DEFAULT_PRODUCERS = 2, DEFAULT_EVENTS = 2000000;
+
+	/** How long consumers wait for events before checking if they're done */
+	private static final long WAIT_NANOS = 1000000L;
+
+	/** Names of each kind of event, in the order they're run */
+	private static final String[] KINDS = { "GL", "AL", "Physics", "Control" };
+
+	/** Total bytes allocated by producer threads */
+	private static AtomicLong producerAllocated = new AtomicLong();
+
+	public static void main(String[] args){
+		int producers = BenchmarkHelper.intArg(args, 0, DEFAULT_PRODUCERS);
+		int events = BenchmarkHelper.intArg(args, 1, DEFAULT_EVENTS);
+		int capacity = BenchmarkHelper.intArg(args, 2, EventThread.DEFAULT_CAPACITY);
+
+		System.out.println(producers + " producers per queue, " + events + " events per producer, capacity " + capacity);
+		System.out.println("queue | events | ms | events/sec | bytes/event (producers)");
+
+		// warm up
+		run(new int[]{ 0, 1, 2, 3 }, producers, events / 10, capacity, false);
+
+		for(int i = 0; i < KINDS.length; i++)
+			run(new int[]{ i }, producers, events, capacity, true);
+		run(new int[]{ 0, 1, 2, 3 }, producers, events, capacity, true);
+	}
+
+	/**
+	 * Runs the given kinds of events at the same time
+	 * @param kinds Indices into KINDS
+	 * @param producers Producer threads per queue
+	 * @param events Events each producer sends
+	 * @param capacity Capacity of each queue
+	 * @param print Whether or not to print results
+	 */
+	private static void run(int[] kinds, int producers, int events, int capacity, boolean print){
+		long expected = (long)producers * events;
+
+		Counter<?>[] consumers = new Counter<?>[kinds.length];
+		Thread[] producerThreads = new Thread[kinds.length * producers];
+
+		for(int i = 0; i < kinds.length; i++){
+			consumers[i] = makeCounter(kinds[i], expected, capacity);
+			for(int j = 0; j < producers; j++)
+				producerThreads[i * producers + j] = makeProducer(consumers[i], events);
+		}
+
+		producerAllocated.set(0L);
+		long start = System.nanoTime();
+
+		for(Counter<?> c : consumers)
+			c.start();
+		for(Thread t : producerThreads)
+			t.start();
+
+		try{
+			for(Thread t : producerThreads)
+				t.join();
+			for(Counter<?> c : consumers)
+				c.join();
+		} catch(InterruptedException e){
+			e.printStackTrace();
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		if(print){
+			String name = kinds.length == 1 ? KINDS[kinds[0]] : "all four";
+			long total = expected * kinds.length;
+			System.out.println(name + " | " + total + " | " + (elapsed / 1000000L) + " | "
+					+ (long)(total / (elapsed / 1000000000.0)) + " | " + (producerAllocated.get() / total));
+		}
+	}
+
+	/**
+	 * Creates a counter for the given kind of event
+	 */
+	private static Counter<?> makeCounter(int kind, long expected, int capacity){
+		switch(kind){
+		case 0:
+			final Counter<GLEvent> gl = new Counter<GLEvent>(KINDS[kind], expected, capacity);
+			gl.event = new GLEvent(){
+				@Override
+				public void takeAction(){
+					gl.processed++;
+				}
+			};
+			return gl;
+		case 1:
+			final Counter<ALEvent> al = new Counter<ALEvent>(KINDS[kind], expected, capacity);
+			al.event = new ALEvent(){
+				@Override
+				public void takeAction(){
+					al.processed++;
+				}
+			};
+			return al;
+		case 2:
+			final Counter<PhysicsEvent> physics = new Counter<PhysicsEvent>(KINDS[kind], expected, capacity);
+			physics.event = new PhysicsEvent(){
+				@Override
+				public void takeAction(){
+					physics.processed++;
+				}
+			};
+			return physics;
+		default:
+			final Counter<ControlEvent> control = new Counter<ControlEvent>(KINDS[kind], expected, capacity);
+			control.event = new ControlEvent(){
+				@Override
+				public void takeAction(){
+					control.processed++;
+				}
+			};
+			return control;
+		}
+	}
+
+	/**
+	 * Creates a thread that sends a counter's event to it over and over
+	 */
+	private static <T extends Event> Thread makeProducer(final Counter<T> consumer, final int events){
+		Thread t = new Thread(new Runnable(){
+			@Override
+			public void run(){
+				long allocStart = BenchmarkHelper.threadAllocatedBytes();
+				T event = consumer.event;
+				for(int i = 0; i < events; i++)
+					consumer.addEvent(event);
+				producerAllocated.addAndGet(BenchmarkHelper.threadAllocatedBytes() - allocStart);
+			}
+		});
+		t.setName(consumer.getName() + " producer");
+		return t;
+	}
+
+	/**
+	 * Consumer that just counts how many events it's processed
+	 */
+	private static class Counter<T extends Event> extends EventThread<T>{
+		/** Event that producers send to this counter */
+		T event;
+
+		/** How many events have been processed (only touched by this thread) */
+		long processed = 0L;
+
+		/** How many events to wait for */
+		private long expected;
+
+		public Counter(String name, long expected, int capacity){
+			super(capacity);
+			this.setName(name);
+			this.expected = expected;
+		}
+
+		@Override
+		public void run(){
+			while(processed < expected){
+				if(processEvents() == 0)
+					waitForEvents(WAIT_NANOS);
+			}
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.util.Random;
+
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Quaternion;
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.util.MatrixHelper;
+import com.bitwaffle.spaceguts.util.QuaternionHelper;
+
+/**
+ * Compares the old QuaternionHelper and MatrixHelper methods (which return a new object every call)
+ * with the ones that put their result in an object that's passed in.
+ * These get called for every entity, particle and star every frame, so the garbage adds up fast.
+ *
+ * Usage: MathHelperBenchmark [calls per method] [rounds]
+ */
+public class MathHelperBenchmark {
+	private static final int DEFAULT_CALLS = 2000000, DEFAULT_ROUNDS = 5;
+
+	/** Number of random inputs to cycle through */
+	private static final int NUM_INPUTS = 1024;
+
+	/** Random inputs */
+	private static Quaternion[] quats = new Quaternion[NUM_INPUTS];
+	private static Vector3f[] vecs = new Vector3f[NUM_INPUTS];
+
+	/** Outputs for the out-parameter versions */
+	private static Matrix4f matrixDest = new Matrix4f();
+	private static Vector3f vectorDest = new Vector3f();
+	private static Quaternion quatDest = new Quaternion();
+
+	/** Results get added to this so the JIT can't throw the calls away */
+	private static float sink = 0.0f;
+
+	/**
+	 * Every result gets stored here. In the game results get handed off to other methods,
+	 * so without this the JIT can see that they never leave the loop and skip allocating them,
+	 * which makes the old methods look a lot better than they really are.
+	 */
+	private static Object escape;
+
+	public static void main(String[] args){
+		int calls = BenchmarkHelper.intArg(args, 0, DEFAULT_CALLS);
+		int rounds = BenchmarkHelper.intArg(args, 1, DEFAULT_ROUNDS);
+
+		Random randy = new Random(1337420L);
+		for(int i = 0; i < NUM_INPUTS; i++){
+			quats[i] = new Quaternion(randy.nextFloat() - 0.5f, randy.nextFloat() - 0.5f, randy.nextFloat() - 0.5f, randy.nextFloat() - 0.5f);
+			quats[i].normalise(quats[i]);
+			vecs[i] = new Vector3f(randy.nextFloat() * 100.0f, randy.nextFloat() * 100.0f, randy.nextFloat() * 100.0f);
+		}
+
+		Op[] ops = {
+			new Op("toMatrix(q)"){
+				@Override
+				float run(int i){
+					Matrix4f r = QuaternionHelper.toMatrix(quats[i]);
+					escape = r;
+					return r.m00;
+				}
+			},
+			new Op("toMatrix(q, dest)"){
+				@Override
+				float run(int i){
+					Matrix4f r = QuaternionHelper.toMatrix(quats[i], matrixDest);
+					escape = r;
+					return r.m00;
+				}
+			},
+			new Op("rotateVectorByQuaternion(v, q)"){
+				@Override
+				float run(int i){
+					Vector3f r = QuaternionHelper.rotateVectorByQuaternion(vecs[i], quats[i]);
+					escape = r;
+					return r.x;
+				}
+			},
+			new Op("rotateVectorByQuaternion(v, q, dest)"){
+				@Override
+				float run(int i){
+					Vector3f r = QuaternionHelper.rotateVectorByQuaternion(vecs[i], quats[i], vectorDest);
+					escape = r;
+					return r.x;
+				}
+			},
+			new Op("rotate(q, v)"){
+				@Override
+				float run(int i){
+					Quaternion r = QuaternionHelper.rotate(quats[i], vecs[i]);
+					escape = r;
+					return r.w;
+				}
+			},
+			new Op("rotate(q, v, dest)"){
+				@Override
+				float run(int i){
+					Quaternion r = QuaternionHelper.rotate(quats[i], vecs[i], quatDest);
+					escape = r;
+					return r.w;
+				}
+			},
+			new Op("perspective(...)"){
+				@Override
+				float run(int i){
+					Matrix4f r = MatrixHelper.perspective(45.0f, 1.0f + i * 0.001f, 1.0f, 3000000.0f);
+					escape = r;
+					return r.m00;
+				}
+			},
+			new Op("perspective(..., dest)"){
+				@Override
+				float run(int i){
+					Matrix4f r = MatrixHelper.perspective(45.0f, 1.0f + i * 0.001f, 1.0f, 3000000.0f, matrixDest);
+					escape = r;
+					return r.m00;
+				}
+			},
+		};
+
+		// warm up
+		for(Op op : ops)
+			measure(op, calls);
+
+		System.out.println(calls + " calls per method, best of " + rounds + " rounds");
+		System.out.println("method | ns/call | bytes/call");
+		for(Op op : ops){
+			long bestNanos = Long.MAX_VALUE, bestBytes = Long.MAX_VALUE;
+			for(int r = 0; r < rounds; r++){
+				long allocStart = BenchmarkHelper.allocatedBytes();
+				long nanos = measure(op, calls);
+				long bytes = BenchmarkHelper.allocatedBytes() - allocStart;
+				bestNanos = Math.min(bestNanos, nanos);
+				bestBytes = Math.min(bestBytes, bytes);
+			}
+			System.out.println(op.name + " | " + ((double) bestNanos / calls) + " | " + ((double) bestBytes / calls));
+		}
+
+		// print this so that it has to be calculated
+		System.out.println("(checksum " + sink + ")");
+	}
+
+	/**
+	 * Calls an operation a bunch of times
+	 * @return How long it took, in nanoseconds
+	 */
+	private static long measure(Op op, int calls){
+		float total = 0.0f;
+		long start = System.nanoTime();
+		for(int i = 0; i < calls; i++)
+			total += op.run(i & (NUM_INPUTS - 1));
+		long elapsed = System.nanoTime() - start;
+		sink += total;
+		return elapsed;
+	}
+
+	/**
+	 * Something to measure
+	 */
+	private static abstract class Op{
+		String name;
+
+		public Op(String name){
+			this.name = name;
+		}
+
+		/**
+		 * @param i Index of inputs to use
+		 * @return Some part of the result
+		 */
+		abstract float run(int i);
+	}
+}
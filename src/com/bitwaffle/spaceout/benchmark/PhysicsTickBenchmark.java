@@ -0,0 +1,72 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.util.Arrays;
+
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.physics.Physics;
+
+/**
+ * Measures how long one physics tick takes (DynamicsWorld.stepSimulation plus
+ * everything DynamicEntityCallback.internalTick does) and how much it allocates.
+ *
+ * Usage: PhysicsTickBenchmark [asteroids] [bullets] [planets] [warmup ticks] [measured ticks]
+ * With no arguments, it runs through a range of asteroid counts to see how things scale.
+ */
+public class PhysicsTickBenchmark {
+	/** Asteroid counts to go through when no arguments are given */
+	private static final int[] SCALING_ASTEROIDS = { 200, 1000, 2500, 5000, 10000 };
+
+	/** Defaults */
+	private static final int DEFAULT_BULLETS = 100, DEFAULT_PLANETS = 4, DEFAULT_WARMUP = 300, DEFAULT_TICKS = 600;
+
+	public static void main(String[] args){
+		BenchmarkHelper.goHeadless();
+
+		int warmup = BenchmarkHelper.intArg(args, 3, DEFAULT_WARMUP);
+		int ticks = BenchmarkHelper.intArg(args, 4, DEFAULT_TICKS);
+
+		System.out.println("scene | ns/tick (mean) | ns/tick (p50) | ns/tick (max) | bytes/tick | dynamic entities at end");
+
+		if(args.length == 0){
+			for(int asteroids : SCALING_ASTEROIDS)
+				run(new BenchmarkScene(asteroids, DEFAULT_BULLETS, DEFAULT_PLANETS), warmup, ticks);
+		} else{
+			int asteroids = BenchmarkHelper.intArg(args, 0, SCALING_ASTEROIDS[0]);
+			int bullets = BenchmarkHelper.intArg(args, 1, DEFAULT_BULLETS);
+			int planets = BenchmarkHelper.intArg(args, 2, DEFAULT_PLANETS);
+			run(new BenchmarkScene(asteroids, bullets, planets), warmup, ticks);
+		}
+	}
+
+	/**
+	 * Builds a scene, warms it up, then measures it
+	 * @param scene Scene to measure
+	 * @param warmup Number of ticks to run before measuring
+	 * @param ticks Number of ticks to measure
+	 */
+	public static void run(BenchmarkScene scene, int warmup, int ticks){
+		scene.build();
+
+		for(int i = 0; i < warmup; i++)
+			Physics.simulate(Physics.fixedTimeStep);
+
+		long[] times = new long[ticks];
+		long allocStart = BenchmarkHelper.allocatedBytes();
+		for(int i = 0; i < ticks; i++){
+			long start = System.nanoTime();
+			Physics.simulate(Physics.fixedTimeStep);
+			times[i] = System.nanoTime() - start;
+		}
+		long allocated = BenchmarkHelper.allocatedBytes() - allocStart;
+
+		long total = 0L;
+		for(long t : times)
+			total += t;
+		Arrays.sort(times);
+
+		System.out.println(scene + " | " + (total / ticks) + " | " + times[ticks / 2] + " | " + times[ticks - 1] + " | "
+				+ (allocated / ticks) + " | " + Entities.dynamicEntities.size());
+
+		scene.destroy();
+	}
+}
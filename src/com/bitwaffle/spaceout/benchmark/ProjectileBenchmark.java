@@ -0,0 +1,106 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.util.Random;
+
+import org.lwjgl.util.vector.Quaternion;
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.Projectiles;
+import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceout.entities.dynamic.LaserBullet;
+import com.bitwaffle.spaceout.resources.Models;
+
+/**
+ * Compares firing bullets as rigid bodies (LaserBullet) with firing them as rays ({@link Projectiles}).
+ * A bunch of bullets get fired into an asteroid field every tick and each one lasts for a second,
+ * so there end up being (shots per tick * ticks per second) bullets in flight.
+ *
+ * Usage: ProjectileBenchmark [asteroids] [shots per tick] [measured ticks]
+ */
+public class ProjectileBenchmark {
+	private static final int DEFAULT_ASTEROIDS = 500, DEFAULT_SHOTS = 10, DEFAULT_TICKS = 300;
+
+	/** Same as what the player shoots */
+	private static final float BULLET_SPEED = 2500.0f, BULLET_LIFE = 1.0f;
+	private static final int BULLET_DAMAGE = 10;
+
+	public static void main(String[] args){
+		BenchmarkHelper.goHeadless();
+
+		int asteroids = BenchmarkHelper.intArg(args, 0, DEFAULT_ASTEROIDS);
+		int shots = BenchmarkHelper.intArg(args, 1, DEFAULT_SHOTS);
+		int ticks = BenchmarkHelper.intArg(args, 2, DEFAULT_TICKS);
+
+		System.out.println(asteroids + " asteroids, " + shots + " shots per tick, " + ticks + " ticks");
+		System.out.println("bullets | ns/tick | bytes/tick | bullets in flight at end | dynamic entities at end");
+		run(asteroids, shots, ticks, false);
+		run(asteroids, shots, ticks, true);
+	}
+
+	/**
+	 * Builds a scene and fires bullets into it for a while
+	 * @param rays Whether to use Projectiles or LaserBullets
+	 */
+	private static void run(int asteroids, int shots, int ticks, boolean rays){
+		BenchmarkScene scene = new BenchmarkScene(asteroids, 0, 0);
+		scene.build();
+		float range = scene.fieldRange();
+
+		// same shots for both kinds of bullets
+		Random randy = new Random(1337420L);
+		Vector3f location = new Vector3f(), angles = new Vector3f();
+		Quaternion rotation = new Quaternion();
+
+		// fill the field up with bullets before measuring
+		int warmup = (int) (BULLET_LIFE / Physics.fixedTimeStep);
+		long total = 0L, allocStart = 0L;
+		for(int i = 0; i < warmup + ticks; i++){
+			if(i == warmup)
+				allocStart = BenchmarkHelper.allocatedBytes();
+
+			long start = System.nanoTime();
+			for(int s = 0; s < shots; s++){
+				location.set(
+						(randy.nextFloat() * 2.0f - 1.0f) * range,
+						(randy.nextFloat() * 2.0f - 1.0f) * range,
+						(randy.nextFloat() * 2.0f - 1.0f) * range);
+				rotation.setIdentity();
+				angles.set(randy.nextFloat() * 360.0f, randy.nextFloat() * 360.0f, randy.nextFloat() * 360.0f);
+				QuaternionHelper.rotate(rotation, angles, rotation);
+
+				if(rays){
+					Projectiles.fire(Entities.camera, location, rotation, BULLET_SPEED, BULLET_LIFE, BULLET_DAMAGE, Models.LASERBULLET.getModel());
+				} else{
+					LaserBullet bullet = LaserBullet.obtain(Entities.camera, location, rotation, BULLET_DAMAGE, BULLET_SPEED);
+					bullet.life = BULLET_LIFE;
+					Entities.addDynamicEntity(bullet);
+				}
+			}
+			Physics.simulate(Physics.fixedTimeStep);
+
+			if(i >= warmup)
+				total += System.nanoTime() - start;
+		}
+		long allocated = BenchmarkHelper.allocatedBytes() - allocStart;
+
+		int inFlight = rays ? Projectiles.size() : countBullets();
+		System.out.println((rays ? "rays" : "rigid bodies") + " | " + (total / ticks) + " | " + (allocated / ticks) + " | "
+				+ inFlight + " | " + Entities.dynamicEntities.size());
+
+		scene.destroy();
+	}
+
+	/**
+	 * @return How many LaserBullets there are
+	 */
+	private static int countBullets(){
+		int count = 0;
+		for(int i = 0; i < Entities.dynamicEntities.size(); i++){
+			if(Entities.dynamicEntities.get(i) instanceof LaserBullet)
+				count++;
+		}
+		return count;
+	}
+}
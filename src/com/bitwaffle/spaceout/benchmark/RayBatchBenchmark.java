@@ -0,0 +1,157 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.util.Random;
+
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.physics.BroadphaseSnapshot;
+import com.bitwaffle.spaceguts.physics.CollisionTypes;
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.RayBatch;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.CollisionWorld.ClosestRayResultCallback;
+
+/**
+ * Compares casting rays one at a time through the dynamics world (the way Camera.rayTestAtCenter used to)
+ * with casting them all at once with a {@link RayBatch}, on one thread and split up across worker threads.
+ * Also makes sure the batch hits the same things as the dynamics world.
+ * Bytes are only counted on the thread doing the casting, so anything allocated on worker threads doesn't show up.
+ * (What does get allocated by a batch comes from Bullet's own exact ray tests, which make a few objects every call.)
+ *
+ * Usage: RayBatchBenchmark [asteroids] [rays] [rounds]
+ */
+public class RayBatchBenchmark {
+	private static final int DEFAULT_ASTEROIDS = 2000, DEFAULT_RAYS = 2000, DEFAULT_ROUNDS = 5;
+
+	/** How long each ray is */
+	private static final float RAY_LENGTH = 1000.0f;
+
+	public static void main(String[] args){
+		BenchmarkHelper.goHeadless();
+
+		int asteroids = BenchmarkHelper.intArg(args, 0, DEFAULT_ASTEROIDS);
+		int numRays = BenchmarkHelper.intArg(args, 1, DEFAULT_RAYS);
+		int rounds = BenchmarkHelper.intArg(args, 2, DEFAULT_ROUNDS);
+
+		BenchmarkScene scene = new BenchmarkScene(asteroids, 0, 0);
+		scene.build();
+		// one tick so that there's a snapshot to cast against
+		BroadphaseSnapshot.request();
+		Physics.simulate(Physics.fixedTimeStep);
+
+		// random rays through the field
+		Random randy = new Random(1337420L);
+		float range = scene.fieldRange();
+		float[] rays = new float[numRays * 6];
+		for(int i = 0; i < numRays; i++){
+			float x = (randy.nextFloat() * 2.0f - 1.0f) * range;
+			float y = (randy.nextFloat() * 2.0f - 1.0f) * range;
+			float z = (randy.nextFloat() * 2.0f - 1.0f) * range;
+			float dx = randy.nextFloat() - 0.5f, dy = randy.nextFloat() - 0.5f, dz = randy.nextFloat() - 0.5f;
+			float scale = RAY_LENGTH / (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+			rays[i * 6] = x;
+			rays[i * 6 + 1] = y;
+			rays[i * 6 + 2] = z;
+			rays[i * 6 + 3] = x + dx * scale;
+			rays[i * 6 + 4] = y + dy * scale;
+			rays[i * 6 + 5] = z + dz * scale;
+		}
+
+		RayBatch batch = new RayBatch(numRays);
+		for(int i = 0; i < numRays; i++)
+			batch.add(rays[i * 6], rays[i * 6 + 1], rays[i * 6 + 2], rays[i * 6 + 3], rays[i * 6 + 4], rays[i * 6 + 5],
+					CollisionTypes.EVERYTHING, Entities.camera);
+
+		System.out.println(scene + ", " + numRays + " rays, best of " + rounds + " rounds");
+		System.out.println("method | ns/ray | bytes/ray | hits");
+
+		for(int mode = 0; mode < 3; mode++){
+			long bestNanos = Long.MAX_VALUE, bestBytes = Long.MAX_VALUE;
+			int hits = 0;
+			// first round is just to warm up
+			for(int r = 0; r <= rounds; r++){
+				long allocStart = BenchmarkHelper.allocatedBytes();
+				long start = System.nanoTime();
+				if(mode == 0)
+					hits = castOneAtATime(rays, numRays);
+				else
+					hits = castBatch(batch, mode == 2);
+				long nanos = System.nanoTime() - start;
+				long bytes = BenchmarkHelper.allocatedBytes() - allocStart;
+				if(r > 0){
+					bestNanos = Math.min(bestNanos, nanos);
+					bestBytes = Math.min(bestBytes, bytes);
+				}
+			}
+
+			String name = mode == 0 ? "one at a time" : (mode == 1 ? "batch, one thread" : "batch, worker threads");
+			System.out.println(name + " | " + (bestNanos / numRays) + " | " + (bestBytes / numRays) + " | " + hits);
+		}
+
+		System.out.println("rays that hit something different: " + check(rays, batch));
+
+		scene.destroy();
+	}
+
+	/**
+	 * Casts rays through the dynamics world one at a time
+	 * @return Number of rays that hit something
+	 */
+	private static int castOneAtATime(float[] rays, int numRays){
+		int hits = 0;
+		for(int i = 0; i < numRays; i++){
+			javax.vecmath.Vector3f start = new javax.vecmath.Vector3f(rays[i * 6], rays[i * 6 + 1], rays[i * 6 + 2]);
+			javax.vecmath.Vector3f end = new javax.vecmath.Vector3f(rays[i * 6 + 3], rays[i * 6 + 4], rays[i * 6 + 5]);
+			ClosestRayResultCallback callback = new ClosestRayResultCallback(start, end);
+			Physics.dynamicsWorld.rayTest(start, end, callback);
+			if(callback.hasHit() && callback.collisionObject.getUserPointer() != Entities.camera)
+				hits++;
+		}
+		return hits;
+	}
+
+	/**
+	 * Casts every ray in a batch
+	 * @param parallel Whether or not to split the batch up across worker threads
+	 * @return Number of rays that hit something
+	 */
+	private static int castBatch(RayBatch batch, boolean parallel){
+		int oldMin = RayBatch.minParallelRays;
+		RayBatch.minParallelRays = parallel ? 0 : Integer.MAX_VALUE;
+		batch.cast();
+		RayBatch.minParallelRays = oldMin;
+
+		int hits = 0;
+		for(int i = 0; i < batch.size(); i++){
+			if(batch.hasHit(i))
+				hits++;
+		}
+		return hits;
+	}
+
+	/**
+	 * @return Number of rays where the batch hit something different than the dynamics world did
+	 */
+	private static int check(float[] rays, RayBatch batch){
+		batch.cast();
+
+		int different = 0;
+		for(int i = 0; i < batch.size(); i++){
+			javax.vecmath.Vector3f start = new javax.vecmath.Vector3f(rays[i * 6], rays[i * 6 + 1], rays[i * 6 + 2]);
+			javax.vecmath.Vector3f end = new javax.vecmath.Vector3f(rays[i * 6 + 3], rays[i * 6 + 4], rays[i * 6 + 5]);
+			// ignore the camera, the same way the batch does
+			ClosestRayResultCallback callback = new ClosestRayResultCallback(start, end){
+				@Override
+				public boolean needsCollision(BroadphaseProxy proxy){
+					return super.needsCollision(proxy) && ((CollisionObject) proxy.clientObject).getUserPointer() != Entities.camera;
+				}
+			};
+			Physics.dynamicsWorld.rayTest(start, end, callback);
+
+			Object expected = callback.hasHit() ? callback.collisionObject : null;
+			if(expected != batch.getHitObject(i))
+				different++;
+		}
+		return different;
+	}
+}
@@ -0,0 +1,149 @@
+package com.bitwaffle.spaceout.benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.entities.Entities;
+import com.bitwaffle.spaceguts.physics.CollisionTypes;
+import com.bitwaffle.spaceguts.physics.ConvexResultCallback;
+import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.ShapeCache;
+import com.bitwaffle.spaceguts.physics.SpatialQuery;
+
+/**
+ * Compares finding everything around an entity with a convex sweep (the way Missile.explode used to)
+ * with doing it through {@link SpatialQuery}. Also makes sure SpatialQuery doesn't miss anything that checking every entity finds.
+ * (The convex sweep finds less than it should, since ConvexResultCallback returns a hit fraction of 0 and that makes
+ * Bullet stop looking at anything further along the sweep.)
+ *
+ * Usage: SpatialQueryBenchmark [asteroids] [queries] [radius]
+ */
+public class SpatialQueryBenchmark {
+	private static final int DEFAULT_ASTEROIDS = 2000, DEFAULT_QUERIES = 2000, DEFAULT_RADIUS = 150;
+
+	/** Ticks to run before measuring, so that things have moved around a bit */
+	private static final int WARMUP_TICKS = 30;
+
+	public static void main(String[] args){
+		BenchmarkHelper.goHeadless();
+
+		int asteroids = BenchmarkHelper.intArg(args, 0, DEFAULT_ASTEROIDS);
+		int queries = BenchmarkHelper.intArg(args, 1, DEFAULT_QUERIES);
+		float radius = BenchmarkHelper.intArg(args, 2, DEFAULT_RADIUS);
+
+		BenchmarkScene scene = new BenchmarkScene(asteroids, 0, 0);
+		scene.build();
+		for(int i = 0; i < WARMUP_TICKS; i++)
+			Physics.simulate(Physics.fixedTimeStep);
+		// entities move themselves around after the step, so bring the broadphase up to date with where they are now
+		Physics.dynamicsWorld.updateAabbs();
+
+		// queries are done around random asteroids
+		Random randy = new Random(1337420L);
+		DynamicEntity[] origins = new DynamicEntity[queries];
+		for(int i = 0; i < queries; i++){
+			do{
+				origins[i] = Entities.dynamicEntities.get(randy.nextInt(Entities.dynamicEntities.size()));
+			} while(origins[i] == Entities.camera);
+		}
+
+		System.out.println(scene + ", " + queries + " queries, radius " + radius);
+		System.out.println("method | ns/query | bytes/query | found/query");
+
+		// each one runs twice, the first time is just to warm up
+		for(int r = 0; r < 2; r++){
+			boolean print = r == 1;
+			sweep(origins, radius, print);
+			query(origins, radius, print);
+		}
+
+		int misses = check(origins, radius);
+		System.out.println("entities missed compared to checking every entity: " + misses);
+
+		scene.destroy();
+	}
+
+	/**
+	 * Finds things with a convex sweep of a sphere that barely moves
+	 */
+	private static void sweep(DynamicEntity[] origins, float radius, boolean print){
+		Vector3f distance = new Vector3f(0.0f, 0.0f, 1.0f);
+		long found = 0L;
+
+		long allocStart = BenchmarkHelper.allocatedBytes();
+		long start = System.nanoTime();
+		for(DynamicEntity origin : origins){
+			ArrayList<DynamicEntity> hits = new ArrayList<DynamicEntity>();
+			ConvexResultCallback<DynamicEntity> callback = new ConvexResultCallback<DynamicEntity>(hits, CollisionTypes.EVERYTHING);
+			Physics.convexSweepTest(origin, distance, ShapeCache.getSphere(radius), callback);
+			found += hits.size();
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = BenchmarkHelper.allocatedBytes() - allocStart;
+
+		if(print)
+			System.out.println("convex sweep | " + (elapsed / origins.length) + " | " + (allocated / origins.length) + " | " + ((float) found / origins.length));
+	}
+
+	/**
+	 * Finds things with SpatialQuery
+	 */
+	private static void query(DynamicEntity[] origins, float radius, boolean print){
+		SpatialQuery.Results results = new SpatialQuery.Results();
+		long found = 0L;
+
+		long allocStart = BenchmarkHelper.allocatedBytes();
+		long start = System.nanoTime();
+		for(DynamicEntity origin : origins){
+			SpatialQuery.sphere(origin.location, radius, CollisionTypes.EVERYTHING, origin, results);
+			found += results.size();
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = BenchmarkHelper.allocatedBytes() - allocStart;
+		results.clear();
+
+		if(print)
+			System.out.println("spatial query | " + (elapsed / origins.length) + " | " + (allocated / origins.length) + " | " + ((float) found / origins.length));
+	}
+
+	/**
+	 * Makes sure SpatialQuery finds everything whose bounding box touches the sphere.
+	 * Bounding boxes in the broadphase also cover where fast things are going to be, so SpatialQuery
+	 * can find a few things that are just outside of the sphere; only things it misses are counted.
+	 * @return Number of entities that weren't found when they should have been
+	 */
+	private static int check(DynamicEntity[] origins, float radius){
+		SpatialQuery.Results results = new SpatialQuery.Results();
+		javax.vecmath.Vector3f min = new javax.vecmath.Vector3f(), max = new javax.vecmath.Vector3f();
+		int misses = 0;
+
+		for(DynamicEntity origin : origins){
+			SpatialQuery.sphere(origin.location, radius, CollisionTypes.EVERYTHING, origin, results);
+
+			for(int i = 0; i < Entities.dynamicEntities.size(); i++){
+				DynamicEntity ent = Entities.dynamicEntities.get(i);
+				if(ent == origin || ent == Entities.camera || ent.removeFlag)
+					continue;
+				ent.rigidBody.getAabb(min, max);
+				float dx = Math.max(Math.max(min.x - origin.location.x, 0.0f), origin.location.x - max.x);
+				float dy = Math.max(Math.max(min.y - origin.location.y, 0.0f), origin.location.y - max.y);
+				float dz = Math.max(Math.max(min.z - origin.location.z, 0.0f), origin.location.z - max.z);
+				if(dx * dx + dy * dy + dz * dz > radius * radius)
+					continue;
+
+				boolean found = false;
+				for(int j = 0; j < results.size() && !found; j++)
+					found = results.get(j) == ent;
+
+				if(!found)
+					misses++;
+			}
+		}
+		results.clear();
+
+		return misses;
+	}
+}
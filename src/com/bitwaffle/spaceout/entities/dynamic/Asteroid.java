@@ -9,16 +9,20 @@ import org.lwjgl.util.vector.Vector3f;
 import com.bitwaffle.spaceguts.entities.DynamicEntity;
 import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.entities.Entity;
+import com.bitwaffle.spaceguts.entities.EntityPool;
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
 import com.bitwaffle.spaceguts.graphics.render.Render3D;
 import com.bitwaffle.spaceguts.physics.CollisionTypes;
 import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.PhysicsLOD;
+import com.bitwaffle.spaceguts.physics.ShapeCache;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.Randoms;
 import com.bitwaffle.spaceout.entities.passive.AsteroidField;
 import com.bitwaffle.spaceout.interfaces.Health;
 import com.bitwaffle.spaceout.interfaces.Projectile;
 import com.bitwaffle.spaceout.resources.Models;
 import com.bulletphysics.collision.dispatch.CollisionObject;
-import com.bulletphysics.collision.shapes.SphereShape;
 import com.bulletphysics.linearmath.Transform;
 
 /**
@@ -31,6 +35,7 @@ public class Asteroid extends DynamicEntity implements Health, Projectile{
 	
 	/** Used for scaling the modelview when drawing */
 	private static Matrix4f oldModelView = new Matrix4f();
+	private static Vector3f scale = new Vector3f();
 	
 	/** The fastest the asteroid can spin */
 	final static float ANGVEC_CAP = 5.0f;
@@ -56,8 +61,22 @@ public class Asteroid extends DynamicEntity implements Health, Projectile{
 	/** How heavy an asteroid is based on it's size (mass = size * MASS_FACTOR) */
 	final static float MASS_FACTOR = 2;
 	
+	/** How much health asteroids start out with */
+	final static int HEALTH = 80;
+	
+	/** How fast asteroids are spinning when they're created */
+	private final static javax.vecmath.Vector3f INITIAL_ANGVEC = new javax.vecmath.Vector3f(0.0f, 0.015f, 0.0f);
+	
+	/** Every asteroid that gets destroyed makes NUMBER_OF_DIVISIONS more */
+	public static final EntityPool<Asteroid> POOL = new EntityPool<Asteroid>("Asteroid", 300, 50){
+		@Override
+		protected Asteroid create(){
+			return new Asteroid(new Vector3f(), new Quaternion(), 1.0f, null);
+		}
+	};
+	
 	/** How much health the asteroid has */
-	int health = 80;
+	int health;
 	
 	/** How big the asteroid is */
 	private float size;
@@ -65,6 +84,9 @@ public class Asteroid extends DynamicEntity implements Health, Projectile{
 	/** Which asteroid field this asteroid belongs to */
 	private AsteroidField field;
 	
+	/** Scratch vector for capAngularVelocity() (this can't be static, asteroids get updated in parallel) */
+	private javax.vecmath.Vector3f angVecScratch = new javax.vecmath.Vector3f();
+	
 	/**
 	 * ASS-teroid heh heh heh
 	 * @param location Location of asteroid
@@ -72,26 +94,61 @@ public class Asteroid extends DynamicEntity implements Health, Projectile{
 	 * @param size How big the asteroid is
 	 */
 	public Asteroid(Vector3f location, Quaternion rotation, float size, AsteroidField field) {
-		super(location, rotation, new SphereShape(size), size * MASS_FACTOR, ASTEROID_RESTITUTION, COL_GROUP, COL_WITH);
+		super(location, rotation, ShapeCache.acquireSphere(size), size * MASS_FACTOR, ASTEROID_RESTITUTION, COL_GROUP, COL_WITH);
 		
-		rigidBody.setActivationState(CollisionObject.DISABLE_DEACTIVATION);
-		rigidBody.setAngularVelocity(new javax.vecmath.Vector3f(0.0f, 0.015f, 0.0f));
+		// asteroids far away from the player get simulated with less detail
+		lod = new PhysicsLOD.State();
 		
-		this.type = "Asteroid (size " + size + " health " + health + ")";
 		this.model = Models.ASTEROID.getModel();
+		
+		init(size, field);
+	}
+	
+	/**
+	 * Gets an asteroid out of the pool and puts it in the world (it still needs to be added to Entities)
+	 * @param location Location of asteroid
+	 * @param rotation Rotation of asteroid
+	 * @param size How big the asteroid is
+	 * @param field Field the asteroid belongs to (can be null)
+	 * @return Asteroid that's ready to go
+	 */
+	public static Asteroid obtain(Vector3f location, Quaternion rotation, float size, AsteroidField field){
+		Asteroid a = POOL.obtain();
+		a.respawn(location, rotation, ShapeCache.acquireSphere(size), size * MASS_FACTOR);
+		a.init(size, field);
+		return a;
+	}
+	
+	/**
+	 * Sets up everything that isn't the rigid body (for both new and pooled asteroids)
+	 */
+	private void init(float size, AsteroidField field){
+		rigidBody.setActivationState(CollisionObject.DISABLE_DEACTIVATION);
+		rigidBody.setAngularVelocity(INITIAL_ANGVEC);
+		
+		this.health = HEALTH;
 		this.size = size;
+		this.type = "Asteroid (size " + size + " health " + health + ")";
 		
-		if(field != null){
-			this.field = field;
+		this.field = field;
+		if(field != null)
 			field.addAsteroidToField(this);
-		}
+	}
+	
+	@Override
+	public void captureDrawState(DrawState state){
+		// pooled asteroids can change size
+		state.put(size);
 	}
 	
 	@Override
 	public void draw(){
+		float drawSize = Render3D.drawState.next();
+		
 		// scale the modelview before drawing
 		oldModelView.load(Render3D.modelview);
-		Render3D.modelview.scale(new org.lwjgl.util.vector.Vector3f(size, size, size));
+		scale.set(drawSize, drawSize, drawSize);
+		Render3D.modelview.scale(scale);
 		Render3D.program.setUniform("ModelViewMatrix", Render3D.modelview);
 		super.draw();
 		Render3D.modelview.load(oldModelView);
@@ -106,7 +163,7 @@ public class Asteroid extends DynamicEntity implements Health, Projectile{
 		Transform worldTransform = new Transform();
 		rigidBody.getWorldTransform(worldTransform);
 
-		Physics.dynamicsWorld.debugDrawObject(worldTransform, Models.ASTEROID.getModel().getCollisionShape(),
+		Physics.dynamicsWorld.debugDrawObject(worldTransform, rigidBody.getCollisionShape(),
 				new javax.vecmath.Vector3f(0.0f, 0.0f, 0.0f));
 	}
 	
@@ -117,11 +174,17 @@ public class Asteroid extends DynamicEntity implements Health, Projectile{
 		capAngularVelocity();
 	}
 	
+	@Override
+	public boolean canUpdateInParallel(){
+		// asteroids only ever touch their own rigid body when updating
+		return true;
+	}
+	
 	/**
 	 * Keep the asteroid from spinning too fast
 	 */
 	private void capAngularVelocity(){
-		javax.vecmath.Vector3f angVec = new javax.vecmath.Vector3f();
+		javax.vecmath.Vector3f angVec = angVecScratch;
 		rigidBody.getAngularVelocity(angVec);
 		float speed = angVec.length();
 		if(speed > ANGVEC_CAP){
@@ -172,7 +235,7 @@ public class Asteroid extends DynamicEntity implements Health, Projectile{
 	 * @param newSize New size of asteroid
 	 */
 	private void addRandomAsteroid(float newSize){
-		Random randy = new Random();
+		Random randy = Randoms.create();
 
 		float asteroidX = randy.nextFloat() * 10.0f;
 		float asteroidY = randy.nextFloat() * 10.0f;
@@ -193,7 +256,7 @@ public class Asteroid extends DynamicEntity implements Health, Projectile{
 		float zRot = randy.nextFloat() * 100.0f;
 		asteroidRotation = QuaternionHelper.rotate(asteroidRotation, new Vector3f(xRot,yRot, zRot));
 		
-		Asteroid a = new Asteroid(asteroidLocation, asteroidRotation, newSize, field);
+		Asteroid a = Asteroid.obtain(asteroidLocation, asteroidRotation, newSize, field);
 		
 		// randomly go +/- the parent asteroid's speed
 		javax.vecmath.Vector3f linVec = new javax.vecmath.Vector3f();
@@ -219,7 +282,7 @@ public class Asteroid extends DynamicEntity implements Health, Projectile{
 	 * Add some random diamonds
 	 */
 	private void addRandomDiamond() {
-		Random randy = new Random();
+		Random randy = Randoms.create();
 
 		float diamondX = randy.nextFloat() * 10.0f;
 		float diamondY = randy.nextFloat() * 10.0f;
@@ -246,7 +309,7 @@ public class Asteroid extends DynamicEntity implements Health, Projectile{
 		
 		float diamondStopSpeed = 0.1f;
 		
-		Diamond d = new Diamond(diamondLocation, diamondRotation, diamondStopSpeed);
+		Diamond d = Diamond.obtain(diamondLocation, diamondRotation, diamondStopSpeed);
 
 		Entities.addDynamicEntity(d);
 	}
@@ -4,12 +4,14 @@ import org.lwjgl.util.vector.Quaternion;
 import org.lwjgl.util.vector.Vector3f;
 
 import com.bitwaffle.spaceguts.audio.SoundSource;
+import com.bitwaffle.spaceguts.entities.EntityPool;
 import com.bitwaffle.spaceguts.entities.Pickup;
 import com.bitwaffle.spaceguts.physics.CollisionTypes;
+import com.bitwaffle.spaceguts.physics.PhysicsLOD;
+import com.bitwaffle.spaceguts.physics.ShapeCache;
 import com.bitwaffle.spaceout.entities.player.Backpack;
 import com.bitwaffle.spaceout.resources.Models;
 import com.bitwaffle.spaceout.resources.Sounds;
-import com.bulletphysics.collision.shapes.ConeShape;
 
 /**
  * DIAMONDS!!!!
@@ -30,15 +32,43 @@ public class Diamond extends Pickup{
 	private SoundSource beep;
 	
 	private boolean soundPlayed = false;
+	
+	/** Scratch vector for stop() (this can't be static, pickups get updated in parallel) */
+	private javax.vecmath.Vector3f velocityScratch = new javax.vecmath.Vector3f();
+	
+	/** 25 of these get made every time an asteroid is destroyed */
+	public static final EntityPool<Diamond> POOL = new EntityPool<Diamond>("Diamond", 500, 100){
+		@Override
+		protected Diamond create(){
+			return new Diamond(new Vector3f(), new Quaternion(), 0.0f);
+		}
+	};
 
 	public Diamond(Vector3f location, Quaternion rotation, float stopSpeed) {
-		super(location, rotation, new ConeShape(CONE_RADIUS, CONE_HEIGHT), MASS, RESTITUTION, COL_GROUP, COL_WITH);
+		super(location, rotation, ShapeCache.acquireCone(CONE_RADIUS, CONE_HEIGHT), MASS, RESTITUTION, COL_GROUP, COL_WITH);
 		this.model = MODEL.getModel();
 		this.type = "Diamond";
 		this.stopSpeed = stopSpeed;
+		this.lod = new PhysicsLOD.State();
 		
 	}
 	
+	/**
+	 * Gets a diamond out of the pool and puts it in the world (it still needs to be added to Entities)
+	 * @param location Where to put the diamond
+	 * @param rotation Which way the diamond is facing
+	 * @param stopSpeed How fast the diamond stops
+	 * @return Diamond that's ready to go
+	 */
+	public static Diamond obtain(Vector3f location, Quaternion rotation, float stopSpeed){
+		Diamond d = POOL.obtain();
+		d.respawn(location, rotation, ShapeCache.acquireCone(CONE_RADIUS, CONE_HEIGHT), MASS);
+		d.stopSpeed = stopSpeed;
+		d.soundPlayed = false;
+		d.beep = null;
+		return d;
+	}
+	
 	@Override
 	public void update(float timeStep){
 		super.update(timeStep);
@@ -51,16 +81,15 @@ public class Diamond extends Pickup{
 	 * Gracefully stops the player
 	 */
 	private void stop(float timeStep) {
-		javax.vecmath.Vector3f linearVelocity = new javax.vecmath.Vector3f(
-				0.0f, 0.0f, 0.0f);
+		javax.vecmath.Vector3f linearVelocity = velocityScratch;
 		rigidBody.getLinearVelocity(linearVelocity);
 
 		float stopX = linearVelocity.x - ((linearVelocity.x / stopSpeed) * timeStep);
 		float stopY = linearVelocity.y - ((linearVelocity.y / stopSpeed) * timeStep);
 		float stopZ = linearVelocity.z - ((linearVelocity.z / stopSpeed) * timeStep);
 
-		rigidBody.setLinearVelocity(new javax.vecmath.Vector3f(stopX, stopY,
-				stopZ));
+		linearVelocity.set(stopX, stopY, stopZ);
+		rigidBody.setLinearVelocity(linearVelocity);
 	}
 	
 	@Override
@@ -5,8 +5,10 @@ import org.lwjgl.util.vector.Vector3f;
 
 import com.bitwaffle.spaceguts.entities.DynamicEntity;
 import com.bitwaffle.spaceguts.entities.Entity;
+import com.bitwaffle.spaceguts.entities.EntityPool;
 import com.bitwaffle.spaceguts.physics.CollisionTypes;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.VectorHelper;
 import com.bitwaffle.spaceout.interfaces.Projectile;
 import com.bitwaffle.spaceout.resources.Models;
 
@@ -29,24 +31,63 @@ public class LaserBullet extends DynamicEntity implements Projectile{
 
 	/** how long the bullet has been alive */
 	public float timeAlive = 0.0f;
+	
+	/** Mass and restitution of pooled bullets */
+	private static final float POOLED_MASS = 0.25f, POOLED_RESTITUTION = 1.0f;
+	
+	/**
+	 * Bullets that use the laser bullet model (see obtain()).
+	 * Nothing gets made ahead of time, the player's lasers don't have rigid bodies anymore (see Projectiles).
+	 */
+	public static final EntityPool<LaserBullet> POOL = new EntityPool<LaserBullet>("LaserBullet", 200, 0){
+		@Override
+		protected LaserBullet create(){
+			return new LaserBullet(null, new Vector3f(), new Quaternion(), Models.LASERBULLET, POOLED_MASS, POOLED_RESTITUTION, 0, 0.0f);
+		}
+	};
+	
+	/** Scratch vectors for setting velocity */
+	private Vector3f velocity = new Vector3f();
+	private javax.vecmath.Vector3f vecScratch = new javax.vecmath.Vector3f();
 
 	public LaserBullet(Entity origin, Vector3f location, Quaternion rotation, Models model,
 			float mass, float restitution, int damage, float speed) {
-		super(location, rotation, model, mass, restitution);
+		super(location, rotation, model, mass, restitution, COL_GROUP, COL_WITH);
+		init(origin, damage, speed);
+	}
+	
+	/**
+	 * Gets a bullet that uses the laser bullet model out of the pool and puts it in the world
+	 * (it still needs to be added to Entities)
+	 * @param origin Whoever fired the bullet
+	 * @param location Where to put the bullet
+	 * @param rotation Which way the bullet is going
+	 * @param damage How much damage the bullet does
+	 * @param speed How fast the bullet is going
+	 * @return Bullet that's ready to go
+	 */
+	public static LaserBullet obtain(Entity origin, Vector3f location, Quaternion rotation, int damage, float speed){
+		LaserBullet b = POOL.obtain();
+		b.respawn(location, rotation, b.rigidBody.getCollisionShape(), POOLED_MASS);
+		b.init(origin, damage, speed);
+		return b;
+	}
+	
+	/**
+	 * Sets up everything that isn't the rigid body (for both new and pooled bullets)
+	 */
+	private void init(Entity origin, int damage, float speed){
 		this.type = "Bullet";
 		this.damage = damage;
+		this.origin = origin;
+		this.timeAlive = 0.0f;
+		this.life = 10.0f;
 		
 		this.rigidBody.setCcdMotionThreshold(5.0f);
 		
-		this.origin = origin;
-		
 		// give the bullet some speed
-		javax.vecmath.Vector3f currentVelocity = new javax.vecmath.Vector3f();
-		rigidBody.getInterpolationLinearVelocity(currentVelocity);
-		Vector3f vec = QuaternionHelper.rotateVectorByQuaternion(new Vector3f(
-				0.0f, 0.0f, speed), rotation);
-		this.rigidBody.setLinearVelocity(new javax.vecmath.Vector3f(vec.x,
-				vec.y, vec.z));
+		QuaternionHelper.rotateVectorByQuaternion(0.0f, 0.0f, speed, rotation, velocity);
+		VectorHelper.setLinearVelocity(rigidBody, velocity, vecScratch);
 	}
 
 	@Override
@@ -59,6 +100,11 @@ public class LaserBullet extends DynamicEntity implements Projectile{
 			removeFlag = true;
 		}
 	}
+	
+	@Override
+	public boolean canUpdateInParallel(){
+		return true;
+	}
 
 	@Override
 	public int getDamage() {
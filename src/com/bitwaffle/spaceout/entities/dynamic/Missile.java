@@ -1,6 +1,5 @@
 package com.bitwaffle.spaceout.entities.dynamic;
 
-import java.util.ArrayList;
 import java.util.Random;
 
 import javax.vecmath.Quat4f;
@@ -13,16 +12,18 @@ import com.bitwaffle.spaceguts.entities.DynamicEntity;
 import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.entities.Entity;
 import com.bitwaffle.spaceguts.entities.particles.Emitter;
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
 import com.bitwaffle.spaceguts.physics.CollisionTypes;
-import com.bitwaffle.spaceguts.physics.ConvexResultCallback;
-import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.PhysicsLOD;
+import com.bitwaffle.spaceguts.physics.SpatialQuery;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.Randoms;
+import com.bitwaffle.spaceguts.util.VectorHelper;
 import com.bitwaffle.spaceout.entities.passive.particles.Explosion;
 import com.bitwaffle.spaceout.interfaces.Projectile;
 import com.bitwaffle.spaceout.resources.Models;
 import com.bitwaffle.spaceout.resources.Sounds;
 import com.bitwaffle.spaceout.resources.Textures;
-import com.bulletphysics.collision.shapes.SphereShape;
 import com.bulletphysics.linearmath.Transform;
 
 /**
@@ -50,13 +51,21 @@ public class Missile extends DynamicEntity implements Projectile{
 	private static final int FIRE_PARTICLES_PER_EMISSION = 2;
 	private static final float FIRE_PARTICLE_TTL_VARIANCE = 2.0f;
 	
-	private static Vector3f explosionDistance = new Vector3f(0.0f, 0.0f, 1.0f);
 	private static float explosionSize = 150.0f;
 	private static float explosionForce = 50.0f;
 	
 	/** What the missile is aiming for */
 	private DynamicEntity target;
 	
+	/** Used for finding what the explosion pushes */
+	private SpatialQuery.Results explosionResults = new SpatialQuery.Results();
+	
+	/** Scratch objects for converting between LWJGL and Bullet, so nothing gets allocated every tick */
+	private Vector3f subtract = new Vector3f(), velocity = new Vector3f();
+	private javax.vecmath.Vector3f vecScratch = new javax.vecmath.Vector3f();
+	private Quat4f quatScratch = new Quat4f();
+	private Transform transScratch = new Transform();
+	
 	/** Particle effect */
 	private Emitter fire;
 	
@@ -105,27 +114,24 @@ public class Missile extends DynamicEntity implements Projectile{
 		thrusterSound.stopSound();
 		thrusterSound.removeFlag = true;
 		
-		// perform a convex sweep test to push thing outwards
-		ArrayList<DynamicEntity> hits = new ArrayList<DynamicEntity>();
-		ConvexResultCallback<DynamicEntity> callback = new ConvexResultCallback<DynamicEntity>(hits, CollisionTypes.EVERYTHING);
-		Physics.convexSweepTest(this, explosionDistance, new SphereShape(explosionSize), callback);
-		for(DynamicEntity ent : hits){
-			if(ent != this){
-				Vector3f subtract = new Vector3f();
-				Vector3f.sub(this.location, ent.location, subtract);
-				subtract.negate(subtract);
-				subtract.normalise(subtract);
-				
-				javax.vecmath.Vector3f entSpeed = new javax.vecmath.Vector3f();
-				ent.rigidBody.getLinearVelocity(entSpeed);
-				
-				float dx = entSpeed.x + (subtract.x * explosionForce);
-				float dy = entSpeed.y + (subtract.y * explosionForce);
-				float dz = entSpeed.z + (subtract.z * explosionForce);
+		// push everything nearby outwards
+		SpatialQuery.sphere(this.location, explosionSize, CollisionTypes.EVERYTHING, this, explosionResults);
+		for(int i = 0; i < explosionResults.size(); i++){
+			DynamicEntity ent = explosionResults.get(i);
+			Vector3f.sub(this.location, ent.location, subtract);
+			subtract.negate(subtract);
+			subtract.normalise(subtract);
 			
-				ent.rigidBody.setLinearVelocity(new javax.vecmath.Vector3f(dx, dy, dz));
-			}
+			// this goes through PhysicsLOD so that far away entities that are drifting get pushed too
+			javax.vecmath.Vector3f entVelocity = PhysicsLOD.getLinearVelocity(ent, vecScratch);
+			
+			entVelocity.x += subtract.x * explosionForce;
+			entVelocity.y += subtract.y * explosionForce;
+			entVelocity.z += subtract.z * explosionForce;
+		
+			PhysicsLOD.setLinearVelocity(ent, entVelocity);
 		}
+		explosionResults.clear();
 		// get rid of ze missile
 		removeFlag = true;
 	}
@@ -137,10 +143,10 @@ public class Missile extends DynamicEntity implements Projectile{
 		 * so that it look's like it's going haywire.
 		 */
 		if(target == null){
-			javax.vecmath.Vector3f angvec = new javax.vecmath.Vector3f();
+			javax.vecmath.Vector3f angvec = vecScratch;
 			this.rigidBody.getAngularVelocity(angvec);
 			if(angvec.length() == 0.0f){
-				Random r = new Random();
+				Random r = Randoms.create();
 				float x,y,z;
 				if(r.nextBoolean())
 					x = r.nextFloat() * speed;
@@ -162,8 +168,8 @@ public class Missile extends DynamicEntity implements Projectile{
 				this.rigidBody.setAngularVelocity(angvec);
 			}
 			// give the missile some forward momentum
-			Vector3f forward = QuaternionHelper.rotateVectorByQuaternion(new Vector3f(0.0f, 0.0f, speed), this.rotation);
-			this.rigidBody.setLinearVelocity(new javax.vecmath.Vector3f(forward.x, forward.y, forward.z));
+			Vector3f forward = QuaternionHelper.rotateVectorByQuaternion(0.0f, 0.0f, speed, this.rotation, velocity);
+			VectorHelper.setLinearVelocity(this.rigidBody, forward, vecScratch);
 			
 		/*
 		 * Else there is a target, and we should move towards it
@@ -174,7 +180,6 @@ public class Missile extends DynamicEntity implements Projectile{
 				target = null;
 			}else{
 				// find the difference between this's location and the target's location then negate it to go towards it
-				Vector3f subtract = new Vector3f();
 				Vector3f.sub(this.location, target.location, subtract);
 				subtract.negate(subtract);
 				// since we normalize the difference, the length of the missile's linear velocity will be its speed!
@@ -185,7 +190,8 @@ public class Missile extends DynamicEntity implements Projectile{
 				float dz1 = (subtract.z * speed);
 				
 				// set linear velocity to go towards following
-				this.rigidBody.setLinearVelocity(new javax.vecmath.Vector3f(dx1, dy1, dz1));
+				vecScratch.set(dx1, dy1, dz1);
+				this.rigidBody.setLinearVelocity(vecScratch);
 				
 				if(dx1 != 0.0f || dy1 != 0.0f || dz1 != 0.0f){
 					//FIXME this doesn't work quite right...
@@ -193,10 +199,9 @@ public class Missile extends DynamicEntity implements Projectile{
 					//Quaternion newRot = QuaternionHelper.lookAt(this.location, subtract);
 					this.rotation.set(newRot);
 					
-					Transform trans = new Transform();
-					this.rigidBody.getWorldTransform(trans);
-					trans.setRotation(new Quat4f(newRot.x, newRot.y, newRot.z, newRot.w));
-					this.rigidBody.setWorldTransform(trans);	
+					this.rigidBody.getWorldTransform(transScratch);
+					transScratch.setRotation(VectorHelper.toVecmath(newRot, quatScratch));
+					this.rigidBody.setWorldTransform(transScratch);
 				}
 			}
 		}
@@ -205,9 +210,7 @@ public class Missile extends DynamicEntity implements Projectile{
 		speed += speedIncrease * timeStep;
 		
 		// set sound location and velocity
-		javax.vecmath.Vector3f veloc = new javax.vecmath.Vector3f();
-		this.rigidBody.getLinearVelocity(veloc);
-		thrusterSound.setVelocity(new Vector3f(veloc.x, veloc.y, veloc.z));
+		thrusterSound.setVelocity(VectorHelper.getLinearVelocity(this.rigidBody, vecScratch, velocity));
 		thrusterSound.setLocation(this.location);
 		
 		// age the missile and explode if necessary
@@ -220,6 +223,11 @@ public class Missile extends DynamicEntity implements Projectile{
 		fire.update(timeStep);
 	}
 	
+	@Override
+	public void captureDrawState(DrawState state){
+		fire.captureDrawState(state);
+	}
+	
 	@Override
 	public void draw(){
 		super.draw();
@@ -8,15 +8,18 @@ import org.lwjgl.util.vector.Vector3f;
 import com.bitwaffle.spaceguts.entities.DynamicEntity;
 import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.entities.particles.trail.Trail;
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
 import com.bitwaffle.spaceguts.graphics.render.Render3D;
 import com.bitwaffle.spaceguts.graphics.shapes.VBOQuadric;
 import com.bitwaffle.spaceguts.physics.CollisionTypes;
 import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.PhysicsLOD;
+import com.bitwaffle.spaceguts.physics.ShapeCache;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.Randoms;
 import com.bitwaffle.spaceout.interfaces.Health;
 import com.bitwaffle.spaceout.resources.Textures;
 import com.bulletphysics.collision.dispatch.CollisionObject;
-import com.bulletphysics.collision.shapes.SphereShape;
 import com.bulletphysics.linearmath.Transform;
 
 /**
@@ -28,8 +31,6 @@ public class Planet extends DynamicEntity implements Health{
         final static short COL_GROUP = CollisionTypes.PLANET;
         final static short COL_WITH = (short)(CollisionTypes.SHIP | CollisionTypes.WALL | CollisionTypes.PLANET | CollisionTypes.PICKUP | CollisionTypes.PROJECTILE);
         
-        private static SphereShape shape;
-        
         private Trail trail;
         
         //FIXME planets shouldnt really have health this is for shits and giggles
@@ -41,10 +42,11 @@ public class Planet extends DynamicEntity implements Health{
         
         public Planet(Vector3f location, Quaternion rotation, float size,
                         float mass, float restitution, Textures texture) {
-                super(location, QuaternionHelper.rotate(rotation, new Vector3f(90.0f, 0.0f, 0.0f)), getShape(size), mass, restitution, COL_GROUP, COL_WITH);
+                super(location, QuaternionHelper.rotate(rotation, new Vector3f(90.0f, 0.0f, 0.0f)), ShapeCache.acquireSphere(size), mass, restitution, COL_GROUP, COL_WITH);
                 
                 rigidBody.setActivationState(CollisionObject.DISABLE_DEACTIVATION);
                 rigidBody.setAngularVelocity(new javax.vecmath.Vector3f(0.0f, 0.015f, 0.0f));
+                lod = new PhysicsLOD.State();
                 
                 this.type = "Planet";
                 this.texture = texture;
@@ -54,6 +56,11 @@ public class Planet extends DynamicEntity implements Health{
                 trail = new Trail(this, 20, 0.2f, Textures.TRAIL, new Vector3f(0.0f, 0.0f, 0.0f));
         }
         
+        @Override
+        public void captureDrawState(DrawState state){
+                trail.captureDrawState(state);
+        }
+        
         @Override
         public void draw(){
                 Render3D.useDefaultMaterial();
@@ -62,11 +69,6 @@ public class Planet extends DynamicEntity implements Health{
                 trail.draw();
         }
         
-        private static SphereShape getShape(float size){
-                shape = new SphereShape(size);
-                return shape;
-        }
-        
         @Override
         /**
          * Draws the physics debug info for this entity. Should be called before
@@ -76,7 +78,7 @@ public class Planet extends DynamicEntity implements Health{
                 Transform worldTransform = new Transform();
                 rigidBody.getWorldTransform(worldTransform);
 
-                Physics.dynamicsWorld.debugDrawObject(worldTransform, shape,
+                Physics.dynamicsWorld.debugDrawObject(worldTransform, rigidBody.getCollisionShape(),
                                 new javax.vecmath.Vector3f(0.0f, 0.0f, 0.0f));
         }
         
@@ -85,6 +87,11 @@ public class Planet extends DynamicEntity implements Health{
                 super.update(timeStep);
                 trail.update(timeStep);
         }
+        
+        @Override
+        public boolean canUpdateInParallel(){
+                return true;
+        }
 
         @Override
         public int getCurrentHealth() {
@@ -110,7 +117,7 @@ public class Planet extends DynamicEntity implements Health{
         
         // TODO find a better way to do loot drops
         private void addRandomDiamond() {
-                Random randy = new Random();
+                Random randy = Randoms.create();
 
                 float diamondX = randy.nextFloat() * 10.0f;
                 float diamondY = randy.nextFloat() * 10.0f;
@@ -138,7 +145,7 @@ public class Planet extends DynamicEntity implements Health{
                 
                 float diamondStopSpeed = 0.3f;
                 
-                Diamond d = new Diamond(diamondLocation, diamondRotation, diamondStopSpeed);
+                Diamond d = Diamond.obtain(diamondLocation, diamondRotation, diamondStopSpeed);
 
                 Entities.addDynamicEntity(d);
         }
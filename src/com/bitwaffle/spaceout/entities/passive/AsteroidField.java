@@ -13,6 +13,7 @@ import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.entities.Entity;
 import com.bitwaffle.spaceguts.graphics.render.Render3D;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.Randoms;
 import com.bitwaffle.spaceout.entities.dynamic.Asteroid;
 import com.bitwaffle.spaceout.resources.Models;
 import com.bitwaffle.spaceout.resources.Textures;
@@ -68,8 +69,7 @@ public class AsteroidField extends Entity{
 		this.range = range;
 		this.asteroidSpeed = asteroidSpeed;
 		
-		randy = new Random();
-		randy.setSeed(System.currentTimeMillis());
+		randy = Randoms.create();
 		
 		for(int i = 0; i < initialAsteroids; i++)
 			releaseAsteroid();
@@ -99,7 +99,7 @@ public class AsteroidField extends Entity{
 		Quaternion asteroidRotation = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
 		QuaternionHelper.rotate(asteroidRotation, new Vector3f(randy.nextInt(90), randy.nextInt(90), randy.nextInt(90)));
 		
-		Asteroid a = new Asteroid(new Vector3f(asteroidX, asteroidY, asteroidZ), asteroidRotation, asteroidSize, this);
+		Asteroid a = Asteroid.obtain(new Vector3f(asteroidX, asteroidY, asteroidZ), asteroidRotation, asteroidSize, this);
 		
 		float impulseX = randy.nextBoolean() ?
 				randy.nextFloat() * asteroidSpeed.x:
@@ -8,8 +8,8 @@ import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Quaternion;
 import org.lwjgl.util.vector.Vector3f;
 
-import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.entities.Entity;
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
 import com.bitwaffle.spaceguts.graphics.render.Render3D;
 import com.bitwaffle.spaceguts.graphics.shapes.Circle2D;
 import com.bitwaffle.spaceguts.util.Noise;
@@ -41,6 +41,10 @@ public class Debris extends Entity {
 	public float distance;
 	
 	private static Circle2D circle = new Circle2D(0.85f, 1);
+	
+	/** Scratch objects for drawing, so nothing gets allocated per star (only used on the render thread) */
+	private static Matrix4f oldModelview = new Matrix4f(), billboardMatrix = new Matrix4f();
+	private static Vector3f translation = new Vector3f(), scale = new Vector3f();
 
 	/**
 	 * The random floats between 1.0f and 0.0f are multiplied by this when added
@@ -210,36 +214,50 @@ public class Debris extends Entity {
 		return ret;
 	}
 
+	/**
+	 * Particles get moved around in update(), so every one of them gets copied for the renderer
+	 */
+	@Override
+	public void captureDrawState(DrawState state){
+		for (int i = 0; i < numParticles; i++) {
+			state.put(particles[i].location);
+			state.put(particles[i].size);
+		}
+	}
+
 	@Override
 	public void draw() {
 		// we don't want lighting for our particles
 		//Render3D.program.setUniform("Light.LightEnabled", false);
 
-		Quaternion revQuat = new Quaternion(0.0f, 0.0f, 0.0f, 1.0f);
-		Entities.camera.rotation.negate(revQuat);
+		// every star is billboarded the same way, so this only needs to be figured out once
+		QuaternionHelper.toMatrix(Render3D.cameraRotation, billboardMatrix);
 
 		// bind a white texture
 		Textures.WHITE.texture().bind();
 		GL30.glBindVertexArray(circle.getVaoHandle());
 
-		// loop through all the particles to draw them
-		for (Particle s : particles) {
-			s.update();
+		// loop through all the particles to draw them (see captureDrawState())
+		DrawState state = Render3D.drawState;
+		while (state.hasNext()) {
 			// translate to the star
-			float transx = this.location.x - s.location.x;
-			float transy = this.location.y - s.location.y;
-			float transz = this.location.z - s.location.z;
+			float transx = Render3D.drawLocation.x - state.next();
+			float transy = Render3D.drawLocation.y - state.next();
+			float transz = Render3D.drawLocation.z - state.next();
+			float size = state.next();
 			
-			Matrix4f oldModelview = new Matrix4f(Render3D.modelview);{
+			oldModelview.load(Render3D.modelview);{
 				// translate and scale the modelview to match the star
-				Render3D.modelview.translate(new Vector3f(transx, transy, transz));
-				Matrix4f.mul(Render3D.modelview, QuaternionHelper.toMatrix(Entities.camera.rotation), Render3D.modelview);
-				Render3D.modelview.scale(new Vector3f(s.size, s.size, s.size));
+				translation.set(transx, transy, transz);
+				Render3D.modelview.translate(translation);
+				Matrix4f.mul(Render3D.modelview, billboardMatrix, Render3D.modelview);
+				scale.set(size, size, size);
+				Render3D.modelview.scale(scale);
 				Render3D.program.setUniform("ModelViewMatrix", Render3D.modelview);
 
 				// draw the star
 				GL11.glDrawArrays(GL11.GL_TRIANGLE_FAN, 0, circle.getNumIndices());
-			}Render3D.modelview = oldModelview;
+			}Render3D.modelview.load(oldModelview);
 		}
 
 		// don't forget to re-enable lighting!
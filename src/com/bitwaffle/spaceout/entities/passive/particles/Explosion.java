@@ -7,6 +7,7 @@ import com.bitwaffle.spaceguts.audio.SoundSource;
 import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.entities.Entity;
 import com.bitwaffle.spaceguts.entities.particles.Emitter;
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
 import com.bitwaffle.spaceout.resources.Sounds;
 import com.bitwaffle.spaceout.resources.Textures;
 
@@ -78,6 +79,11 @@ public class Explosion extends Entity{
 		}
 	}
 
+	@Override
+	public void captureDrawState(DrawState state){
+		emitter.captureDrawState(state);
+	}
+
 	@Override
 	public void draw() {
 		// hooray for abstraction
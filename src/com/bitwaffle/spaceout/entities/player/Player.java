@@ -16,19 +16,20 @@ import com.bitwaffle.spaceguts.entities.Entities;
 import com.bitwaffle.spaceguts.entities.Pickup;
 import com.bitwaffle.spaceguts.entities.particles.trail.Trail;
 import com.bitwaffle.spaceguts.graphics.gui.GUI;
+import com.bitwaffle.spaceguts.graphics.render.DrawState;
 import com.bitwaffle.spaceguts.graphics.render.Render3D;
 import com.bitwaffle.spaceguts.graphics.shapes.Box2D;
 import com.bitwaffle.spaceguts.input.KeyBindings;
 import com.bitwaffle.spaceguts.input.MouseManager;
 import com.bitwaffle.spaceguts.physics.CollisionTypes;
-import com.bitwaffle.spaceguts.physics.ConvexResultCallback;
-import com.bitwaffle.spaceguts.physics.Physics;
+import com.bitwaffle.spaceguts.physics.Projectiles;
+import com.bitwaffle.spaceguts.physics.SpatialQuery;
 import com.bitwaffle.spaceguts.util.Debug;
 import com.bitwaffle.spaceguts.util.QuaternionHelper;
+import com.bitwaffle.spaceguts.util.VectorHelper;
 import com.bitwaffle.spaceguts.util.console.Console;
 import com.bitwaffle.spaceout.Runner;
 import com.bitwaffle.spaceout.entities.dynamic.Asteroid;
-import com.bitwaffle.spaceout.entities.dynamic.LaserBullet;
 import com.bitwaffle.spaceout.entities.dynamic.Missile;
 import com.bitwaffle.spaceout.interfaces.Health;
 import com.bitwaffle.spaceout.interfaces.Inventory;
@@ -37,8 +38,6 @@ import com.bitwaffle.spaceout.resources.Sounds;
 import com.bitwaffle.spaceout.resources.Textures;
 import com.bitwaffle.spaceout.ship.Ship;
 import com.bulletphysics.collision.dispatch.CollisionObject;
-import com.bulletphysics.collision.shapes.BoxShape;
-import com.bulletphysics.collision.shapes.SphereShape;
 import com.bulletphysics.linearmath.Transform;
 
 /**
@@ -61,18 +60,40 @@ public class Player extends DynamicEntity implements Health, Inventory{
 	
 	private static final float LOCKON_DISTANCE = 5000.0f;
 	
+	/** Used for stopping the ship from spinning (never changed) */
+	private static final javax.vecmath.Vector3f ZERO = new javax.vecmath.Vector3f(0.0f, 0.0f, 0.0f);
+	
 	/** Used for drawing the lockon target thing */
 	private static Box2D lockonbox = new Box2D(1.0f, 1.0f, Textures.TARGET.texture());
 	
 	/** How big the lockon box is */
 	private static Point2f lockonboxSize = new Point2f(10.0f,10.0f);
 	
-	/** Used for searching for lockon stuff*/
-	private BoxShape lockonSweepBox = new BoxShape(new javax.vecmath.Vector3f(5.0f, 5.0f, 5.0f));
+	/** Where what's locked on to was for the last two ticks, read out of the DrawState when drawing the target */
+	private static Vector3f targetPrevious = new Vector3f(), target = new Vector3f();
+	
+	/** How far off from straight ahead something can be and still get locked on to, in degrees */
+	private static final float LOCKON_ANGLE = 1.0f;
+	
+	/** Finds things to lock on to */
+	public TargetAcquisition targeting;
+	
+	/** Used for searching for pickups */
+	private SpatialQuery.Results pickupResults = new SpatialQuery.Results();
+	private Vector3f forwardScratch = new Vector3f(), queryScratch = new Vector3f();
 	
 	/** entity that the player is locked on to */
 	public DynamicEntity lockon = null;
 	
+	/** Where the lockon was as of the previous tick (only used when capturing draw state) */
+	private Vector3f lockonScratch = new Vector3f();
+	
+	/** Scratch objects for converting between LWJGL and Bullet, so nothing gets allocated every tick */
+	private javax.vecmath.Vector3f vecScratch = new javax.vecmath.Vector3f();
+	private Vector3f velocityScratch = new Vector3f(), impulseScratch = new Vector3f();
+	private Quat4f camQuat = new Quat4f(), thisQuat = new Quat4f();
+	private Transform transScratch = new Transform();
+	
 	/** Sound source for making the gun shooting noise */
 	private SoundSource pew;
 	
@@ -120,6 +141,8 @@ public class Player extends DynamicEntity implements Health, Inventory{
 		this.type = "Player";
 		
 		backpack = new Backpack();
+		
+		targeting = new TargetAcquisition(this, LOCKON_DISTANCE, LOCKON_ANGLE, CollisionTypes.PLANET);
 
 		// FIXME temp code
 		trail1 = new Trail(this, 15, 0.6f, Textures.TRAIL, new Vector3f(0.9f, 0.13f, 2.34f));
@@ -174,7 +197,7 @@ public class Player extends DynamicEntity implements Health, Inventory{
 					brake(timeStep);
 				
 				checkForPickups();
-				lockOn();
+				lockOn(timeStep);
 				
 				if(isInvincible){
 					timeSpentInvincible += timeStep;
@@ -189,16 +212,15 @@ public class Player extends DynamicEntity implements Health, Inventory{
 	 * Gracefully stops the player
 	 */
 	private void brake(float timeStep) {
-		javax.vecmath.Vector3f linearVelocity = new javax.vecmath.Vector3f(
-				0.0f, 0.0f, 0.0f);
+		javax.vecmath.Vector3f linearVelocity = vecScratch;
 		rigidBody.getLinearVelocity(linearVelocity);
 
 		float stopX = linearVelocity.x - ((linearVelocity.x / ship.getStopSpeed()) * timeStep);
 		float stopY = linearVelocity.y - ((linearVelocity.y / ship.getStopSpeed()) * timeStep);
 		float stopZ = linearVelocity.z - ((linearVelocity.z / ship.getStopSpeed()) * timeStep);
 
-		rigidBody.setLinearVelocity(new javax.vecmath.Vector3f(stopX, stopY,
-				stopZ));
+		linearVelocity.set(stopX, stopY, stopZ);
+		rigidBody.setLinearVelocity(linearVelocity);
 	}
 
 	/**
@@ -218,19 +240,16 @@ public class Player extends DynamicEntity implements Health, Inventory{
 		Vector3f.add(bulletLocation, bulletMoveAmount, bulletLocation);
 
 		Models bulletModel = Models.LASERBULLET;
-		float bulletMass = 0.25f;
-		float bulletRestitution = 1.0f;
 		int bulletDamage = 10;
 		float bulletSpeed = 2500.0f;
+		float bulletLife = 10.0f;
 
-		LaserBullet bullet = new LaserBullet(this, bulletLocation, bulletRotation,
-				bulletModel, bulletMass, bulletRestitution, bulletDamage, bulletSpeed);
-		Entities.addDynamicEntity(bullet);
+		// bullets are fast enough that they're just rays (see Projectiles)
+		Projectiles.fire(this, bulletLocation, bulletRotation, bulletSpeed,
+				bulletLife, bulletDamage, bulletModel.getModel());
 		
 		pew.setLocation(Entities.camera.location);
-		javax.vecmath.Vector3f linvec = new javax.vecmath.Vector3f();
-		this.rigidBody.getLinearVelocity(linvec);
-		pew.setVelocity(new Vector3f(linvec.x, linvec.y, linvec.z));
+		pew.setVelocity(VectorHelper.getLinearVelocity(this.rigidBody, vecScratch, velocityScratch));
 		pew.playSound();
 	}
 	
@@ -267,24 +286,22 @@ public class Player extends DynamicEntity implements Health, Inventory{
 				Vector3f vec;
 				if(boosting)
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-							new Vector3f(0.0f, 0.0f, ship.getBoostSpeed().z * timeStep), rotation);
+							0.0f, 0.0f, ship.getBoostSpeed().z * timeStep, rotation, impulseScratch);
 				else
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-						new Vector3f(0.0f, 0.0f, ship.getAccelerationSpeed().z * timeStep), rotation);
+						0.0f, 0.0f, ship.getAccelerationSpeed().z * timeStep, rotation, impulseScratch);
 				
-				rigidBody.applyCentralImpulse(new javax.vecmath.Vector3f(vec.x,
-						vec.y, vec.z));
+				VectorHelper.applyCentralImpulse(rigidBody, vec, vecScratch);
 			}
 			if (backward) {
 				Vector3f vec;
 				if(boosting)
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-							new Vector3f(0.0f, 0.0f, -ship.getBoostSpeed().z * timeStep), rotation);
+							0.0f, 0.0f, -ship.getBoostSpeed().z * timeStep, rotation, impulseScratch);
 				else
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-						new Vector3f(0.0f, 0.0f, -ship.getAccelerationSpeed().z * timeStep), rotation);
-				rigidBody.applyCentralImpulse(new javax.vecmath.Vector3f(vec.x,
-						vec.y, vec.z));
+						0.0f, 0.0f, -ship.getAccelerationSpeed().z * timeStep, rotation, impulseScratch);
+				VectorHelper.applyCentralImpulse(rigidBody, vec, vecScratch);
 			}
 		}
 	}
@@ -301,23 +318,21 @@ public class Player extends DynamicEntity implements Health, Inventory{
 				Vector3f vec;
 				if(boosting)
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-						new Vector3f(ship.getBoostSpeed().x * timeStep, 0.0f, 0.0f), rotation);
+						ship.getBoostSpeed().x * timeStep, 0.0f, 0.0f, rotation, impulseScratch);
 				else
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-							new Vector3f(ship.getAccelerationSpeed().x * timeStep, 0.0f, 0.0f), rotation);
-				rigidBody.applyCentralImpulse(new javax.vecmath.Vector3f(vec.x,
-						vec.y, vec.z));
+							ship.getAccelerationSpeed().x * timeStep, 0.0f, 0.0f, rotation, impulseScratch);
+				VectorHelper.applyCentralImpulse(rigidBody, vec, vecScratch);
 			}
 			if (right) {
 				Vector3f vec;
 				if(boosting)
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-							new Vector3f(-ship.getBoostSpeed().x * timeStep, 0.0f, 0.0f), rotation);
+							-ship.getBoostSpeed().x * timeStep, 0.0f, 0.0f, rotation, impulseScratch);
 				else
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-							new Vector3f(-ship.getAccelerationSpeed().x * timeStep, 0.0f, 0.0f), rotation);
-				rigidBody.applyCentralImpulse(new javax.vecmath.Vector3f(vec.x,
-						vec.y, vec.z));
+							-ship.getAccelerationSpeed().x * timeStep, 0.0f, 0.0f, rotation, impulseScratch);
+				VectorHelper.applyCentralImpulse(rigidBody, vec, vecScratch);
 			}
 		}
 	}
@@ -334,23 +349,21 @@ public class Player extends DynamicEntity implements Health, Inventory{
 				Vector3f vec;
 				if(boosting)
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-						new Vector3f(0.0f, -ship.getBoostSpeed().y * timeStep, 0.0f), rotation);
+						0.0f, -ship.getBoostSpeed().y * timeStep, 0.0f, rotation, impulseScratch);
 				else
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-							new Vector3f(0.0f, -ship.getAccelerationSpeed().y * timeStep, 0.0f), rotation);
-				rigidBody.applyCentralImpulse(new javax.vecmath.Vector3f(vec.x,
-						vec.y, vec.z));
+							0.0f, -ship.getAccelerationSpeed().y * timeStep, 0.0f, rotation, impulseScratch);
+				VectorHelper.applyCentralImpulse(rigidBody, vec, vecScratch);
 			}
 			if (descend) {
 				Vector3f vec;
 				if(boosting)
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-						new Vector3f(0.0f, ship.getBoostSpeed().y * timeStep, 0.0f), rotation);
+						0.0f, ship.getBoostSpeed().y * timeStep, 0.0f, rotation, impulseScratch);
 				else
 					vec = QuaternionHelper.rotateVectorByQuaternion(
-							new Vector3f(0.0f, ship.getAccelerationSpeed().y * timeStep, 0.0f), rotation);
-				rigidBody.applyCentralImpulse(new javax.vecmath.Vector3f(vec.x,
-						vec.y, vec.z));
+							0.0f, ship.getAccelerationSpeed().y * timeStep, 0.0f, rotation, impulseScratch);
+				VectorHelper.applyCentralImpulse(rigidBody, vec, vecScratch);
 			}
 		}
 	}
@@ -359,7 +372,7 @@ public class Player extends DynamicEntity implements Health, Inventory{
 	 * Keep the speed in range of this ship's top speed
 	 */
 	private void checkSpeed(){
-	    javax.vecmath.Vector3f velocity = new javax.vecmath.Vector3f();
+		javax.vecmath.Vector3f velocity = vecScratch;
 		rigidBody.getLinearVelocity(velocity);
 		float speed = velocity.length();
 		if(speed > ship.getTopSpeed()){
@@ -375,18 +388,18 @@ public class Player extends DynamicEntity implements Health, Inventory{
 	 * @param timeStep
 	 */
 	private void rotationLogic(float timeStep){
-		javax.vecmath.Vector3f angVec = new javax.vecmath.Vector3f();
+		javax.vecmath.Vector3f angVec = vecScratch;
 		this.rigidBody.getAngularVelocity(angVec);
 		float currentAngularVelocity = angVec.length();
 		
 		// if the mouse has moved, set the angular velocity to zero (to prevent spinning out of control)
-		if(MouseManager.dx != 0.0f && MouseManager.dy != 0.0f && currentAngularVelocity != 0)
-			this.rigidBody.setAngularVelocity(new javax.vecmath.Vector3f(0.0f, 0.0f, 0.0f));
+		if(MouseManager.tickDX != 0.0f && MouseManager.tickDY != 0.0f && currentAngularVelocity != 0)
+			this.rigidBody.setAngularVelocity(ZERO);
 		
 		// only interpolate values if the angular velocity is 0 (we're NOT spinning out of control) and the two rotations aren't already equal (dot product == 1 if the rotations are the same)
 		if(currentAngularVelocity == 0 && Quaternion.dot(this.rotation, Entities.camera.rotation) != 1.0f){
-			Quat4f camquat = new Quat4f(Entities.camera.rotation.x, Entities.camera.rotation.y, Entities.camera.rotation.z, Entities.camera.rotation.w);
-			Quat4f thisquat = new Quat4f(rotation.x, rotation.y, rotation.z, rotation.w);
+			Quat4f camquat = VectorHelper.toVecmath(Entities.camera.rotation, camQuat);
+			Quat4f thisquat = VectorHelper.toVecmath(rotation, thisQuat);
 			
 			float interpolationAmount = timeStep * ship.getTurnSpeed();
 			
@@ -397,59 +410,69 @@ public class Player extends DynamicEntity implements Health, Inventory{
 			this.rotation.set(thisquat.x, thisquat.y, thisquat.z, thisquat.w);
 			
 			// set world transform to represent interpolated value
-			Transform trans = new Transform();
-			this.rigidBody.getWorldTransform(trans);
-			trans.setRotation(thisquat);
-			this.rigidBody.setWorldTransform(trans);
+			this.rigidBody.getWorldTransform(transScratch);
+			transScratch.setRotation(thisquat);
+			this.rigidBody.setWorldTransform(transScratch);
 		}
 	}
 	
 	/**
-	 * Searches for things to lock on to
+	 * Updates what the player is locked on to
 	 */
-	private void lockOn(){
-		ArrayList<Asteroid> hits = new ArrayList<Asteroid>();
-		ConvexResultCallback<Asteroid> callback = new ConvexResultCallback<Asteroid>(hits, CollisionTypes.PLANET);
-		
-		Physics.convexSweepTest(this, new Vector3f(0.0f, 0.0f, LOCKON_DISTANCE), lockonSweepBox, callback);
+	private void lockOn(float timeStep){
+		targeting.update(timeStep);
 		
-		if(hits.size() > 0){
-			this.lockon = hits.get(0);
-			if(this.lockon instanceof Asteroid){
-				lockonboxSize.x = ((Asteroid) this.lockon).getSize();
-				lockonboxSize.y = ((Asteroid) this.lockon).getSize();
-			}
+		DynamicEntity target = targeting.getTarget();
+		if(target != lockon && target instanceof Asteroid){
+			lockonboxSize.x = ((Asteroid) target).getSize();
+			lockonboxSize.y = ((Asteroid) target).getSize();
 		}
-		
-		// un-lock on to something if it's being removed
-		if(lockon != null && lockon.removeFlag)
-			lockon = null;
+		lockon = target;
 	}
 	
 	/**
-	 * Performs a convex sweep test in front of the player and sets any found pickups
+	 * Looks for pickups in a sphere just in front of the player and sets any found pickups
 	 * to follow the player.
 	 */
 	private void checkForPickups(){
-		// we'll use a sphere for simplicity
-		SphereShape shape = new SphereShape(pickupSweepSize);
-		
-		/*
-		 *  See ConvexResultCallback class
-		 *  Any pickups found from the sweep test are added to hits
-		 *  It is possible to do multiple tests and have them all add to the same list,
-		 *  but there's no guarantee that there won't be duplicates so be careful
-		 *  (Would be possible to get a list containing no duplicates if, say, a 
-		 *  hash map is used)
-		 */
-		ArrayList<Pickup> hits = new ArrayList<Pickup>();
-		ConvexResultCallback<Pickup> callback = new ConvexResultCallback<Pickup>(hits, CollisionTypes.PICKUP);
-		
-		Physics.convexSweepTest(this, new Vector3f(0.0f, 0.0f, pickupSweepDistance), shape, callback);
+		// sphere covers everything the old sweep of a pickupSweepSize sphere moving pickupSweepDistance forward did
+		forward(forwardScratch);
+		float halfDistance = pickupSweepDistance / 2.0f;
+		queryScratch.set(
+				location.x + forwardScratch.x * halfDistance,
+				location.y + forwardScratch.y * halfDistance,
+				location.z + forwardScratch.z * halfDistance);
+		SpatialQuery.sphere(queryScratch, pickupSweepSize + halfDistance, CollisionTypes.PICKUP, this, pickupResults);
 		
 		// make found pickups follow player
-		for(Pickup item : hits)
-				item.setFollowing(this, pickupDistance, backpack);
+		for(int i = 0; i < pickupResults.size(); i++){
+			DynamicEntity ent = pickupResults.get(i);
+			if(ent instanceof Pickup)
+				((Pickup) ent).setFollowing(this, pickupDistance, backpack);
+		}
+		pickupResults.clear();
+	}
+	
+	/**
+	 * @param dest Vector to put the direction the player is facing in
+	 * @return dest, for chaining
+	 */
+	private Vector3f forward(Vector3f dest){
+		return QuaternionHelper.rotateVectorByQuaternion(0.0f, 0.0f, 1.0f, rotation, dest);
+	}
+	
+	@Override
+	public void captureDrawState(DrawState state){
+		trail1.captureDrawState(state);
+		trail2.captureDrawState(state);
+		
+		state.put(lockon != null);
+		if(lockon != null){
+			state.put(lockon.getPreviousLocation(lockonScratch));
+			state.put(lockon.location);
+			state.put(lockonboxSize.x);
+			state.put(lockonboxSize.y);
+		}
 	}
 	
 	@Override
@@ -458,7 +481,7 @@ public class Player extends DynamicEntity implements Health, Inventory{
 		//FIXME temp code
 		trail1.draw();
 		trail2.draw();
-		if(lockon != null)
+		if(Render3D.drawState.nextBoolean())
 			drawTarget();
 	}
 	
@@ -481,23 +504,32 @@ public class Player extends DynamicEntity implements Health, Inventory{
 		Matrix4f oldModelView = new Matrix4f();
 		oldModelView.load(Render3D.modelview);
 		
+		// where what's locked on to is, between the last two ticks (see captureDrawState())
+		Render3D.drawState.next(targetPrevious);
+		Render3D.drawState.next(target);
+		float alpha = Render3D.getAlpha();
+		float targetX = targetPrevious.x + (target.x - targetPrevious.x) * alpha;
+		float targetY = targetPrevious.y + (target.y - targetPrevious.y) * alpha;
+		float targetZ = targetPrevious.z + (target.z - targetPrevious.z) * alpha;
+		float boxWidth = Render3D.drawState.next(), boxHeight = Render3D.drawState.next();
+		
 		// undo rotation (modelview is currently rotated to draw player)
 		Quaternion revQuat = new Quaternion();
-		this.rotation.negate(revQuat);
+		Render3D.drawRotation.negate(revQuat);
 		Matrix4f.mul(Render3D.modelview, QuaternionHelper.toMatrix(revQuat), Render3D.modelview);
 		
 		// new translation
-		float transx = location.x - lockon.location.x;
-		float transy = location.y - lockon.location.y;
-		float transz = location.z - lockon.location.z;
+		float transx = Render3D.drawLocation.x - targetX;
+		float transy = Render3D.drawLocation.y - targetY;
+		float transz = Render3D.drawLocation.z - targetZ;
 		
 		// translate and scale the modelview
 		Render3D.modelview.translate(new Vector3f(transx, transy, transz));
 		// billboard the target
-		Matrix4f.mul(Render3D.modelview, QuaternionHelper.toMatrix(Entities.camera.rotation), Render3D.modelview);
+		Matrix4f.mul(Render3D.modelview, QuaternionHelper.toMatrix(Render3D.cameraRotation), Render3D.modelview);
 		
 		// make it bigger!
-		Render3D.modelview.scale(new Vector3f(lockonboxSize.x, lockonboxSize.y, 1.0f));
+		Render3D.modelview.scale(new Vector3f(boxWidth, boxHeight, 1.0f));
 		
 		// don't forget to set the modelview before drawing
 		Render3D.program.setUniform("ModelViewMatrix", Render3D.modelview);
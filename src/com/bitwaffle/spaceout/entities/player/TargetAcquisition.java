@@ -0,0 +1,174 @@
+package com.bitwaffle.spaceout.entities.player;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import com.bitwaffle.spaceguts.entities.DynamicEntity;
+import com.bitwaffle.spaceguts.physics.SpatialQuery;
+import com.bitwaffle.spaceguts.util.QuaternionHelper;
+
+/**
+ * Figures out what an entity is locked on to.
+ * <p>
+ * Looking for new targets only happens searchRate times a second. Each search does a cone query in front of
+ * the owner to get a list of candidates, and then candidatesPerTick of them get scored every tick after that
+ * (so a crowded asteroid field doesn't make one tick take forever). Once every candidate has been scored, the best
+ * one becomes the new target.
+ * <p>
+ * In between searches, the only thing that happens every tick is making sure the current target is still valid
+ * (not removed and still in range), so a lock sticks around until something better shows up in front of the owner.
+ */
+public class TargetAcquisition {
+	/** How many times a second to look for new targets */
+	public float searchRate = 10.0f;
+
+	/** How many candidates to score every tick */
+	public int candidatesPerTick = 4;
+
+	/** How far away things can be locked on to */
+	public float range;
+
+	/** How far off from straight ahead something can be and still get locked on to, in degrees */
+	public float angle;
+
+	/** Collision groups that can be locked on to */
+	public short mask;
+
+	/** Entity doing the locking on */
+	private DynamicEntity owner;
+
+	/** What's locked on to */
+	private DynamicEntity target = null;
+
+	/** Candidates from the last search, and which one gets scored next (-1 means there's nothing to score) */
+	private SpatialQuery.Results candidates = new SpatialQuery.Results();
+	private int nextCandidate = -1;
+
+	/** Best candidate scored so far */
+	private DynamicEntity best;
+	private float bestScore;
+
+	/** How long it's been since the last search */
+	private float timeSinceSearch = 0.0f;
+
+	/** Scratch objects, so nothing gets allocated every tick */
+	private Vector3f forward = new Vector3f();
+	private javax.vecmath.Vector3f aabbMin = new javax.vecmath.Vector3f(), aabbMax = new javax.vecmath.Vector3f();
+
+	/**
+	 * @param owner Entity doing the locking on
+	 * @param range How far away things can be locked on to
+	 * @param angle How far off from straight ahead something can be and still get locked on to, in degrees
+	 * @param mask Collision groups that can be locked on to
+	 */
+	public TargetAcquisition(DynamicEntity owner, float range, float angle, short mask){
+		this.owner = owner;
+		this.range = range;
+		this.angle = angle;
+		this.mask = mask;
+	}
+
+	/**
+	 * Checks the current target and does a bit of searching for a new one
+	 * @param timeStep Amount of time passed since last update
+	 */
+	public void update(float timeStep){
+		if(target != null && !isValid(target))
+			target = null;
+
+		timeSinceSearch += timeStep;
+
+		if(nextCandidate < 0){
+			if(timeSinceSearch >= 1.0f / searchRate)
+				search();
+		} else{
+			scoreCandidates();
+		}
+	}
+
+	/**
+	 * Gets a new list of candidates
+	 */
+	private void search(){
+		timeSinceSearch = 0.0f;
+
+		QuaternionHelper.rotateVectorByQuaternion(0.0f, 0.0f, 1.0f, owner.rotation, forward);
+		SpatialQuery.cone(owner.location, forward, angle, range, mask, owner, candidates);
+
+		if(candidates.size() > 0){
+			nextCandidate = 0;
+			best = null;
+			bestScore = Float.MAX_VALUE;
+		} else{
+			candidates.clear();
+		}
+	}
+
+	/**
+	 * Scores a few candidates, picking a new target once they've all been scored
+	 */
+	private void scoreCandidates(){
+		// owner's probably turned a bit since the search
+		QuaternionHelper.rotateVectorByQuaternion(0.0f, 0.0f, 1.0f, owner.rotation, forward);
+
+		int end = Math.min(candidates.size(), nextCandidate + candidatesPerTick);
+		for(; nextCandidate < end; nextCandidate++){
+			DynamicEntity candidate = candidates.get(nextCandidate);
+			if(!isValid(candidate))
+				continue;
+
+			float score = score(candidate);
+			if(score <= angle && score < bestScore){
+				best = candidate;
+				bestScore = score;
+			}
+		}
+
+		if(nextCandidate >= candidates.size()){
+			if(best != null)
+				target = best;
+			best = null;
+			nextCandidate = -1;
+			candidates.clear();
+		}
+	}
+
+	/**
+	 * @param candidate Candidate to score
+	 * @return How far off from straight ahead the candidate is, in degrees (lower is better)
+	 */
+	private float score(DynamicEntity candidate){
+		candidate.rigidBody.getAabb(aabbMin, aabbMax);
+		return SpatialQuery.offAxisAngle(owner.location, forward, candidate.location, SpatialQuery.boundingRadius(aabbMin, aabbMax));
+	}
+
+	/**
+	 * @param ent Entity to check
+	 * @return Whether or not the entity can still be locked on to
+	 */
+	private boolean isValid(DynamicEntity ent){
+		if(ent.removeFlag)
+			return false;
+
+		float dx = ent.location.x - owner.location.x;
+		float dy = ent.location.y - owner.location.y;
+		float dz = ent.location.z - owner.location.z;
+		return dx * dx + dy * dy + dz * dz <= range * range;
+	}
+
+	/**
+	 * @return What's locked on to, or null if nothing is
+	 */
+	public DynamicEntity getTarget(){
+		return target;
+	}
+
+	/**
+	 * Forgets about the current target and any candidates
+	 */
+	public void clear(){
+		target = null;
+		best = null;
+		nextCandidate = -1;
+		candidates.clear();
+	}
+}
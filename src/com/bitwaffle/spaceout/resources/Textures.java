@@ -7,6 +7,8 @@ import org.lwjgl.opengl.GL11;
 import org.newdawn.slick.opengl.Texture;
 import org.newdawn.slick.opengl.TextureLoader;
 
+import com.bitwaffle.spaceguts.graphics.render.Graphics;
+
 /**
  * This houses all of the possible textures for the game.
  * To use a texture, just do
@@ -94,6 +96,10 @@ public enum Textures {
 	 * Initializes the texture object for this texture reference
 	 */
 	protected void initTexture(){
+		// textures can't be loaded without a GL context
+		if(Graphics.headless)
+			return;
+		
 		if(!textureLoaded()){
 			try{
 				FileInputStream fis = new FileInputStream(file);
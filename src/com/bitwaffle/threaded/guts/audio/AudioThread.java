@@ -5,6 +5,8 @@ import com.bitwaffle.threaded.guts.threads.EventThread;
 import com.bitwaffle.threaded.guts.threads.events.ALEvent;
 
 public class AudioThread extends EventThread<ALEvent> {
+	/** Longest to go without checking whether or not the game's done */
+	private static final long WAIT_NANOS = 10000000L;
 
 	@Override
 	public void run() {
@@ -13,6 +15,9 @@ public class AudioThread extends EventThread<ALEvent> {
 			
 			processEvents();
 			
+			// nothing else to do until there are more events
+			waitForEvents(WAIT_NANOS);
+			
 			long newTime = System.currentTimeMillis();
 			//System.out.printf("audio loop took %d milliseconds\n", newTime - oldTime);
 		}
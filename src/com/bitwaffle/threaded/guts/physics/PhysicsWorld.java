@@ -30,12 +30,16 @@ public class PhysicsWorld {
 
 
 	public PhysicsWorld(Vector3f gravity, int substeps, InternalTickCallback callback){
+		this(gravity, substeps, new DbvtBroadphase(), callback);
+	}
+
+	public PhysicsWorld(Vector3f gravity, int substeps, BroadphaseInterface broadphase, InternalTickCallback callback){
 		this.gravity = gravity;
 		this.substeps = substeps;
 
 		clock = new Clock();
 
-		broadphase = new DbvtBroadphase();
+		this.broadphase = broadphase;
 		
 		DefaultCollisionConfiguration collisionConfig = new DefaultCollisionConfiguration();
 		dispatcher = new CollisionDispatcher(collisionConfig);
@@ -0,0 +1,128 @@
+package com.bitwaffle.threaded.guts.threads;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.bitwaffle.threaded.guts.threads.events.Event;
+
+/**
+ * A bounded, lock-free queue that any number of threads can add events to
+ * but only one thread (the {@link EventThread} that owns it) takes events out of.
+ * <p>
+ * This is a ring buffer where every slot has a sequence number saying whose turn it is to use it.
+ * Producers claim a slot by bumping the tail with a compare-and-set, fill it, then bump the slot's sequence
+ * so the consumer knows it's ready. The consumer doesn't need any compare-and-sets since it's the only one
+ * touching the head.
+ */
+public class EventQueue<T extends Event> {
+	/** The events */
+	private final Object[] buffer;
+
+	/** Sequence number for each slot in the buffer */
+	private final AtomicLongArray sequences;
+
+	/** capacity - 1, for wrapping indices (capacity is always a power of two) */
+	private final int mask;
+
+	/** Next slot a producer will claim */
+	private final AtomicLong tail = new AtomicLong(0L);
+
+	/** Next slot the consumer will take from (only touched by the consumer) */
+	private long head = 0L;
+
+	/**
+	 * @param capacity Most events the queue can hold at once (rounded up to a power of two)
+	 */
+	public EventQueue(int capacity){
+		int size = 1;
+		while(size < capacity)
+			size <<= 1;
+
+		buffer = new Object[size];
+		sequences = new AtomicLongArray(size);
+		mask = size - 1;
+
+		for(int i = 0; i < size; i++)
+			sequences.set(i, i);
+	}
+
+	/**
+	 * Adds an event to the queue. Can be called from any thread.
+	 * @param event Event to add
+	 * @return False if the queue was full and the event wasn't added
+	 */
+	public boolean offer(T event){
+		long pos = tail.get();
+		int index;
+
+		while(true){
+			index = (int)(pos & mask);
+			long diff = sequences.get(index) - pos;
+
+			if(diff == 0L){
+				// slot's free, try to claim it
+				if(tail.compareAndSet(pos, pos + 1L))
+					break;
+				pos = tail.get();
+			} else if(diff < 0L){
+				// the consumer hasn't gotten to this slot since last time around, so we're full
+				return false;
+			} else{
+				// somebody else claimed it first
+				pos = tail.get();
+			}
+		}
+
+		buffer[index] = event;
+		// let the consumer know the slot's ready
+		sequences.set(index, pos + 1L);
+		return true;
+	}
+
+	/**
+	 * Takes the next event out of the queue. Must only be called by the consumer.
+	 * @return The next event, or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll(){
+		int index = (int)(head & mask);
+		if(sequences.get(index) != head + 1L)
+			return null;
+
+		T event = (T) buffer[index];
+		buffer[index] = null;
+		// let producers know the slot's free for the next time around
+		sequences.lazySet(index, head + mask + 1L);
+		head++;
+		return event;
+	}
+
+	/**
+	 * Runs the action of every event in the queue, up to a given maximum. Must only be called by the consumer.
+	 * @param max Most events to process
+	 * @return How many events were processed
+	 */
+	public int drain(int max){
+		int drained = 0;
+		T event;
+		while(drained < max && (event = poll()) != null){
+			event.takeAction();
+			drained++;
+		}
+		return drained;
+	}
+
+	/**
+	 * @return Whether or not there's nothing ready in the queue (only accurate when called by the consumer)
+	 */
+	public boolean isEmpty(){
+		return sequences.get((int)(head & mask)) != head + 1L;
+	}
+
+	/**
+	 * @return Most events the queue can hold at once
+	 */
+	public int capacity(){
+		return buffer.length;
+	}
+}
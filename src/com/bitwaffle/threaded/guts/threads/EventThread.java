@@ -1,64 +1,85 @@
 package com.bitwaffle.threaded.guts.threads;
 
-import com.bitwaffle.threaded.guts.threads.events.Event;
+import java.util.concurrent.locks.LockSupport;
 
-import java.util.LinkedList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.locks.ReentrantLock;
+import com.bitwaffle.threaded.guts.threads.events.Event;
 
+/**
+ * A thread that has events sent to it from other threads.
+ * Every EventThread has its own {@link EventQueue}, so adding an event never takes a lock
+ * and threads sending events to different subsystems never get in each other's way.
+ */
 public abstract class EventThread<T extends Event> extends Thread{
-	private static ReentrantLock queueLock;
-	private LinkedList<T> eventQueue;
-	ExecutorService service;
+	/** How many events each thread's queue can hold by default */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/** Most events to process in one call to processEvents(), so that a flood of events doesn't hold up the rest of the loop */
+	private static final int MAX_BATCH = 1024;
+
+	/** How long a producer waits before trying again when the queue is full */
+	private static final long FULL_BACKOFF_NANOS = 50000L;
+
+	/** Events waiting to be processed */
+	private EventQueue<T> eventQueue;
+
+	/** Whether or not this thread is parked in waitForEvents() */
+	private volatile boolean waiting = false;
 
 	public EventThread(){
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity Most events that can be waiting at once
+	 */
+	public EventThread(int capacity){
 		this.setName("Unknown EventThread");
-		queueLock = new ReentrantLock();
-		eventQueue = new LinkedList<T>();
-		service = Executors.newSingleThreadExecutor();
+		eventQueue = new EventQueue<T>(capacity);
 	}
 
 	@Override
 	public abstract void run();
 
+	/**
+	 * Sends an event to this thread. Can be called from any thread.
+	 * If the queue is full, this waits until there's room. If it's this thread sending
+	 * an event to itself, nobody else is going to make room, so it processes some events first.
+	 * @param event Event to send
+	 */
 	public void addEvent(final T event){
-		Thread t = new Thread(new Runnable(){
-			@Override
-			public void run(){
-				boolean eventAdded = false;
+		boolean self = Thread.currentThread() == this;
+		while(!eventQueue.offer(event)){
+			// the consumer can't wait on itself, so make room right here
+			if(self && eventQueue.drain(MAX_BATCH) > 0)
+				continue;
 
-				while(!eventAdded){
-					if(queueLock.tryLock()){
-						eventQueue.add(event);
-						eventAdded = true;
-						queueLock.unlock();
-					}
-				}
-			}
-		});
+			// make sure the consumer is awake to make room
+			if(!self)
+				LockSupport.unpark(this);
+			LockSupport.parkNanos(FULL_BACKOFF_NANOS);
+		}
 
-		t.setName("Add event");
-		service.submit(t);
+		if(waiting)
+			LockSupport.unpark(this);
 	}
 
-	protected void processEvents(){
-		boolean processed = false;
-
-		while(!processed){
-			if(queueLock.tryLock()){
-				try {
-					Event e = eventQueue.poll();
+	/**
+	 * Processes events that have been sent to this thread
+	 * @return How many events were processed
+	 */
+	protected int processEvents(){
+		return eventQueue.drain(MAX_BATCH);
+	}
 
-					while(e != null){
-						e.takeAction();
-						e = eventQueue.poll();
-					}
-				} finally {
-					queueLock.unlock();
-					processed = true;
-				}
-			}
-		}
+	/**
+	 * Parks this thread until an event is sent to it or the timeout runs out.
+	 * Returns right away if there are already events waiting.
+	 * @param timeoutNanos Longest to wait, in nanoseconds
+	 */
+	protected void waitForEvents(long timeoutNanos){
+		waiting = true;
+		if(eventQueue.isEmpty())
+			LockSupport.parkNanos(this, timeoutNanos);
+		waiting = false;
 	}
 }